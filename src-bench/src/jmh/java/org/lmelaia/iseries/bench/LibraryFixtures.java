@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.bench;
+
+import org.lmelaia.iseries.common.system.AppLogger;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Creates the libraries the benchmarks run against.
+ * <p>
+ * Libraries are generated by the {@link LibraryGenerator} from
+ * its default seed, so results are comparable between runs.
+ */
+public final class LibraryFixtures {
+
+    /**
+     * Private (non instantiable) constructor.
+     */
+    private LibraryFixtures() {
+    }
+
+    /**
+     * Configures logging to only log warnings, so the
+     * library doesn't log every entry read or written.
+     */
+    public static void configureLogging() {
+        AppLogger.silentConfigure("/configuration/log4j2_bench_configuration.xml");
+    }
+
+    /**
+     * Creates a library of randomly named entries, each
+     * with a synopsis of up to a few hundred words and
+     * a short comment, and no playlists or attachments.
+     *
+     * @param path    the folder to create the library in,
+     *                which must be empty or not exist yet.
+     * @param entries the number of entries.
+     * @return the path.
+     * @throws IOException if the library can't be written.
+     */
+    public static Path create(Path path, int entries) throws IOException {
+        return new LibraryGenerator().setEntries(entries).generate(path);
+    }
+
+    /**
+     * Deletes a library created by {@link #create(Path, int)}.
+     *
+     * @param path the folder the library is in.
+     * @throws IOException if the library can't be deleted.
+     */
+    public static void delete(Path path) throws IOException {
+        if (path == null || !Files.exists(path))
+            return;
+
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,591 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.lmelaia.iseries.util.StringUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Generates libraries shaped like real ones, for benchmarks
+ * and scale testing.
+ * <p>
+ * The library is written straight to disk in the format
+ * {@link org.lmelaia.iseries.library.Library} reads, with
+ * entry folders named the way
+ * {@link org.lmelaia.iseries.ilibrary.NamedEntrySorter} names
+ * them and playlists stored the way
+ * {@link org.lmelaia.iseries.ilibrary.IPlaylists} stores them.
+ * Adding entries through the library instead rewrites the
+ * index on every add, which takes hours for large libraries.
+ * <p>
+ * The same seed and settings always generate the same library.
+ * Entries, playlists and attachment content each draw from their
+ * own random sequence, so changing e.g. the attachment sizes
+ * doesn't change the entries.
+ * <p>
+ * Can be run from the command line with {@code --name=value}
+ * arguments: {@code gradlew :src-bench:generateLibrary
+ * -Pargs="--path=library --entries=50000 --playlists=20"}.
+ * Run without arguments to list them.
+ */
+public final class LibraryGenerator {
+
+    /**
+     * Seed used unless another is given.
+     */
+    public static final long DEFAULT_SEED = 0x15E41E5L;
+
+    /**
+     * Words names, synopses and comments are made from.
+     */
+    private static final String[] WORDS = {
+            "the", "last", "night", "of", "summer", "return", "king", "shadow", "river", "empire",
+            "lost", "city", "star", "war", "dark", "knight", "rises", "alien", "ghost", "dream",
+            "house", "fire", "ice", "blood", "moon", "sun", "storm", "island", "secret", "garden",
+            "detective", "agent", "hunter", "legend", "dragon", "planet", "mission", "code", "heart", "stone",
+            "a", "and", "in", "to", "with", "from", "under", "beyond", "after", "before"
+    };
+
+    /**
+     * The types an entry can have.
+     */
+    private static final String[] TYPES = {"none", "movie", "series", "trilogy"};
+
+    /**
+     * The ratings an entry can have.
+     */
+    private static final String[] RATINGS = {
+            "n/a", "1/10", "2/10", "3/10", "4/10", "5/10", "6/10", "7/10", "8/10", "9/10", "10/10"
+    };
+
+    /**
+     * Uuid of the library entry holding the playlists.
+     */
+    private static final String PLAYLISTS_UID = "Playlists";
+
+    /**
+     * Writes the json files the same way the library does.
+     */
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * The seed the library is generated from.
+     */
+    private long seed = DEFAULT_SEED;
+
+    /**
+     * Number of valid entries.
+     */
+    private int entries = 1000;
+
+    /**
+     * Number of words in an entry name.
+     */
+    private Range nameWords = new Range(1, 6);
+
+    /**
+     * Number of words in an entry synopsis.
+     */
+    private Range synopsisWords = new Range(20, 400);
+
+    /**
+     * Number of words in an entry comment.
+     */
+    private Range commentWords = new Range(0, 40);
+
+    /**
+     * Fraction of entries that are loved.
+     */
+    private double loved = 0.1;
+
+    /**
+     * Number of playlists.
+     */
+    private int playlists = 0;
+
+    /**
+     * Number of entries in a playlist.
+     */
+    private Range playlistMembers = new Range(10, 1000);
+
+    /**
+     * Number of files attached to an entry.
+     */
+    private Range attachments = new Range(0, 0);
+
+    /**
+     * Size of an attached file, in bytes.
+     */
+    private Range attachmentSize = new Range(1024, 1024 * 1024);
+
+    /**
+     * Number of entries whose folder doesn't exist.
+     */
+    private int missingEntries = 0;
+
+    /**
+     * Number of entries whose entry file can't be read.
+     */
+    private int corruptedEntries = 0;
+
+    /**
+     * Generates a library from command line arguments.
+     *
+     * @param args the {@code --name=value} arguments.
+     * @throws IOException if the library can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> arguments = new HashMap<>();
+
+        for (String arg : args) {
+            String[] split = arg.split("=");
+
+            if (split.length == 2 && split[0].startsWith("--"))
+                arguments.put(split[0].substring(2), split[1]);
+        }
+
+        if (!arguments.containsKey("path")) {
+            System.out.println("Usage: LibraryGenerator --path=<folder> [--seed=<n>] [--entries=<n>]"
+                    + " [--name_words=<min-max>] [--synopsis_words=<min-max>] [--comment_words=<min-max>]"
+                    + " [--loved=<fraction>] [--playlists=<n>] [--playlist_members=<min-max>]"
+                    + " [--attachments=<min-max>] [--attachment_size=<min-max bytes>]"
+                    + " [--missing=<n>] [--corrupted=<n>]");
+            return;
+        }
+
+        LibraryGenerator generator = new LibraryGenerator();
+
+        if (arguments.containsKey("seed"))
+            generator.setSeed(Long.parseLong(arguments.get("seed")));
+        if (arguments.containsKey("entries"))
+            generator.setEntries(Integer.parseInt(arguments.get("entries")));
+        if (arguments.containsKey("name_words"))
+            generator.setNameWords(Range.parse(arguments.get("name_words")));
+        if (arguments.containsKey("synopsis_words"))
+            generator.setSynopsisWords(Range.parse(arguments.get("synopsis_words")));
+        if (arguments.containsKey("comment_words"))
+            generator.setCommentWords(Range.parse(arguments.get("comment_words")));
+        if (arguments.containsKey("loved"))
+            generator.setLoved(Double.parseDouble(arguments.get("loved")));
+        if (arguments.containsKey("playlists"))
+            generator.setPlaylists(Integer.parseInt(arguments.get("playlists")));
+        if (arguments.containsKey("playlist_members"))
+            generator.setPlaylistMembers(Range.parse(arguments.get("playlist_members")));
+        if (arguments.containsKey("attachments"))
+            generator.setAttachments(Range.parse(arguments.get("attachments")));
+        if (arguments.containsKey("attachment_size"))
+            generator.setAttachmentSize(Range.parse(arguments.get("attachment_size")));
+        if (arguments.containsKey("missing"))
+            generator.setMissingEntries(Integer.parseInt(arguments.get("missing")));
+        if (arguments.containsKey("corrupted"))
+            generator.setCorruptedEntries(Integer.parseInt(arguments.get("corrupted")));
+
+        long start = System.currentTimeMillis();
+        Path path = generator.generate(Paths.get(arguments.get("path")));
+        System.out.println("Generated library: " + path.toAbsolutePath() + " in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * @param seed the seed the library is generated from.
+     * @return this generator.
+     */
+    public LibraryGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param entries the number of valid entries, not counting
+     *                missing or corrupted ones.
+     * @return this generator.
+     */
+    public LibraryGenerator setEntries(int entries) {
+        this.entries = entries;
+        return this;
+    }
+
+    /**
+     * @param nameWords the number of words in an entry name.
+     * @return this generator.
+     */
+    public LibraryGenerator setNameWords(Range nameWords) {
+        this.nameWords = Objects.requireNonNull(nameWords);
+        return this;
+    }
+
+    /**
+     * @param synopsisWords the number of words in an entry synopsis.
+     * @return this generator.
+     */
+    public LibraryGenerator setSynopsisWords(Range synopsisWords) {
+        this.synopsisWords = Objects.requireNonNull(synopsisWords);
+        return this;
+    }
+
+    /**
+     * @param commentWords the number of words in an entry comment.
+     * @return this generator.
+     */
+    public LibraryGenerator setCommentWords(Range commentWords) {
+        this.commentWords = Objects.requireNonNull(commentWords);
+        return this;
+    }
+
+    /**
+     * @param loved the fraction of entries that are loved.
+     * @return this generator.
+     */
+    public LibraryGenerator setLoved(double loved) {
+        this.loved = loved;
+        return this;
+    }
+
+    /**
+     * @param playlists the number of playlists.
+     * @return this generator.
+     */
+    public LibraryGenerator setPlaylists(int playlists) {
+        this.playlists = playlists;
+        return this;
+    }
+
+    /**
+     * @param playlistMembers the number of entries in a playlist,
+     *                        capped at the number of entries.
+     * @return this generator.
+     */
+    public LibraryGenerator setPlaylistMembers(Range playlistMembers) {
+        this.playlistMembers = Objects.requireNonNull(playlistMembers);
+        return this;
+    }
+
+    /**
+     * @param attachments the number of files attached to an entry.
+     * @return this generator.
+     */
+    public LibraryGenerator setAttachments(Range attachments) {
+        this.attachments = Objects.requireNonNull(attachments);
+        return this;
+    }
+
+    /**
+     * @param attachmentSize the size of an attached file, in bytes.
+     * @return this generator.
+     */
+    public LibraryGenerator setAttachmentSize(Range attachmentSize) {
+        this.attachmentSize = Objects.requireNonNull(attachmentSize);
+        return this;
+    }
+
+    /**
+     * @param missingEntries the number of entries on the index
+     *                       whose folder doesn't exist.
+     * @return this generator.
+     */
+    public LibraryGenerator setMissingEntries(int missingEntries) {
+        this.missingEntries = missingEntries;
+        return this;
+    }
+
+    /**
+     * @param corruptedEntries the number of entries on the index
+     *                         whose entry file can't be read. Half
+     *                         are invalid json and half have no type.
+     * @return this generator.
+     */
+    public LibraryGenerator setCorruptedEntries(int corruptedEntries) {
+        this.corruptedEntries = corruptedEntries;
+        return this;
+    }
+
+    /**
+     * Generates the library.
+     *
+     * @param path the folder to create the library in, which
+     *             must be empty or not exist yet.
+     * @return the path.
+     * @throws IOException if the library can't be written.
+     */
+    public Path generate(Path path) throws IOException {
+        Random entryRandom = new Random(seed);
+        Random playlistRandom = new Random(seed + 1);
+        Random fileRandom = new Random(seed + 2);
+
+        Files.createDirectories(path);
+        JsonObject index = new JsonObject();
+        Set<String> folders = new HashSet<>();
+        String[] uuids = new String[entries];
+
+        for (int i = 0; i < entries; i++) {
+            uuids[i] = newUUID(entryRandom);
+            JsonObject information = new JsonObject();
+            String name = words(entryRandom, nameWords.sample(entryRandom));
+            information.addProperty("name", name);
+            information.addProperty("synopsis", words(entryRandom, synopsisWords.sample(entryRandom)));
+            information.addProperty("comments", words(entryRandom, commentWords.sample(entryRandom)));
+            information.addProperty("type", TYPES[entryRandom.nextInt(TYPES.length)]);
+            information.addProperty("rating", RATINGS[entryRandom.nextInt(RATINGS.length)]);
+            information.addProperty("loved", entryRandom.nextDouble() < loved);
+
+            String folder = getFolderName(uuids[i], name, folders);
+            Path entryPath = Files.createDirectory(path.resolve(folder));
+            JsonObject files = new JsonObject();
+
+            for (int j = 0, count = attachments.sample(entryRandom); j < count; j++) {
+                String fileName = "files/attachment-" + j + ".bin";
+                writeAttachment(entryPath.resolve(fileName), attachmentSize.sample(entryRandom), fileRandom);
+                files.addProperty("attachment-" + j, fileName);
+            }
+
+            write(createEntry(uuids[i], "BASIC_ENTRY", information, files), entryPath.resolve("entry.json"));
+            index.addProperty(uuids[i], "/" + folder);
+        }
+
+        for (int i = 0; i < missingEntries; i++)
+            index.addProperty(newUUID(entryRandom), "/Missing " + i);
+
+        for (int i = 0; i < corruptedEntries; i++) {
+            String uuid = newUUID(entryRandom);
+            Path entryPath = Files.createDirectory(path.resolve("Corrupted " + i));
+
+            if (i % 2 == 0) {
+                Files.write(entryPath.resolve("entry.json"),
+                        ("{\n  \"UUID\": \"" + uuid + "\",\n  \"Information\": {").getBytes(StandardCharsets.UTF_8));
+            } else {
+                JsonObject entry = createEntry(uuid, "BASIC_ENTRY", new JsonObject(), new JsonObject());
+                entry.remove("type");
+                write(entry, entryPath.resolve("entry.json"));
+            }
+
+            index.addProperty(uuid, "/Corrupted " + i);
+        }
+
+        if (playlists > 0) {
+            writePlaylists(path.resolve(PLAYLISTS_UID), uuids, playlistRandom);
+            index.addProperty(PLAYLISTS_UID, "/" + PLAYLISTS_UID);
+        }
+
+        write(index, path.resolve("index.json"));
+        return path;
+    }
+
+    /**
+     * Writes the playlists entry and a file for each playlist.
+     *
+     * @param path   the folder of the playlists entry.
+     * @param uuids  the uuids of the valid entries.
+     * @param random the random number generator.
+     * @throws IOException if the playlists can't be written.
+     */
+    private void writePlaylists(Path path, String[] uuids, Random random) throws IOException {
+        Files.createDirectory(path);
+        JsonArray names = new JsonArray();
+        JsonObject files = new JsonObject();
+        String[] shuffled = uuids.clone();
+
+        for (int i = 0; i < playlists; i++) {
+            String name = "Playlist " + i;
+            int members = Math.min(playlistMembers.sample(random), shuffled.length);
+            JsonArray playlistEntries = new JsonArray();
+
+            //Partial shuffle, picking distinct members.
+            for (int j = 0; j < members; j++) {
+                int pick = j + random.nextInt(shuffled.length - j);
+                String member = shuffled[pick];
+                shuffled[pick] = shuffled[j];
+                shuffled[j] = member;
+                playlistEntries.add(member);
+            }
+
+            JsonObject playlist = new JsonObject();
+            playlist.addProperty("name", name);
+            playlist.add("entries", playlistEntries);
+
+            String fileName = StringUtil.toAlphanumeric(name) + ".json";
+            write(playlist, path.resolve(fileName));
+            names.add(name);
+            files.addProperty(name, fileName);
+        }
+
+        JsonObject information = new JsonObject();
+        information.add("playlists", names);
+        write(createEntry(PLAYLISTS_UID, "NAMED_ENTRY", information, files), path.resolve("entry.json"));
+    }
+
+    /**
+     * @param uuid        the uuid of the entry.
+     * @param type        the type of the entry.
+     * @param information the information of the entry.
+     * @param files       the files of the entry.
+     * @return the json written to the entry file.
+     */
+    private static JsonObject createEntry(String uuid, String type, JsonObject information, JsonObject files) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty("UUID", uuid);
+        entry.add("Information", information);
+        entry.add("Files", files);
+        entry.addProperty("type", type);
+        return entry;
+    }
+
+    /**
+     * Names the folder of an entry the way the
+     * {@link org.lmelaia.iseries.ilibrary.NamedEntrySorter}
+     * does, falling back to the name and uuid if the
+     * name is taken.
+     *
+     * @param uuid    the uuid of the entry.
+     * @param name    the name of the entry.
+     * @param folders the names of the folders taken, in
+     *                lowercase, as file systems may ignore case.
+     * @return the folder name.
+     */
+    private static String getFolderName(String uuid, String name, Set<String> folders) {
+        String folder = StringUtil.toAlphanumeric(name).trim();
+
+        if (folder.isEmpty() || !folders.add(folder.toLowerCase())) {
+            folder = folder + " (" + uuid + ")";
+            folders.add(folder.toLowerCase());
+        }
+
+        return folder;
+    }
+
+    /**
+     * @param random the random number generator.
+     * @return a new uppercase uuid.
+     */
+    private static String newUUID(Random random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString().toUpperCase();
+    }
+
+    /**
+     * @param random the random number generator.
+     * @param count  the number of words.
+     * @return the given number of random words,
+     * separated by spaces.
+     */
+    private static String words(Random random, int count) {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            if (i != 0)
+                builder.append(' ');
+
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Writes a file of random bytes.
+     *
+     * @param file   the file.
+     * @param size   the size of the file, in bytes.
+     * @param random the random number generator.
+     * @throws IOException if the file can't be written.
+     */
+    private static void writeAttachment(Path file, int size, Random random) throws IOException {
+        Files.createDirectories(file.getParent());
+        byte[] buffer = new byte[Math.min(size, 64 * 1024)];
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int written = 0; written < size; written += buffer.length) {
+                random.nextBytes(buffer);
+                out.write(buffer, 0, Math.min(buffer.length, size - written));
+            }
+        }
+    }
+
+    /**
+     * @param json the json to write.
+     * @param file the file to write it to.
+     * @throws IOException if the file can't be written.
+     */
+    private static void write(JsonObject json, Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            GSON.toJson(json, writer);
+        }
+    }
+
+    /**
+     * A range of sizes, from which most samples are small and a
+     * few are large, as with synopses and attachments in real
+     * libraries.
+     */
+    public static final class Range {
+
+        /**
+         * The smallest size.
+         */
+        private final int min;
+
+        /**
+         * The largest size.
+         */
+        private final int max;
+
+        /**
+         * @param min the smallest size.
+         * @param max the largest size.
+         */
+        public Range(int min, int max) {
+            if (min < 0 || max < min)
+                throw new IllegalArgumentException("Invalid range: " + min + "-" + max);
+
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * @param range a range as {@code min-max}, or a
+         *              single size.
+         * @return the range.
+         */
+        public static Range parse(String range) {
+            String[] split = range.split("-");
+            int min = Integer.parseInt(split[0].trim());
+            return new Range(min, split.length == 1 ? min : Integer.parseInt(split[1].trim()));
+        }
+
+        /**
+         * @param random the random number generator.
+         * @return a size in the range, skewed towards
+         * the smallest size (the median is a quarter
+         * of the way up the range).
+         */
+        int sample(Random random) {
+            double skewed = random.nextDouble();
+            return min + (int) Math.round((max - min) * skewed * skewed);
+        }
+    }
+}
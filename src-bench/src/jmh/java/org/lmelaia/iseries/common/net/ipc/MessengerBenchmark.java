@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.common.net.ipc;
+
+import com.google.gson.JsonObject;
+import org.lmelaia.iseries.bench.LibraryFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the round trip of messages between
+ * two messengers in the same process.
+ * <p>
+ * {@link Transport#UNIX} is only supported on Java 16 or
+ * later, so isn't run by default. Run it with
+ * {@code -p transport=UNIX} on a runtime that supports it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MessengerBenchmark {
+
+    /**
+     * Timeout for replies.
+     */
+    private static final int TIMEOUT = 10000;
+
+    /**
+     * Name of the transport to use.
+     */
+    @Param({"TCP", "DATAGRAM"})
+    private String transport;
+
+    /**
+     * Messenger answering the messages.
+     */
+    private Messenger receiver;
+
+    /**
+     * Messenger sending the messages.
+     */
+    private Messenger sender;
+
+    /**
+     * The message sent.
+     */
+    private JsonObject message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LibraryFixtures.configureLogging();
+
+        receiver = new Messenger(TIMEOUT, Transport.valueOf(transport));
+        receiver.setMessageResponder("echo", received -> received);
+        sender = new Messenger(TIMEOUT, Transport.valueOf(transport));
+
+        message = new JsonObject();
+        message.addProperty("name", "echo");
+        message.addProperty("value", "The quick brown fox jumps over the lazy dog");
+    }
+
+    /**
+     * Sends a small message and waits for its reply.
+     */
+    @Benchmark
+    public JsonObject send() {
+        return sender.send(message, receiver.getReceiverPort());
+    }
+
+    /**
+     * Pings the receiver.
+     */
+    @Benchmark
+    public boolean ping() {
+        return sender.ping(receiver.getReceiverPort());
+    }
+}
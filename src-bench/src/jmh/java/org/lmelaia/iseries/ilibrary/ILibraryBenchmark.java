@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.ilibrary;
+
+import org.lmelaia.iseries.bench.LibraryFixtures;
+import org.lmelaia.iseries.library.Library;
+import org.lmelaia.iseries.library.ProgressTracker;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks searching and filtering the table model
+ * of the library.
+ * <p>
+ * No table is linked, so the FX toolkit isn't needed and
+ * only the filtering itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ILibraryBenchmark {
+
+    /**
+     * One in this many entries is in the playlist.
+     */
+    private static final int PLAYLIST_SPACING = 10;
+
+    /**
+     * Number of entries in the library.
+     */
+    @Param({"1000", "10000", "100000"})
+    private int entries;
+
+    /**
+     * The folder the library is in.
+     */
+    private Path path;
+
+    /**
+     * The library.
+     */
+    private ILibrary library;
+
+    /**
+     * Every entry in the library.
+     */
+    private IEntry[] libraryEntries;
+
+    /**
+     * The table entry of every entry in the library.
+     */
+    private ITableEntry[] tableEntries;
+
+    /**
+     * A playlist holding one in {@link #PLAYLIST_SPACING}
+     * entries of the library.
+     */
+    private IPlaylist playlist;
+
+    /**
+     * The search filter and fuzzy filter, which are
+     * benchmarked with queries matching some entries
+     * and with a query matching none.
+     */
+    @State(Scope.Benchmark)
+    public static class Search {
+
+        @Param({"knight", "ark", "no match"})
+        private String query;
+
+        private SearchFilter filter;
+
+        private FuzzyFilter fuzzy;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            filter = new SearchFilter(query);
+            fuzzy = new FuzzyFilter(query);
+        }
+    }
+
+    /**
+     * A query language filter, benchmarked with a query
+     * answered almost entirely from the attribute bitmaps
+     * and a query needing trigram lookups and a scan.
+     */
+    @State(Scope.Benchmark)
+    public static class Query {
+
+        @Param({"type:series rating>=8 loved:true name:star", "(knight OR star) -type:none name<b"})
+        private String query;
+
+        private QueryFilter filter;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            filter = new QueryFilter(query);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        LibraryFixtures.configureLogging();
+        path = LibraryFixtures.create(Files.createTempDirectory("iseries-bench-ilibrary"), entries);
+
+        Library backingLibrary = new Library();
+        backingLibrary.load(path.toFile(), NamedEntrySorter.NAMED_ENTRY_SORTER, ProgressTracker.getUnboundTracker());
+        library = new ILibrary(backingLibrary);
+
+        libraryEntries = library.getEntries();
+        tableEntries = new ITableEntry[libraryEntries.length];
+        List<IEntry> members = new ArrayList<>();
+
+        for (int i = 0; i < libraryEntries.length; i++) {
+            tableEntries[i] = libraryEntries[i].getTableEntry();
+
+            if (i % PLAYLIST_SPACING == 0)
+                members.add(libraryEntries[i]);
+        }
+
+        playlist = library.playlists().createAndGetNewPlaylist("Benchmark");
+        playlist.addAll(members.toArray(new IEntry[0]));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        LibraryFixtures.delete(path);
+    }
+
+    /**
+     * Runs the search filter over every entry.
+     */
+    @Benchmark
+    public void searchFilterAccept(Search search, Blackhole blackhole) {
+        for (ITableEntry entry : tableEntries)
+            blackhole.consume(search.filter.accept(entry));
+    }
+
+    /**
+     * Finds the entries matching the search
+     * through the index of the library.
+     */
+    @Benchmark
+    public Object searchFilterSelect(Search search) {
+        return search.filter.select(library.getIndex());
+    }
+
+    /**
+     * Finds the entries with names close to the search
+     * through the index of the library.
+     */
+    @Benchmark
+    public Object fuzzyFilterSelect(Search search) {
+        return search.fuzzy.select(library.getIndex());
+    }
+
+    /**
+     * Runs the query filter over every entry.
+     */
+    @Benchmark
+    public void queryFilterAccept(Query query, Blackhole blackhole) {
+        for (ITableEntry entry : tableEntries)
+            blackhole.consume(query.filter.accept(entry));
+    }
+
+    /**
+     * Finds the entries matching the query
+     * through its execution plan.
+     */
+    @Benchmark
+    public Object queryFilterSelect(Query query) {
+        return query.filter.select(library.getIndex());
+    }
+
+    /**
+     * Searches the library, rebuilding the displayed entries.
+     * The cached results are dropped first, as the same search
+     * is run every time.
+     */
+    @Benchmark
+    public void filterDisplaySearch(Search search) {
+        library.getResultCache().clear();
+        library.setSearchFilter(search.filter);
+    }
+
+    /**
+     * Searches the library, showing the
+     * cached entries of the search.
+     */
+    @Benchmark
+    public void filterDisplaySearchCached(Search search) {
+        library.setSearchFilter(search.filter);
+    }
+
+    /**
+     * Shows a playlist, rebuilding the displayed entries.
+     * The cached results are dropped first, as the same
+     * playlist is shown every time.
+     */
+    @Benchmark
+    public void filterDisplayPlaylist() {
+        library.getResultCache().clear();
+        library.setFilter(playlist);
+    }
+
+    /**
+     * Runs the playlist filter over every entry.
+     */
+    @Benchmark
+    public void playlistAccept(Blackhole blackhole) {
+        for (ITableEntry entry : tableEntries)
+            blackhole.consume(playlist.accept(entry));
+    }
+
+    /**
+     * Checks if every entry is in the playlist.
+     */
+    @Benchmark
+    public void playlistHas(Blackhole blackhole) {
+        for (IEntry entry : libraryEntries)
+            blackhole.consume(playlist.has(entry));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.library;
+
+import org.lmelaia.iseries.bench.LibraryFixtures;
+import org.lmelaia.iseries.ilibrary.NamedEntrySorter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading and writing the library on disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LibraryBenchmark {
+
+    /**
+     * Number of entries in the library.
+     */
+    @Param({"1000", "10000", "100000"})
+    private int entries;
+
+    /**
+     * The folder the library is in.
+     */
+    private Path path;
+
+    /**
+     * The loaded library.
+     */
+    private Library library;
+
+    /**
+     * An entry in the library, rewritten
+     * by {@link #write()}.
+     */
+    private LibraryEntryBase entry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        LibraryFixtures.configureLogging();
+        path = LibraryFixtures.create(Files.createTempDirectory("iseries-bench-library"), entries);
+        library = load();
+        entry = library.getAll()[0];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        LibraryFixtures.delete(path);
+    }
+
+    /**
+     * Reads the index and every entry, then
+     * writes the index back.
+     */
+    @Benchmark
+    public Library load() throws Exception {
+        Library loaded = new Library();
+        loaded.load(path.toFile(), NamedEntrySorter.NAMED_ENTRY_SORTER, ProgressTracker.getUnboundTracker());
+        return loaded;
+    }
+
+    /**
+     * Updates an existing entry, which rewrites
+     * the entry and the whole index.
+     */
+    @Benchmark
+    public void write() throws Exception {
+        library.add(entry);
+    }
+
+    /**
+     * Adds a new entry and then deletes it, each of
+     * which rewrites the whole index.
+     */
+    @Benchmark
+    public void addAndDelete() throws Exception {
+        LibraryEntry added = new LibraryEntry();
+        library.add(added);
+        library.delete(added);
+    }
+
+    /**
+     * Finds the folder name of every entry in the library.
+     */
+    @Benchmark
+    public void getRelativeFilePath(Blackhole blackhole) {
+        File libraryPath = path.toFile();
+
+        for (LibraryEntryBase libraryEntry : library.getAll())
+            blackhole.consume(NamedEntrySorter.NAMED_ENTRY_SORTER.getRelativeFilePath(libraryEntry, libraryPath));
+    }
+}
@@ -23,11 +23,13 @@ import org.lmelaia.iseries.build.library.Library;
 import org.lmelaia.iseries.build.library.LibraryManager;
 import org.lmelaia.iseries.build.licence.Licences;
 import org.lmelaia.iseries.build.packaging.ZipPackager;
+import org.lmelaia.iseries.build.runtime.ClassDataSharing;
 import org.lmelaia.iseries.build.runtime.Executable;
 import org.lmelaia.iseries.build.runtime.JREs;
 import org.lmelaia.iseries.build.utils.CopyFile;
 import org.lmelaia.iseries.build.utils.OutputCopyFile;
 import org.lmelaia.iseries.build.utils.SmartFile;
+import org.lmelaia.iseries.common.system.AppBase;
 import org.lmelaia.iseries.common.system.AppLogger;
 
 import java.io.*;
@@ -181,6 +183,24 @@ public class BuildConfiguration {
             JRE_RUNTIMES_FOLDER.forward("x64").getFile(), JRE_RUNTIMES_FOLDER.forward("x32").getFile()
     );
 
+    //******************************
+    //     Class data sharing
+    //******************************
+
+    /**
+     * A flag that allows disabling the creation
+     * of the class data sharing archives during
+     * build to save on dev time.
+     */
+    private static final boolean CREATE_CLASS_DATA_ARCHIVES = true;
+
+    /**
+     * The folder the training runs used to create the
+     * class data sharing archives are done in.
+     */
+    private static final SmartFile CDS_TRAINING_FOLDER = SPROJECT_FOLDER
+            .forward("build").forward("cds-training");
+
     //******************************
     //          Executable
     //******************************
@@ -283,11 +303,8 @@ public class BuildConfiguration {
 
             new Library("Log4j", new String[]{"log4j-api-2.8.2", "log4j-core-2.8.2"}, Licences.APACHE),
 
-            new Library("Guava", new String[]{
-                    "checker-qual-2.11.1", "error_prone_annotations-2.3.4", "failureaccess-1.0.1",
-                    "guava-29.0-jre", "j2objc-annotations-1.3", "jsr305-3.0.2",
-                    "listenablefuture-9999.0-empty-to-avoid-conflict-with-guava"
-            }, Licences.APACHE),
+            //Needed by the asynchronous loggers of the production logging profile.
+            new Library("Disruptor", "disruptor-3.3.6", Licences.APACHE),
 
             new Library("src-common", "src-common", Licences.GNU),
 
@@ -303,9 +320,9 @@ public class BuildConfiguration {
     /**
      * A list of the libraries for the launcher project.
      */
-    @SuppressWarnings("MismatchedReadAndWriteOfArray")
     private static final Library[] LAUNCHER_LIBRARIES = {
-            //Empty
+            //Needed by the asynchronous loggers of the production logging profile.
+            new Library("Disruptor", "disruptor-3.3.6", Licences.APACHE)
     };
 
     /**
@@ -443,11 +460,10 @@ public class BuildConfiguration {
     }
 
     /**
-     * Adds the list of libraries ({@link #LIBRARIES}) to the library manager.
+     * Adds the list of launcher libraries ({@link #LAUNCHER_LIBRARIES}) to the
+     * launcher library manager.
      */
-    @SuppressWarnings("unused")
     private static void addLauncherLibrariesToList() {
-        //noinspection RedundantOperationOnEmptyContainer
         for (Library library : LAUNCHER_LIBRARIES) {
             try {
                 LAUNCHER_LIBRARY_MANAGER.addLibrary(library);
@@ -747,6 +763,42 @@ public class BuildConfiguration {
         }
     }
 
+    /**
+     * Creates the class data sharing archives for the
+     * launcher and main application jars from training
+     * runs of the build output.
+     * <p>
+     * The archives are created with the runtime distributed
+     * with the application, or the runtime running the
+     * build if the runtimes aren't copied.
+     */
+    private static void createClassDataArchives() {
+        LOG.info("Creating class data sharing archives...");
+
+        if (!CREATE_CLASS_DATA_ARCHIVES) {
+            LOG.warn("NOT CREATING CLASS DATA SHARING ARCHIVES");
+            return;
+        }
+
+        File javaHome = COPY_RUNTIME
+                ? JRE_DESTINATION.forward("x64").getFile()
+                : new File(System.getProperty("java.home"));
+        File library = CDS_TRAINING_FOLDER.forward("library").getFile();
+        ClassDataSharing cds = new ClassDataSharing(javaHome, CDS_TRAINING_FOLDER.getFile());
+
+        try {
+            cds.prepare(BIN_FOLDER.getFile(), SOUT_LIBRARIES_FOLDER.getFile());
+            FileUtils.forceMkdir(library);
+
+            cds.createArchive("bin/I-Series-Launcher.jar", BIN_FOLDER.getFile(),
+                    "--" + AppBase.TRAINING_RUN_ARGUMENT + "=true");
+            cds.createArchive("bin/I-Series-App.jar", BIN_FOLDER.getFile(),
+                    "--" + AppBase.TRAINING_RUN_ARGUMENT + "=" + library.getAbsolutePath());
+        } catch (IOException e) {
+            LOG.error("Failed to create the class data sharing archives", e);
+        }
+    }
+
     /**
      * Handles copying over the src-executable
      * executable binary.
@@ -792,7 +844,9 @@ public class BuildConfiguration {
         copyRuntime();
         addLibrariesToList();
         copyLibraries();
+        addLauncherLibrariesToList();
         copyLauncherLibraries();
+        createClassDataArchives();
         //buildISeriesExecutable();
         //Give windows explorer time to refresh
         //We need this for some reason
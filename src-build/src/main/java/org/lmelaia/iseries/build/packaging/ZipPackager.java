@@ -17,6 +17,7 @@ package org.lmelaia.iseries.build.packaging;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.file.attribute.FileTime;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.Objects;
@@ -98,7 +99,12 @@ public class ZipPackager {
                         name = name.endsWith("/") ? name : name + "/";
                         zipOut.putNextEntry(new ZipEntry(name));
                     } else {
-                        zipOut.putNextEntry(new ZipEntry(name));
+                        //Keep the modification time, class data
+                        //archives are only valid for the jar
+                        //as it was when they were created.
+                        ZipEntry entry = new ZipEntry(name);
+                        entry.setLastModifiedTime(FileTime.fromMillis(kid.lastModified()));
+                        zipOut.putNextEntry(entry);
                         copy(kid, zipOut);
                         zipOut.closeEntry();
                     }
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.build.runtime;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.system.AppLogger;
+import org.lmelaia.iseries.common.system.ClassDataArchive;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the application class-data sharing (AppCDS)
+ * archives for the application jars.
+ * <p>
+ * Each jar is started as a training run, which records the
+ * classes loaded during startup to a class list. The class
+ * list is then dumped into an archive the JVM can map
+ * into memory on later starts instead of loading and
+ * verifying each class from the jar. The startup time with and
+ * without the archive is measured and logged.
+ * <p>
+ * The runs are done in a copy of the build output, so the
+ * log files and settings they create aren't distributed. The
+ * copy keeps the modification times of the jars, as the JVM
+ * only accepts archives created from the exact same jar. The
+ * jars are given to the JVM relative to the {@code bin} folder
+ * the runs are done from, so the archives are still accepted
+ * once the application is installed somewhere else.
+ */
+public class ClassDataSharing {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * The time to wait for a single run before giving up.
+     */
+    private static final long RUN_TIMEOUT_SECONDS = 120;
+
+    /**
+     * The java executable of the runtime the archives are
+     * created with. This must be the runtime distributed
+     * with the application.
+     */
+    private final File java;
+
+    /**
+     * The folder holding the copy of the build output
+     * the runs are done in.
+     */
+    private final File trainingFolder;
+
+    /**
+     * @param javaHome       the home folder of the runtime the archives
+     *                       are created with.
+     * @param trainingFolder the folder to do the runs in.
+     */
+    public ClassDataSharing(File javaHome, File trainingFolder) {
+        File windows = new File(javaHome, "bin/java.exe");
+        this.java = windows.isFile() ? windows : new File(javaHome, "bin/java");
+        this.trainingFolder = Objects.requireNonNull(trainingFolder);
+    }
+
+    /**
+     * Copies the given build output folders into
+     * the training folder, replacing any previous copy.
+     *
+     * @param folders the folders to copy.
+     * @throws IOException if a folder cannot be copied.
+     */
+    public void prepare(File... folders) throws IOException {
+        if (trainingFolder.exists())
+            FileUtils.cleanDirectory(trainingFolder);
+
+        for (File folder : folders)
+            FileUtils.copyDirectory(folder, new File(trainingFolder, folder.getName()), true);
+    }
+
+    /**
+     * Creates the archive for a jar and copies it, along with
+     * its description, to the given output folder.
+     *
+     * @param jar          the path of the jar, relative to the
+     *                     training folder (e.g. {@code bin/I-Series-App.jar}).
+     * @param outputFolder the folder holding the distributed jar.
+     * @param arguments    the program arguments starting a training run.
+     * @throws IOException if a run fails or the archive cannot be created.
+     */
+    public void createArchive(String jar, File outputFolder, String... arguments) throws IOException {
+        File jarFile = new File(trainingFolder, jar);
+        String classPath = new File(trainingFolder, "bin").toPath().relativize(jarFile.toPath()).toString();
+        ClassDataArchive archive = new ClassDataArchive(jarFile);
+        FileUtils.forceMkdir(archive.getArchiveFile().getParentFile());
+
+        LOG.info("Creating class data archive for: " + jarFile.getName());
+
+        long baseline = run(classPath, arguments, "-Xshare:auto");
+        run(classPath, arguments, "-Xshare:off",
+                "-XX:DumpLoadedClassList=" + archive.getClassListFile());
+        exec("-Xshare:dump",
+                "-XX:SharedClassListFile=" + archive.getClassListFile(),
+                "-XX:SharedArchiveFile=" + archive.getArchiveFile(),
+                "-cp", classPath);
+
+        if (!archive.getArchiveFile().isFile())
+            throw new IOException("Class data archive was not created: " + archive.getArchiveFile());
+
+        archive.writeDescription(getRuntimeProperties(), classPath);
+
+        //Required, so a rejected archive fails the build
+        //instead of being silently ignored.
+        long archived = run(classPath, arguments, "-Xshare:on",
+                "-XX:SharedArchiveFile=" + archive.getArchiveFile());
+
+        LOG.info(String.format("%s startup: %dms without archive, %dms with archive (%+dms)",
+                jarFile.getName(), baseline, archived, archived - baseline));
+
+        File destination = new File(outputFolder, ClassDataArchive.FOLDER);
+        FileUtils.copyFileToDirectory(archive.getArchiveFile(), destination);
+        FileUtils.copyFileToDirectory(archive.getDescriptionFile(), destination);
+    }
+
+    /**
+     * Runs a jar as a training run and waits for it to exit.
+     *
+     * @param jar       the path of the jar to run, relative
+     *                  to the {@code bin} folder.
+     * @param arguments the program arguments.
+     * @param options   the JVM options.
+     * @return the time in milliseconds the run took.
+     * @throws IOException if the run fails.
+     */
+    private long run(String jar, String[] arguments, String... options) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList(options));
+        command.add("-jar");
+        command.add(jar);
+        command.addAll(Arrays.asList(arguments));
+
+        long start = System.currentTimeMillis();
+        exec(command.toArray(new String[0]));
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Executes the runtime with the given arguments from the
+     * {@code bin} folder of the training folder and waits for it
+     * to exit. The output is appended to a log file in the training
+     * folder.
+     *
+     * @param arguments the arguments to pass to the runtime.
+     * @throws IOException if the runtime cannot be started, doesn't
+     *                     exit in time or exits with an error.
+     */
+    private void exec(String... arguments) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(java.getPath());
+        command.addAll(Arrays.asList(arguments));
+
+        LOG.debug("Running: " + command);
+        Process process = new ProcessBuilder(command)
+                .directory(new File(trainingFolder, "bin"))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(trainingFolder, "cds.log")))
+                .start();
+
+        try {
+            if (!process.waitFor(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("Timed out running: " + command);
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            throw new IOException("Interrupted running: " + command, e);
+        }
+
+        if (process.exitValue() != 0)
+            throw new IOException("Exit code " + process.exitValue() + " running: " + command);
+    }
+
+    /**
+     * @return the system properties of the runtime the archives
+     * are created with, as listed by {@code -XshowSettings:properties}.
+     * @throws IOException if the runtime cannot be queried.
+     */
+    private Properties getRuntimeProperties() throws IOException {
+        Process process = new ProcessBuilder(java.getPath(), "-XshowSettings:properties", "-version")
+                .redirectErrorStream(true)
+                .start();
+
+        Properties properties = new Properties();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(" = ");
+
+                if (separator > 0)
+                    properties.setProperty(line.substring(0, separator).trim(),
+                            line.substring(separator + 3).trim());
+            }
+        }
+
+        return properties;
+    }
+}
@@ -132,9 +132,9 @@ public abstract class FXWindow<C extends FXController> extends Stage {
      * Called when the window is first initialized.
      * <p>
      * <p>
-     * All onInitialization implementations
-     * are called before any onPostInitialization
-     * implementations.
+     * The onInitialization implementations of all
+     * eager windows are called before any of their
+     * onPostInitialization implementations.
      * </p>
      * <p>
      * <p>
@@ -146,13 +146,13 @@ public abstract class FXWindow<C extends FXController> extends Stage {
     protected abstract void onInitialization();
 
     /**
-     * Called after all declared windows have been
-     * initialized.
+     * Called after all eager windows have been
+     * initialized, or, for lazily initialized
+     * windows, directly after {@link #onInitialization()}.
      * <p>
      * <p>
-     * All onPostInitialization implementations
-     * are called only after every declared window
-     * has been initialized.
+     * Other windows requested from this method
+     * are initialized on request.
      * </p>
      * <p>
      * <p>
@@ -17,7 +17,6 @@
 
 package org.lmelaia.iseries.common.fx;
 
-import com.google.common.reflect.ClassPath;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.stage.Stage;
@@ -26,11 +25,23 @@ import org.apache.logging.log4j.Logger;
 import org.lmelaia.iseries.common.system.AppBase;
 import org.lmelaia.iseries.common.system.AppLogger;
 import org.lmelaia.iseries.common.system.ExitCode;
+import org.lmelaia.iseries.common.system.StartupTimeline;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Manages all declared {@link FXWindow}s.
@@ -43,6 +54,11 @@ import java.util.List;
  * to manipulate and use the declared
  * windows.
  * </p>
+ * <p>
+ * Only eager windows are initialized when
+ * the fx thread starts, all other windows
+ * are initialized when first requested.
+ * </p>
  */
 public class FXWindowsManager extends Application {
 
@@ -91,13 +107,28 @@ public class FXWindowsManager extends Application {
     private static volatile boolean started = false;
 
     /**
-     * List of all declared windows.
+     * List of all declared window classes.
+     */
+    @SuppressWarnings("rawtypes")
+    private final List<Class<? extends FXWindow>> windowClasses = new ArrayList<>();
+
+    /**
+     * Map of all initialized windows by class. Windows are
+     * only ever initialized on the fx thread.
      */
-    private final List<FXWindow<?>> windows = new ArrayList<>();
+    private final Map<Class<?>, FXWindow<?>> windows = new ConcurrentHashMap<>();
+
+    /**
+     * Thread preloading the lazily initialized windows
+     * in the background. {@code null} until
+     * {@link #preloadWindows()} is called.
+     */
+    private Thread preloader = null;
 
     /**
      * Starts the FX application thread in a nonblocking way
-     * and initializes all declared windows.
+     * and initializes all eagerly declared windows
+     * (see {@link RegisterFXWindow#eager()}).
      *
      * @param threadName  the name of the FX thread.
      * @param args        the arguments passed to the program.
@@ -157,7 +188,7 @@ public class FXWindowsManager extends Application {
     }
 
     /**
-     * Initializes all declared windows and
+     * Initializes all eagerly declared windows and
      * further sets up the FX thread.
      *
      * @param primaryStage the primary stage given. <b>Unused.</b>
@@ -173,9 +204,12 @@ public class FXWindowsManager extends Application {
             Thread.currentThread().setName(name + " FX Thread");
             app.manageThread(Thread.currentThread());
             LOG.trace("FX thread started: " + Thread.currentThread().toString());
+            StartupTimeline.getTimeline().mark("FX thread started");
 
-            initWindows();
-            postInitWindows();
+            windowClasses.addAll(getWindowClasses());
+            StartupTimeline.getTimeline().mark("Window classes found");
+            initEagerWindows();
+            StartupTimeline.getTimeline().mark("Eager windows initialized");
         } catch (Exception e) {
             LOG.fatal("Uncaught exception propagated to FX start()", e);
             app.exit(ExitCode.UNEXPECTED_ERROR);
@@ -190,6 +224,11 @@ public class FXWindowsManager extends Application {
     /**
      * Gets the window instance by class from
      * the list of registered windows.
+     * <p>
+     * Windows not yet initialized are initialized
+     * by this call. If called from a thread other than
+     * the fx thread, this method blocks until the fx
+     * thread has initialized the window.
      *
      * @param windowClass the class of the window instance/
      * @param <T>         the window type.
@@ -198,14 +237,77 @@ public class FXWindowsManager extends Application {
      */
     @SuppressWarnings({"unchecked", "WeakerAccess"})
     public <T extends FXWindow<?>> T getWindow(Class<T> windowClass) {
-        LOG.debug("Number of windows found: " + windows.size());
-        for (FXWindow<?> window : windows) {
-            if (window.getClass().equals(windowClass)) {
-                return (T) window;
+        FXWindow<?> window = windows.get(windowClass);
+
+        if (window == null && windowClasses.contains(windowClass))
+            window = loadWindow(windowClass);
+
+        return (T) window;
+    }
+
+    /**
+     * Initializes, one at a time on a low priority background
+     * thread, all declared windows that haven't been initialized
+     * yet. This should be called once the windows on the critical
+     * path (i.e. the main window) are visible, so rarely used
+     * windows don't have to be loaded when first requested.
+     * <p>
+     * The window and controller classes are loaded on the
+     * background thread, while the windows themselves are
+     * initialized on the fx thread, each in its own
+     * {@link Platform#runLater(Runnable)} call so the fx
+     * thread stays responsive between windows.
+     */
+    @SuppressWarnings("rawtypes")
+    public synchronized void preloadWindows() {
+        if (preloader != null)
+            return;
+
+        preloader = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            int loaded = 0;
+
+            for (Class<? extends FXWindow> c : windowClasses) {
+                if (windows.containsKey(c))
+                    continue;
+
+                try {
+                    Class.forName(c.getName(), true, c.getClassLoader());
+                    Class<? extends FXController> controllerClass = getControllerClass(c);
+                    if (controllerClass != null)
+                        Class.forName(controllerClass.getName(), true, controllerClass.getClassLoader());
+
+                    loadWindow(c);
+                    loaded++;
+                } catch (Exception e) {
+                    LOG.warn("Failed to preload window: " + c.getCanonicalName(), e);
+                }
             }
+
+            LOG.debug("Preloaded " + loaded + " windows in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }, name + " window preloader");
+
+        preloader.setDaemon(true);
+        preloader.setPriority(Thread.MIN_PRIORITY);
+        preloader.start();
+    }
+
+    /**
+     * Blocks until the windows preloaded by
+     * {@link #preloadWindows()} have been initialized.
+     * Returns immediately if preloading was never started.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitPreloadedWindows() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = preloader;
         }
 
-        return null;
+        if (thread != null)
+            thread.join();
     }
 
     /**
@@ -294,63 +396,126 @@ public class FXWindowsManager extends Application {
     }
 
     /**
-     * Constructs a new instance of each
+     * Initializes all declared windows annotated
+     * as eager and then post-initializes them.
+     */
+    @SuppressWarnings("rawtypes")
+    private void initEagerWindows() {
+        List<FXWindow<?>> eagerWindows = new ArrayList<>();
+
+        for (Class<? extends FXWindow> c : windowClasses) {
+            if (c.getDeclaredAnnotation(RegisterFXWindow.class).eager())
+                eagerWindows.add(initWindow(c));
+        }
+
+        for (FXWindow<?> window : eagerWindows)
+            window.postInitialize();
+    }
+
+    /**
+     * Initializes the given window on the fx thread, unless
+     * it has already been initialized, and returns it.
+     * <p>
+     * If called from a thread other than the fx thread, this
+     * method blocks until the window has been initialized.
+     *
+     * @param windowClass the class of the window.
+     * @return the initialized window.
+     */
+    @SuppressWarnings("rawtypes")
+    private FXWindow<?> loadWindow(Class<? extends FXWindow> windowClass) {
+        if (Platform.isFxApplicationThread())
+            return loadWindowOnFXThread(windowClass);
+
+        FutureTask<FXWindow<?>> task = new FutureTask<>(() -> loadWindowOnFXThread(windowClass));
+        Platform.runLater(task);
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for window: "
+                    + windowClass.getCanonicalName(), e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to initialize window: "
+                    + windowClass.getCanonicalName(), e.getCause());
+        }
+    }
+
+    /**
+     * Initializes and post-initializes the given window if
+     * it hasn't already been initialized. Must be called on
+     * the fx thread.
+     *
+     * @param windowClass the class of the window.
+     * @return the initialized window.
+     */
+    @SuppressWarnings("rawtypes")
+    private FXWindow<?> loadWindowOnFXThread(Class<? extends FXWindow> windowClass) {
+        FXWindow<?> window = windows.get(windowClass);
+
+        if (window != null)
+            return window;
+
+        long start = System.currentTimeMillis();
+        window = initWindow(windowClass);
+        window.postInitialize();
+        LOG.debug("Lazily initialized window: " + windowClass.getCanonicalName()
+                + " in " + (System.currentTimeMillis() - start) + "ms");
+
+        return window;
+    }
+
+    /**
+     * Constructs a new instance of the
      * declared window and calls the
      * {@link FXWindow#initialize(String, String, FXController)} method
      * on it.
+     *
+     * @param c the class of the window.
+     * @return the initialized window.
      */
-    private void initWindows() {
+    @SuppressWarnings("rawtypes")
+    private FXWindow<?> initWindow(Class<? extends FXWindow> c) {
         try {
-            //noinspection rawtypes
-            for (Class<? extends FXWindow> c : getWindowClasses()) {
-                LOG.debug("Initializing window: " + c.getCanonicalName());
+            LOG.debug("Initializing window: " + c.getCanonicalName());
 
-                String fxml = getFxmlFileName(c);
-                String css = getCssFileName(c);
+            String fxml = getFxmlFileName(c);
+            String css = getCssFileName(c);
 
-                Class<? extends FXController> controllerClass = getControllerClass(c);
+            Class<? extends FXController> controllerClass = getControllerClass(c);
 
-                FXController controller = null;
+            FXController controller = null;
 
-                if (fxml != null) {
-                    if (controllerClass == null) {
-                        throw new IllegalStateException(
-                                "No controller class specified for window: " + c.getCanonicalName());
-                    }
-
-                    try {
-                        controller = (FXController) controllerClass.getDeclaredConstructors()[0].newInstance();
-                    } catch (InstantiationException | InvocationTargetException e) {
-                        throw new IllegalStateException("Controller: " + controllerClass.getCanonicalName()
-                                + " does not have a default constructor");
-                    }
+            if (fxml != null) {
+                if (controllerClass == null) {
+                    throw new IllegalStateException(
+                            "No controller class specified for window: " + c.getCanonicalName());
                 }
 
-                //noinspection deprecation
-                FXWindow<?> window = (FXWindow<?>) c.getDeclaredConstructors()[0].newInstance();
-                windows.add(window);
-                window.initialize(fxml, css, controller);
+                try {
+                    controller = (FXController) controllerClass.getDeclaredConstructors()[0].newInstance();
+                } catch (InstantiationException | InvocationTargetException e) {
+                    throw new IllegalStateException("Controller: " + controllerClass.getCanonicalName()
+                            + " does not have a default constructor");
+                }
             }
-        } catch (IOException | IllegalAccessException | InstantiationException | InvocationTargetException e) {
+
+            FXWindow<?> window = (FXWindow<?>) c.getDeclaredConstructors()[0].newInstance();
+            windows.put(c, window);
+            window.initialize(fxml, css, controller);
+            return window;
+        } catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
             //Should not happen as each class is read from
-            //the list of classes in the package.
+            //the generated window index.
             throw new IllegalStateException(e);
         }
     }
 
-    /**
-     * Calls the {@link FXWindow#postInitialize()}
-     * method of each declared window.
-     */
-    private void postInitWindows() {
-        for (FXWindow<?> window : windows)
-            window.postInitialize();
-    }
-
     /**
      * @return a list of all found, declared window classes.
-     * @throws IOException if the attempt to read class path resources
-     *                     (jar files or directories) failed.
+     * @throws IOException if the attempt to read the
+     *                     window indexes failed.
      */
     @SuppressWarnings("rawtypes")//Still works...
     private List<Class<? extends FXWindow>> getWindowClasses() throws IOException {
@@ -360,32 +525,55 @@ public class FXWindowsManager extends Application {
         return classList;
     }
 
-    @SuppressWarnings({"unchecked", "UnstableApiUsage", "rawtypes"})
+    /**
+     * Reads the window indexes generated by the
+     * {@link RegisterFXWindowProcessor} and returns the
+     * declared window classes within the given package.
+     * <p>
+     * The classes are loaded without being initialized
+     * or instantiated.
+     *
+     * @param path the package path the windows are declared in.
+     * @return a list of all found, declared window classes
+     * within the package path.
+     * @throws IOException if an index cannot be read.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
     private List<Class<? extends FXWindow>> getWindowClasses(String path) throws IOException {
         List<Class<? extends FXWindow>> classList = new ArrayList<>();
+        Set<String> names = new LinkedHashSet<>();
 
         final ClassLoader loader = Thread.currentThread().getContextClassLoader();
-        for (final ClassPath.ClassInfo info : ClassPath.from(loader).getAllClasses()) {
-            if (info.getName().startsWith(path)) {
-                final Class<?> clazz = info.load();
-                try {
-                    try {
-                        if (clazz.newInstance() instanceof FXWindow) {
-                            if (clazz.getDeclaredAnnotation(RegisterFXWindow.class) != null) {
-                                classList.add((Class<? extends FXWindow<?>>) clazz);
-                                LOG.debug("Identified possible window class: " + clazz.getCanonicalName());
-                            }
-                        } else {
-                            LOG.debug("Skipping window class: " + clazz.getCanonicalName());
-                        }
-                    } catch (InstantiationException | IllegalAccessException e) {
-                        //Causes unnecessary log spam.
-                        //LOG.debug("Failed to process a possible window class: " + clazz.getCanonicalName());
-                    }
-                } catch (NullPointerException e) {
-                    LOG.error("Failed to process possible window class: " + clazz.getCanonicalName());
+        Enumeration<URL> indexes = loader.getResources(RegisterFXWindowProcessor.WINDOW_INDEX);
+
+        while (indexes.hasMoreElements()) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(indexes.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+
+                    if (line.startsWith(path))
+                        names.add(line);
                 }
+            }
+        }
+
+        for (String name : names) {
+            final Class<?> clazz;
+            try {
+                clazz = Class.forName(name, false, loader);
+            } catch (ClassNotFoundException e) {
+                LOG.error("Indexed window class not found: " + name);
+                continue;
+            }
 
+            if (FXWindow.class.isAssignableFrom(clazz)
+                    && clazz.getDeclaredAnnotation(RegisterFXWindow.class) != null) {
+                classList.add((Class<? extends FXWindow>) clazz);
+                LOG.debug("Identified window class: " + clazz.getCanonicalName());
+            } else {
+                LOG.debug("Skipping window class: " + clazz.getCanonicalName());
             }
         }
 
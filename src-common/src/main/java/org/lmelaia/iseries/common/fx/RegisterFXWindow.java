@@ -47,4 +47,14 @@ public @interface RegisterFXWindow {
      * be specified if an fxml file is specified.
      */
     Class<? extends FXController> controllerClass() default FXController.class;
+
+    /**
+     * @return {@code true} if the window should be initialized
+     * when the fx thread starts. All other windows are initialized
+     * when first requested, or when preloaded by
+     * {@link FXWindowsManager#preloadWindows()}. Only windows
+     * needed on startup, or that have to register listeners
+     * on startup, should be eager.
+     */
+    boolean eager() default false;
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.common.fx;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compile time annotation processor for {@link RegisterFXWindow}.
+ * <p>
+ * Writes the fully qualified name of every class annotated with
+ * {@link RegisterFXWindow} to the window index resource
+ * ({@link #WINDOW_INDEX}), one name per line. The
+ * {@link FXWindowsManager} reads this index at runtime
+ * in place of scanning the class path.
+ * <p>
+ * Annotated classes that are not concrete subclasses of
+ * {@link FXWindow} are reported as compile errors.
+ * <p>
+ * The processor is registered through
+ * {@code META-INF/services/javax.annotation.processing.Processor}
+ * and must be added to the annotation processor path of
+ * each project declaring windows.
+ */
+@SupportedAnnotationTypes("org.lmelaia.iseries.common.fx.RegisterFXWindow")
+public class RegisterFXWindowProcessor extends AbstractProcessor {
+
+    /**
+     * Class path resource holding the index of declared windows.
+     */
+    static final String WINDOW_INDEX = "META-INF/iseries/fx-windows";
+
+    /**
+     * Name of the window base class. The class itself
+     * isn't referenced, as loading it would require
+     * JavaFX on the annotation processor path.
+     */
+    private static final String WINDOW_CLASS = "org.lmelaia.iseries.common.fx.FXWindow";
+
+    /**
+     * Names of all window classes found so far, across rounds.
+     */
+    private final Set<String> windows = new TreeSet<>();
+
+    /**
+     * @return the latest supported source version, as the
+     * processor doesn't depend on any language feature.
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * Collects the annotated window classes and writes
+     * the index once the final round is reached.
+     *
+     * @param annotations the annotation types requested to be processed.
+     * @param roundEnv    environment for information about the current
+     *                    and prior round.
+     * @return {@code true}, the annotation is claimed by this processor.
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return true;
+        }
+
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (isValidWindow(element))
+                    windows.add(processingEnv.getElementUtils()
+                            .getBinaryName((TypeElement) element).toString());
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks that an annotated element is a concrete
+     * class extending {@link FXWindow}, reporting an
+     * error if not.
+     *
+     * @param element the annotated element.
+     * @return {@code true} if the element can be
+     * initialized as a window.
+     */
+    private boolean isValidWindow(Element element) {
+        if (element.getKind() != ElementKind.CLASS
+                || element.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(element, "@RegisterFXWindow can only be applied to concrete classes");
+            return false;
+        }
+
+        TypeMirror windowType = processingEnv.getTypeUtils().erasure(
+                processingEnv.getElementUtils().getTypeElement(WINDOW_CLASS).asType());
+
+        if (!processingEnv.getTypeUtils().isSubtype(
+                processingEnv.getTypeUtils().erasure(element.asType()), windowType)) {
+            error(element, "@RegisterFXWindow can only be applied to subclasses of " + WINDOW_CLASS);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the names of all found windows to the index.
+     * <p>
+     * Entries from an existing index are kept if their
+     * class still exists, so the index stays complete
+     * when only part of the project is recompiled.
+     */
+    private void writeIndex() {
+        readExistingIndex();
+
+        try {
+            FileObject index = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", WINDOW_INDEX);
+
+            try (Writer writer = new OutputStreamWriter(index.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String window : windows)
+                    writer.write(window + "\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to write window index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the entries of an index written by a previous
+     * compilation, if any, to the set of found windows.
+     */
+    private void readExistingIndex() {
+        try {
+            FileObject index = processingEnv.getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", WINDOW_INDEX);
+
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(index.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+
+                    if (!line.isEmpty() && processingEnv.getElementUtils()
+                            .getTypeElement(line.replace('$', '.')) != null)
+                        windows.add(line);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            //No previous index.
+        }
+    }
+
+    /**
+     * Reports a compile error on the given element.
+     *
+     * @param element the offending element.
+     * @param message the error message.
+     */
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
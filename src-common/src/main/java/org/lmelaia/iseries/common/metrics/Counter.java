@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.common.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of events, which can be incremented from any
+ * number of threads at once without them contending.
+ *
+ * @see MetricsRegistry#counter(String)
+ */
+public final class Counter {
+
+    /**
+     * The count.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Package-private constructor, as counters
+     * are created through the registry.
+     */
+    Counter() {
+    }
+
+    /**
+     * Counts one event.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Counts a number of events.
+     *
+     * @param events the number of events.
+     */
+    public void add(long events) {
+        count.add(events);
+    }
+
+    /**
+     * @return the number of events counted.
+     */
+    public long get() {
+        return count.sum();
+    }
+}
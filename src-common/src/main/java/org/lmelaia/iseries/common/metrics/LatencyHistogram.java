@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.common.metrics;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of latencies, from which
+ * percentiles can be read.
+ * <p>
+ * Latencies are counted in buckets whose width grows with
+ * the latency: each power of two is split into
+ * {@value #SUB_BUCKETS} buckets, so a percentile is accurate
+ * to within an eighth of its value. The buckets are fixed, so
+ * recording is a few atomic increments, without locks or
+ * allocation, and the histogram can be recorded to from any
+ * number of threads while being read.
+ *
+ * @see MetricsRegistry#histogram(String)
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Number of buckets each power of two is split into.
+     */
+    private static final int SUB_BUCKETS = 8;
+
+    /**
+     * Number of bits needed to index a sub bucket.
+     */
+    private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    /**
+     * Number of buckets, covering every latency a long
+     * number of nanoseconds can hold.
+     */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * The number of latencies in each bucket.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Number of latencies recorded.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Sum of the latencies recorded, in nanoseconds.
+     */
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Longest latency recorded, in nanoseconds.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Package-private constructor, as histograms
+     * are created through the registry.
+     */
+    LatencyHistogram() {
+    }
+
+    /**
+     * Records the time since the given start time.
+     *
+     * @param start the start time, as given by
+     *              {@link System#nanoTime()}.
+     */
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds. Negative
+     *              latencies are recorded as zero.
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+
+        buckets.incrementAndGet(getBucket(nanos));
+        count.increment();
+        total.add(nanos);
+
+        if (nanos > max.get())
+            max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return the number of latencies recorded.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the average latency, in milliseconds.
+     */
+    public double getMean() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : total.sum() / (double) recorded / 1_000_000;
+    }
+
+    /**
+     * @return the longest latency, in milliseconds.
+     */
+    public double getMax() {
+        return max.get() / 1_000_000.0;
+    }
+
+    /**
+     * Reads a percentile of the recorded latencies.
+     *
+     * @param percentile the percentile, from 0 to 100.
+     * @return the latency, in milliseconds, the given
+     * percentage of latencies are at or under, rounded up
+     * to the bucket it falls in, or 0 if nothing was recorded.
+     */
+    public double getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long recorded = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            recorded += counts[i];
+        }
+
+        if (recorded == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(recorded * percentile / 100));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+
+            if (seen >= rank)
+                return Math.min(getUpperBound(i), max.get()) / 1_000_000.0;
+        }
+
+        return getMax();
+    }
+
+    /**
+     * @return the count, mean, median, 90th, 99th
+     * percentile and max, in milliseconds.
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("count", getCount());
+        json.addProperty("mean", round(getMean()));
+        json.addProperty("p50", round(getPercentile(50)));
+        json.addProperty("p90", round(getPercentile(90)));
+        json.addProperty("p99", round(getPercentile(99)));
+        json.addProperty("max", round(getMax()));
+        return json;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.3fms, p50=%.3fms, p90=%.3fms, p99=%.3fms, max=%.3fms",
+                getCount(), getMean(), getPercentile(50), getPercentile(90), getPercentile(99), getMax());
+    }
+
+    /**
+     * @param nanos a latency.
+     * @return the index of the bucket the latency falls in.
+     */
+    static int getBucket(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int) nanos;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket the index of a bucket.
+     * @return the largest latency in the bucket.
+     */
+    static long getUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lower = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * @param millis a time in milliseconds.
+     * @return the time rounded to microseconds.
+     */
+    private static double round(double millis) {
+        return Math.round(millis * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.common.metrics;
+
+import com.google.gson.JsonObject;
+import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.system.AppLogger;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the named counters, gauges and latency histograms
+ * of the application.
+ * <p>
+ * Metrics are created on first use and live for the life of
+ * the application. Recording to them costs a few uncontended
+ * atomic operations, so they're always on. A snapshot of every
+ * metric can be queried over the
+ * {@link org.lmelaia.iseries.common.net.ipc.Messenger} with a
+ * {@link #MESSAGE_NAME} message, and is logged periodically
+ * once {@link #startLogging(long)} is called.
+ * <p>
+ * Metrics are named with dot separated, lowercase names,
+ * starting with the area they measure (e.g. {@code library.add}).
+ */
+public final class MetricsRegistry {
+
+    /**
+     * Name of the message used to query the metrics
+     * over the {@link org.lmelaia.iseries.common.net.ipc.Messenger}.
+     */
+    public static final String MESSAGE_NAME = "metrics";
+
+    /**
+     * Logging framework instance.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * Singleton instance.
+     */
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    /**
+     * The counters by name.
+     */
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * The gauges by name.
+     */
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * The histograms by name.
+     */
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Thread logging the metrics, or {@code null}
+     * if they aren't logged.
+     */
+    private ScheduledExecutorService logger;
+
+    /**
+     * Private constructor.
+     */
+    private MetricsRegistry() {
+    }
+
+    /**
+     * @return the singleton instance.
+     */
+    public static MetricsRegistry getRegistry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Gets the counter with the given name, creating it
+     * if needed. Callers on hot paths should keep the
+     * counter rather than look it up each time.
+     *
+     * @param name the name of the counter.
+     * @return the counter.
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Gets the histogram with the given name, creating it
+     * if needed. Callers on hot paths should keep the
+     * histogram rather than look it up each time.
+     *
+     * @param name the name of the histogram.
+     * @return the histogram.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a gauge, which is read each time a snapshot
+     * is taken, replacing any gauge with the same name.
+     *
+     * @param name  the name of the gauge.
+     * @param gauge reads the current value. Must be cheap
+     *              and safe to call from any thread.
+     */
+    public void gauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * @return a snapshot of every metric, as a reply
+     * to a {@link #MESSAGE_NAME} message.
+     */
+    public JsonObject toJson() {
+        JsonObject counterValues = new JsonObject();
+        new TreeMap<>(counters).forEach((name, counter) -> counterValues.addProperty(name, counter.get()));
+
+        JsonObject gaugeValues = new JsonObject();
+        new TreeMap<>(gauges).forEach((name, gauge) -> gaugeValues.addProperty(name, read(name, gauge)));
+
+        JsonObject histogramValues = new JsonObject();
+        new TreeMap<>(histograms).forEach((name, histogram) -> histogramValues.add(name, histogram.toJson()));
+
+        JsonObject message = new JsonObject();
+        message.addProperty("name", MESSAGE_NAME);
+        message.add("counters", counterValues);
+        message.add("gauges", gaugeValues);
+        message.add("histograms", histogramValues);
+        return message;
+    }
+
+    /**
+     * Logs every metric.
+     */
+    public void log() {
+        StringBuilder builder = new StringBuilder("Metrics:");
+
+        new TreeMap<>(counters).forEach((name, counter) ->
+                builder.append("\n\t\t").append(name).append(": ").append(counter.get()));
+        new TreeMap<>(gauges).forEach((name, gauge) ->
+                builder.append("\n\t\t").append(name).append(": ").append(read(name, gauge)));
+        new TreeMap<>(histograms).forEach((name, histogram) ->
+                builder.append("\n\t\t").append(name).append(": ").append(histogram));
+
+        LOG.info(builder.toString());
+    }
+
+    /**
+     * Logs every metric periodically, on a daemon thread,
+     * until the application exits. Does nothing if the
+     * metrics are already logged.
+     *
+     * @param interval the time between logs, in milliseconds.
+     */
+    public synchronized void startLogging(long interval) {
+        if (logger != null)
+            return;
+
+        logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Metrics logger");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        logger.scheduleAtFixedRate(this::log, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param name  the name of a gauge.
+     * @param gauge the gauge.
+     * @return the value of the gauge, or
+     * {@code -1} if it can't be read.
+     */
+    private static long read(String name, LongSupplier gauge) {
+        try {
+            return gauge.getAsLong();
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to read gauge: " + name, e);
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.system.AppLogger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Wraps a transport so messages of any size up to a limit
+ * can be sent over it.
+ * <p>
+ * Messages larger than {@link #CHUNK_SIZE} bytes of UTF-8
+ * are split into chunks, each sent as its own message with
+ * a header line: {@code #chunk <stream> <index> <count>}.
+ * Chunks are split on character boundaries, so each holds
+ * valid UTF-8. The receiving end collects the chunks of each
+ * stream and passes the message on once all have arrived.
+ * Requests and replies are both chunked.
+ * <p>
+ * As no chunk is larger than {@link #CHUNK_SIZE}, large
+ * messages never hold a connection for long, and pings
+ * and other small messages sent meanwhile are interleaved
+ * between the chunks.
+ */
+class ChunkingTransport implements MessengerTransport {
+
+    /**
+     * Logging instance.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * Largest number of message bytes sent in a single chunk.
+     */
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * Prefix of the header line of chunks. Messages
+     * are json objects, so never start with it.
+     */
+    private static final String CHUNK_PREFIX = "#chunk ";
+
+    /**
+     * Time after which the chunks of a stream that stopped
+     * arriving are dropped (e.g. lost datagrams).
+     */
+    private static final long STREAM_TIMEOUT = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * The wrapped transport.
+     */
+    private final MessengerTransport transport;
+
+    /**
+     * Handler receiving whole replies to sent requests.
+     */
+    private final Consumer<String> replies;
+
+    /**
+     * Largest message, in bytes of UTF-8, sent or received.
+     */
+    private final int maxMessageSize;
+
+    /**
+     * Id given to the next stream sent. Starts at a random value
+     * so streams from different senders are unlikely to clash.
+     */
+    private final AtomicLong nextStream = new AtomicLong(ThreadLocalRandom.current().nextLong());
+
+    /**
+     * Requests being received, keyed by stream.
+     */
+    private final Map<Long, Assembly> requests = new ConcurrentHashMap<>();
+
+    /**
+     * Replies being received, keyed by stream.
+     */
+    private final Map<Long, Assembly> replyStreams = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the wrapped transport.
+     *
+     * @param transport      the transport to create.
+     * @param replies        the handler receiving whole replies to sent requests.
+     * @param maxMessageSize the largest message, in bytes of
+     *                       UTF-8, sent or received.
+     * @throws IOException if the transport cannot be created.
+     */
+    ChunkingTransport(Transport transport, Consumer<String> replies, int maxMessageSize) throws IOException {
+        this.replies = replies;
+        this.maxMessageSize = maxMessageSize;
+        this.transport = transport.create(this::onReply);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAddress() {
+        return transport.getAddress();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSenderAddress() {
+        return transport.getSenderAddress();
+    }
+
+    /**
+     * Blocks until a whole request is received. Chunks
+     * received meanwhile are collected until the last
+     * chunk of their request arrives.
+     *
+     * @return the received request.
+     * @throws IOException if the transport fails or is closed.
+     */
+    @Override
+    public Exchange receive() throws IOException {
+        while (true) {
+            Exchange exchange = transport.receive();
+
+            if (!exchange.getMessage().startsWith(CHUNK_PREFIX))
+                return new ChunkingExchange(exchange, exchange.getMessage());
+
+            String message = collect(requests, exchange.getMessage());
+            if (message != null)
+                return new ChunkingExchange(exchange, message);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IOException if the message is larger than
+     *                     the maximum message size.
+     */
+    @Override
+    public void send(String message, int address) throws IOException {
+        write(message, chunk -> transport.send(chunk, address));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOpen() {
+        return transport.isOpen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        transport.close();
+        requests.clear();
+        replyStreams.clear();
+    }
+
+    /**
+     * Passes whole replies, and the last chunk of a
+     * chunked reply, to the reply handler.
+     *
+     * @param reply the received reply or chunk.
+     */
+    private void onReply(String reply) {
+        if (!reply.startsWith(CHUNK_PREFIX)) {
+            replies.accept(reply);
+            return;
+        }
+
+        String message = collect(replyStreams, reply);
+        if (message != null)
+            replies.accept(message);
+    }
+
+    /**
+     * Writes a message whole, or split into chunks
+     * if it's larger than {@link #CHUNK_SIZE}.
+     *
+     * @param message the message.
+     * @param output  writes a single message or chunk.
+     * @throws IOException if the message is too large
+     *                     or cannot be written.
+     */
+    private void write(String message, Output output) throws IOException {
+        if (message.length() <= CHUNK_SIZE / 3) {
+            //Short enough to fit whatever the characters.
+            output.write(message);
+            return;
+        }
+
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+
+        if (data.length > maxMessageSize)
+            throw new IOException("Message too large: " + data.length
+                    + " bytes, limit is " + maxMessageSize + " bytes");
+
+        if (data.length <= CHUNK_SIZE) {
+            output.write(message);
+            return;
+        }
+
+        List<Integer> ends = new ArrayList<>();
+        for (int end = 0; end < data.length; ends.add(end)) {
+            end = Math.min(end + CHUNK_SIZE, data.length);
+
+            //Back up to the start of the character that's cut off.
+            while (end < data.length && (data[end] & 0xC0) == 0x80)
+                end--;
+        }
+
+        long stream = nextStream.getAndIncrement();
+        int offset = 0;
+
+        for (int index = 0; index < ends.size(); index++) {
+            int end = ends.get(index);
+            output.write(CHUNK_PREFIX + stream + " " + index + " " + ends.size() + "\n"
+                    + new String(data, offset, end - offset, StandardCharsets.UTF_8));
+            offset = end;
+        }
+    }
+
+    /**
+     * Adds a received chunk to the stream it belongs to.
+     *
+     * @param streams the streams being received.
+     * @param chunk   the received chunk.
+     * @return the whole message if this was the last missing
+     * chunk of it, otherwise {@code null}.
+     */
+    private String collect(Map<Long, Assembly> streams, String chunk) {
+        expire(streams);
+
+        int newline = chunk.indexOf('\n');
+        String[] header = chunk.substring(CHUNK_PREFIX.length(), Math.max(newline, CHUNK_PREFIX.length())).split(" ");
+
+        long stream;
+        int index, count;
+        try {
+            stream = Long.parseLong(header[0]);
+            index = Integer.parseInt(header[1]);
+            count = Integer.parseInt(header[2]);
+        } catch (RuntimeException e) {
+            LOG.warn("Invalid chunk header received: " + chunk.substring(0, Math.min(chunk.length(), 64)));
+            return null;
+        }
+
+        //Chunks are at most CHUNK_SIZE bytes, so the count bounds the message size.
+        if (newline < 0 || index < 0 || index >= count
+                || (long) (count - 1) * (CHUNK_SIZE - 3) > maxMessageSize) {
+            LOG.warn("Invalid chunk received for stream: " + stream + ", index " + index + " of " + count);
+            streams.remove(stream);
+            return null;
+        }
+
+        Assembly assembly = streams.computeIfAbsent(stream, key -> new Assembly(count));
+
+        synchronized (assembly) {
+            if (assembly.chunks.length != count) {
+                LOG.warn("Chunk count changed for stream: " + stream);
+                streams.remove(stream);
+                return null;
+            }
+
+            String message = assembly.add(chunk.substring(newline + 1), index);
+
+            if (message != null)
+                streams.remove(stream);
+
+            return message;
+        }
+    }
+
+    /**
+     * Drops the streams which chunks stopped arriving.
+     *
+     * @param streams the streams being received.
+     */
+    private static void expire(Map<Long, Assembly> streams) {
+        long now = System.nanoTime();
+
+        for (Iterator<Map.Entry<Long, Assembly>> it = streams.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, Assembly> stream = it.next();
+
+            if (now - stream.getValue().updated > STREAM_TIMEOUT) {
+                LOG.warn("Dropped incomplete stream: " + stream.getKey());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Writes a single message or chunk.
+     */
+    @FunctionalInterface
+    private interface Output {
+
+        /**
+         * @param message the message or chunk.
+         * @throws IOException if it cannot be written.
+         */
+        void write(String message) throws IOException;
+    }
+
+    /**
+     * The chunks of a stream received so far.
+     */
+    private static final class Assembly {
+
+        /**
+         * The received chunks by index.
+         */
+        private final String[] chunks;
+
+        /**
+         * Number of chunks received.
+         */
+        private int received;
+
+        /**
+         * Number of characters received.
+         */
+        private int length;
+
+        /**
+         * Time the last chunk was received.
+         */
+        private volatile long updated = System.nanoTime();
+
+        /**
+         * @param count the number of chunks.
+         */
+        Assembly(int count) {
+            this.chunks = new String[count];
+        }
+
+        /**
+         * @param chunk the chunk data.
+         * @param index the index of the chunk.
+         * @return the whole message once every
+         * chunk is received, otherwise {@code null}.
+         */
+        String add(String chunk, int index) {
+            updated = System.nanoTime();
+
+            if (chunks[index] == null) {
+                chunks[index] = chunk;
+                received++;
+                length += chunk.length();
+            }
+
+            if (received < chunks.length)
+                return null;
+
+            StringBuilder message = new StringBuilder(length);
+            for (String received : chunks)
+                message.append(received);
+            return message.toString();
+        }
+    }
+
+    /**
+     * An exchange passing on a whole request, which
+     * chunks its reply if necessary.
+     */
+    private final class ChunkingExchange implements Exchange {
+
+        /**
+         * The exchange the request, or its last chunk,
+         * was received in.
+         */
+        private final Exchange exchange;
+
+        /**
+         * The whole request.
+         */
+        private final String message;
+
+        /**
+         * @param exchange the exchange the request, or
+         *                 its last chunk, was received in.
+         * @param message  the whole request.
+         */
+        ChunkingExchange(Exchange exchange, String message) {
+            this.exchange = exchange;
+            this.message = message;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void reply(String message) throws IOException {
+            write(message, exchange::reply);
+        }
+    }
+}
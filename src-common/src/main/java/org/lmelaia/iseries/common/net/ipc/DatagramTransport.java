@@ -0,0 +1,221 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.system.AppLogger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * {@link Transport#DATAGRAM} transport, sending each
+ * message as a single UDP datagram on the loopback
+ * interface.
+ */
+class DatagramTransport implements MessengerTransport {
+
+    /**
+     * Logging instance.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * Largest payload of a UDP datagram.
+     */
+    private static final int MAX_PACKET_SIZE = 65507;
+
+    /**
+     * Receive buffer size requested for both sockets, large
+     * enough to queue hundreds of datagrams while many
+     * requests are in flight at once.
+     */
+    private static final int RECEIVE_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Host machines address.
+     */
+    private static final InetAddress HOST = InetAddress.getLoopbackAddress();
+
+    /**
+     * Socket used for sending message.
+     */
+    private final DatagramSocket sender;
+
+    /**
+     * Socket receiving message on loop.
+     */
+    private final DatagramSocket receiver;
+
+    /**
+     * Handler receiving replies to sent requests.
+     */
+    private final Consumer<String> replies;
+
+    /**
+     * Requests drained from the receiving socket, waiting
+     * to be taken by {@link #receive()}. Draining on a thread
+     * of its own keeps the socket buffer from overflowing
+     * while received messages are being handled.
+     */
+    private final BlockingQueue<Exchange> requests = new LinkedBlockingQueue<>();
+
+    /**
+     * Creates the sockets, bound to any two available
+     * ports on the local machine, and starts receiving
+     * requests and replies on them.
+     *
+     * @param replies the handler receiving replies to sent requests.
+     * @throws IOException if the sockets cannot be created.
+     */
+    DatagramTransport(Consumer<String> replies) throws IOException {
+        this.replies = replies;
+        this.sender = new DatagramSocket(0);
+        this.receiver = new DatagramSocket(0);
+        this.sender.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+        this.receiver.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+
+        Thread requestReceiver = new Thread(this::receiveRequests, "Message request receiver");
+        requestReceiver.setDaemon(true);
+        requestReceiver.start();
+
+        Thread replyReceiver = new Thread(this::receiveReplies, "Message reply receiver");
+        replyReceiver.setDaemon(true);
+        replyReceiver.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAddress() {
+        return receiver.getLocalPort();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSenderAddress() {
+        return sender.getLocalPort();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Exchange receive() throws IOException {
+        try {
+            return requests.take();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while receiving");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * An unreachable address can't be detected, so
+     * requests sent to one simply go unanswered.
+     *
+     * @throws IOException if the message doesn't fit
+     *                     in a single datagram.
+     */
+    @Override
+    public void send(String message, int address) throws IOException {
+        sender.send(toPacket(message, address));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOpen() {
+        return !sender.isClosed() && !receiver.isClosed();
+    }
+
+    /**
+     * Closes both sockets.
+     */
+    @Override
+    public void close() {
+        sender.close();
+        receiver.close();
+    }
+
+    /**
+     * Receives requests on the receiving socket on
+     * loop, until the socket is closed.
+     */
+    private void receiveRequests() {
+        byte[] buffer = new byte[MAX_PACKET_SIZE];
+
+        while (!receiver.isClosed()) {
+            try {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                receiver.receive(packet);
+
+                String message = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+                int port = packet.getPort();
+
+                requests.add(new Exchange() {
+                    @Override
+                    public String getMessage() {
+                        return message;
+                    }
+
+                    @Override
+                    public void reply(String reply) throws IOException {
+                        receiver.send(toPacket(reply, port));
+                    }
+                });
+            } catch (IOException e) {
+                if (!receiver.isClosed())
+                    LOG.warn("Failed to receive request", e);
+            }
+        }
+    }
+
+    /**
+     * Receives replies on the sending socket on
+     * loop, until the socket is closed.
+     */
+    private void receiveReplies() {
+        byte[] buffer = new byte[MAX_PACKET_SIZE];
+
+        while (!sender.isClosed()) {
+            try {
+                DatagramPacket reply = new DatagramPacket(buffer, buffer.length);
+                sender.receive(reply);
+                replies.accept(new String(reply.getData(), 0, reply.getLength(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                if (!sender.isClosed())
+                    LOG.warn("Failed to receive reply", e);
+            }
+        }
+    }
+
+    /**
+     * Constructs a new datagram packet from the provided
+     * message and destination port.
+     *
+     * @param message the message, encoded as UTF-8.
+     * @param port    the destination port.
+     * @return the constructed datagram packet.
+     * @throws IOException if the message doesn't fit
+     *                     in a single datagram.
+     */
+    private static DatagramPacket toPacket(String message, int port) throws IOException {
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+
+        if (data.length > MAX_PACKET_SIZE)
+            throw new IOException("Message too large for a datagram: " + data.length + " bytes");
+
+        return new DatagramPacket(data, data.length, HOST, port);
+    }
+}
@@ -0,0 +1,123 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+/**
+ * A snapshot of the statistics of the dispatching of
+ * received messages to the listeners and responders
+ * of a {@link Messenger}.
+ *
+ * @see Messenger#getDispatchStatistics()
+ */
+public final class DispatchStatistics {
+
+    /**
+     * Messages waiting to be handled.
+     */
+    private final int queued;
+
+    /**
+     * Most messages waited to be handled at once.
+     */
+    private final int maxQueued;
+
+    /**
+     * Messages handled.
+     */
+    private final long dispatched;
+
+    /**
+     * Messages dropped or refused.
+     */
+    private final long rejected;
+
+    /**
+     * Total time, in nanoseconds, between receiving
+     * and handling the handled messages.
+     */
+    private final long totalLatency;
+
+    /**
+     * Longest time, in nanoseconds, between
+     * receiving and handling a message.
+     */
+    private final long maxLatency;
+
+    /**
+     * @param queued       messages waiting to be handled.
+     * @param maxQueued    most messages waited to be handled at once.
+     * @param dispatched   messages handled.
+     * @param rejected     messages dropped or refused.
+     * @param totalLatency total time between receiving and handling
+     *                     the handled messages, in nanoseconds.
+     * @param maxLatency   longest time between receiving and
+     *                     handling a message, in nanoseconds.
+     */
+    DispatchStatistics(int queued, int maxQueued, long dispatched,
+                       long rejected, long totalLatency, long maxLatency) {
+        this.queued = queued;
+        this.maxQueued = maxQueued;
+        this.dispatched = dispatched;
+        this.rejected = rejected;
+        this.totalLatency = totalLatency;
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * @return the number of messages waiting to be
+     * handled by listeners and responders.
+     */
+    public int getQueuedMessages() {
+        return queued;
+    }
+
+    /**
+     * @return the most messages that waited to
+     * be handled at once.
+     */
+    public int getMaxQueuedMessages() {
+        return maxQueued;
+    }
+
+    /**
+     * @return the number of messages handled by a
+     * listener or responder. A message handled by
+     * two listeners is counted twice.
+     */
+    public long getDispatchedMessages() {
+        return dispatched;
+    }
+
+    /**
+     * @return the number of messages dropped for a listener
+     * or refused by the responders, due to overload.
+     * @see RejectionPolicy
+     */
+    public long getRejectedMessages() {
+        return rejected;
+    }
+
+    /**
+     * @return the average time, in milliseconds, between
+     * receiving and handling a message.
+     */
+    public double getAverageLatency() {
+        return dispatched == 0 ? 0 : totalLatency / (double) dispatched / 1_000_000;
+    }
+
+    /**
+     * @return the longest time, in milliseconds, between
+     * receiving and handling a message.
+     */
+    public double getMaxLatency() {
+        return maxLatency / 1_000_000.0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("DispatchStatistics[queued=%d, maxQueued=%d, dispatched=%d, "
+                        + "rejected=%d, averageLatency=%.3fms, maxLatency=%.3fms]",
+                queued, maxQueued, dispatched, rejected, getAverageLatency(), getMaxLatency());
+    }
+}
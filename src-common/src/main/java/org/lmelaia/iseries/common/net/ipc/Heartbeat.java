@@ -0,0 +1,221 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.system.AppLogger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that another messenger is still responsive, by
+ * pinging it whenever nothing has been received for a while.
+ * <p>
+ * While messages are being received there's nothing to check,
+ * so no pings are sent. Each ping's timeout adapts to how long
+ * earlier pings took to be answered, and doubles after each
+ * missed ping, so a peer that's only slowed down (e.g. by heavy
+ * disk load) gets time to answer. The peer is only considered
+ * lost after a number of pings in a row are missed.
+ * <p>
+ * Anything received by the messenger counts as hearing from
+ * the peer, so it's meant for messengers with a single peer,
+ * such as the main application and its launcher.
+ * <p>
+ * This only detects a peer that stops responding. A peer
+ * process that exits is best detected through its
+ * {@link ProcessHandle#onExit()}.
+ */
+public class Heartbeat {
+
+    /**
+     * Logging instance.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * The default number of pings in a row that can be
+     * missed before the peer is considered lost.
+     */
+    public static final int DEFAULT_MISSES = 3;
+
+    /**
+     * Shortest ping timeout, in milliseconds.
+     */
+    private static final int MIN_TIMEOUT = 1000;
+
+    /**
+     * Longest ping timeout, in milliseconds.
+     */
+    private static final int MAX_TIMEOUT = 30000;
+
+    /**
+     * The messenger sending pings.
+     */
+    private final Messenger messenger;
+
+    /**
+     * The port of the messenger checked.
+     */
+    private final int port;
+
+    /**
+     * Time, in milliseconds, nothing must be
+     * received for before a ping is sent.
+     */
+    private final int interval;
+
+    /**
+     * Number of pings in a row that can be missed
+     * before the peer is considered lost.
+     */
+    private final int misses;
+
+    /**
+     * Called once the peer is considered lost.
+     */
+    private final Runnable onLost;
+
+    /**
+     * Thread sending the pings.
+     */
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Smoothed time, in milliseconds, pings take to
+     * be answered, or {@code -1} before the first.
+     */
+    private double roundTrip = -1;
+
+    /**
+     * Smoothed variation of {@link #roundTrip}.
+     */
+    private double roundTripVariation;
+
+    /**
+     * The current ping timeout, in milliseconds.
+     */
+    private volatile int timeout = MIN_TIMEOUT;
+
+    /**
+     * Number of pings missed in a row.
+     */
+    private int missed;
+
+    /**
+     * @param messenger the messenger sending pings.
+     * @param port      the port of the messenger to check.
+     * @param interval  the time, in milliseconds, nothing must
+     *                  be received for before a ping is sent.
+     * @param misses    the number of pings in a row that can be
+     *                  missed before the peer is considered lost.
+     * @param onLost    called, once, when the peer is considered lost.
+     */
+    public Heartbeat(Messenger messenger, int port, int interval, int misses, Runnable onLost) {
+        this.messenger = messenger;
+        this.port = port;
+        this.interval = interval;
+        this.misses = misses;
+        this.onLost = onLost;
+    }
+
+    /**
+     * Starts checking the peer.
+     */
+    public void start() {
+        scheduler.schedule(this::check, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops checking the peer.
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @return the current ping timeout, in milliseconds.
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Pings the peer if nothing has been received for the
+     * interval, otherwise waits until it could have been.
+     */
+    private void check() {
+        long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - messenger.getLastReceivedTime());
+
+        if (idle < interval) {
+            schedule(interval - idle);
+            return;
+        }
+
+        long sent = System.nanoTime();
+        messenger.pingAsync(port, timeout).thenAccept(answered -> {
+            if (answered)
+                onAnswered(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sent));
+            else
+                onMissed();
+        });
+    }
+
+    /**
+     * Adapts the timeout to the time the ping took
+     * to be answered, and waits for the next check.
+     *
+     * @param time the time the ping took, in milliseconds.
+     */
+    private void onAnswered(long time) {
+        if (missed > 0)
+            LOG.info("Heartbeat answered after " + missed + " missed");
+
+        missed = 0;
+
+        //Estimated as TCP estimates its retransmission timeout (RFC 6298).
+        if (roundTrip < 0) {
+            roundTrip = time;
+            roundTripVariation = time / 2.0;
+        } else {
+            roundTripVariation = 0.75 * roundTripVariation + 0.25 * Math.abs(roundTrip - time);
+            roundTrip = 0.875 * roundTrip + 0.125 * time;
+        }
+
+        timeout = (int) Math.max(MIN_TIMEOUT, Math.min(MAX_TIMEOUT, roundTrip + 4 * roundTripVariation));
+        schedule(interval);
+    }
+
+    /**
+     * Counts a missed ping, and either pings again with
+     * a longer timeout or gives up on the peer.
+     */
+    private void onMissed() {
+        missed++;
+
+        if (missed >= misses) {
+            LOG.fatal("Heartbeat lost after " + missed + " missed pings");
+            stop();
+            onLost.run();
+            return;
+        }
+
+        timeout = Math.min(MAX_TIMEOUT, timeout * 2);
+        LOG.warn("Heartbeat missed (" + missed + " of " + misses + "), retrying with timeout: " + timeout + "ms");
+        schedule(0);
+    }
+
+    /**
+     * Schedules the next check.
+     *
+     * @param delay the delay in milliseconds.
+     */
+    private void schedule(long delay) {
+        if (!scheduler.isShutdown())
+            scheduler.schedule(this::check, delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,40 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+/**
+ * The states of the running I-Series instance,
+ * as published through the {@link SharedState}.
+ */
+public enum InstanceState {
+
+    /**
+     * No instance is running.
+     */
+    NONE,
+
+    /**
+     * The main application is starting, and
+     * can receive messages but isn't loaded yet.
+     */
+    STARTING,
+
+    /**
+     * The main application is loaded and shown.
+     */
+    READY,
+
+    /**
+     * The launcher is in Tray Mode, without a
+     * main application process.
+     */
+    TRAY;
+
+    /**
+     * @param ordinal an ordinal.
+     * @return the state with the given ordinal,
+     * or {@link #NONE} if there's no such state.
+     */
+    static InstanceState fromOrdinal(int ordinal) {
+        InstanceState[] states = values();
+        return ordinal >= 0 && ordinal < states.length ? states[ordinal] : NONE;
+    }
+}
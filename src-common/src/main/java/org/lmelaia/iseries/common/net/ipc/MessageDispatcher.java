@@ -0,0 +1,348 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+import com.google.gson.JsonObject;
+import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.system.AppLogger;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands received messages to the listeners and responders
+ * of a {@link Messenger} on a small pool of threads, so the
+ * receiving thread never waits on them.
+ * <p>
+ * Each listener has a bounded queue of messages, which is
+ * drained in order by one pool thread at a time, so a listener
+ * sees messages one at a time in the order they're received,
+ * and a slow listener only holds up its own messages. When a
+ * queue is full, the {@link RejectionPolicy} decides which
+ * message is dropped. Responders run on the same pool, with
+ * a bound on the number waiting to run.
+ */
+class MessageDispatcher {
+
+    /**
+     * Logging instance.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * Number of threads handling messages.
+     */
+    private static final int THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Number of messages each listener's queue holds.
+     */
+    private static final int LISTENER_QUEUE_CAPACITY = 256;
+
+    /**
+     * Number of messages that can wait on responders.
+     */
+    private static final int RESPONDER_CAPACITY = 1024;
+
+    /**
+     * Number of messages a listener is given before
+     * its thread moves on to other queued work.
+     */
+    private static final int BATCH_SIZE = 32;
+
+    /**
+     * The threads handling messages.
+     */
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "Message dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The queues of the subscribed listeners.
+     */
+    private final List<ListenerQueue> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Permits for messages waiting on responders.
+     */
+    private final Semaphore responders = new Semaphore(RESPONDER_CAPACITY);
+
+    /**
+     * What to drop when a listener's queue is full.
+     */
+    private volatile RejectionPolicy policy = RejectionPolicy.DROP_NEWEST;
+
+    /**
+     * Messages waiting to be handled.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * Most messages waited to be handled at once.
+     */
+    private final AtomicInteger maxQueued = new AtomicInteger();
+
+    /**
+     * Messages handled.
+     */
+    private final LongAdder dispatched = new LongAdder();
+
+    /**
+     * Messages dropped or refused.
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Total time between receiving and handling messages.
+     */
+    private final LongAdder totalLatency = new LongAdder();
+
+    /**
+     * Longest time between receiving and handling a message.
+     */
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * @param listener the listener to give messages to.
+     */
+    void addListener(MessageListener listener) {
+        listeners.add(new ListenerQueue(listener));
+    }
+
+    /**
+     * Stops giving messages to a listener. Messages
+     * already queued for it are discarded.
+     *
+     * @param listener the listener.
+     */
+    void removeListener(MessageListener listener) {
+        for (ListenerQueue queue : listeners) {
+            if (queue.listener == listener) {
+                listeners.remove(queue);
+                queued.addAndGet(-queue.messages.size());
+                queue.messages.clear();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param policy what to drop when a listener's queue is full.
+     */
+    void setRejectionPolicy(RejectionPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Queues a message for every listener.
+     *
+     * @param message the received message.
+     */
+    void dispatch(JsonObject message) {
+        Delivery delivery = new Delivery(message);
+
+        for (ListenerQueue queue : listeners)
+            queue.offer(delivery);
+    }
+
+    /**
+     * Runs a responder on the pool, unless too many
+     * messages are already waiting on responders.
+     *
+     * @param responder the responder, which replies to the message.
+     * @return {@code true} if the responder will run,
+     * {@code false} if it was refused.
+     */
+    boolean respond(Runnable responder) {
+        if (!responders.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+
+        long received = System.nanoTime();
+        onQueued();
+
+        try {
+            executor.execute(() -> {
+                queued.decrementAndGet();
+
+                try {
+                    responder.run();
+                } finally {
+                    responders.release();
+                    onHandled(received);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            responders.release();
+            rejected.increment();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return a snapshot of the statistics.
+     */
+    DispatchStatistics getStatistics() {
+        return new DispatchStatistics(queued.get(), maxQueued.get(), dispatched.sum(),
+                rejected.sum(), totalLatency.sum(), maxLatency.get());
+    }
+
+    /**
+     * Counts a queued message.
+     */
+    private void onQueued() {
+        int depth = queued.incrementAndGet();
+        maxQueued.accumulateAndGet(depth, Math::max);
+    }
+
+    /**
+     * Counts a handled message.
+     *
+     * @param received the time the message was received.
+     */
+    private void onHandled(long received) {
+        long latency = System.nanoTime() - received;
+
+        dispatched.increment();
+        totalLatency.add(latency);
+        maxLatency.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * A received message and the time it was received.
+     */
+    private static final class Delivery {
+
+        /**
+         * The message.
+         */
+        private final JsonObject message;
+
+        /**
+         * The time the message was received.
+         */
+        private final long received = System.nanoTime();
+
+        /**
+         * @param message the message.
+         */
+        Delivery(JsonObject message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * A listener's queue of messages, drained
+     * by one pool thread at a time.
+     */
+    private final class ListenerQueue {
+
+        /**
+         * The listener.
+         */
+        private final MessageListener listener;
+
+        /**
+         * The messages waiting to be given to the listener.
+         */
+        private final BlockingQueue<Delivery> messages = new ArrayBlockingQueue<>(LISTENER_QUEUE_CAPACITY);
+
+        /**
+         * {@code true} while a pool thread is draining the queue,
+         * or has been asked to.
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * @param listener the listener.
+         */
+        ListenerQueue(MessageListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Adds a message to the queue, dropping a message
+         * according to the rejection policy if it's full.
+         *
+         * @param delivery the message.
+         */
+        void offer(Delivery delivery) {
+            while (!messages.offer(delivery)) {
+                rejected.increment();
+
+                if (policy == RejectionPolicy.DROP_NEWEST) {
+                    LOG.warn("Listener queue full, dropped message: " + delivery.message.get("name"));
+                    schedule();
+                    return;
+                }
+
+                Delivery dropped = messages.poll();
+                if (dropped != null) {
+                    queued.decrementAndGet();
+                    LOG.warn("Listener queue full, dropped message: " + dropped.message.get("name"));
+                }
+            }
+
+            onQueued();
+            schedule();
+        }
+
+        /**
+         * Asks a pool thread to drain the
+         * queue, if one hasn't been already.
+         */
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true))
+                return;
+
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                LOG.error("Failed to dispatch messages to listener", e);
+            }
+        }
+
+        /**
+         * Gives a batch of queued messages to the listener, then
+         * reschedules itself if more are waiting, so other queues
+         * get a turn on the pool.
+         */
+        private void drain() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Delivery delivery = messages.poll();
+                if (delivery == null)
+                    break;
+
+                queued.decrementAndGet();
+
+                try {
+                    listener.onMessageReceived(delivery.message);
+                } catch (RuntimeException e) {
+                    LOG.error("Message listener failed on message: " + delivery.message.get("name"), e);
+                } finally {
+                    onHandled(delivery.received);
+                }
+            }
+
+            scheduled.set(false);
+
+            if (!messages.isEmpty() && listeners.contains(this))
+                schedule();
+        }
+    }
+}
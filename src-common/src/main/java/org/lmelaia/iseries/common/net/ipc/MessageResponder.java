@@ -0,0 +1,21 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Interface used to answer received messages
+ * with a reply other than the default
+ * {@code {"name": "received"}} reply.
+ */
+public interface MessageResponder {
+
+    /**
+     * Called when a message with the name this
+     * responder was registered under is received.
+     *
+     * @param message the received message as a
+     *                json object.
+     * @return the reply to send back to the sender.
+     */
+    JsonObject respond(JsonObject message);
+}
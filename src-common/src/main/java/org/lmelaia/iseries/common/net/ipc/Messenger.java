@@ -1,16 +1,25 @@
 package org.lmelaia.iseries.common.net.ipc;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSyntaxException;
 import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.metrics.Counter;
+import org.lmelaia.iseries.common.metrics.LatencyHistogram;
+import org.lmelaia.iseries.common.metrics.MetricsRegistry;
 import org.lmelaia.iseries.common.system.AppLogger;
 
 import java.io.IOException;
-import java.net.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.net.ConnectException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Provides a framework for the launcher and main application
@@ -20,6 +29,19 @@ import java.util.List;
  * received events, ping an application and read/write
  * the receiving sockets port to file.<p/>
  * <p>
+ * Messages are sent over one of the {@link Transport}s, which
+ * is chosen when the messenger is created. Ports are the
+ * addresses of the chosen transport.<p/>
+ * <p>
+ * Any number of requests can be in flight at once, from any
+ * number of threads. Each request is tagged with an id, which
+ * is echoed back in its reply so replies can be matched to
+ * their requests in whatever order they arrive.<p/>
+ * <p>
+ * Messages of any size up to a configurable limit can be sent,
+ * with large messages streamed in chunks so they never stall
+ * pings and other messages sent meanwhile.<p/>
+ * <p>
  * Each json message should have a property with the key "name"
  * (eg. {@code {"name": "message_name"} }), or an exception
  * will be thrown. This is to identify what information the
@@ -40,54 +62,131 @@ public class Messenger {
     private static final Logger LOG = AppLogger.getLogger();
 
     /**
-     * Default size for created packets.
+     * Key of the property holding the id of a request,
+     * which is echoed back in its reply.
      */
-    private static final int DEFAULT_PACKET_SIZE = 2048;
+    private static final String ID_PROPERTY = "message_id";
 
     /**
-     * Host machines address.
+     * The default limit, in bytes of UTF-8, on the
+     * size of messages sent and received.
      */
-    private static final InetAddress HOST;
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 32 * 1024 * 1024;
 
     /**
-     * List of subscribed message listeners.
+     * Number of characters of a message logged,
+     * beyond which it's cut short.
      */
-    private final List<MessageListener> listeners = new ArrayList<>();
+    private static final int MAX_LOGGED_LENGTH = 512;
 
     /**
-     * Socket used for sending message.
+     * Time from sending a request to receiving its reply.
      */
-    private final DatagramSocket sender;
+    private static final LatencyHistogram SEND_LATENCY = MetricsRegistry.getRegistry().histogram("ipc.send");
 
     /**
-     * Socket receiving message on loop.
+     * Requests not replied to within their timeout.
      */
-    private final DatagramSocket receiver;
+    private static final Counter SEND_TIMEOUTS = MetricsRegistry.getRegistry().counter("ipc.send.timeouts");
 
-    /*
-     * Initialises the INetAddress object.
+    /**
+     * Requests and replies received.
      */
-    static {
-        try {
-            HOST = InetAddress.getByAddress(new byte[]{127, 0, 0, 1});
-        } catch (UnknownHostException e) {
-            LOG.fatal("Could not set host", e);
-            throw new MessengerException("Could not set host", e);
-        }
-    }
+    private static final Counter RECEIVED = MetricsRegistry.getRegistry().counter("ipc.received");
+
+    /**
+     * Hands received messages to the subscribed
+     * listeners and registered responders.
+     */
+    private final MessageDispatcher dispatcher = new MessageDispatcher();
+
+    /**
+     * Map of registered message responders keyed
+     * by the name of the message they answer.
+     */
+    private final Map<String, MessageResponder> responders = new ConcurrentHashMap<>();
+
+    /**
+     * The transport messages are sent and received over.
+     */
+    private final Transport transport;
+
+    /**
+     * The created transport.
+     */
+    private final MessengerTransport connection;
+
+    /**
+     * The default timeout, in milliseconds, for receiving replies.
+     */
+    private final int timeout;
+
+    /**
+     * Requests awaiting their reply, keyed by id.
+     */
+    private final Map<Long, CompletableFuture<JsonObject>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Id given to the next request sent.
+     */
+    private final AtomicLong nextId = new AtomicLong();
+
+    /**
+     * The time, as given by {@link System#nanoTime()}, a
+     * message or reply was last received.
+     */
+    private volatile long lastReceived = System.nanoTime();
+
+    /**
+     * The shared state while published by this
+     * messenger, or {@code null}.
+     */
+    private volatile SharedState sharedState;
 
     /**
      * Creates a new messenger object bound to
-     * any two available ports on the local machine.
+     * any two available ports on the local machine,
+     * communicating over {@link Transport#DATAGRAM}.
      *
      * @param timeout the timeout for receiving replies and pings.
      * @throws MessengerException if the sockets cannot be created.
      */
     public Messenger(int timeout) throws MessengerException {
+        this(timeout, Transport.DATAGRAM);
+    }
+
+    /**
+     * Creates a new messenger object communicating
+     * over the given transport.
+     *
+     * @param timeout   the timeout for receiving replies and pings.
+     * @param transport the transport to communicate over.
+     * @throws MessengerException if the transport cannot be created.
+     */
+    public Messenger(int timeout, Transport transport) throws MessengerException {
+        this(timeout, transport, DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+    /**
+     * Creates a new messenger object communicating
+     * over the given transport.
+     *
+     * @param timeout        the timeout for receiving replies and pings.
+     * @param transport      the transport to communicate over.
+     * @param maxMessageSize the limit, in bytes of UTF-8, on the size
+     *                       of messages sent and received. Larger messages
+     *                       fail to send, and are dropped when received.
+     * @throws MessengerException if the transport cannot be created.
+     */
+    public Messenger(int timeout, Transport transport, int maxMessageSize) throws MessengerException {
+        if (maxMessageSize < ChunkingTransport.CHUNK_SIZE)
+            throw new IllegalArgumentException("Max message size must be at least "
+                    + ChunkingTransport.CHUNK_SIZE + " bytes");
+
         try {
-            this.sender = new DatagramSocket(getRandomPort());
-            this.sender.setSoTimeout(timeout);
-            this.receiver = new DatagramSocket(getRandomPort());
+            this.timeout = timeout;
+            this.transport = transport;
+            this.connection = new ChunkingTransport(transport, this::onReply, maxMessageSize);
             ReceivingThread receivingThread = new ReceivingThread();
             receivingThread.start();
         } catch (IOException e) {
@@ -111,67 +210,182 @@ public class Messenger {
      * @param message the message to send.
      * @param port    the port the receiving thread is operating on.
      * @return the response from the receiving thread, or
-     * {@code null} if the timeout has passed.
+     * {@code null} if the timeout has passed or the port
+     * can't be reached.
      * @throws MessengerException if the message cannot be sent.
+     * @see #sendAsync(JsonObject, int)
      */
     @SuppressWarnings({"WeakerAccess"})
     public JsonObject send(JsonObject message, int port) throws MessengerException {
+        try {
+            return sendAsync(message, port).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MessengerException)
+                throw (MessengerException) e.getCause();
+
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Sends a json message to the provided port without waiting
+     * for it's response, using the timeout specified in the
+     * constructor.
+     *
+     * @param message the message to send.
+     * @param port    the port the receiving thread is operating on.
+     * @return a future completed with the response from the
+     * receiving thread.
+     * @see #sendAsync(JsonObject, int, int)
+     */
+    @SuppressWarnings({"WeakerAccess"})
+    public CompletableFuture<JsonObject> sendAsync(JsonObject message, int port) {
+        return sendAsync(message, port, timeout);
+    }
+
+    /**
+     * Sends a json message to the provided port without waiting
+     * for it's response.
+     * <p/>
+     * <p>
+     * The returned future is completed exceptionally with a
+     * {@link TimeoutException} if no response is received within
+     * the timeout, a {@link ConnectException} if the port can't
+     * be reached, or a {@link MessengerException} if the message
+     * cannot be sent.
+     * <p/>
+     * <p>
+     * The json message must a property key with the value of "name"
+     * (eg. {@code {"name": "value"}}) or an IllegalArgumentException will
+     * be thrown.
+     *
+     * @param message the message to send.
+     * @param port    the port the receiving thread is operating on.
+     * @param timeout the timeout, in milliseconds, for receiving
+     *                the response.
+     * @return a future completed with the response from the
+     * receiving thread.
+     */
+    @SuppressWarnings({"WeakerAccess"})
+    public CompletableFuture<JsonObject> sendAsync(JsonObject message, int port, int timeout) {
         if (message.get("name") == null)
             throw new IllegalArgumentException("Json object provided must have" +
                     " a property with a key value of \"name\"");
 
+        long id = nextId.incrementAndGet();
+        long sent = System.nanoTime();
+        CompletableFuture<JsonObject> reply = new CompletableFuture<>();
+        pending.put(id, reply);
+        reply.whenComplete((response, error) -> {
+            pending.remove(id);
+
+            if (error == null)
+                SEND_LATENCY.recordSince(sent);
+            else if (error instanceof TimeoutException)
+                SEND_TIMEOUTS.increment();
+        });
+
+        JsonObject request = copy(message);
+        request.addProperty(ID_PROPERTY, id);
+
         try {
-            DatagramPacket messageData = toPacket(message, port);
-            this.sender.send(messageData);
+            connection.send(GSON.toJson(request), port);
 
             if (!message.get("name").getAsString().equals("ping"))
-                LOG.debug("Message: " + GSON.toJson(message) + " sent to port: " + port);
-
-            DatagramPacket reply = getEmptyPacket();
-            this.sender.receive(reply);
-            return fromPacket(reply);
-        } catch (SocketTimeoutException e) {
-            return null;
+                LOG.debug("Message: " + describe(GSON.toJson(message)) + " sent to port: " + port);
+        } catch (ConnectException e) {
+            LOG.debug("Failed to connect to port: " + port, e);
+            reply.completeExceptionally(e);
+            return reply;
         } catch (IOException e) {
-            LOG.fatal("Failed to send message: " + GSON.toJson(message), e);
-            throw new MessengerException("Failed to send message", e);
+            LOG.fatal("Failed to send message: " + describe(GSON.toJson(message)), e);
+            reply.completeExceptionally(new MessengerException("Failed to send message", e));
+            return reply;
         }
+
+        return reply.orTimeout(timeout, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Writes the receiving threads port to file.
+     * Publishes the receiving threads port, the transport it's
+     * on and the state of this process to the {@link SharedState},
+     * taking ownership of it if needed. While this process owns it,
+     * every message received bumps its heartbeat counter.
      *
-     * @see #readFromPortFile()
+     * @param state the state of this process.
+     * @see #getRunningInstance()
      */
     @SuppressWarnings("WeakerAccess")
-    public void writeToPortFile() {
+    public void publishState(InstanceState state) {
         try {
-            PortFileHandler.getPortFileHandler().write(getReceiverPort());
+            SharedState shared = SharedState.getSharedState();
+            shared.publish(transport, getReceiverPort(), state);
+            sharedState = shared;
         } catch (IOException e) {
-            LOG.fatal("Failed to write receiver port to file", e);
-            throw new MessengerException("Failed to write receiver port to file", e);
+            LOG.fatal("Failed to publish state: " + state, e);
+            throw new MessengerException("Failed to publish state: " + state, e);
         }
     }
 
     /**
-     * Reads and returns the last port written to file.
+     * Gives up ownership of the {@link SharedState}, so
+     * another process can publish its state.
+     *
+     * @see #publishState(InstanceState)
+     */
+    @SuppressWarnings("WeakerAccess")
+    public void releaseState() {
+        SharedState shared = sharedState;
+        sharedState = null;
+
+        if (shared != null)
+            shared.release();
+    }
+
+    /**
+     * Reads the state published by the running instance, without
+     * messaging it. Takes microseconds, as it's read from memory and
+     * the owner is known to be alive through its file lock.
      *
-     * @return the last written port.
-     * @see #writeToPortFile()
+     * @return the state of the running instance, with a state of
+     * {@link InstanceState#NONE} if there is none, or if it's on a
+     * different transport, as this messenger can't reach it.
+     * @see #publishState(InstanceState)
      */
     @SuppressWarnings("WeakerAccess")
-    public int readFromPortFile() {
-        return PortFileHandler.getPortFileHandler().read();
+    public SharedState.Snapshot getRunningInstance() {
+        SharedState.Snapshot instance;
+
+        try {
+            instance = SharedState.getSharedState().read();
+        } catch (IOException e) {
+            LOG.error("Failed to read shared state", e);
+            return SharedState.Snapshot.none();
+        }
+
+        if (instance.getState() != InstanceState.NONE && instance.getTransport() != transport) {
+            LOG.info("Running instance is on transport: " + instance.getTransport());
+            return SharedState.Snapshot.none();
+        }
+
+        return instance;
     }
 
     /**
      * Adds a listener to the subscribed listeners list, which will
      * be notified when a new message is received.
+     * <p>
+     * Listeners are notified on a dispatcher thread, after
+     * the message has been acknowledged. Each listener is given
+     * messages one at a time, in the order they're received.
      *
      * @param listener the listener to add.
      */
     public void addMessageListener(MessageListener listener) {
-        listeners.add(listener);
+        dispatcher.addListener(listener);
     }
 
     /**
@@ -180,7 +394,56 @@ public class Messenger {
      * @param listener the listener to remove.
      */
     public void removeMessageListener(MessageListener listener) {
-        listeners.remove(listener);
+        dispatcher.removeListener(listener);
+    }
+
+    /**
+     * Sets what is dropped when a listener can't keep up with
+     * the messages received and its queue of messages is full.
+     * The default is {@link RejectionPolicy#DROP_NEWEST}.
+     *
+     * @param policy the rejection policy.
+     */
+    @SuppressWarnings("unused")
+    public void setRejectionPolicy(RejectionPolicy policy) {
+        dispatcher.setRejectionPolicy(policy);
+    }
+
+    /**
+     * @return a snapshot of the queue depth, latency and
+     * rejection statistics of the handling of received
+     * messages by listeners and responders.
+     */
+    public DispatchStatistics getDispatchStatistics() {
+        return dispatcher.getStatistics();
+    }
+
+    /**
+     * Registers a responder which will answer all received
+     * messages with the given name, in place of the default
+     * {@code {"name": "received"}} reply. Message listeners
+     * are not notified of messages answered by a responder.
+     * <p>
+     * Responders run on a dispatcher thread. If too many
+     * messages are waiting on responders, the message is
+     * answered with {@code {"name": "rejected"}} instead.
+     *
+     * @param name      the name of the messages to answer.
+     * @param responder the responder to register.
+     */
+    public void setMessageResponder(String name, MessageResponder responder) {
+        responders.put(name, responder);
+    }
+
+    /**
+     * Removes the responder registered for messages
+     * with the given name.
+     *
+     * @param name the name of the messages the responder answers.
+     */
+    @SuppressWarnings("unused")
+    public void removeMessageResponder(String name) {
+        responders.remove(name);
     }
 
     /**
@@ -195,11 +458,8 @@ public class Messenger {
      */
     @SuppressWarnings("UnusedReturnValue")
     public boolean ping(int portToPing) throws MessengerException {
-        JsonObject message = new JsonObject();
-        message.add("name", new JsonPrimitive("ping"));
-
         JsonObject returnMessage;
-        returnMessage = send(message, portToPing);
+        returnMessage = send(createMessage("ping"), portToPing);
 
         return returnMessage != null && returnMessage.get("name")
                 .getAsString().equals("return_ping");
@@ -207,10 +467,35 @@ public class Messenger {
     }
 
     /**
-     * @return the port the sending socket is operating on.
+     * Pings the port of a receiving thread to check if it is
+     * online and/or operating, without waiting for the answer.
+     *
+     * @param portToPing the port to ping.
+     * @param timeout    the timeout, in milliseconds, for the answer.
+     * @return a future completed with {@code true} if the
+     * receiving thread answered in time, {@code false} otherwise.
+     */
+    public CompletableFuture<Boolean> pingAsync(int portToPing, int timeout) {
+        return sendAsync(createMessage("ping"), portToPing, timeout).handle(
+                (reply, error) -> reply != null && reply.get("name").getAsString().equals("return_ping"));
+    }
+
+    /**
+     * @return the time, as given by {@link System#nanoTime()},
+     * a message or reply was last received, or the time this
+     * messenger was created if none have been.
+     */
+    public long getLastReceivedTime() {
+        return lastReceived;
+    }
+
+    /**
+     * @return the port the sending socket is operating on,
+     * or {@code -1} if the transport doesn't send from
+     * a fixed port.
      */
     public int getSenderPort() {
-        return this.sender.getLocalPort();
+        return connection.getSenderAddress();
     }
 
     /**
@@ -218,90 +503,118 @@ public class Messenger {
      */
     @SuppressWarnings("WeakerAccess")
     public int getReceiverPort() {
-        return this.receiver.getLocalPort();
+        return connection.getAddress();
+    }
+
+    /**
+     * @return the transport this messenger communicates over.
+     */
+    public Transport getTransport() {
+        return transport;
     }
 
     /**
      * @return {@code true} if both sockets are open, {@code false} otherwise.
      */
     public boolean isAlive() {
-        return (!this.sender.isClosed())
-                && (!this.receiver.isClosed());
+        return connection.isOpen();
     }
 
     /**
-     * Sends a message on the receiving thread. This is used to
-     * reply to received messages.
+     * Replies to a received message.
      *
-     * @param message the reply message.
-     * @param port    the port to the send the reply to.
+     * @param exchange the exchange the message was received in.
+     * @param message  the reply message.
+     * @param id       the id of the received message,
+     *                 echoed in the reply, or {@code null}.
      * @throws IOException if the message cannot be sent.
      */
-    private void reply(JsonObject message, int port) throws IOException {
-        this.receiver.send(toPacket(message, port));
+    private static void reply(MessengerTransport.Exchange exchange, JsonObject message,
+                              JsonElement id) throws IOException {
+        if (id != null)
+            message.add(ID_PROPERTY, id);
+
+        exchange.reply(GSON.toJson(message));
     }
 
     /**
-     * Notifies all subscribed listeners that a message has been received.
+     * Replies to a received message with the response of
+     * the responder registered for it.
      *
-     * @param message the received message.
+     * @param responder the responder.
+     * @param message   the received message.
+     * @param exchange  the exchange the message was received in.
+     * @param id        the id of the received message, or {@code null}.
      */
-    private void notifyListeners(JsonObject message) {
-        for (MessageListener listener : listeners)
-            listener.onMessageReceived(message);
+    private static void respond(MessageResponder responder, JsonObject message,
+                                MessengerTransport.Exchange exchange, JsonElement id) {
+        try {
+            reply(exchange, copy(responder.respond(message)), id);
+        } catch (Exception e) {
+            LOG.error("Failed to respond to message: " + message.get("name"), e);
+        }
     }
 
     /**
-     * @return an empty datagram packet with the default packet size.
+     * @param name the name of the message.
+     * @return a new message with the given name.
      */
-    private static DatagramPacket getEmptyPacket() {
-        return new DatagramPacket(new byte[DEFAULT_PACKET_SIZE], DEFAULT_PACKET_SIZE);
+    private static JsonObject createMessage(String name) {
+        JsonObject reply = new JsonObject();
+        reply.add("name", new JsonPrimitive(name));
+        return reply;
     }
 
     /**
-     * @param port the destination port.
-     * @return an empty datagram packet with the default packet
-     * size and a destination port.
+     * @param json a json message.
+     * @return the message, cut short if it's
+     * too long to be logged in full.
      */
-    private static DatagramPacket getEmptyPacket(int port) {
-        return new DatagramPacket(new byte[DEFAULT_PACKET_SIZE], DEFAULT_PACKET_SIZE,
-                HOST, port);
+    private static String describe(String json) {
+        if (json.length() <= MAX_LOGGED_LENGTH)
+            return json;
+
+        return json.substring(0, MAX_LOGGED_LENGTH) + "... (" + json.length() + " characters)";
     }
 
     /**
-     * Constructs a new json object from the provided datagram packet.
-     *
-     * @param packet the packet used in constructing the json object.
-     * @return the constructed json object.
+     * @param message a json message.
+     * @return a shallow copy of the message, which
+     * properties can be added to without changing it.
      */
-    private static JsonObject fromPacket(DatagramPacket packet) {
-        return GSON.fromJson(new String(packet.getData(), 0, packet.getLength()), JsonObject.class);
+    private static JsonObject copy(JsonObject message) {
+        JsonObject copy = new JsonObject();
+        for (Map.Entry<String, JsonElement> property : message.entrySet())
+            copy.add(property.getKey(), property.getValue());
+        return copy;
     }
 
     /**
-     * Constructs a new datagram packet from the provided json object
-     * and destination port.
+     * Completes the request a received reply answers.
      *
-     * @param message the json object used in constructing the packet.
-     * @param port    the destination port.
-     * @return the constructed datagram packet.
+     * @param reply the received reply.
      */
-    private static DatagramPacket toPacket(JsonObject message, int port) {
-        DatagramPacket packet = getEmptyPacket(port);
-        String messageData = GSON.toJson(message);
+    private void onReply(String reply) {
+        lastReceived = System.nanoTime();
+        RECEIVED.increment();
+
+        JsonObject message;
+        try {
+            message = GSON.fromJson(reply, JsonObject.class);
+        } catch (JsonSyntaxException e) {
+            LOG.warn("Invalid json reply received: " + describe(reply), e);
+            return;
+        }
 
-        packet.setLength(messageData.length());
-        packet.setData(messageData.getBytes());
+        JsonElement id = message.remove(ID_PROPERTY);
+        CompletableFuture<JsonObject> request = id == null ? null : pending.remove(id.getAsLong());
 
-        return packet;
-    }
+        if (request == null) {
+            LOG.debug("Reply received for no pending request: " + describe(reply));
+            return;
+        }
 
-    /**
-     * @return a random available port on the local machine.
-     * @throws IOException if a port cannot be obtained.
-     */
-    private static int getRandomPort() throws IOException {
-        return new ServerSocket(0).getLocalPort();
+        request.complete(message);
     }
 
     /**
@@ -320,37 +633,54 @@ public class Messenger {
         /**
          * Blocks until a message is received. If the received
          * message is a ping request, a reply will be sent notifying
-         * the sender it is online, otherwise all subscribed listeners
-         * will be notified of a new message received and a received
-         * reply will be sent. This is performed on a loop.
+         * the sender it is online. If a responder is registered for
+         * the message, it's given the message on a dispatcher thread
+         * and its response is sent as the reply, otherwise a received
+         * reply will be sent and all subscribed listeners will be
+         * notified of a new message received on dispatcher threads.
+         * This is performed on a loop.
+         * <p>
+         * The loop never waits on listeners or responders, so
+         * pings are answered however busy they are.
          */
         @Override
-        @SuppressWarnings("InfiniteLoopStatement")
         public void run() {
             LOG.info("Response thread started on port: " + getReceiverPort());
-            while (true) {
+            while (connection.isOpen()) {
                 try {
-                    DatagramPacket packet = getEmptyPacket();
-                    receiver.receive(packet);
+                    MessengerTransport.Exchange exchange = connection.receive();
+                    lastReceived = System.nanoTime();
+                    RECEIVED.increment();
+
+                    SharedState shared = sharedState;
+                    if (shared != null)
+                        shared.beat();
 
                     JsonObject message;
                     try {
-                        message = fromPacket(packet);
+                        message = GSON.fromJson(exchange.getMessage(), JsonObject.class);
                     } catch (JsonSyntaxException e) {
-                        LOG.warn("Invalid json message received: " + new String(packet.getData()), e);
+                        LOG.warn("Invalid json message received: " + describe(exchange.getMessage()), e);
                         continue;
                     }
 
-                    if (message.get("name").getAsString().equals("ping")) {
-                        JsonObject reply = new JsonObject();
-                        reply.add("name", new JsonPrimitive("return_ping"));
-                        reply(reply, packet.getPort());
+                    JsonElement id = message.remove(ID_PROPERTY);
+                    String name = message.get("name").getAsString();
+                    MessageResponder responder = responders.get(name);
+
+                    if (name.equals("ping")) {
+                        reply(exchange, createMessage("return_ping"), id);
+                    } else if (responder != null) {
+                        LOG.debug("Message received: " + describe(GSON.toJson(message)));
+
+                        if (!dispatcher.respond(() -> respond(responder, message, exchange, id))) {
+                            LOG.warn("Responders busy, rejected message: " + name);
+                            reply(exchange, createMessage("rejected"), id);
+                        }
                     } else {
-                        LOG.info("Message received: " + GSON.toJson(message));
-                        notifyListeners(message);
-                        JsonObject reply = new JsonObject();
-                        reply.add("name", new JsonPrimitive("received"));
-                        reply(reply, packet.getPort());
+                        LOG.info("Message received: " + describe(GSON.toJson(message)));
+                        reply(exchange, createMessage("received"), id);
+                        dispatcher.dispatch(message);
                     }
                 } catch (Exception e) {
                     LOG.fatal("Failed to reply to message", e);
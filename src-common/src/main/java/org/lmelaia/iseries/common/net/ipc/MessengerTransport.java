@@ -0,0 +1,79 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The means by which a {@link Messenger} sends and
+ * receives its json messages, as text.
+ * <p>
+ * A transport has a receiving end, bound to an address
+ * other messengers send requests to, and a sending end
+ * used to send requests. Replies to sent requests are
+ * passed to the reply handler the transport was created
+ * with, on a thread of the transport, in the order they're
+ * received. Matching replies to requests is left to the
+ * messenger. Addresses are integers, which are ports for
+ * the socket based transports.
+ *
+ * @see Transport
+ */
+interface MessengerTransport extends Closeable {
+
+    /**
+     * @return the address the receiving end is bound to.
+     */
+    int getAddress();
+
+    /**
+     * @return the address the sending end is bound to,
+     * or {@code -1} if it isn't bound to a fixed address.
+     */
+    int getSenderAddress();
+
+    /**
+     * Blocks until a request is received.
+     *
+     * @return the received request.
+     * @throws IOException if the transport fails or is closed.
+     */
+    Exchange receive() throws IOException;
+
+    /**
+     * Sends a request to the given address without
+     * waiting for its reply.
+     *
+     * @param message the request.
+     * @param address the address of the receiving end.
+     * @throws java.net.ConnectException if the address
+     *                                   cannot be reached.
+     * @throws IOException               if the request cannot be sent.
+     */
+    void send(String message, int address) throws IOException;
+
+    /**
+     * @return {@code true} if the transport
+     * hasn't been closed.
+     */
+    boolean isOpen();
+
+    /**
+     * A request received by the receiving end,
+     * which must be replied to.
+     */
+    interface Exchange {
+
+        /**
+         * @return the request.
+         */
+        String getMessage();
+
+        /**
+         * Sends the reply to the request.
+         *
+         * @param message the reply.
+         * @throws IOException if the reply cannot be sent.
+         */
+        void reply(String message) throws IOException;
+    }
+}
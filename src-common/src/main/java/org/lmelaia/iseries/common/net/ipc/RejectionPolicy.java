@@ -0,0 +1,23 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+/**
+ * What a {@link Messenger} does with a received message
+ * when a listener's queue of messages is full, because
+ * the listener can't keep up with the messages received.
+ * <p>
+ * The receiving thread never waits for listeners, so
+ * pings are answered however busy the listeners are.
+ */
+public enum RejectionPolicy {
+
+    /**
+     * The received message is dropped for the listener.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The oldest message waiting in the listener's queue
+     * is dropped to make room for the received message.
+     */
+    DROP_OLDEST
+}
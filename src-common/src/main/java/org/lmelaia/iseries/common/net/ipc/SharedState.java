@@ -0,0 +1,491 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.system.AppLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * A small memory-mapped file through which the running
+ * I-Series instance publishes how to reach it, so new
+ * launchers can find it without any messaging.
+ * <p>
+ * The file holds the process id and start time of the owning
+ * process, the transport and address of its messenger, its
+ * {@link InstanceState} and a heartbeat counter bumped as it
+ * receives messages. The owner writes the fields under a
+ * sequence lock: the sequence is odd while a write is in
+ * progress, so readers retry until they read the same even
+ * sequence before and after the fields.
+ * <p>
+ * The owner holds an exclusive {@link FileLock} on a byte past
+ * the fields for as long as it owns the file. The operating
+ * system releases the lock when the owner exits, however it
+ * exits, so a reader that can take the lock knows the state is
+ * stale. Ownership is handed over explicitly: the launcher
+ * {@link #release() releases} the file when leaving Tray Mode
+ * so the main application can {@link #publish publish} to it.
+ */
+public final class SharedState {
+
+    /**
+     * Logging instance.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * The file the state is mapped from.
+     */
+    private static final File STATE_FILE = new File("../savedata/instance.state");
+
+    /**
+     * Identifies the file format ("ISST").
+     */
+    private static final int MAGIC = 0x49535354;
+
+    /**
+     * Version of the file layout.
+     */
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int PID_OFFSET = 16;
+    private static final int START_TIME_OFFSET = 24;
+    private static final int TRANSPORT_OFFSET = 32;
+    private static final int ADDRESS_OFFSET = 36;
+    private static final int STATE_OFFSET = 40;
+    private static final int HEARTBEAT_OFFSET = 48;
+    private static final int HEARTBEAT_TIME_OFFSET = 56;
+
+    /**
+     * Size of the mapped fields.
+     */
+    private static final int SIZE = 64;
+
+    /**
+     * Position of the byte locked by the owner. It's past
+     * the fields, as some systems stop other processes from
+     * reading locked regions.
+     */
+    private static final long LOCK_POSITION = SIZE;
+
+    /**
+     * Time, in milliseconds, to wait for the previous
+     * owner to release the file.
+     */
+    private static final long OWNERSHIP_TIMEOUT = 5000;
+
+    /**
+     * Number of times a read is retried while
+     * a write is in progress.
+     */
+    private static final int READ_ATTEMPTS = 1000;
+
+    /**
+     * Atomic access to the long fields of the mapped buffer.
+     */
+    private static final VarHandle LONGS
+            = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * The singleton instance, or {@code null}
+     * before it's first requested.
+     */
+    private static SharedState INSTANCE;
+
+    /**
+     * The channel of the state file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapped fields.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The lock held while this process owns
+     * the file, or {@code null}.
+     */
+    private FileLock ownership;
+
+    /**
+     * Maps the state file, creating it if needed.
+     *
+     * @throws IOException if the file cannot be mapped.
+     */
+    private SharedState() throws IOException {
+        if (!STATE_FILE.getParentFile().exists() && !STATE_FILE.getParentFile().mkdirs())
+            LOG.warn("Failed to create state file directory: " + STATE_FILE.getParentFile());
+
+        channel = FileChannel.open(STATE_FILE.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+    }
+
+    /**
+     * @return the shared state instance.
+     * @throws IOException if the state file cannot be mapped.
+     */
+    public static synchronized SharedState getSharedState() throws IOException {
+        if (INSTANCE == null)
+            INSTANCE = new SharedState();
+
+        return INSTANCE;
+    }
+
+    /**
+     * Takes ownership of the file, if not already owned,
+     * and publishes how to reach this process.
+     *
+     * @param transport the transport of the messenger.
+     * @param address   the address of the messenger.
+     * @param state     the state of this process.
+     * @throws IOException if the file cannot be written to.
+     */
+    public synchronized void publish(Transport transport, int address, InstanceState state) throws IOException {
+        acquire();
+
+        ProcessHandle current = ProcessHandle.current();
+        long sequence = beginWrite();
+
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putLong(PID_OFFSET, current.pid());
+        buffer.putLong(START_TIME_OFFSET, getStartTime(current));
+        buffer.putInt(TRANSPORT_OFFSET, transport.ordinal());
+        buffer.putInt(ADDRESS_OFFSET, address);
+        buffer.putInt(STATE_OFFSET, state.ordinal());
+        buffer.putLong(HEARTBEAT_OFFSET, buffer.getLong(HEARTBEAT_OFFSET) + 1);
+        buffer.putLong(HEARTBEAT_TIME_OFFSET, System.currentTimeMillis());
+
+        endWrite(sequence);
+        LOG.info("Published state: " + state + " on address: " + address);
+    }
+
+    /**
+     * Bumps the heartbeat counter, if this process
+     * owns the file.
+     */
+    public synchronized void beat() {
+        if (ownership == null)
+            return;
+
+        long sequence = beginWrite();
+        buffer.putLong(HEARTBEAT_OFFSET, buffer.getLong(HEARTBEAT_OFFSET) + 1);
+        buffer.putLong(HEARTBEAT_TIME_OFFSET, System.currentTimeMillis());
+        endWrite(sequence);
+    }
+
+    /**
+     * Gives up ownership of the file, so another process
+     * can publish to it. The published state is left as
+     * is, and considered stale until then.
+     */
+    public synchronized void release() {
+        if (ownership == null)
+            return;
+
+        try {
+            ownership.release();
+        } catch (IOException e) {
+            LOG.warn("Failed to release state file", e);
+        }
+
+        ownership = null;
+    }
+
+    /**
+     * @return {@code true} if this process
+     * owns the file.
+     */
+    public synchronized boolean isOwner() {
+        return ownership != null;
+    }
+
+    /**
+     * Reads the published state, checking the process
+     * that published it is still alive and the owner.
+     *
+     * @return the state of the running instance, with a state
+     * of {@link InstanceState#NONE} if there is none.
+     */
+    public Snapshot read() {
+        for (int attempt = 0; attempt < READ_ATTEMPTS; attempt++) {
+            long sequence = (long) LONGS.getAcquire(buffer, SEQUENCE_OFFSET);
+
+            if ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            Snapshot snapshot = new Snapshot(
+                    buffer.getInt(MAGIC_OFFSET) == MAGIC && buffer.getInt(VERSION_OFFSET) == VERSION,
+                    buffer.getLong(PID_OFFSET),
+                    buffer.getLong(START_TIME_OFFSET),
+                    Transport.values()[Math.floorMod(buffer.getInt(TRANSPORT_OFFSET), Transport.values().length)],
+                    buffer.getInt(ADDRESS_OFFSET),
+                    InstanceState.fromOrdinal(buffer.getInt(STATE_OFFSET)),
+                    buffer.getLong(HEARTBEAT_OFFSET),
+                    buffer.getLong(HEARTBEAT_TIME_OFFSET)
+            );
+
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getAcquire(buffer, SEQUENCE_OFFSET) != sequence)
+                continue;
+
+            if (!snapshot.valid || snapshot.state == InstanceState.NONE)
+                return Snapshot.none();
+
+            if (!isOwned() || !isAlive(snapshot.pid, snapshot.startTime)) {
+                LOG.info("Stale state left by process: " + snapshot.pid);
+                return Snapshot.none();
+            }
+
+            return snapshot;
+        }
+
+        LOG.warn("Gave up reading state file while it was being written");
+        return Snapshot.none();
+    }
+
+    /**
+     * Takes ownership of the file, waiting for the
+     * previous owner to release it if necessary.
+     *
+     * @throws IOException if the file can't be locked.
+     */
+    private void acquire() throws IOException {
+        if (ownership != null)
+            return;
+
+        long deadline = System.currentTimeMillis() + OWNERSHIP_TIMEOUT;
+
+        while ((ownership = channel.tryLock(LOCK_POSITION, 1, false)) == null) {
+            if (System.currentTimeMillis() > deadline)
+                throw new IOException("State file still owned by another process");
+
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for state file");
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if a process, this one
+     * included, owns the file.
+     */
+    private synchronized boolean isOwned() {
+        if (ownership != null)
+            return true;
+
+        try {
+            FileLock lock = channel.tryLock(LOCK_POSITION, 1, false);
+
+            if (lock == null)
+                return true;
+
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Failed to check state file ownership", e);
+            return true;
+        }
+    }
+
+    /**
+     * Marks the start of a write by making the sequence odd.
+     *
+     * @return the sequence before the write.
+     */
+    private long beginWrite() {
+        long sequence = buffer.getLong(SEQUENCE_OFFSET);
+
+        if ((sequence & 1) != 0)
+            sequence++;
+
+        LONGS.setOpaque(buffer, SEQUENCE_OFFSET, sequence + 1);
+        VarHandle.storeStoreFence();
+        return sequence;
+    }
+
+    /**
+     * Marks the end of a write by making the sequence even.
+     *
+     * @param sequence the sequence before the write.
+     */
+    private void endWrite(long sequence) {
+        LONGS.setRelease(buffer, SEQUENCE_OFFSET, sequence + 2);
+    }
+
+    /**
+     * @param pid       a process id.
+     * @param startTime the start time the process should have.
+     * @return {@code true} if the process is alive and isn't
+     * a newer process that was given the same id.
+     */
+    private static boolean isAlive(long pid, long startTime) {
+        return ProcessHandle.of(pid)
+                .filter(ProcessHandle::isAlive)
+                .map(process -> startTime == 0 || getStartTime(process) == 0
+                        || getStartTime(process) == startTime)
+                .orElse(false);
+    }
+
+    /**
+     * @param process a process.
+     * @return its start time in milliseconds since the
+     * epoch, or {@code 0} if it isn't known.
+     */
+    private static long getStartTime(ProcessHandle process) {
+        return process.info().startInstant().map(Instant::toEpochMilli).orElse(0L);
+    }
+
+    /**
+     * The state published by the running instance.
+     */
+    public static final class Snapshot {
+
+        /**
+         * {@code true} if read from a valid file.
+         */
+        private final boolean valid;
+
+        /**
+         * The process id of the owner.
+         */
+        private final long pid;
+
+        /**
+         * The start time of the owner.
+         */
+        private final long startTime;
+
+        /**
+         * The transport of the owner's messenger.
+         */
+        private final Transport transport;
+
+        /**
+         * The address of the owner's messenger.
+         */
+        private final int address;
+
+        /**
+         * The state of the owner.
+         */
+        private final InstanceState state;
+
+        /**
+         * The heartbeat counter.
+         */
+        private final long heartbeat;
+
+        /**
+         * The time the heartbeat counter was last bumped.
+         */
+        private final long heartbeatTime;
+
+        /**
+         * @param valid         {@code true} if read from a valid file.
+         * @param pid           the process id of the owner.
+         * @param startTime     the start time of the owner.
+         * @param transport     the transport of the owner's messenger.
+         * @param address       the address of the owner's messenger.
+         * @param state         the state of the owner.
+         * @param heartbeat     the heartbeat counter.
+         * @param heartbeatTime the time the counter was last bumped.
+         */
+        private Snapshot(boolean valid, long pid, long startTime, Transport transport,
+                         int address, InstanceState state, long heartbeat, long heartbeatTime) {
+            this.valid = valid;
+            this.pid = pid;
+            this.startTime = startTime;
+            this.transport = transport;
+            this.address = address;
+            this.state = state;
+            this.heartbeat = heartbeat;
+            this.heartbeatTime = heartbeatTime;
+        }
+
+        /**
+         * @return a snapshot of no running instance.
+         */
+        static Snapshot none() {
+            return new Snapshot(true, -1, 0, null, -1, InstanceState.NONE, 0, 0);
+        }
+
+        /**
+         * @return the process id of the running instance,
+         * or {@code -1} if there is none.
+         */
+        public long getPid() {
+            return pid;
+        }
+
+        /**
+         * @return the transport of the running instance's
+         * messenger, or {@code null} if there is none.
+         */
+        public Transport getTransport() {
+            return transport;
+        }
+
+        /**
+         * @return the address of the running instance's
+         * messenger, or {@code -1} if there is none.
+         */
+        public int getAddress() {
+            return address;
+        }
+
+        /**
+         * @return the state of the running instance.
+         */
+        public InstanceState getState() {
+            return state;
+        }
+
+        /**
+         * @return the heartbeat counter, bumped as the
+         * running instance receives messages.
+         */
+        public long getHeartbeat() {
+            return heartbeat;
+        }
+
+        /**
+         * @return the time, in milliseconds since the epoch,
+         * the heartbeat counter was last bumped.
+         */
+        public long getHeartbeatTime() {
+            return heartbeatTime;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "SharedState[pid=" + pid + ", transport=" + transport + ", address="
+                    + address + ", state=" + state + ", heartbeat=" + heartbeat + "]";
+        }
+    }
+}
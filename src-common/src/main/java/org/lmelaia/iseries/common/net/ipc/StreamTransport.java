@@ -0,0 +1,435 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.system.AppLogger;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Base class for the stream oriented transports, which
+ * send messages over {@link SocketChannel} connections.
+ * <p>
+ * Each message is sent as a frame: a 4 byte big-endian
+ * length followed by that many bytes of UTF-8 text. A
+ * request is answered by a reply frame on the same
+ * connection.
+ * <p>
+ * Connections to other messengers are opened on the first
+ * request and kept open for later requests, with a thread
+ * reading the replies of each. Each connection reads and
+ * writes through its own direct buffers, which are reused
+ * for every message and only grown when a larger message
+ * is sent or received.
+ */
+abstract class StreamTransport implements MessengerTransport {
+
+    /**
+     * Logging instance.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * Size of the frame header holding the message length.
+     */
+    static final int HEADER_SIZE = Integer.BYTES;
+
+    /**
+     * Largest message accepted, guarding against
+     * allocating buffers for corrupt lengths.
+     */
+    static final int MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Initial size of the connection buffers.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 2048;
+
+    /**
+     * The channel accepting connections from other messengers.
+     */
+    private final ServerSocketChannel server;
+
+    /**
+     * Handler receiving replies to sent requests.
+     */
+    private final Consumer<String> replies;
+
+    /**
+     * Requests received on any accepted connection,
+     * waiting to be taken by {@link #receive()}.
+     */
+    private final BlockingQueue<Exchange> requests = new LinkedBlockingQueue<>();
+
+    /**
+     * Open connections to other messengers, keyed by address.
+     */
+    private final Map<Integer, Connection> connections = new ConcurrentHashMap<>();
+
+    /**
+     * {@code false} once closed.
+     */
+    private volatile boolean open = true;
+
+    /**
+     * Starts accepting connections on the given channel.
+     *
+     * @param replies the handler receiving replies to sent requests.
+     * @param server  the bound channel to accept connections on.
+     */
+    StreamTransport(Consumer<String> replies, ServerSocketChannel server) {
+        this.replies = replies;
+        this.server = server;
+
+        Thread acceptor = new Thread(this::acceptConnections, "Message connection acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Opens a connection to the receiving end
+     * of the transport with the given address.
+     *
+     * @param address the address.
+     * @return the connected channel.
+     * @throws IOException if no connection can be made.
+     */
+    protected abstract SocketChannel connect(int address) throws IOException;
+
+    /**
+     * @return the channel accepting connections.
+     */
+    protected ServerSocketChannel getServer() {
+        return server;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSenderAddress() {
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Exchange receive() throws IOException {
+        try {
+            return requests.take();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while receiving");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If a kept connection turns out to be broken (e.g.
+     * the other messenger was restarted), a new connection
+     * is made and the request is sent once more.
+     */
+    @Override
+    public void send(String message, int address) throws IOException {
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+
+        if (data.length > MAX_MESSAGE_SIZE)
+            throw new IOException("Message too large: " + data.length + " bytes");
+
+        for (int attempt = 0; ; attempt++) {
+            Connection connection = connections.get(address);
+            boolean kept = connection != null;
+
+            if (!kept)
+                connection = open(address);
+
+            try {
+                connection.write(data);
+                return;
+            } catch (IOException e) {
+                discard(address, connection);
+
+                if (!kept || attempt > 0)
+                    throw e;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOpen() {
+        return open && server.isOpen();
+    }
+
+    /**
+     * Stops accepting connections and closes
+     * all open connections.
+     *
+     * @throws IOException if the channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        open = false;
+        server.close();
+
+        for (Connection connection : connections.values())
+            connection.close();
+
+        connections.clear();
+    }
+
+    /**
+     * Opens a connection to an address, and starts
+     * reading the replies received on it.
+     *
+     * @param address the address.
+     * @return the open connection to the address, which may
+     * have been opened by another thread in the meantime.
+     * @throws ConnectException if the address can't be reached.
+     */
+    private Connection open(int address) throws ConnectException {
+        Connection connection;
+        try {
+            connection = new Connection(connect(address));
+        } catch (IOException e) {
+            ConnectException exception = new ConnectException("Failed to connect to address: " + address);
+            exception.initCause(e);
+            throw exception;
+        }
+
+        Connection existing = connections.putIfAbsent(address, connection);
+        if (existing != null) {
+            connection.close();
+            return existing;
+        }
+
+        Thread reader = new Thread(() -> readReplies(address, connection), "Message reply reader");
+        reader.setDaemon(true);
+        reader.start();
+        return connection;
+    }
+
+    /**
+     * Closes a connection and removes it from the
+     * open connections.
+     *
+     * @param address    the address of the connection.
+     * @param connection the connection.
+     */
+    private void discard(int address, Connection connection) {
+        connections.remove(address, connection);
+        connection.close();
+    }
+
+    /**
+     * Reads replies from an opened connection on loop,
+     * until the connection is closed.
+     *
+     * @param address    the address of the connection.
+     * @param connection the opened connection.
+     */
+    private void readReplies(int address, Connection connection) {
+        try {
+            while (open)
+                replies.accept(connection.read());
+        } catch (EOFException | ClosedChannelException e) {
+            //Closed by either end.
+        } catch (IOException e) {
+            LOG.warn("Failed to read reply from address: " + address, e);
+        } finally {
+            discard(address, connection);
+        }
+    }
+
+    /**
+     * Accepts connections on loop, starting a
+     * thread reading the requests on each.
+     */
+    private void acceptConnections() {
+        while (open) {
+            try {
+                Connection connection = new Connection(server.accept());
+
+                Thread reader = new Thread(() -> readRequests(connection), "Message connection reader");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                if (open)
+                    LOG.error("Failed to accept connection", e);
+            }
+        }
+    }
+
+    /**
+     * Reads requests from an accepted connection on loop,
+     * until the connection is closed by the other end.
+     *
+     * @param connection the accepted connection.
+     */
+    private void readRequests(Connection connection) {
+        try {
+            while (open) {
+                String message = connection.read();
+
+                requests.add(new Exchange() {
+                    @Override
+                    public String getMessage() {
+                        return message;
+                    }
+
+                    @Override
+                    public void reply(String reply) throws IOException {
+                        connection.write(reply.getBytes(StandardCharsets.UTF_8));
+                    }
+                });
+            }
+        } catch (EOFException | ClosedChannelException e) {
+            //Closed by the other end.
+        } catch (IOException e) {
+            LOG.warn("Failed to read from connection", e);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * A blocking connection to another messenger, reading
+     * and writing frames through reused direct buffers.
+     * <p>
+     * A single thread reads from the connection, while any
+     * number of threads may write to it. Writes are
+     * serialized so frames aren't interleaved, in the order
+     * they're made so a thread writing the many chunks of a
+     * large message can't starve the others.
+     */
+    private static final class Connection implements Closeable {
+
+        /**
+         * The connected channel.
+         */
+        private final SocketChannel channel;
+
+        /**
+         * Buffer frames are read into.
+         */
+        private ByteBuffer readBuffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+        /**
+         * Buffer frames are written from. Guarded by {@link #writeLock}.
+         */
+        private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+        /**
+         * Fair lock serializing writes.
+         */
+        private final ReentrantLock writeLock = new ReentrantLock(true);
+
+        /**
+         * @param channel the connected channel.
+         * @throws IOException if the channel cannot be configured.
+         */
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            channel.configureBlocking(true);
+        }
+
+        /**
+         * Writes a message as a single frame.
+         *
+         * @param data the message, encoded as UTF-8.
+         * @throws IOException if the frame cannot be written.
+         */
+        void write(byte[] data) throws IOException {
+            writeLock.lock();
+            try {
+                writeBuffer = ensureCapacity(writeBuffer, HEADER_SIZE + data.length);
+                writeBuffer.clear();
+                writeBuffer.putInt(data.length).put(data).flip();
+
+                while (writeBuffer.hasRemaining())
+                    channel.write(writeBuffer);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        /**
+         * Blocks until a frame is read.
+         *
+         * @return the message.
+         * @throws IOException if the connection is closed
+         *                     or the frame is invalid.
+         */
+        String read() throws IOException {
+            readBuffer.clear().limit(HEADER_SIZE);
+            fill();
+
+            int length = readBuffer.getInt(0);
+            if (length < 0 || length > MAX_MESSAGE_SIZE)
+                throw new IOException("Invalid message length: " + length);
+
+            readBuffer = ensureCapacity(readBuffer, length);
+            readBuffer.clear().limit(length);
+            fill();
+
+            readBuffer.flip();
+            return StandardCharsets.UTF_8.decode(readBuffer).toString();
+        }
+
+        /**
+         * Closes the channel.
+         */
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.debug("Failed to close connection", e);
+            }
+        }
+
+        /**
+         * Reads into the read buffer until it's full.
+         *
+         * @throws IOException if the connection is closed.
+         */
+        private void fill() throws IOException {
+            while (readBuffer.hasRemaining()) {
+                if (channel.read(readBuffer) < 0)
+                    throw new EOFException("Connection closed");
+            }
+        }
+
+        /**
+         * @param buffer   a buffer.
+         * @param capacity the required capacity.
+         * @return the buffer, or a larger direct buffer if
+         * it doesn't have the required capacity.
+         */
+        private static ByteBuffer ensureCapacity(ByteBuffer buffer, int capacity) {
+            if (buffer.capacity() >= capacity)
+                return buffer;
+
+            return ByteBuffer.allocateDirect(Integer.highestOneBit(capacity - 1) << 1);
+        }
+    }
+}
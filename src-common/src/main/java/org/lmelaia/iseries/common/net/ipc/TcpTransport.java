@@ -0,0 +1,51 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+
+/**
+ * {@link Transport#TCP} transport, connecting over TCP
+ * on the loopback interface. The address is the port
+ * the receiving end is bound to.
+ */
+class TcpTransport extends StreamTransport {
+
+    /**
+     * Host machines address.
+     */
+    private static final InetAddress HOST = InetAddress.getLoopbackAddress();
+
+    /**
+     * Binds the receiving end to any available
+     * port on the loopback interface.
+     *
+     * @param replies the handler receiving replies to sent requests.
+     * @throws IOException if the channel cannot be bound.
+     */
+    TcpTransport(Consumer<String> replies) throws IOException {
+        super(replies, ServerSocketChannel.open().bind(new InetSocketAddress(HOST, 0)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAddress() {
+        return getServer().socket().getLocalPort();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected SocketChannel connect(int address) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, address));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return channel;
+    }
+}
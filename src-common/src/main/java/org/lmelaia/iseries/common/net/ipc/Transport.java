@@ -0,0 +1,112 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * The transports a {@link Messenger} can communicate over.
+ * <p>
+ * Messengers can only communicate with messengers using
+ * the same transport. The launcher picks the transport and
+ * passes it to the main application through the
+ * {@link #ARGUMENT} command line argument.
+ */
+public enum Transport {
+
+    /**
+     * UDP datagrams on the loopback interface, one
+     * datagram per message or chunk of a large message.
+     * Datagrams may be lost, more so in bursts of chunks.
+     */
+    DATAGRAM {
+        @Override
+        MessengerTransport create(Consumer<String> replies) throws IOException {
+            return new DatagramTransport(replies);
+        }
+    },
+
+    /**
+     * A TCP connection on the loopback interface,
+     * with length prefixed messages.
+     */
+    TCP {
+        @Override
+        MessengerTransport create(Consumer<String> replies) throws IOException {
+            return new TcpTransport(replies);
+        }
+    },
+
+    /**
+     * A Unix domain socket connection, with length prefixed
+     * messages. Only supported on runtimes with Unix domain
+     * socket channels (Java 16 or later).
+     */
+    UNIX {
+        @Override
+        MessengerTransport create(Consumer<String> replies) throws IOException {
+            return new UnixTransport(replies);
+        }
+
+        @Override
+        public boolean isSupported() {
+            return UnixTransport.isAvailable();
+        }
+    };
+
+    /**
+     * Name of the command line argument holding the
+     * name of the transport to use.
+     */
+    public static final String ARGUMENT = "ipc_transport";
+
+    /**
+     * Creates the transport.
+     *
+     * @param replies the handler receiving the replies to sent requests.
+     * @return the created transport.
+     * @throws IOException if the transport cannot be created.
+     */
+    abstract MessengerTransport create(Consumer<String> replies) throws IOException;
+
+    /**
+     * @return {@code true} if the transport is supported
+     * by this runtime.
+     */
+    public boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * @return the name of the transport, as used
+     * on the command line.
+     */
+    public String getName() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * @return the preferred supported transport: Unix
+     * domain sockets, falling back to TCP.
+     */
+    public static Transport getPreferred() {
+        return UNIX.isSupported() ? UNIX : TCP;
+    }
+
+    /**
+     * @param name the name of a transport, as
+     *             given by {@link #getName()}.
+     * @return the transport with the given name, or
+     * {@code null} if there is no such transport.
+     */
+    public static Transport fromName(String name) {
+        if (name == null)
+            return null;
+
+        for (Transport transport : values()) {
+            if (transport.getName().equalsIgnoreCase(name.trim()))
+                return transport;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,251 @@
+package org.lmelaia.iseries.common.net.ipc;
+
+import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.system.AppLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * {@link Transport#UNIX} transport, connecting over
+ * Unix domain sockets.
+ * <p>
+ * The address is a random number identifying the socket
+ * file ({@code iseries-<address>.sock}) in the temporary
+ * directory, so addresses stay integers like the ports
+ * of the other transports.
+ * <p>
+ * Unix domain socket channels were added in Java 16, after
+ * the runtime the application is built against, so they're
+ * accessed reflectively. {@link #isAvailable()} returns
+ * {@code false} on older runtimes.
+ */
+class UnixTransport extends StreamTransport {
+
+    /**
+     * Logging instance.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * Number of addresses tried before giving up
+     * binding the receiving end.
+     */
+    private static final int BIND_ATTEMPTS = 10;
+
+    /**
+     * The {@code UNIX} protocol family, or {@code null}
+     * if not supported.
+     */
+    private static final ProtocolFamily UNIX;
+
+    /**
+     * {@code UnixDomainSocketAddress.of(String)}.
+     */
+    private static final Method ADDRESS_OF;
+
+    /**
+     * {@code ServerSocketChannel.open(ProtocolFamily)}.
+     */
+    private static final Method OPEN_SERVER;
+
+    /**
+     * {@code SocketChannel.open(ProtocolFamily)}.
+     */
+    private static final Method OPEN_CHANNEL;
+
+    static {
+        ProtocolFamily family = null;
+        Method addressOf = null, openServer = null, openChannel = null;
+
+        try {
+            family = StandardProtocolFamily.valueOf("UNIX");
+            addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+            openServer = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+            openChannel = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+        } catch (IllegalArgumentException | ReflectiveOperationException e) {
+            family = null;
+        }
+
+        UNIX = family;
+        ADDRESS_OF = addressOf;
+        OPEN_SERVER = openServer;
+        OPEN_CHANNEL = openChannel;
+    }
+
+    /**
+     * The address the receiving end is bound to.
+     */
+    private final int address;
+
+    /**
+     * Binds the receiving end to a new socket file.
+     *
+     * @param replies the handler receiving replies to sent requests.
+     * @throws IOException if Unix domain sockets aren't supported
+     *                     or the channel cannot be bound.
+     */
+    UnixTransport(Consumer<String> replies) throws IOException {
+        this(replies, bind());
+    }
+
+    /**
+     * @param replies the handler receiving replies to sent requests.
+     * @param bound   the bound channel and its address.
+     */
+    private UnixTransport(Consumer<String> replies, Bound bound) {
+        super(replies, bound.channel);
+        this.address = bound.address;
+    }
+
+    /**
+     * @return {@code true} if this runtime
+     * supports Unix domain socket channels.
+     */
+    static boolean isAvailable() {
+        return UNIX != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected SocketChannel connect(int address) throws IOException {
+        SocketChannel channel = (SocketChannel) invoke(OPEN_CHANNEL, UNIX);
+
+        try {
+            channel.connect(toSocketAddress(address));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        return channel;
+    }
+
+    /**
+     * Closes the receiving end and deletes its socket file.
+     *
+     * @throws IOException if the channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        super.close();
+
+        if (!getSocketFile(address).delete())
+            LOG.debug("Failed to delete socket file: " + getSocketFile(address));
+    }
+
+    /**
+     * Binds a new channel to an unused socket file.
+     *
+     * @return the bound channel and its address.
+     * @throws IOException if the channel cannot be bound.
+     */
+    private static Bound bind() throws IOException {
+        if (!isAvailable())
+            throw new IOException("Unix domain sockets are not supported by this runtime");
+
+        for (int attempt = 0; attempt < BIND_ATTEMPTS; attempt++) {
+            int address = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+            File file = getSocketFile(address);
+
+            if (file.exists())
+                continue;
+
+            ServerSocketChannel channel = (ServerSocketChannel) invoke(OPEN_SERVER, UNIX);
+            try {
+                channel.bind(toSocketAddress(address));
+            } catch (IOException e) {
+                channel.close();
+                LOG.debug("Failed to bind socket file: " + file, e);
+                continue;
+            }
+
+            file.deleteOnExit();
+            return new Bound(channel, address);
+        }
+
+        throw new IOException("Failed to bind a Unix domain socket");
+    }
+
+    /**
+     * @param address an address.
+     * @return the socket file of the address.
+     */
+    private static File getSocketFile(int address) {
+        return new File(System.getProperty("java.io.tmpdir"), "iseries-" + address + ".sock");
+    }
+
+    /**
+     * @param address an address.
+     * @return the socket address of the address's socket file.
+     * @throws IOException if the socket address cannot be created.
+     */
+    private static SocketAddress toSocketAddress(int address) throws IOException {
+        return (SocketAddress) invoke(ADDRESS_OF, getSocketFile(address).getAbsolutePath());
+    }
+
+    /**
+     * Invokes a static method, unwrapping any thrown exception.
+     *
+     * @param method   the method.
+     * @param argument the single argument.
+     * @return the result.
+     * @throws IOException if the method throws it or can't be invoked.
+     */
+    private static Object invoke(Method method, Object argument) throws IOException {
+        try {
+            return method.invoke(null, argument);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+
+            throw new IOException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * A bound channel and its address.
+     */
+    private static final class Bound {
+
+        /**
+         * The bound channel.
+         */
+        private final ServerSocketChannel channel;
+
+        /**
+         * Its address.
+         */
+        private final int address;
+
+        /**
+         * @param channel the bound channel.
+         * @param address its address.
+         */
+        private Bound(ServerSocketChannel channel, int address) {
+            this.channel = channel;
+            this.address = address;
+        }
+    }
+}
@@ -19,7 +19,9 @@ package org.lmelaia.iseries.common.system;
 
 import org.apache.logging.log4j.Logger;
 import org.lmelaia.iseries.common.fx.FXWindowsManager;
+import org.lmelaia.iseries.common.metrics.MetricsRegistry;
 import org.lmelaia.iseries.common.net.ipc.Messenger;
+import org.lmelaia.iseries.common.net.ipc.Transport;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -40,12 +42,28 @@ public abstract class AppBase {
      */
     public static final String VERSION = "0.0.1-Alpha";
 
+    /**
+     * Name of the command line argument that starts the
+     * application as a training run. A training run goes
+     * through the normal start procedure without interacting
+     * with other processes and exits once started. The build
+     * uses it to record the classes loaded on startup.
+     */
+    public static final String TRAINING_RUN_ARGUMENT = "training_run";
+
+    /**
+     * The default time, in milliseconds, between
+     * logs of the {@link MetricsRegistry}.
+     */
+    private static final long DEFAULT_METRICS_LOG_INTERVAL = 5 * 60 * 1000;
+
     /*
      * Configures the logger before it's initialized
      * by a constructor call.
      */
     static {
         AppLogger.silentConfigure("/configuration/log4j2_configuration.xml");
+        StartupTimeline.getTimeline().mark("Logger configured");
     }
 
     /**
@@ -162,16 +180,47 @@ public abstract class AppBase {
         return this.argumentHandler;
     }
 
+    /**
+     * @return {@code true} if this application was started
+     * as a training run.
+     * @see #TRAINING_RUN_ARGUMENT
+     */
+    public boolean isTrainingRun() {
+        return argumentHandler.getNamedArgument(TRAINING_RUN_ARGUMENT) != null;
+    }
+
     /**
      * @return the {@link Messenger} object for this application instance.
      */
     public Messenger getMessenger() {
-        if (messenger == null)
-            messenger = new Messenger(getMessengerTimeout());
+        if (messenger == null) {
+            messenger = new Messenger(getMessengerTimeout(), getMessengerTransport(), getMaxMessageSize());
+            messenger.setMessageResponder(StartupTimeline.MESSAGE_NAME,
+                    message -> StartupTimeline.getTimeline().toJson());
+            messenger.setMessageResponder(MetricsRegistry.MESSAGE_NAME,
+                    message -> MetricsRegistry.getRegistry().toJson());
+            registerMessengerGauges(messenger);
+        }
 
         return messenger;
     }
 
+    /**
+     * Registers gauges reading the dispatching
+     * statistics of the messenger.
+     *
+     * @param messenger the messenger.
+     */
+    private static void registerMessengerGauges(Messenger messenger) {
+        MetricsRegistry registry = MetricsRegistry.getRegistry();
+        registry.gauge("ipc.dispatch.queued", () -> messenger.getDispatchStatistics().getQueuedMessages());
+        registry.gauge("ipc.dispatch.max_queued", () -> messenger.getDispatchStatistics().getMaxQueuedMessages());
+        registry.gauge("ipc.dispatch.dispatched", () -> messenger.getDispatchStatistics().getDispatchedMessages());
+        registry.gauge("ipc.dispatch.rejected", () -> messenger.getDispatchStatistics().getRejectedMessages());
+        registry.gauge("ipc.dispatch.max_latency_us",
+                () -> (long) (messenger.getDispatchStatistics().getMaxLatency() * 1000));
+    }
+
     /**
      * @param args command line arguments.
      * @see ArgumentHandler#update(String[]).
@@ -187,6 +236,9 @@ public abstract class AppBase {
      */
     private void internalStart(String[] args) {
         argumentHandler.update(args);
+        applyLoggingProfile();
+        StartupTimeline.getTimeline().markLauncherPhases(argumentHandler);
+        StartupTimeline.getTimeline().mark("Arguments parsed");
         attemptFXInitialization();
 
         try {
@@ -197,7 +249,11 @@ public abstract class AppBase {
                             + "\t\tVersion: " + VERSION + "\n"
                             + "\t-------------------------------------------------"
             );
+            StartupTimeline.getTimeline().mark("Application start procedure called");
             start();
+
+            if (getMetricsLogInterval() > 0 && !isTrainingRun())
+                MetricsRegistry.getRegistry().startLogging(getMetricsLogInterval());
         } catch (Exception e) {
             LOG.fatal("Start method of app class["
                     + this.getClass().getCanonicalName() + "] threw an error.", e);
@@ -205,6 +261,29 @@ public abstract class AppBase {
         }
     }
 
+    /**
+     * Reconfigures the logger with the profile given by
+     * {@link #getLoggingProfile()}, if any.
+     */
+    protected void applyLoggingProfile() {
+        LoggingProfile profile = getLoggingProfile();
+
+        if (profile != null)
+            AppLogger.setProfile(profile);
+    }
+
+    /**
+     * Gets the logging profile to use. This is the profile named
+     * by the {@link LoggingProfile#ARGUMENT} argument, if given,
+     * otherwise the logger keeps its default configuration.
+     *
+     * @return the profile, or {@code null} to keep the
+     * current configuration.
+     */
+    protected LoggingProfile getLoggingProfile() {
+        return LoggingProfile.fromName(argumentHandler.getNamedArgument(LoggingProfile.ARGUMENT));
+    }
+
     /**
      * Starts the fx thread if {@link #initializeFX()}
      * returns true.
@@ -217,6 +296,7 @@ public abstract class AppBase {
         FXWindowsManager.startFX(
                 getFXThreadName(), getArgumentHandler().reconstruct(),
                 getFXWindowsClassPath(), this, true);
+        StartupTimeline.getTimeline().mark("FX initialized");
     }
 
     /**
@@ -249,6 +329,43 @@ public abstract class AppBase {
      */
     protected abstract int getMessengerTimeout();
 
+    /**
+     * Gets the transport the messenger communicates over.
+     * This is the transport named by the {@link Transport#ARGUMENT}
+     * argument, passed by the launcher so both use the same
+     * transport, or the preferred transport otherwise.
+     *
+     * @return the transport.
+     */
+    protected Transport getMessengerTransport() {
+        Transport transport = Transport.fromName(argumentHandler.getNamedArgument(Transport.ARGUMENT));
+
+        if (transport == null || !transport.isSupported())
+            return Transport.getPreferred();
+
+        return transport;
+    }
+
+    /**
+     * Gets the limit on the size of messages the
+     * messenger sends and receives.
+     *
+     * @return the limit in bytes.
+     */
+    protected int getMaxMessageSize() {
+        return Messenger.DEFAULT_MAX_MESSAGE_SIZE;
+    }
+
+    /**
+     * Gets the time between logs of the {@link MetricsRegistry}.
+     *
+     * @return the time in milliseconds, or {@code 0}
+     * to not log the metrics.
+     */
+    protected long getMetricsLogInterval() {
+        return DEFAULT_METRICS_LOG_INTERVAL;
+    }
+
     /**
      * @return the name of the fx thread.
      */
@@ -23,6 +23,7 @@ import org.apache.logging.log4j.util.ReflectionUtil;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
 
 /**
  * Utilities for use with the apache logger.
@@ -39,6 +40,12 @@ public final class AppLogger {
      */
     private static boolean initialized = false;
 
+    /**
+     * The profile the logger was last configured with through
+     * {@link #setProfile(LoggingProfile)}, or {@code null}.
+     */
+    private static LoggingProfile profile;
+
     /**
      * Works like {@link #configure(URI)} only the path to a resource file
      * is passed in.
@@ -106,10 +113,76 @@ public final class AppLogger {
                 + config.toString());
     }
 
+    /**
+     * Configures the logger with the configuration file of a
+     * profile, replacing the current configuration if the logger
+     * is already configured. Loggers already given out keep
+     * working, with the new configuration.
+     * <p>
+     * Messages still queued by asynchronous loggers of the
+     * current configuration are logged before it's replaced.
+     * <p>
+     * If the libraries the profile needs are missing, the
+     * {@link LoggingProfile#DEVELOPMENT development} profile,
+     * which logs synchronously, is used instead.
+     *
+     * @param newProfile the profile.
+     */
+    public static synchronized void setProfile(LoggingProfile newProfile) {
+        LoggingProfile unavailable = null;
+
+        if (!newProfile.isAvailable()) {
+            unavailable = newProfile;
+            newProfile = LoggingProfile.DEVELOPMENT;
+        }
+
+        if (newProfile == profile)
+            return;
+
+        URL resource = AppLogger.class.getResource(newProfile.getResource());
+
+        if (resource == null) {
+            if (LOG != null)
+                LOG.warn("No configuration file for logging profile: " + newProfile.getName());
+            return;
+        }
+
+        try {
+            if (!initialized)
+                configure(resource.toURI());
+            else
+                ((LoggerContext) LogManager.getContext(false)).setConfigLocation(resource.toURI());
+        } catch (URISyntaxException e) {
+            LOG.error("Invalid configuration file for logging profile: " + newProfile.getName(), e);
+            return;
+        }
+
+        profile = newProfile;
+
+        if (unavailable != null)
+            LOG.warn("Missing libraries for logging profile: " + unavailable.getName());
+
+        LOG.info("Logging with profile: " + newProfile.getName());
+    }
+
+    /**
+     * @return the profile the logger was configured with through
+     * {@link #setProfile(LoggingProfile)}, or {@code null} if it
+     * was configured with a configuration file directly.
+     */
+    public static synchronized LoggingProfile getProfile() {
+        return profile;
+    }
+
     /**
      * Returns a logger provided by the apache log manager.
      * <p>
      * Calling this method will start the app logger.
+     * <p>
+     * The logger is named after the calling class, which is
+     * found by walking the stack, so this is meant to be called
+     * once per class (i.e. to initialize a static field). Use
+     * {@link #getLogger(Class)} anywhere else.
      */
     public static Logger getLogger() {
         if (!initialized) {
@@ -118,4 +191,19 @@ public final class AppLogger {
 
         return LogManager.getLogger(ReflectionUtil.getCallerClass(2));
     }
+
+    /**
+     * Returns a logger provided by the apache log manager,
+     * named after the given class.
+     *
+     * @param owner the class the logger is for.
+     * @return the logger.
+     */
+    public static Logger getLogger(Class<?> owner) {
+        if (!initialized) {
+            throw new IllegalStateException("Logger not yet configured.");
+        }
+
+        return LogManager.getLogger(owner);
+    }
 }
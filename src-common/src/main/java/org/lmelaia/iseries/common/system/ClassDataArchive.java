@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.common.system;
+
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * An application class-data sharing (AppCDS) archive
+ * created by the build for one of the application jars.
+ * <p>
+ * The archive ({@code cds/<jar name>.jsa}) is stored next to the
+ * jar, along with a properties file ({@code cds/<jar name>.properties})
+ * describing the runtime and jar the archive was created with.
+ * The archive should only be passed to a JVM
+ * (through {@code -XX:SharedArchiveFile}) if
+ * {@link #matchesRuntime(String)} returns {@code true}, as the JVM
+ * rejects archives created by a different runtime, from
+ * a modified jar or with the jar on a different class path.
+ * <p>
+ * Archives should be created with the jar on a class path
+ * relative to the working directory (e.g. {@code I-Series-App.jar}
+ * from the {@code bin} folder), as the JVM records the class
+ * path as given. An archive created from an absolute path is
+ * rejected as soon as the application is installed elsewhere.
+ */
+public final class ClassDataArchive {
+
+    /**
+     * The name of the folder, within the folder holding
+     * the jars, the archives are stored in.
+     */
+    public static final String FOLDER = "cds";
+
+    /**
+     * Property holding the {@code java.runtime.version} of the
+     * runtime the archive was created with.
+     */
+    public static final String RUNTIME_VERSION = "java.runtime.version";
+
+    /**
+     * Property holding the {@code java.vendor} of the
+     * runtime the archive was created with.
+     */
+    public static final String RUNTIME_VENDOR = "java.vendor";
+
+    /**
+     * Property holding the {@code os.arch} of the
+     * runtime the archive was created with.
+     */
+    public static final String RUNTIME_ARCH = "os.arch";
+
+    /**
+     * Property holding the size of the jar the
+     * archive was created from.
+     */
+    private static final String JAR_SIZE = "jar.size";
+
+    /**
+     * Property holding the last modified time, in seconds, of
+     * the jar the archive was created from. Seconds are used as
+     * that is the precision the JVM checks and the best
+     * precision a zip file keeps.
+     */
+    private static final String JAR_MODIFIED = "jar.modified";
+
+    /**
+     * Property holding the class path, as given to the
+     * JVM, the jar was on when the archive was created.
+     */
+    private static final String JAR_CLASS_PATH = "jar.class_path";
+
+    /**
+     * Logging framework instance.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * The jar the archive is for.
+     */
+    private final File jar;
+
+    /**
+     * The archive file.
+     */
+    private final File archive;
+
+    /**
+     * The file describing the archive.
+     */
+    private final File description;
+
+    /**
+     * @param jar the jar the archive is for.
+     */
+    public ClassDataArchive(File jar) {
+        this.jar = Objects.requireNonNull(jar);
+
+        String name = jar.getName().replaceFirst("\\.jar$", "");
+        File folder = new File(jar.getAbsoluteFile().getParentFile(), FOLDER);
+        this.archive = new File(folder, name + ".jsa");
+        this.description = new File(folder, name + ".properties");
+    }
+
+    /**
+     * @return the jar the archive is for.
+     */
+    public File getJar() {
+        return jar;
+    }
+
+    /**
+     * @return the archive file, which may not exist.
+     */
+    public File getArchiveFile() {
+        return archive;
+    }
+
+    /**
+     * @return the file describing the archive, which may not exist.
+     */
+    public File getDescriptionFile() {
+        return description;
+    }
+
+    /**
+     * @return the class list file recorded during the training
+     * run and used to create the archive.
+     */
+    public File getClassListFile() {
+        return new File(archive.getParentFile(),
+                archive.getName().replaceFirst("\\.jsa$", ".classlist"));
+    }
+
+    /**
+     * @param classPath the class path the jar will be given
+     *                  to the JVM on.
+     * @return {@code true} if the archive exists and was created
+     * by the runtime running this process from the jar as
+     * it currently is on disk, on the same class path.
+     */
+    public boolean matchesRuntime(String classPath) {
+        if (!archive.isFile() || !description.isFile())
+            return false;
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(description)) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOG.warn("Failed to read class data archive description: " + description, e);
+            return false;
+        }
+
+        return matches(properties, RUNTIME_VERSION, System.getProperty(RUNTIME_VERSION))
+                && matches(properties, RUNTIME_VENDOR, System.getProperty(RUNTIME_VENDOR))
+                && matches(properties, RUNTIME_ARCH, System.getProperty(RUNTIME_ARCH))
+                && matches(properties, JAR_SIZE, String.valueOf(jar.length()))
+                && matches(properties, JAR_MODIFIED, String.valueOf(jar.lastModified() / 1000))
+                && matches(properties, JAR_CLASS_PATH, classPath);
+    }
+
+    /**
+     * Writes the file describing the archive, which should be
+     * done once the archive has been created.
+     *
+     * @param runtime   the system properties of the runtime that
+     *                  created the archive, which must hold
+     *                  {@link #RUNTIME_VERSION}, {@link #RUNTIME_VENDOR}
+     *                  and {@link #RUNTIME_ARCH}.
+     * @param classPath the class path the jar was given to
+     *                  the JVM on when creating the archive.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeDescription(Properties runtime, String classPath) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(RUNTIME_VERSION, runtime.getProperty(RUNTIME_VERSION, ""));
+        properties.setProperty(RUNTIME_VENDOR, runtime.getProperty(RUNTIME_VENDOR, ""));
+        properties.setProperty(RUNTIME_ARCH, runtime.getProperty(RUNTIME_ARCH, ""));
+        properties.setProperty(JAR_SIZE, String.valueOf(jar.length()));
+        properties.setProperty(JAR_MODIFIED, String.valueOf(jar.lastModified() / 1000));
+        properties.setProperty(JAR_CLASS_PATH, classPath);
+
+        try (OutputStream out = new FileOutputStream(description)) {
+            properties.store(out, "Describes the class data archive " + archive.getName());
+        }
+    }
+
+    /**
+     * @param properties the archive description.
+     * @param key        the property to check.
+     * @param expected   the expected value.
+     * @return {@code true} if the property has the expected value.
+     */
+    private boolean matches(Properties properties, String key, String expected) {
+        if (expected.equals(properties.getProperty(key)))
+            return true;
+
+        LOG.info("Class data archive " + archive.getName() + " does not match: "
+                + key + " is " + properties.getProperty(key) + ", expected " + expected);
+        return false;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lmelaia.iseries.common.system;
+
+/**
+ * The logging configurations an application can run with.
+ * <p>
+ * Each application has its own configuration file for each
+ * profile, under the same resource path.
+ *
+ * @see AppLogger#setProfile(LoggingProfile)
+ */
+public enum LoggingProfile {
+
+    /**
+     * Logs everything, synchronously, to the console and
+     * a file flushed after every message. Slow, but nothing
+     * is lost if the process is killed.
+     */
+    DEVELOPMENT("development", "/configuration/log4j2_configuration.xml", false),
+
+    /**
+     * Logs information and above through asynchronous loggers
+     * to a buffered file, and only warnings to the console.
+     * Logging threads only hand messages over to a background
+     * thread, without allocating for parameterized messages.
+     */
+    PRODUCTION("production", "/configuration/log4j2_production_configuration.xml", true);
+
+    /**
+     * Name of the command line argument selecting the profile.
+     * The launcher passes it on to the main application.
+     */
+    public static final String ARGUMENT = "logging_profile";
+
+    /**
+     * A class of the LMAX disruptor library, which
+     * asynchronous loggers need on the class path.
+     */
+    private static final String DISRUPTOR_CLASS = "com.lmax.disruptor.RingBuffer";
+
+    /**
+     * The name of the profile.
+     */
+    private final String name;
+
+    /**
+     * The path of the configuration file resource.
+     */
+    private final String resource;
+
+    /**
+     * Does the profile use asynchronous loggers.
+     */
+    private final boolean asynchronous;
+
+    /**
+     * @param name         the name of the profile.
+     * @param resource     the path of the configuration file resource.
+     * @param asynchronous does the profile use asynchronous loggers.
+     */
+    LoggingProfile(String name, String resource, boolean asynchronous) {
+        this.name = name;
+        this.resource = resource;
+        this.asynchronous = asynchronous;
+    }
+
+    /**
+     * @return the name of the profile.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the path of the configuration file resource.
+     */
+    public String getResource() {
+        return resource;
+    }
+
+    /**
+     * @return {@code true} if the libraries the profile needs
+     * are on the class path, which for asynchronous loggers
+     * is the disruptor library.
+     */
+    public boolean isAvailable() {
+        if (!asynchronous)
+            return true;
+
+        try {
+            Class.forName(DISRUPTOR_CLASS, false, LoggingProfile.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param name the name of a profile, ignoring case.
+     * @return the profile with the given name, or
+     * {@code null} if there's no such profile.
+     */
+    public static LoggingProfile fromName(String name) {
+        for (LoggingProfile profile : values()) {
+            if (profile.name.equalsIgnoreCase(name))
+                return profile;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.common.system;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Records the time at which each phase of the application
+ * start procedure was reached.
+ * <p>
+ * Phases are marked by name as the start procedure
+ * reaches them (e.g. the fx thread starting or the library
+ * being loaded) and can be marked with a timestamp taken
+ * in another process, which allows the launcher to pass
+ * its own timestamps to the main application through
+ * the command line. Once the start procedure is done,
+ * {@link #complete()} logs the breakdown.
+ * <p>
+ * All timestamps are wall clock time in milliseconds,
+ * as given by {@link System#currentTimeMillis()}, so
+ * they can be compared across processes.
+ */
+public final class StartupTimeline {
+
+    /**
+     * Name of the message used to query the timeline
+     * over the {@link org.lmelaia.iseries.common.net.ipc.Messenger}.
+     */
+    public static final String MESSAGE_NAME = "startup_timeline";
+
+    /**
+     * Name of the command line argument holding the time
+     * the launcher process was started.
+     */
+    public static final String LAUNCHER_START_ARGUMENT = "launcher_start";
+
+    /**
+     * Name of the command line argument holding the time
+     * the launcher requested the application process.
+     */
+    public static final String LAUNCHER_SPAWN_ARGUMENT = "launcher_spawn";
+
+    /**
+     * Logging framework instance.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * Singleton instance.
+     */
+    private static final StartupTimeline TIMELINE = new StartupTimeline();
+
+    /**
+     * List of marked phases in the order
+     * they were marked.
+     */
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * Becomes true once {@link #complete()}
+     * has been called.
+     */
+    private boolean complete = false;
+
+    /**
+     * Private singleton constructor.
+     * Marks the start of this process.
+     */
+    private StartupTimeline() {
+        mark("Process started", getProcessStartTime());
+    }
+
+    /**
+     * @return the startup timeline of this process.
+     */
+    public static StartupTimeline getTimeline() {
+        return TIMELINE;
+    }
+
+    /**
+     * Marks the given phase as reached now.
+     *
+     * @param phase the name of the phase.
+     */
+    public void mark(String phase) {
+        mark(phase, System.currentTimeMillis());
+    }
+
+    /**
+     * Marks the given phase as reached at the
+     * given time.
+     *
+     * @param phase     the name of the phase.
+     * @param timestamp the time, in milliseconds since
+     *                  the epoch, the phase was reached.
+     */
+    public synchronized void mark(String phase, long timestamp) {
+        if (complete) {
+            LOG.debug("Ignoring startup phase marked after completion: " + phase);
+            return;
+        }
+
+        phases.add(new Phase(phase, timestamp));
+    }
+
+    /**
+     * Marks the phases timed by the launcher and passed
+     * to this process through the command line arguments
+     * {@link #LAUNCHER_START_ARGUMENT} and
+     * {@link #LAUNCHER_SPAWN_ARGUMENT}, if present.
+     *
+     * @param arguments the argument handler holding the
+     *                  command line arguments.
+     */
+    public void markLauncherPhases(ArgumentHandler arguments) {
+        markFromArgument(arguments, LAUNCHER_START_ARGUMENT, "Launcher process started");
+        markFromArgument(arguments, LAUNCHER_SPAWN_ARGUMENT, "Launcher requested application process");
+    }
+
+    /**
+     * Marks the end of the start procedure and logs
+     * the timeline. Further calls to this method and
+     * {@link #mark(String)} are ignored.
+     */
+    public void complete() {
+        synchronized (this) {
+            if (complete)
+                return;
+
+            mark("Startup complete");
+            complete = true;
+        }
+
+        LOG.info("Startup timeline:\n" + format());
+    }
+
+    /**
+     * @return {@code true} if the start procedure
+     * has been marked as complete.
+     */
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the time in milliseconds between the
+     * earliest and latest marked phase.
+     */
+    public synchronized long getTotalTime() {
+        List<Phase> sorted = getSortedPhases();
+        return sorted.get(sorted.size() - 1).timestamp - sorted.get(0).timestamp;
+    }
+
+    /**
+     * @return the timeline as a human readable table,
+     * one phase per line, giving the offset from the
+     * earliest phase and the time spent since the
+     * previous phase.
+     */
+    public synchronized String format() {
+        List<Phase> sorted = getSortedPhases();
+        long origin = sorted.get(0).timestamp;
+        long previous = origin;
+
+        StringBuilder builder = new StringBuilder();
+        for (Phase phase : sorted) {
+            builder.append(String.format("\t%7dms %+7dms  %s%n",
+                    phase.timestamp - origin, phase.timestamp - previous, phase.name));
+            previous = phase.timestamp;
+        }
+
+        builder.append(String.format("\tTotal: %dms", getTotalTime()));
+        return builder.toString();
+    }
+
+    /**
+     * @return the timeline as a json message with the name
+     * {@link #MESSAGE_NAME}, suitable as a reply to an
+     * ipc query.
+     */
+    public synchronized JsonObject toJson() {
+        List<Phase> sorted = getSortedPhases();
+        long origin = sorted.get(0).timestamp;
+
+        JsonArray array = new JsonArray();
+        for (Phase phase : sorted) {
+            JsonObject object = new JsonObject();
+            object.addProperty("phase", phase.name);
+            object.addProperty("offset", phase.timestamp - origin);
+            array.add(object);
+        }
+
+        JsonObject message = new JsonObject();
+        message.addProperty("name", MESSAGE_NAME);
+        message.addProperty("complete", complete);
+        message.addProperty("origin", origin);
+        message.addProperty("total", getTotalTime());
+        message.add("phases", array);
+        return message;
+    }
+
+    /**
+     * Marks the given phase with the timestamp held
+     * in the named argument, if present.
+     *
+     * @param arguments the argument handler.
+     * @param argument  the name of the argument.
+     * @param phase     the name of the phase.
+     */
+    private void markFromArgument(ArgumentHandler arguments, String argument, String phase) {
+        String value = arguments.getNamedArgument(argument);
+
+        if (value == null)
+            return;
+
+        try {
+            mark(phase, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid timestamp given for argument: " + argument + "=" + value);
+        }
+    }
+
+    /**
+     * @return a copy of the marked phases sorted by
+     * timestamp. Phases marked with the same timestamp
+     * keep the order they were marked in.
+     */
+    private List<Phase> getSortedPhases() {
+        List<Phase> sorted = new ArrayList<>(phases);
+        sorted.sort(Comparator.comparingLong(phase -> phase.timestamp));
+        return sorted;
+    }
+
+    /**
+     * @return the time the operating system started this
+     * process, or the current time if it cannot be determined.
+     */
+    public static long getProcessStartTime() {
+        return ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli)
+                .orElse(System.currentTimeMillis());
+    }
+
+    /**
+     * A named point in the start procedure.
+     */
+    private static final class Phase {
+
+        /**
+         * The name of the phase.
+         */
+        private final String name;
+
+        /**
+         * The time the phase was reached.
+         */
+        private final long timestamp;
+
+        /**
+         * @param name      the name of the phase.
+         * @param timestamp the time the phase was reached.
+         */
+        private Phase(String name, long timestamp) {
+            this.name = name;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.common.system;
+
+/**
+ * Arguments and message names shared by the launcher and
+ * main application for the warm standby mode.
+ * <p>
+ * In warm standby mode the launcher keeps a main application
+ * process started in the background while in Tray Mode. The
+ * standby process initializes the fx toolkit, windows and library
+ * as usual, but doesn't show any window. Once ready, it notifies
+ * the launcher with a {@link #READY_MESSAGE}. Opening I-Series then
+ * sends the standby process a {@link #SHOW_MESSAGE}, which shows the
+ * main window, rather than starting a new process.
+ */
+public final class WarmStandby {
+
+    /**
+     * Name of the launcher command line argument
+     * enabling warm standby mode ({@code --warm_standby=true}).
+     */
+    public static final String LAUNCHER_ARGUMENT = "warm_standby";
+
+    /**
+     * Name of the main application command line argument
+     * starting the application as a standby process.
+     */
+    public static final String ARGUMENT = "standby";
+
+    /**
+     * Name of the message a standby process sends the launcher
+     * once it's ready to be shown. The message holds the
+     * receiver port of the standby process as {@code "port"}.
+     */
+    public static final String READY_MESSAGE = "standby_ready";
+
+    /**
+     * Name of the message the launcher sends a standby
+     * process to show it. The message holds the arguments
+     * to update the standby process with as {@code "arguments"}.
+     */
+    public static final String SHOW_MESSAGE = "standby_show";
+
+    /**
+     * Private constructor.
+     */
+    private WarmStandby() {
+    }
+}
@@ -0,0 +1,98 @@
+/*   Copyright (C) 2016  Luke Melaia
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lmelaia.iseries.common.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the bucketing and percentiles of the
+ * {@link LatencyHistogram}.
+ *
+ * @author Luke Melaia
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Tests that every latency falls in a bucket
+     * whose upper bound is within an eighth of it.
+     */
+    @Test
+    public void testBucketBounds() {
+        for (long nanos : new long[]{0, 1, 7, 8, 15, 16, 17, 100, 1023, 1024,
+                123_456_789, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.getBucket(nanos);
+            long upper = LatencyHistogram.getUpperBound(bucket);
+
+            assertTrue(nanos + " above bucket bound " + upper, nanos <= upper);
+            assertTrue(nanos + " far below bucket bound " + upper, upper - nanos <= nanos / 8);
+
+            if (bucket > 0)
+                assertTrue(nanos + " in bucket below", nanos > LatencyHistogram.getUpperBound(bucket - 1));
+        }
+    }
+
+    /**
+     * Tests that percentiles of a uniform distribution
+     * are read to within the bucket accuracy.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (long millis = 1; millis <= 1000; millis++)
+            histogram.record(millis * 1_000_000);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMean(), 0.001);
+        assertEquals(1000, histogram.getMax(), 0.001);
+        assertEquals(500, histogram.getPercentile(50), 500 / 8.0);
+        assertEquals(990, histogram.getPercentile(99), 990 / 8.0);
+        assertEquals(1000, histogram.getPercentile(100), 0.001);
+        assertEquals(0, new LatencyHistogram().getPercentile(50), 0);
+    }
+
+    /**
+     * Tests that nothing is lost when many
+     * threads record at once.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 100_000; j++)
+                    histogram.record(j);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(800_000, histogram.getCount());
+        assertEquals(99_999 / 1_000_000.0, histogram.getMax(), 0);
+    }
+}
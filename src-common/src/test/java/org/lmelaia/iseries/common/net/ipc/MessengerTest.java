@@ -0,0 +1,292 @@
+/*   Copyright (C) 2016  Luke Melaia
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.lmelaia.iseries.common.net.ipc;
+
+import com.google.gson.JsonObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.lmelaia.iseries.common.system.AppLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that requests sent concurrently by a messenger
+ * are each answered with their own reply, on every
+ * supported transport.
+ *
+ * @author Luke Melaia
+ */
+public class MessengerTest {
+
+    /**
+     * Number of requests in flight at once.
+     */
+    private static final int REQUESTS = 500;
+
+    /**
+     * Number of threads sending requests.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Timeout for replies, long enough for
+     * every request to be answered.
+     */
+    private static final int TIMEOUT = 10000;
+
+    @BeforeClass
+    public static void initialize() {
+        AppLogger.silentConfigure("/configuration/log4j2_test_configuration.xml");
+    }
+
+    @Test
+    public void testConcurrentAsyncRequests() throws Exception {
+        for (Transport transport : getSupportedTransports()) {
+            Messenger receiver = createEchoMessenger(transport);
+            Messenger sender = new Messenger(TIMEOUT, transport);
+            ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+
+            List<Future<CompletableFuture<JsonObject>>> sent = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                int value = i;
+                sent.add(threads.submit(() -> sender.sendAsync(createEchoRequest(value), receiver.getReceiverPort())));
+            }
+
+            for (int i = 0; i < REQUESTS; i++) {
+                JsonObject reply = getReply(transport, sent.get(i).get());
+
+                if (reply != null) {
+                    assertEquals(transport + " reply doesn't match request", i, reply.get("value").getAsInt());
+                    assertNull(transport + " reply carries the request id", reply.get("message_id"));
+                }
+            }
+
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentBlockingRequests() throws Exception {
+        for (Transport transport : getSupportedTransports()) {
+            Messenger receiver = createEchoMessenger(transport);
+            Messenger sender = new Messenger(TIMEOUT, transport);
+            ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+
+            List<Future<JsonObject>> sent = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                int value = i;
+                sent.add(threads.submit(() -> sender.send(createEchoRequest(value), receiver.getReceiverPort())));
+            }
+
+            for (int i = 0; i < REQUESTS; i++)
+                assertEquals(transport + " reply doesn't match request", i, sent.get(i).get().get("value").getAsInt());
+
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnansweredRequestTimesOut() throws Exception {
+        for (Transport transport : getSupportedTransports()) {
+            Messenger receiver = new Messenger(TIMEOUT, transport);
+            receiver.setMessageResponder("echo", message -> {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return message;
+            });
+
+            Messenger sender = new Messenger(TIMEOUT, transport);
+            CompletableFuture<JsonObject> reply = sender.sendAsync(
+                    createEchoRequest(0), receiver.getReceiverPort(), 100);
+
+            try {
+                reply.get();
+                fail(transport + " request didn't time out");
+            } catch (ExecutionException e) {
+                assertTrue(transport + " request failed with: " + e.getCause(),
+                        e.getCause() instanceof TimeoutException);
+            }
+
+            assertTrue(transport + " ping after time out failed",
+                    sender.ping(receiver.getReceiverPort()));
+        }
+    }
+
+    @Test
+    public void testLargeMessages() throws Exception {
+        String text = createText(3 * 1024 * 1024);
+
+        for (Transport transport : getSupportedTransports()) {
+            Messenger receiver = createEchoMessenger(transport);
+            Messenger sender = new Messenger(TIMEOUT, transport);
+
+            JsonObject message = createEchoRequest(0);
+            message.addProperty("text", text);
+
+            CompletableFuture<JsonObject> reply = sender.sendAsync(message, receiver.getReceiverPort());
+            assertTrue(transport + " ping during large message failed",
+                    sender.ping(receiver.getReceiverPort()));
+
+            JsonObject received = getReply(transport, reply);
+            if (received != null)
+                assertEquals(transport + " large reply doesn't match request", text, received.get("text").getAsString());
+        }
+    }
+
+    @Test
+    public void testMessageSizeLimit() {
+        for (Transport transport : getSupportedTransports()) {
+            Messenger receiver = createEchoMessenger(transport);
+            Messenger sender = new Messenger(TIMEOUT, transport, 64 * 1024);
+
+            JsonObject message = createEchoRequest(0);
+            message.addProperty("text", createText(128 * 1024));
+
+            try {
+                sender.send(message, receiver.getReceiverPort());
+                fail(transport + " message over the limit was sent");
+            } catch (MessengerException e) {
+                //Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testSlowListenerDoesNotStallPings() throws Exception {
+        for (Transport transport : getSupportedTransports()) {
+            Messenger receiver = new Messenger(TIMEOUT, transport);
+            CountDownLatch release = new CountDownLatch(1);
+            receiver.addMessageListener(message -> await(release));
+
+            Messenger sender = new Messenger(TIMEOUT, transport);
+            JsonObject reply = sender.send(createEchoRequest(0), receiver.getReceiverPort());
+            assertEquals(transport + " message wasn't acknowledged", "received", reply.get("name").getAsString());
+
+            long start = System.nanoTime();
+            assertTrue(transport + " ping failed", sender.ping(receiver.getReceiverPort()));
+            assertTrue(transport + " ping stalled by listener",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testListenerOverloadIsRejected() throws Exception {
+        for (Transport transport : getSupportedTransports()) {
+            Messenger receiver = new Messenger(TIMEOUT, transport);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch handled = new CountDownLatch(257);
+            receiver.addMessageListener(message -> {
+                await(release);
+                handled.countDown();
+            });
+
+            Messenger sender = new Messenger(TIMEOUT, transport);
+            for (int i = 0; i < 300; i++)
+                assertNotNull(transport + " message wasn't acknowledged",
+                        sender.send(createEchoRequest(i), receiver.getReceiverPort()));
+
+            //Messages are dispatched after they're acknowledged.
+            DispatchStatistics statistics = receiver.getDispatchStatistics();
+            for (int i = 0; i < 100 && statistics.getRejectedMessages() + statistics.getQueuedMessages() < 299; i++) {
+                Thread.sleep(10);
+                statistics = receiver.getDispatchStatistics();
+            }
+
+            //One message is being handled and 256 are queued.
+            assertEquals(transport + " rejected messages", 43, statistics.getRejectedMessages());
+            assertEquals(transport + " queued messages", 256, statistics.getQueuedMessages());
+
+            release.countDown();
+            assertTrue(transport + " queued messages weren't handled", handled.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for a reply. Datagrams may be lost under load, so
+     * requests sent over {@link Transport#DATAGRAM} may time
+     * out, but never be answered with the wrong reply.
+     *
+     * @return the reply, or {@code null} if a datagram was lost.
+     */
+    private static JsonObject getReply(Transport transport, CompletableFuture<JsonObject> reply) throws Exception {
+        try {
+            return reply.get();
+        } catch (ExecutionException e) {
+            if (transport != Transport.DATAGRAM || !(e.getCause() instanceof TimeoutException))
+                throw e;
+
+            return null;
+        }
+    }
+
+    private static List<Transport> getSupportedTransports() {
+        List<Transport> transports = new ArrayList<>();
+
+        for (Transport transport : Transport.values()) {
+            if (transport.isSupported())
+                transports.add(transport);
+        }
+
+        return transports;
+    }
+
+    private static Messenger createEchoMessenger(Transport transport) {
+        Messenger messenger = new Messenger(TIMEOUT, transport);
+        messenger.setMessageResponder("echo", message -> message);
+        return messenger;
+    }
+
+    private static String createText(int length) {
+        StringBuilder text = new StringBuilder(length);
+        String characters = "abc \u00e9\u00fc \u4e16\u754c \ud83d\ude00 \"\\\n";
+
+        while (text.length() < length)
+            text.append(characters);
+
+        return text.toString();
+    }
+
+    private static JsonObject createEchoRequest(int value) {
+        JsonObject message = new JsonObject();
+        message.addProperty("name", "echo");
+        message.addProperty("value", value);
+        return message;
+    }
+}
@@ -43,7 +43,14 @@ namespace I_Series {
                 args = $"{args} \"{arg}\"";
             }
 
-            args = $"{args} -jar {_currentDir}{settings.LauncherJar}";
+            //The JVM validates the archive and ignores it
+            //if it doesn't match the runtime or jar.
+            if (settings.LauncherArchive != null && File.Exists($"{_currentDir}{settings.LauncherArchive}"))
+                args = $"{args} -Xshare:auto \"-XX:SharedArchiveFile={_currentDir}{settings.LauncherArchive}\"";
+
+            //Relative to the working directory (the jar's folder), as the archive
+            //was created with, so the JVM accepts it wherever this is installed.
+            args = $"{args} -jar {Path.GetFileName(settings.LauncherJar)}";
             
             if(arguments.Count != 0)
                 foreach (var arg in arguments) {
@@ -30,21 +30,15 @@ namespace I_Series {
                 .Add("I-Series-Updater.jar")
             ).Add(new VeriStructure("legal")
                 //Legal
+                .Add("Disruptor Licence.txt")
                 .Add("Gson Licence.txt")
-                .Add("Guava Licence.txt")
                 .Add("I-Series-Updater Licence.txt")
                 .Add("Log4j Licence.txt")
                 .Add("src-common Licence.txt")
             ).Add(new VeriStructure("libs")
                 //Libs
-                .Add("checker-qual-2.11.1.jar")
-                .Add("error_prone_annotations-2.3.4.jar")
-                .Add("failureaccess-1.0.1.jar")
+                .Add("disruptor-3.3.6.jar")
                 .Add("gson-2.8.0.jar")
-                .Add("guava-29.0-jre.jar")
-                .Add("j2objc-annotations-1.3.jar")
-                .Add("jsr305-3.0.2.jar")
-                .Add("listenablefuture-9999.0-empty-to-avoid-conflict-with-guava.jar")
                 .Add("log4j-api-2.8.2.jar")
                 .Add("log4j-core-2.8.2.jar")
                 .Add("src-common.jar")
@@ -61,6 +55,7 @@ namespace I_Series {
             .SetWorkingDirectory(@"\bin\")
             .AddAdditionalArgument("-Dprism.vsync=false")
             .SetLauncherJar(@"\bin\I-Series-Launcher.jar")
+            .SetLauncherArchive(@"\bin\cds\I-Series-Launcher.jsa")
             .Build();
         
         /// <summary>
@@ -16,12 +16,14 @@ namespace I_Series {
         /// create a new RuntimeSettings Object.
         /// </summary>
         private RuntimeSettings(ReadOnlyCollection<string> additionalArguments,
-                string jre32Path, string jre64Path, string workingDirectory, string launcherJar) {
+                string jre32Path, string jre64Path, string workingDirectory, string launcherJar,
+                string launcherArchive) {
             AdditionalArguments = additionalArguments;
             Jre32Path = jre32Path;
             Jre64Path = jre64Path;
             WorkingDirectory = workingDirectory;
             LauncherJar = launcherJar;
+            LauncherArchive = launcherArchive;
         }
         
         /// <summary>
@@ -53,5 +55,13 @@ namespace I_Series {
         /// </summary>
         public string LauncherJar { get; }
         
+        /// <summary>
+        /// <returns>
+        /// the relative file path of the class data sharing archive
+        /// created by the build for the I-Series launcher jar.
+        /// </returns>
+        /// </summary>
+        public string LauncherArchive { get; }
+        
     }
 }
\ No newline at end of file
@@ -41,6 +41,12 @@ namespace I_Series {
             /// </summary>
             private string _launcherJar;
 
+            /// <summary>
+            /// The relative path to the class data sharing archive
+            /// of the I-Series launcher java jar application.
+            /// </summary>
+            private string _launcherArchive;
+
             /// <summary>
             /// Adds an argument to the list of additional
             /// arguments used to run the I-Series application.
@@ -97,6 +103,17 @@ namespace I_Series {
                 return this;
             }
 
+            /// <summary>
+            /// Sets the relative file path to the class data sharing archive
+            /// of the I-Series launcher java (jar) application.
+            /// </summary>
+            /// <param name="path">the relative file path of the launcher archive.</param>
+            /// <returns></returns>
+            public RuntimeSettingsBuilder SetLauncherArchive(string path) {
+                _launcherArchive = path;
+                return this;
+            }
+
             /// <summary>
             /// Builds a new RuntimeSettings object instance using the
             /// values specified using the various setter methods.
@@ -105,7 +122,8 @@ namespace I_Series {
             public RuntimeSettings Build() {
                 return new RuntimeSettings(
                     new ReadOnlyCollection<string>(_arguments),
-                    _jre32Path, _jre64Path, _workingDirectory, _launcherJar
+                    _jre32Path, _jre64Path, _workingDirectory, _launcherJar,
+                    _launcherArchive
                 );
             }
         }
@@ -19,9 +19,13 @@ package org.lmelaia.iseries.launcher;
 
 import com.google.gson.JsonObject;
 import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.net.ipc.InstanceState;
+import org.lmelaia.iseries.common.net.ipc.SharedState;
 import org.lmelaia.iseries.common.system.AppBase;
 import org.lmelaia.iseries.common.system.AppLogger;
 import org.lmelaia.iseries.common.system.ExitCode;
+import org.lmelaia.iseries.common.system.StartupTimeline;
+import org.lmelaia.iseries.common.system.WarmStandby;
 import org.lmelaia.iseries.common.util.JsonObjectBuilder;
 
 import java.io.IOException;
@@ -60,26 +64,23 @@ public class App extends AppBase {
     }
 
     /**
-     * @return the last port number written to file
-     *         if an application instance is running
-     *         on it.
+     * Reads the state published by the running instance,
+     * which doesn't require messaging it, so launches without
+     * a running instance don't wait on a ping timeout.
+     *
+     * @return the port of the running application
+     *         instance, or {@code -1} if there is none.
      */
     private int getPortIfRunning() {
-        int givenPort = getMessenger().readFromPortFile();
+        SharedState.Snapshot instance = getMessenger().getRunningInstance();
 
-        if (givenPort == -1) {
-            LOG.info("No last port number could be found");
+        if (instance.getState() == InstanceState.NONE) {
+            LOG.info("No running instance found");
             return -1;
         }
 
-        if (getMessenger().ping(givenPort)) {
-            LOG.info("Found running port: " + givenPort);
-            return givenPort;
-        } else {
-            LOG.info("No instance running on last known port");
-        }
-
-        return -1;
+        LOG.info("Found running instance: " + instance);
+        return instance.getAddress();
     }
 
     /**
@@ -125,6 +126,44 @@ public class App extends AppBase {
         });
     }
 
+    /**
+     * Registers the listeners managing the standby process
+     * if warm standby mode was enabled through the
+     * {@link WarmStandby#LAUNCHER_ARGUMENT} argument.
+     * <p>
+     * A standby process is started when going into Tray Mode,
+     * and terminated on any other exit code. Terminating it on
+     * restart ensures the restarted application picks up any
+     * changed library or settings. This must be registered before
+     * the restart listener, so a restart doesn't show the old
+     * standby process.
+     */
+    private void registerWarmStandby() {
+        if (!Boolean.parseBoolean(getArgumentHandler().getNamedArgument(WarmStandby.LAUNCHER_ARGUMENT)))
+            return;
+
+        LOG.info("Warm standby mode enabled");
+
+        getMessenger().addMessageListener(message -> {
+            if (message.get("name").getAsString().equals(WarmStandby.READY_MESSAGE))
+                ISeriesAppController.onStandbyReady(message.get("port").getAsInt());
+        });
+
+        App.getInstance().addShutdownListener(code -> {
+            if (code == ExitCode.TRAY) {
+                try {
+                    ISeriesAppController.startStandby();
+                } catch (IOException e) {
+                    LOG.error("Failed to start standby process", e);
+                }
+            } else {
+                ISeriesAppController.stopStandby();
+            }
+
+            return true;
+        });
+    }
+
     /**
      * Starts the launcher application process.
      *
@@ -133,6 +172,13 @@ public class App extends AppBase {
      */
     @Override
     protected void start() throws Exception {
+        if (isTrainingRun()) {
+            LOG.info("Training run complete");
+            StartupTimeline.getTimeline().complete();
+            exit(ExitCode.NORMAL);
+            return;
+        }
+
         int port = getPortIfRunning();
 
         if (port == -1)
@@ -156,8 +202,10 @@ public class App extends AppBase {
             }
         }
 
+        registerWarmStandby();
         registerRestartListener();
         registerTrayModeListener();
+        StartupTimeline.getTimeline().complete();
     }
 
     /**
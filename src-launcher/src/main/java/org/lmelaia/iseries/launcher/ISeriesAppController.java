@@ -17,16 +17,21 @@
 
 package org.lmelaia.iseries.launcher;
 
+import com.google.gson.JsonObject;
 import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.net.ipc.Transport;
 import org.lmelaia.iseries.common.system.AppLogger;
+import org.lmelaia.iseries.common.system.ClassDataArchive;
 import org.lmelaia.iseries.common.system.ExitCode;
+import org.lmelaia.iseries.common.system.LoggingProfile;
 import org.lmelaia.iseries.common.system.ShutdownListener;
+import org.lmelaia.iseries.common.system.StartupTimeline;
+import org.lmelaia.iseries.common.system.WarmStandby;
+import org.lmelaia.iseries.common.util.JsonObjectBuilder;
 
 import javax.swing.*;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 
 /**
  * Handles the starting of the main application,
@@ -43,6 +48,11 @@ import java.io.InputStreamReader;
  * to register a listener for the shutdown of the main application as well the launcher.
  * </p>
  * </b></p>
+ * <p>
+ * A standby process, started by {@link #startStandby()}, is
+ * not considered the main application until it's promoted by
+ * {@link #start(String[])}. Its termination before then is
+ * only logged.
  */
 public class ISeriesAppController {
 
@@ -58,24 +68,66 @@ public class ISeriesAppController {
             = "I-Series-App.jar";
 
     /**
-     * Thread responsible for capturing the output
-     * of the main application and printing it
-     * to the console for development
-     * purposes.
+     * Time, in milliseconds, to wait for the last output
+     * of the main application once it has exited.
      */
-    private static ProcessOutputCaptureThread captureThread;
+    private static final long OUTPUT_CAPTURE_TIMEOUT = 1000;
 
     /**
-     * Thread responsible for handling the termination
-     * of the main application.
+     * Captures the output of the main application, forwarding
+     * it to the log and keeping the most recent for crash reports.
      */
-    private static ProcessTerminationHandler waitThread;
+    private static ProcessOutputCapture capture;
 
     /**
      * Process object linked to the main application.
      */
     private static Process applicationProcess;
 
+    /**
+     * Process object linked to the standby main application
+     * process, or {@code null} if there is none.
+     */
+    private static Process standbyProcess;
+
+    /**
+     * Captures the output of the standby process.
+     */
+    private static ProcessOutputCapture standbyCapture;
+
+    /**
+     * The receiver port of the standby process, or
+     * {@code -1} if it isn't ready to be shown yet.
+     */
+    private static int standbyPort = -1;
+
+    /**
+     * Becomes false once the first main application
+     * process has been started.
+     */
+    private static boolean firstStart = true;
+
+    /**
+     * The process recreating the class data archive,
+     * or {@code null} if no process has been asked to.
+     * Only ever one process, and never a standby process,
+     * is asked to recreate the archive, so two processes
+     * never write it at once.
+     */
+    private static Process archiveRecreator;
+
+    /**
+     * The class data archive being recreated by
+     * the {@link #archiveRecreator}.
+     */
+    private static ClassDataArchive recreatedArchive;
+
+    /**
+     * The time the {@link #archiveRecreator}
+     * was started.
+     */
+    private static long archiveRecreationTime;
+
     /**
      * Private constructor.
      */
@@ -84,58 +136,220 @@ public class ISeriesAppController {
 
     /**
      * Starts the main application process and related threads.
+     * <p>
+     * If a standby process is ready, it's shown and becomes
+     * the main application process instead.
      *
      * @param args arguments to pass to the main application
      *             (port is passed automatically).
      * @throws IOException if the application could not
      * be started.
      */
-    public static void start(String[] args) throws IOException {
+    public static synchronized void start(String[] args) throws IOException {
         if (isRunning())
             throw new IllegalStateException("Process is already running");
 
-        String cmd = formatCommandLineArgs(args);
+        StartupTimeline.getTimeline().mark("Application process requested");
+
+        if (promoteStandby(args))
+            return;
+
+        ClassDataArchive archive = new ClassDataArchive(getJar());
+        String options = getClassDataSharingOptions(archive);
+        boolean recreateArchive = options.isEmpty() && canRecreate(archive);
+
+        //The process creates a new archive from the classes it
+        //loaded when it exits, which is used from the next start.
+        if (recreateArchive)
+            options = " \"-XX:ArchiveClassesAtExit=" + archive.getArchiveFile() + "\"";
+
+        long startTime = System.currentTimeMillis();
+        String cmd = formatCommandLineArgs(args, options);
 
         LOG.info("Running new I-Series instance with command: " + cmd);
         applicationProcess = Runtime.getRuntime().exec(cmd);
-        startNewCaptureThread();
+        firstStart = false;
+
+        if (recreateArchive) {
+            LOG.info("Recreating class data archive: " + archive.getArchiveFile());
+            archiveRecreator = applicationProcess;
+            recreatedArchive = archive;
+            archiveRecreationTime = startTime;
+        }
+
+        capture = startCapture(applicationProcess);
         LOG.trace("Process started");
-        startTerminationHandlerThread();
+        watchTermination(applicationProcess);
+    }
+
+    /**
+     * Starts a standby main application process, if one
+     * isn't already running. The process loads the application
+     * without showing it, and can be shown by {@link #start(String[])}
+     * once it has reported as ready through {@link #onStandbyReady(int)}.
+     *
+     * @throws IOException if the process could not be started.
+     */
+    public static synchronized void startStandby() throws IOException {
+        if (standbyProcess != null && standbyProcess.isAlive())
+            return;
+
+        //Never recreates the archive, as it may be running
+        //alongside a main application process recreating it.
+        String cmd = formatCommandLineArgs(new String[]{"--" + WarmStandby.ARGUMENT + "=true"},
+                getClassDataSharingOptions(new ClassDataArchive(getJar())));
+
+        LOG.info("Running new standby I-Series instance with command: " + cmd);
+        standbyPort = -1;
+        standbyProcess = Runtime.getRuntime().exec(cmd);
+        standbyCapture = startCapture(standbyProcess);
+        watchTermination(standbyProcess);
+    }
+
+    /**
+     * Called when the standby process reports it's ready
+     * to be shown.
+     *
+     * @param port the receiver port of the standby process.
+     */
+    public static synchronized void onStandbyReady(int port) {
+        if (standbyProcess == null) {
+            LOG.warn("Ready message received without a standby process");
+            return;
+        }
+
+        LOG.info("Standby process ready on port: " + port);
+        standbyPort = port;
+    }
+
+    /**
+     * Terminates the standby process, if any. Used when the
+     * standby process would be out of date (e.g. on restart,
+     * where the library or settings may have changed) or is
+     * no longer needed.
+     */
+    public static synchronized void stopStandby() {
+        if (standbyProcess == null)
+            return;
+
+        LOG.info("Terminating standby process");
+        standbyProcess.destroy();
+        standbyProcess = null;
+        standbyPort = -1;
     }
 
     /**
      * @return if the main application process is running.
      */
     @SuppressWarnings("WeakerAccess")
-    public static boolean isRunning() {
+    public static synchronized boolean isRunning() {
         return applicationProcess != null && applicationProcess.isAlive();
     }
 
     /**
-     * Stops the related threads and calls for termination.
+     * Shows the standby process and makes it the main
+     * application process. A standby process that isn't
+     * ready or doesn't respond is terminated.
+     *
+     * @param args arguments to update the standby process with.
+     * @return {@code true} if the standby process was promoted.
+     */
+    private static boolean promoteStandby(String[] args) {
+        if (standbyProcess == null)
+            return false;
+
+        if (!standbyProcess.isAlive() || standbyPort == -1) {
+            LOG.info("Standby process not ready, starting a new instance");
+            stopStandby();
+            return false;
+        }
+
+        JsonObject reply = App.getInstance().getMessenger().send(
+                new JsonObjectBuilder()
+                        .addName(WarmStandby.SHOW_MESSAGE)
+                        .add("arguments", args == null ? new String[0] : args)
+                        .get(),
+                standbyPort);
+
+        if (reply == null) {
+            LOG.warn("Standby process not responding, starting a new instance");
+            stopStandby();
+            return false;
+        }
+
+        LOG.info("Promoted standby process to main application process");
+        applicationProcess = standbyProcess;
+        capture = standbyCapture;
+        standbyProcess = null;
+        standbyCapture = null;
+        standbyPort = -1;
+        firstStart = false;
+        return true;
+    }
+
+    /**
+     * @return the most recent output of the main application,
+     * or an empty string if it was never started.
+     */
+    public static synchronized String getRecentOutput() {
+        return capture == null ? "" : capture.getRecentOutput();
+    }
+
+    /**
+     * Waits for the last output of the main application
+     * and calls for termination.
      *
      * @param code the exit code to terminate with.
      */
-    @SuppressWarnings("deprecation")
     private static void stop(int code) {
-        captureThread.stop();
+        capture.awaitCompletion(OUTPUT_CAPTURE_TIMEOUT);
         App.getInstance().exit(ExitCode.getFromCode(code).setRecoverable(true));
     }
 
     /**
      * Produces the command used to start the main
      * application with the given arguments.
+     * <p>
+     * The time the process is requested is passed
+     * along so the startup timeline of the main
+     * application covers the launcher as well. The
+     * start time of the launcher is only passed for
+     * the first process, as later processes (e.g. after
+     * a restart) are not part of the launcher start.
+     * <p>
+     * The transport of the launchers messenger is passed
+     * along so the main application communicates over
+     * the same transport, as is the logging profile the
+     * launcher was given, if any.
+     * <p>
+     * The jar is given relative to the working directory, which
+     * the process shares with the launcher, so class data archives
+     * stay valid if the application is moved.
      *
-     * @param args the given arguments.
+     * @param args    the given arguments.
+     * @param options the class data sharing options, from
+     *                {@link #getClassDataSharingOptions(ClassDataArchive)}.
      * @return the command produced.
      */
-    private static String formatCommandLineArgs(String[] args) {
+    private static String formatCommandLineArgs(String[] args, String options) {
         StringBuilder command = new StringBuilder("\"" + getJavaExecutablePath() + "\""
+                + options
                 + " -jar "
-                + "\"" + System.getProperty("user.dir")
-                + File.separator
-                + JAR_FILENAME + "\" --port=" + App.getInstance().getMessenger().getReceiverPort());
+                + "\"" + JAR_FILENAME + "\" --port=" + App.getInstance().getMessenger().getReceiverPort()
+                + " --" + Transport.ARGUMENT + "=" + App.getInstance().getMessenger().getTransport().getName()
+                + " --launcher_pid=" + ProcessHandle.current().pid());
+
+        if (firstStart) {
+            command.append(" --").append(StartupTimeline.LAUNCHER_START_ARGUMENT)
+                    .append("=").append(StartupTimeline.getProcessStartTime());
+        }
+
+        command.append(" --").append(StartupTimeline.LAUNCHER_SPAWN_ARGUMENT)
+                .append("=").append(System.currentTimeMillis());
 
+        String loggingProfile = App.getInstance().getArgumentHandler().getNamedArgument(LoggingProfile.ARGUMENT);
+        if (loggingProfile != null)
+            command.append(" --").append(LoggingProfile.ARGUMENT).append("=").append(loggingProfile);
 
         if (args != null) {
             for (String arg : args) {
@@ -146,6 +360,77 @@ public class ISeriesAppController {
         return command.toString();
     }
 
+    /**
+     * @return the main application jar.
+     */
+    private static File getJar() {
+        return new File(System.getProperty("user.dir"), JAR_FILENAME);
+    }
+
+    /**
+     * Produces the JVM options which let the main application
+     * load its classes from the class data archive created
+     * by the build, or recreated by an earlier process.
+     *
+     * @param archive the class data archive of the main
+     *                application jar.
+     * @return the options, each preceded by a space, or an
+     * empty string if the archive doesn't match the jar or
+     * runtime (e.g. the jar was modified or the runtime updated).
+     */
+    private static String getClassDataSharingOptions(ClassDataArchive archive) {
+        if (archive.matchesRuntime(JAR_FILENAME))
+            return " -Xshare:auto \"-XX:SharedArchiveFile=" + archive.getArchiveFile() + "\"";
+
+        return "";
+    }
+
+    /**
+     * @param archive the class data archive of the
+     *                main application jar.
+     * @return {@code true} if a new process can be asked to
+     * recreate the archive, which it can't while another
+     * process is still recreating it.
+     */
+    private static boolean canRecreate(ClassDataArchive archive) {
+        if (archiveRecreator != null && archiveRecreator.isAlive())
+            return false;
+
+        //Dynamic archives are layered on top of the runtime's
+        //default archive and can't be created without it.
+        File javaHome = new File(System.getProperty("java.home"));
+        if (!new File(javaHome, "bin/server/classes.jsa").isFile()
+                && !new File(javaHome, "lib/server/classes.jsa").isFile())
+            return false;
+
+        File folder = archive.getArchiveFile().getParentFile();
+        return folder.isDirectory() || folder.mkdirs();
+    }
+
+    /**
+     * Describes the class data archive recreated by a process
+     * once it has exited, so it's used from the next start.
+     *
+     * @param process the process that exited.
+     */
+    private static synchronized void describeRecreatedArchive(Process process) {
+        if (process != archiveRecreator)
+            return;
+
+        archiveRecreator = null;
+
+        if (recreatedArchive.getArchiveFile().lastModified() < archiveRecreationTime) {
+            LOG.warn("Class data archive was not recreated: " + recreatedArchive.getArchiveFile());
+            return;
+        }
+
+        try {
+            recreatedArchive.writeDescription(System.getProperties(), JAR_FILENAME);
+        } catch (IOException e) {
+            LOG.warn("Failed to describe the recreated class data archive", e);
+        }
+    }
+
     /**
      * @return the path to the java executable.
      */
@@ -159,99 +444,57 @@ public class ISeriesAppController {
     }
 
     /**
-     * Creates a new instances of the capture thread
-     * and starts it.
+     * Starts capturing the output of a process.
+     *
+     * @param process the process to capture the output of.
+     * @return the capture.
      */
-    @SuppressWarnings("deprecation")
-    private static void startNewCaptureThread() {
-        if (captureThread != null)
-            if (captureThread.isAlive())
-                captureThread.stop();
-
-        captureThread = new ProcessOutputCaptureThread();
-        captureThread.start();
+    private static ProcessOutputCapture startCapture(Process process) {
+        ProcessOutputCapture capture = new ProcessOutputCapture(process);
+        capture.start();
+        return capture;
     }
 
     /**
-     * Creates a new instances of the termination thread
-     * and starts it.
+     * Calls for termination of the launcher with the same
+     * exit code as a process once it terminates, if it was
+     * the main application process by then.
+     *
+     * @param process the process to watch.
      */
-    @SuppressWarnings("deprecation")
-    private static void startTerminationHandlerThread() {
-        if (waitThread != null)
-            if (waitThread.isAlive())
-                waitThread.stop();
-
-        waitThread = new ProcessTerminationHandler();
-        waitThread.start();
-    }
+    private static void watchTermination(Process process) {
+        process.onExit().thenAccept(exited -> {
+            int code = exited.exitValue();
 
-    /**
-     * Thread responsible for capturing the main application
-     * output and printing it to the console for development
-     * purposes.
-     */
-    private static class ProcessOutputCaptureThread extends Thread {
-
-        /**
-         * Sets the name of the thread and ensures it is a deamon
-         * thread.
-         */
-        @SuppressWarnings("WeakerAccess")
-        public ProcessOutputCaptureThread() {
-            this.setName("Process output capture thread");
-            this.setDaemon(true);
-        }
+            if (!isApplicationProcess(exited, code))
+                return;
 
-        /**
-         * Captures and prints the output.
-         */
-        @Override
-        public void run() {
-            String line;
-            BufferedReader in = new BufferedReader(
-                    new InputStreamReader(applicationProcess.getInputStream()));
-
-            try {
-                while ((line = in.readLine()) != null) {
-                    System.out.println(line);
-                }
-            } catch (IOException e) {
-                LOG.warn("Failed to get output from process", e);
-            }
-        }
+            LOG.info("Process finished with exit code: " + code);
+            describeRecreatedArchive(exited);
+            ISeriesAppController.stop(code);
+        });
     }
 
     /**
-     * Thread responsible for handling the termination
-     * of the main application.
+     * Handles the termination of a process that is
+     * not, or not yet, the main application process.
+     *
+     * @param process the process that terminated.
+     * @param code    its exit code.
+     * @return {@code true} if the process was the main
+     * application process.
      */
-    private static class ProcessTerminationHandler extends Thread {
-
-        /**
-         * Sets the name of the thread and ensures it is a deamon
-         * thread.
-         */
-        @SuppressWarnings("WeakerAccess")
-        public ProcessTerminationHandler() {
-            this.setName("Process wait thread");
-            this.setDaemon(true);
-        }
+    private static synchronized boolean isApplicationProcess(Process process, int code) {
+        if (process == applicationProcess)
+            return true;
 
-        /**
-         * Waits for the application to terminate
-         * and calls for termination of the launcher
-         * with the same exit code.
-         */
-        @Override
-        public void run() {
-            try {
-                int code = applicationProcess.waitFor();
-                LOG.info("Process finished with exit code: " + code);
-                ISeriesAppController.stop(code);
-            } catch (InterruptedException e) {
-                LOG.warn("waitFor() failed", e);
-            }
+        LOG.info("Standby process finished with exit code: " + code);
+
+        if (process == standbyProcess) {
+            standbyProcess = null;
+            standbyPort = -1;
         }
+
+        return false;
     }
 }
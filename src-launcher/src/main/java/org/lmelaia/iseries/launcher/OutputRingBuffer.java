@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.launcher;
+
+/**
+ * Holds the most recent bytes written to it, overwriting the
+ * oldest once full, so writing never waits on the reader.
+ * <p>
+ * Bytes are read once, in order, through {@link #drain()}. Bytes
+ * overwritten before being drained are skipped and counted.
+ * {@link #snapshot()} returns everything still held, drained or not.
+ */
+class OutputRingBuffer {
+
+    /**
+     * The held bytes.
+     */
+    private final byte[] buffer;
+
+    /**
+     * Total number of bytes written.
+     */
+    private long written;
+
+    /**
+     * Total number of bytes drained or skipped.
+     */
+    private long drained;
+
+    /**
+     * Number of bytes overwritten before being drained.
+     */
+    private long skipped;
+
+    /**
+     * @param capacity the number of bytes held.
+     */
+    OutputRingBuffer(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Copies bytes into the buffer, overwriting
+     * the oldest bytes if needed.
+     *
+     * @param bytes  the bytes.
+     * @param offset the offset of the first byte to copy.
+     * @param length the number of bytes to copy.
+     */
+    synchronized void write(byte[] bytes, int offset, int length) {
+        if (length > buffer.length) {
+            offset += length - buffer.length;
+            written += length - buffer.length;
+            length = buffer.length;
+        }
+
+        int start = (int) (written % buffer.length);
+        int first = Math.min(length, buffer.length - start);
+
+        System.arraycopy(bytes, offset, buffer, start, first);
+        System.arraycopy(bytes, offset + first, buffer, 0, length - first);
+        written += length;
+    }
+
+    /**
+     * @return the bytes written since the last drain, or since
+     * the oldest byte held if some were overwritten since.
+     */
+    synchronized byte[] drain() {
+        long oldest = Math.max(0, written - buffer.length);
+
+        if (drained < oldest) {
+            skipped += oldest - drained;
+            drained = oldest;
+        }
+
+        byte[] bytes = copy(drained);
+        drained = written;
+        return bytes;
+    }
+
+    /**
+     * @return every byte held, oldest first.
+     */
+    synchronized byte[] snapshot() {
+        return copy(Math.max(0, written - buffer.length));
+    }
+
+    /**
+     * @return the number of bytes overwritten
+     * before being drained.
+     */
+    synchronized long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @param from the position of the first byte to copy,
+     *             which must still be held.
+     * @return the bytes from the given position on.
+     */
+    private byte[] copy(long from) {
+        byte[] bytes = new byte[(int) (written - from)];
+        int start = (int) (from % buffer.length);
+        int first = Math.min(bytes.length, buffer.length - start);
+
+        System.arraycopy(buffer, start, bytes, 0, first);
+        System.arraycopy(buffer, 0, bytes, first, bytes.length - first);
+        return bytes;
+    }
+}
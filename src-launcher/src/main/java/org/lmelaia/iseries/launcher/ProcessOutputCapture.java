@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2016  Luke Melaia
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.lmelaia.iseries.launcher;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.system.AppLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Captures the standard output and error of a main
+ * application process.
+ * <p>
+ * Each stream is drained by its own thread with bulk reads
+ * into a {@link OutputRingBuffer}, so the process never blocks
+ * on a full pipe, whatever the launcher is doing. A separate
+ * forwarder thread writes the captured lines to the launcher
+ * log, and the most recent output is kept for crash reports.
+ * If the forwarder falls behind, the oldest output is skipped
+ * rather than slowing the process down.
+ */
+class ProcessOutputCapture {
+
+    /**
+     * Logging object.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * Number of bytes of each stream kept.
+     */
+    private static final int BUFFER_CAPACITY = 64 * 1024;
+
+    /**
+     * Number of bytes read from a stream at once.
+     */
+    private static final int READ_SIZE = 8192;
+
+    /**
+     * Longest time, in milliseconds, the forwarder
+     * waits before checking for output.
+     */
+    private static final long FORWARD_INTERVAL = 250;
+
+    /**
+     * The charset the process writes its output in.
+     */
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /**
+     * The process id, used to tell apart
+     * the output of different processes.
+     */
+    private final long pid;
+
+    /**
+     * The standard output of the process.
+     */
+    private final CapturedStream output;
+
+    /**
+     * The standard error of the process.
+     */
+    private final CapturedStream error;
+
+    /**
+     * The thread writing captured lines to the log.
+     */
+    private final Thread forwarder;
+
+    /**
+     * @param process the process to capture the output of.
+     */
+    ProcessOutputCapture(Process process) {
+        this.pid = process.pid();
+        this.output = new CapturedStream(process.getInputStream(), "output", Level.INFO);
+        this.error = new CapturedStream(process.getErrorStream(), "error", Level.WARN);
+        this.forwarder = new Thread(this::forward, "Process output forwarder");
+        this.forwarder.setDaemon(true);
+    }
+
+    /**
+     * Starts capturing the output.
+     */
+    void start() {
+        output.reader.start();
+        error.reader.start();
+        forwarder.start();
+    }
+
+    /**
+     * Waits for the process output to be fully captured,
+     * which happens soon after the process exits.
+     *
+     * @param timeout the longest time to wait, in milliseconds.
+     */
+    void awaitCompletion(long timeout) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        try {
+            for (Thread thread : new Thread[]{output.reader, error.reader, forwarder}) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining > 0)
+                    thread.join(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the most recent standard output of the
+     * process, followed by its most recent standard error.
+     */
+    String getRecentOutput() {
+        String recentOutput = output.getRecent();
+        String recentError = error.getRecent();
+
+        if (recentError.isEmpty())
+            return recentOutput;
+
+        return recentOutput + (recentOutput.isEmpty() ? "" : System.lineSeparator())
+                + "Errors:" + System.lineSeparator() + recentError;
+    }
+
+    /**
+     * Writes captured lines to the log until
+     * both streams have been fully captured.
+     */
+    private void forward() {
+        while (true) {
+            //Checked before draining so the final output is drained.
+            boolean done = !output.reader.isAlive() && !error.reader.isAlive();
+
+            output.forward(done);
+            error.forward(done);
+
+            if (done)
+                return;
+
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FORWARD_INTERVAL));
+        }
+    }
+
+    /**
+     * A captured stream of the process.
+     */
+    private final class CapturedStream {
+
+        /**
+         * The stream.
+         */
+        private final InputStream input;
+
+        /**
+         * The name of the stream.
+         */
+        private final String name;
+
+        /**
+         * The level lines are logged at.
+         */
+        private final Level level;
+
+        /**
+         * The recent output of the stream.
+         */
+        private final OutputRingBuffer buffer = new OutputRingBuffer(BUFFER_CAPACITY);
+
+        /**
+         * The thread reading the stream.
+         */
+        private final Thread reader;
+
+        /**
+         * The start of a line not yet fully forwarded.
+         */
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        /**
+         * Number of skipped bytes already reported.
+         */
+        private long skipped;
+
+        /**
+         * @param input the stream.
+         * @param name  the name of the stream.
+         * @param level the level lines are logged at.
+         */
+        CapturedStream(InputStream input, String name, Level level) {
+            this.input = input;
+            this.name = name;
+            this.level = level;
+            this.reader = new Thread(this::read, "Process " + name + " capture");
+            this.reader.setDaemon(true);
+        }
+
+        /**
+         * Copies the stream into the buffer until it ends,
+         * waking the forwarder after each read.
+         */
+        private void read() {
+            byte[] bytes = new byte[READ_SIZE];
+            int read;
+
+            try (InputStream in = input) {
+                while ((read = in.read(bytes)) != -1) {
+                    buffer.write(bytes, 0, read);
+                    LockSupport.unpark(forwarder);
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to get " + name + " from process: " + pid, e);
+            } finally {
+                LockSupport.unpark(forwarder);
+            }
+        }
+
+        /**
+         * Logs the complete lines captured since the last call.
+         *
+         * @param flush {@code true} to also log an
+         *              incomplete last line.
+         */
+        private void forward(boolean flush) {
+            byte[] bytes = buffer.drain();
+
+            if (buffer.getSkipped() != skipped) {
+                LOG.warn("Skipped " + (buffer.getSkipped() - skipped) + " bytes of "
+                        + name + " from process: " + pid);
+                skipped = buffer.getSkipped();
+                line.reset();
+            }
+
+            int start = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] == '\n') {
+                    line.write(bytes, start, i - start);
+                    log();
+                    start = i + 1;
+                }
+            }
+
+            line.write(bytes, start, bytes.length - start);
+
+            if ((flush && line.size() > 0) || line.size() > BUFFER_CAPACITY)
+                log();
+        }
+
+        /**
+         * Logs the current line.
+         */
+        private void log() {
+            String text = new String(line.toByteArray(), CHARSET);
+            line.reset();
+
+            if (text.endsWith("\r"))
+                text = text.substring(0, text.length() - 1);
+
+            LOG.log(level, "[" + pid + "] " + text);
+        }
+
+        /**
+         * @return the most recent output held, starting
+         * at a line if older output was overwritten.
+         */
+        private String getRecent() {
+            byte[] bytes = buffer.snapshot();
+            int start = 0;
+
+            if (bytes.length == BUFFER_CAPACITY) {
+                while (start < bytes.length && bytes[start++] != '\n')
+                    ;
+            }
+
+            return new String(bytes, start, bytes.length - start, CHARSET);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.lmelaia.iseries.launcher;
 
 import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.net.ipc.InstanceState;
 import org.lmelaia.iseries.common.net.ipc.Messenger;
 import org.lmelaia.iseries.common.system.AppLogger;
 import org.lmelaia.iseries.common.system.ExitCode;
@@ -202,7 +203,7 @@ public class TrayMode {
 
         try {
             tray.add(icon);
-            messenger.writeToPortFile();
+            messenger.publishState(InstanceState.TRAY);
         } catch (AWTException e) {
             LOG.error("Failed to finalize (start) tray mode", e);
             App.getInstance().exit(ExitCode.TRAY_MODE_FAILURE);
@@ -224,6 +225,9 @@ public class TrayMode {
 
         LOG.info("Exiting Tray Mode...");
         tray.remove(icon);
+
+        if (messenger != null)
+            messenger.releaseState();
     }
 
     /**
@@ -31,7 +31,8 @@ import org.lmelaia.iseries.launcher.App;
  */
 @RegisterFXWindow(
         fxmlFileName = "windows/crash_window.fxml",
-        controllerClass = CrashWindowController.class
+        controllerClass = CrashWindowController.class,
+        eager = true
 )
 public class CrashWindow extends FXWindow {
 
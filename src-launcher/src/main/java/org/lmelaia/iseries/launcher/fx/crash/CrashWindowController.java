@@ -21,6 +21,7 @@ import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
 import org.apache.logging.log4j.Logger;
 import org.lmelaia.iseries.common.fx.FXController;
 import org.lmelaia.iseries.common.system.AppLogger;
@@ -55,6 +56,14 @@ public final class CrashWindowController extends FXController {
     @SuppressWarnings({"WeakerAccess", "unused"})
     protected Label labelCode;
 
+    /**
+     * The text area displaying the recent
+     * output of the main application.
+     */
+    @FXML
+    @SuppressWarnings({"WeakerAccess", "unused"})
+    protected TextArea textOutput;
+
     /**
      * Restart button.
      */
@@ -128,7 +137,8 @@ public final class CrashWindowController extends FXController {
     }
 
     /**
-     * Displays the given exit code.
+     * Displays the given exit code and the recent
+     * output of the main application.
      *
      * @param code the exit code.
      */
@@ -136,5 +146,7 @@ public final class CrashWindowController extends FXController {
         this.labelDescription.setText(code.description);
         this.labelCode.setText(String.valueOf(code.code));
         this.buttonRestart.setDisable(!code.isRecoverable());
+        this.textOutput.setText(ISeriesAppController.getRecentOutput());
+        this.textOutput.positionCaret(this.textOutput.getLength());
     }
 }
@@ -2,6 +2,7 @@ package org.lmelaia.iseries.updater;
 
 import org.lmelaia.iseries.common.system.AppBase;
 import org.lmelaia.iseries.common.system.AppLogger;
+import org.lmelaia.iseries.common.system.StartupTimeline;
 
 public class App extends AppBase {
 
@@ -11,6 +12,7 @@ public class App extends AppBase {
     @Override
     protected void start() {
         AppLogger.getLogger().info("Updater started!");
+        StartupTimeline.getTimeline().complete();
     }
 
     /**
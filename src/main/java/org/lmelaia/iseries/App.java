@@ -21,9 +21,16 @@ import javafx.application.Platform;
 import javafx.concurrent.Task;
 import org.apache.logging.log4j.Logger;
 import org.lmelaia.iseries.common.fx.FXWindowsManager;
+import org.lmelaia.iseries.common.metrics.MetricsRegistry;
+import org.lmelaia.iseries.common.net.ipc.Heartbeat;
+import org.lmelaia.iseries.common.net.ipc.InstanceState;
 import org.lmelaia.iseries.common.system.AppBase;
 import org.lmelaia.iseries.common.system.AppLogger;
 import org.lmelaia.iseries.common.system.ExitCode;
+import org.lmelaia.iseries.common.system.LoggingProfile;
+import org.lmelaia.iseries.common.system.StartupTimeline;
+import org.lmelaia.iseries.common.system.WarmStandby;
+import org.lmelaia.iseries.common.util.JsonObjectBuilder;
 import org.lmelaia.iseries.fx.components.TextProgressBar;
 import org.lmelaia.iseries.fx.library.LibraryWindow;
 import org.lmelaia.iseries.fx.main.MainWindow;
@@ -37,8 +44,6 @@ import org.lmelaia.iseries.library.ProgressTracker;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * Main class for the application.
@@ -62,9 +67,10 @@ public class App extends AppBase {
     private final List<LibraryInitializedListener> libraryInitializedListeners = new ArrayList<>();
 
     /**
-     * The timer responsible for running the {@link App.PingClientTask}.
+     * Checks the launcher is still responsive, or
+     * {@code null} before IPC is initialized.
      */
-    private final Timer pingClientTask = new Timer("Ping client", true);
+    private Heartbeat launcherHeartbeat;
 
     /**
      * The global library instance.
@@ -83,6 +89,14 @@ public class App extends AppBase {
      */
     private int hostPort;
 
+    /**
+     * {@code true} while this instance is a standby
+     * process that hasn't been shown yet.
+     *
+     * @see WarmStandby
+     */
+    private volatile boolean standby;
+
     /**
      * List of predefined named arguments.
      */
@@ -93,6 +107,11 @@ public class App extends AppBase {
          */
         PORT("port"),
 
+        /**
+         * The process id of the launcher.
+         */
+        LAUNCHER_PID("launcher_pid"),
+
         /**
          * Test argument.
          */
@@ -167,16 +186,59 @@ public class App extends AppBase {
     }
 
     /**
-     * Writes the receiver port of the this instances
-     * messenger object and starts the ping client
-     * task.
+     * Publishes the receiver port of the this instances
+     * messenger object as starting and starts watching
+     * the launcher.
+     * <p>
+     * Standby processes don't publish their port until shown,
+     * so new launchers keep connecting to the launcher in
+     * Tray Mode.
      */
     private void postInitIPC() {
         hostPort = Integer.parseInt(getArgumentHandler().getNamedArgument(DefinedArguments.PORT.key));
-        getMessenger().writeToPortFile();
 
-        pingClientTask.schedule(new App.PingClientTask(), 0,
-                Settings.LAUNCHER_PING_FREQUENCY.getValueAsInt());
+        if (!standby)
+            getMessenger().publishState(InstanceState.STARTING);
+
+        watchLauncher();
+    }
+
+    /**
+     * Exits this application when the launcher exits or stops
+     * responding. The launcher's exit is noticed through its process
+     * handle as it happens, while a heartbeat only pings the launcher
+     * when nothing has been heard from it for a while, tolerating
+     * a few missed pings before giving up on it.
+     */
+    private void watchLauncher() {
+        String pid = getArgumentHandler().getNamedArgument(DefinedArguments.LAUNCHER_PID.key);
+
+        if (pid != null) {
+            ProcessHandle.of(Long.parseLong(pid)).ifPresentOrElse(
+                    launcher -> launcher.onExit().thenRun(() -> onLauncherLost("Launcher process exited")),
+                    () -> onLauncherLost("Launcher process not found"));
+        } else {
+            LOG.warn("Launcher process id not given, relying on heartbeat alone");
+        }
+
+        launcherHeartbeat = new Heartbeat(getMessenger(), hostPort,
+                Settings.LAUNCHER_PING_FREQUENCY.getValueAsInt(), Heartbeat.DEFAULT_MISSES,
+                () -> onLauncherLost("Launcher not responding"));
+        launcherHeartbeat.start();
+    }
+
+    /**
+     * Exits this application as the launcher is gone.
+     *
+     * @param reason the reason the launcher is considered gone.
+     */
+    private void onLauncherLost(String reason) {
+        LOG.fatal(reason);
+
+        if (launcherHeartbeat != null)
+            launcherHeartbeat.stop();
+
+        App.INSTANCE.exit(ExitCode.UNRESPONSIVE_LAUNCHER);
     }
 
     /**
@@ -196,6 +258,43 @@ public class App extends AppBase {
         });
     }
 
+    /**
+     * Registers a message listener that shows this
+     * standby process when requested by the launcher.
+     */
+    private void registerStandbyShowReceiver() {
+        getMessenger().addMessageListener(message -> {
+            if (!message.get("name").getAsString().equals(WarmStandby.SHOW_MESSAGE) || !standby)
+                return;
+
+            LOG.info("Showing standby process");
+            standby = false;
+
+            ArrayList<String> arguments = new ArrayList<>();
+            message.get("arguments").getAsJsonArray().forEach(
+                    element -> arguments.add(element.getAsString()));
+            update(arguments.toArray(new String[0]));
+
+            getMessenger().publishState(InstanceState.READY);
+            getWindowsManager().showWindow(MainWindow.class);
+        });
+    }
+
+    /**
+     * Notifies the launcher that this standby process
+     * has loaded and is ready to be shown.
+     */
+    private void notifyStandbyReady() {
+        LOG.info("Standby process ready");
+
+        if (getMessenger().send(new JsonObjectBuilder()
+                .addName(WarmStandby.READY_MESSAGE)
+                .add("port", getMessenger().getReceiverPort())
+                .get(), hostPort) == null) {
+            LOG.warn("Launcher did not respond to the standby ready message");
+        }
+    }
+
     /**
      * Task responsible for loading the Library/ILibrary
      * and updating the main windows progress bar to
@@ -233,7 +332,7 @@ public class App extends AppBase {
             //Actual Initialization.
             try {
                 App.this.library.load(
-                        new File(Settings.LIBRARY_PATH.getValue()), NamedEntrySorter.NAMED_ENTRY_SORTER,
+                        new File(getLibraryPath()), NamedEntrySorter.NAMED_ENTRY_SORTER,
                         tracker
                 );
             } catch (LibraryException.LibraryFetchException e) {
@@ -246,11 +345,24 @@ public class App extends AppBase {
                 throw e;
             }
 
+            StartupTimeline.getTimeline().mark("Library loaded");
+            MetricsRegistry.getRegistry().gauge("library.entries", App.this.library::getNumberOfEntries);
             App.this.iLibrary = new ILibrary(library);
+            App.this.iLibrary.setParallelFilterThreshold(Settings.PARALLEL_FILTER_THRESHOLD.getValueAsInt());
+            StartupTimeline.getTimeline().mark("ILibrary populated");
 
             for (LibraryInitializedListener listener : libraryInitializedListeners)
                 listener.onInitialized(iLibrary);
 
+            StartupTimeline.getTimeline().complete();
+
+            if (isTrainingRun())
+                finishTrainingRun();
+            else if (standby)
+                notifyStandbyReady();
+            else
+                getMessenger().publishState(InstanceState.READY);
+
             return null;
         }
     };
@@ -261,7 +373,16 @@ public class App extends AppBase {
      */
     private void initLibrary() {
         //Get path from user if no path exists.
-        String libraryLocation = Settings.LIBRARY_PATH.getValue();
+        String libraryLocation = getLibraryPath();
+
+        //A standby process can't ask, and isn't needed
+        //until the library is chosen.
+        if (standby && libraryLocation.equals("")) {
+            LOG.info("No library chosen, closing standby process");
+            exit(ExitCode.NORMAL);
+            return;
+        }
+
         while (libraryLocation.equals("")) {
             Platform.runLater(() -> LibraryWindow.present(true));
             try {
@@ -286,21 +407,93 @@ public class App extends AppBase {
         new Thread(loadLibrary).start();
     }
 
+    /**
+     * @return the path to the library to load. This is
+     * the value of the training run argument for training runs,
+     * otherwise the library path setting.
+     */
+    private String getLibraryPath() {
+        if (isTrainingRun())
+            return getArgumentHandler().getNamedArgument(TRAINING_RUN_ARGUMENT);
+
+        return Settings.LIBRARY_PATH.getValue();
+    }
+
+    /**
+     * Ends a training run once the library has loaded
+     * and all windows have been preloaded.
+     */
+    private void finishTrainingRun() {
+        try {
+            getWindowsManager().awaitPreloadedWindows();
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while waiting for windows to preload", e);
+        }
+
+        LOG.info("Training run complete");
+        exit(ExitCode.NORMAL);
+    }
+
     /**
      * Initializes and starts the application.
+     * <p>
+     * Training runs skip ipc communication, as they aren't
+     * started by a launcher, and load the library given
+     * with the training run argument.
+     * <p>
+     * Standby processes start as usual, except the main window
+     * isn't shown until requested by the launcher.
      */
     @Override
     protected void start() {
-        LOG.info("Initializing ipc communication");
-        postInitIPC();
-        registerArgumentReceiver();
+        standby = Boolean.parseBoolean(getArgumentHandler().getNamedArgument(WarmStandby.ARGUMENT));
+        Settings.LOGGING_PROFILE.addChangeListener((setting, value) -> applyLoggingProfile());
+
+        if (isTrainingRun()) {
+            LOG.info("Starting training run");
+        } else {
+            LOG.info("Initializing ipc communication");
+            postInitIPC();
+            registerArgumentReceiver();
+
+            if (standby)
+                registerStandbyShowReceiver();
+
+            StartupTimeline.getTimeline().mark("IPC initialized");
+        }
+
+        if (standby) {
+            LOG.info("Starting as standby process");
+        } else {
+            LOG.info("Displaying main window...");
+            FXWindowsManager.getInstance().showWindow(MainWindow.class);
+            Platform.runLater(() -> StartupTimeline.getTimeline().mark("Main window shown"));
+        }
 
-        LOG.info("Displaying main window...");
-        FXWindowsManager.getInstance().showWindow(MainWindow.class);
+        getWindowsManager().preloadWindows();
 
         initLibrary();
     }
 
+    /**
+     * Gets the logging profile to use. This is the profile given
+     * by the launcher, if any, otherwise the profile chosen in the
+     * settings. Training runs keep the default configuration, so
+     * they don't depend on the settings of the build machine.
+     *
+     * @return the profile, or {@code null} to keep
+     * the current configuration.
+     */
+    @Override
+    protected LoggingProfile getLoggingProfile() {
+        LoggingProfile profile = super.getLoggingProfile();
+
+        if (profile != null || isTrainingRun())
+            return profile;
+
+        return LoggingProfile.fromName(Settings.LOGGING_PROFILE.getValue());
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -339,23 +532,4 @@ public class App extends AppBase {
     protected String getFXWindowsClassPath() {
         return "org.lmelaia.iseries.fx";
     }
-
-    /**
-     * Task responsible for pinging the launcher to
-     * check if it's still online and operating.
-     */
-    private class PingClientTask extends TimerTask {
-
-        /**
-         * Periodically pings the launcher to check
-         * if it's still online and operating.
-         */
-        @Override
-        public void run() {
-            if (!getMessenger().ping(hostPort)) {
-                LOG.fatal("Client not responding.");
-                App.INSTANCE.exit(ExitCode.UNRESPONSIVE_LAUNCHER);
-            }
-        }
-    }
 }
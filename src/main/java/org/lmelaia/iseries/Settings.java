@@ -37,8 +37,12 @@ import java.util.Properties;
  */
 public enum Settings {
 
-    LAUNCHER_PING_FREQUENCY("launcher_ping_frequency", 1000,
-            "The frequency in milliseconds between pings to the launcher."),
+    LAUNCHER_PING_FREQUENCY("launcher_ping_frequency", 5000,
+            "The time in milliseconds without hearing from the launcher before it's pinged."),
+
+    LOGGING_PROFILE("logging_profile", "development",
+            "The logging profile, either \"development\" (verbose and synchronous) or "
+                    + "\"production\" (asynchronous). Overridden by the launcher's logging_profile argument."),
 
     WINDOW_X("window_x", 0, "X position of the main window."),
 
@@ -60,7 +64,10 @@ public enum Settings {
             " in the table without presenting the unindex confirmation dialog."),
 
     LAST_PLAYLIST("last_selected_playlist", null, "The last playlist or navigation entry " +
-            "the user selected.");
+            "the user selected."),
+
+    PARALLEL_FILTER_THRESHOLD("parallel_filter_threshold", 20000,
+            "The number of entries above which the library is filtered on several threads.");
 
 
     /**
@@ -63,7 +63,7 @@ public class DeleteWindowController extends FXController {
             alert.setHeaderText(null);
             alert.setContentText("Failed to delete entry.");
             alert.showAndWait();
-            AppLogger.getLogger().warn(
+            AppLogger.getLogger(DeleteWindowController.class).warn(
                     "Failed to delete entry: " + workingEntry.toString(),
                     ex
             );
@@ -86,7 +86,7 @@ public class DeleteWindowController extends FXController {
             alert.setHeaderText(null);
             alert.setContentText("Failed to unindex entry.");
             alert.showAndWait();
-            AppLogger.getLogger().warn(
+            AppLogger.getLogger(DeleteWindowController.class).warn(
                     "Failed to unindex entry: " + workingEntry.toString(),
                     ex
             );
@@ -10,7 +10,6 @@ import org.lmelaia.iseries.fx.entry.EntryWindow;
 import org.lmelaia.iseries.fx.entry.EntryWindowController;
 import org.lmelaia.iseries.fx.unindex.UnindexWindow;
 import org.lmelaia.iseries.ilibrary.ITableEntry;
-import org.lmelaia.iseries.ilibrary.SearchFilter;
 import org.lmelaia.iseries.library.LibraryEntryBase;
 
 /**
@@ -75,14 +74,13 @@ public class ActionBarController extends SubControl {
         delete.setOnAction(this::onDeletePressed);
         input.setOnAction(this::onInputEntered);
         unindex.setOnAction(this::onUnindexPressed);
-        clearInput.setOnAction(e -> {
-            this.input.clear();
-            this.clearInput.setVisible(false);
-            App.getInstance().getILibrary().clearSearchFilter();
-        });
+        clearInput.setOnAction(e -> this.input.clear());
 
-        //Handles showing/hiding the clear text button.
-        input.setOnKeyTyped((event) -> this.clearInput.setVisible(!input.getText().equals("")));
+        //Searches as the user types & handles showing/hiding the clear text button.
+        input.textProperty().addListener((observable, oldValue, newValue) -> {
+            this.clearInput.setVisible(!newValue.equals(""));
+            App.getInstance().getILibrary().liveSearch().search(newValue);
+        });
 
         edit.setDisable(true);
         delete.setDisable(true);
@@ -141,11 +139,13 @@ public class ActionBarController extends SubControl {
 
     /**
      * Called when the user presses enter in the search bar.
+     * Searches straight away rather than waiting for the
+     * user to stop typing.
      *
      * @param e action event.
      */
     private void onInputEntered(ActionEvent e) {
-        App.getInstance().getILibrary().setSearchFilter(new SearchFilter(input.getText()));
+        App.getInstance().getILibrary().liveSearch().searchNow(input.getText());
         this.input.selectAll();
     }
 
@@ -30,7 +30,8 @@ import org.lmelaia.iseries.fx.exit.ExitWindow;
 @RegisterFXWindow(
         fxmlFileName = "windows/main_window.fxml",
         cssFileName = "windows/css/main_window.css",
-        controllerClass = MainWindowController.class
+        controllerClass = MainWindowController.class,
+        eager = true
 )
 public class MainWindow extends FXWindow<MainWindowController> {
 
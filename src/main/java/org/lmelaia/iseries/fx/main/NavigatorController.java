@@ -733,6 +733,16 @@ public class NavigatorController extends SubControl {
             public boolean accept(ITableEntry entry) {
                 return true;
             }
+
+            /**
+             * {@inheritDoc}
+             *
+             * @return {@code true} for {@link #ALL}.
+             */
+            @Override
+            public boolean acceptsAll() {
+                return this == ALL;
+            }
         }
 
         /**
@@ -25,6 +25,7 @@ import org.lmelaia.iseries.App;
 import org.lmelaia.iseries.Settings;
 import org.lmelaia.iseries.common.fx.FXController;
 import org.lmelaia.iseries.common.system.ExitCode;
+import org.lmelaia.iseries.common.system.LoggingProfile;
 
 import java.io.File;
 import java.util.Objects;
@@ -46,6 +47,9 @@ public class SettingsWindowController extends FXController {
     @FXML
     private Spinner<Integer> spinnerLauncherFrequency;
 
+    @FXML
+    private ChoiceBox<String> choiceLoggingProfile;
+
     @FXML
     private Button btnApply;
 
@@ -65,12 +69,15 @@ public class SettingsWindowController extends FXController {
         directoryChooser = new DirectoryChooser();
         directoryChooser.setTitle("Select I-Series Library Path");
 
-        spinnerLauncherFrequency.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(250, 5000));
+        spinnerLauncherFrequency.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1000, 60000));
         ObservableList<String> choiceItems = choiceOnClose.getItems();
         choiceItems.add("Show Quit Dialog");
         choiceItems.add("Close I-Series");
         choiceItems.add("Move to Tray");
 
+        for (LoggingProfile profile : LoggingProfile.values())
+            choiceLoggingProfile.getItems().add(profile.getName());
+
         btnApply.setOnAction(this::onApplyPressed);
         btnCancel.setOnAction(this::onCancelPressed);
         btnBrowse.setOnAction(this::onBrowsePressed);
@@ -99,6 +106,10 @@ public class SettingsWindowController extends FXController {
         this.fieldLibraryPath.setText(Settings.LIBRARY_PATH.getValue());
 
         this.spinnerLauncherFrequency.getValueFactory().setValue(Settings.LAUNCHER_PING_FREQUENCY.getValueAsInt());
+
+        LoggingProfile profile = LoggingProfile.fromName(Settings.LOGGING_PROFILE.getValue());
+        this.choiceLoggingProfile.getSelectionModel().select(
+                (profile == null ? LoggingProfile.DEVELOPMENT : profile).getName());
     }
 
     /**
@@ -120,6 +131,9 @@ public class SettingsWindowController extends FXController {
         int launcherPingFrequency = Integer.parseInt(this.spinnerLauncherFrequency.getValue().toString());
         Settings.LAUNCHER_PING_FREQUENCY.changeValue(launcherPingFrequency);
 
+        if (!choiceLoggingProfile.getValue().equals(Settings.LOGGING_PROFILE.getValue()))
+            Settings.LOGGING_PROFILE.changeValue(choiceLoggingProfile.getValue());
+
         Settings.WINDOW_CLOSE_PREFERENCE.changeValue(
                 choiceOnClose.getSelectionModel().getSelectedIndex()
         );
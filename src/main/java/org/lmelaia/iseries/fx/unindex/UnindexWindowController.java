@@ -75,7 +75,7 @@ public class UnindexWindowController extends FXController {
             alert.setHeaderText(null);
             alert.setContentText("Failed to unindex entry.");
             alert.showAndWait();
-            AppLogger.getLogger().warn(
+            AppLogger.getLogger(UnindexWindowController.class).warn(
                     "Failed to unindex entry: " + workingEntry.toString(),
                     ex
             );
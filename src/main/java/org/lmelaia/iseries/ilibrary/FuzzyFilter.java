@@ -0,0 +1,126 @@
+package org.lmelaia.iseries.ilibrary;
+
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
+import org.lmelaia.iseries.ilibrary.search.SearchField;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A typo tolerant {@link TableEntryFilter} that accepts
+ * entries with names close to a search query.
+ * <p>
+ * <p/>The search query is split into words (terms). An entry
+ * is accepted if every term is within a few typos (edit
+ * distance) of a word in its name, or starts a word in its
+ * name, e.g. "dark kinght" matches "The Dark Knight". Entries
+ * are ranked by how many typos it takes to match them
+ * ({@link #getDistance(ITableEntry)}).
+ */
+public class FuzzyFilter implements IndexedFilter {
+
+    /**
+     * The terms of the search query, in lowercase.
+     */
+    private final List<String> terms;
+
+    /**
+     * Creates a new FuzzyFilter that searches for entries
+     * with names close to the given search query.
+     *
+     * @param searchQuery the search query.
+     */
+    public FuzzyFilter(String searchQuery) {
+        this.terms = LibraryIndex.tokenize(searchQuery);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param entry the ITableEntry to check.
+     * @return {@code true} if every term is close
+     * to a word in the name of the entry.
+     */
+    @Override
+    public boolean accept(ITableEntry entry) {
+        return getDistance(entry) != Integer.MAX_VALUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index the index of the library.
+     * @return the entries with names close to the query.
+     */
+    @Override
+    public BitSet select(LibraryIndex index) {
+        BitSet selected = index.getOrdinals();
+
+        for (String term : terms) {
+            if (selected.isEmpty())
+                break;
+
+            selected.and(index.findFuzzy(term, getMaxDistance(term)));
+        }
+
+        return selected;
+    }
+
+    /**
+     * @param entry an entry.
+     * @return the total number of typos in the query for
+     * the name of the entry, taking each term as the closest
+     * word in the name, or {@link Integer#MAX_VALUE} if the
+     * entry isn't accepted.
+     */
+    public int getDistance(ITableEntry entry) {
+        List<String> words = LibraryIndex.tokenize(SearchField.NAME.read(entry));
+        int total = 0;
+
+        for (String term : terms) {
+            int closest = Integer.MAX_VALUE;
+
+            for (String word : words) {
+                int distance = word.startsWith(term) ? 0 : LibraryIndex.editDistance(term, word);
+
+                if (distance <= getMaxDistance(term))
+                    closest = Math.min(closest, distance);
+            }
+
+            if (closest == Integer.MAX_VALUE)
+                return Integer.MAX_VALUE;
+
+            total += closest;
+        }
+
+        return total;
+    }
+
+    /**
+     * @param term a term.
+     * @return the number of typos allowed in the term: none
+     * in very short terms, as nearly every short word would
+     * match, one in short terms and two in longer terms.
+     */
+    static int getMaxDistance(String term) {
+        if (term.length() < 3)
+            return 0;
+
+        return term.length() < 6 ? 1 : 2;
+    }
+
+    /**
+     * @param o another object.
+     * @return {@code true} if the other object is a
+     * FuzzyFilter for the same terms.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FuzzyFilter && terms.equals(((FuzzyFilter) o).terms);
+    }
+
+    @Override
+    public int hashCode() {
+        return terms.hashCode();
+    }
+}
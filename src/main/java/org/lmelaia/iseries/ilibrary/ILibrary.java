@@ -5,11 +5,15 @@ import javafx.collections.ObservableList;
 import javafx.scene.control.TableView;
 import org.apache.logging.log4j.Logger;
 import org.lmelaia.iseries.App;
+import org.lmelaia.iseries.common.metrics.LatencyHistogram;
+import org.lmelaia.iseries.common.metrics.MetricsRegistry;
 import org.lmelaia.iseries.common.system.AppLogger;
 import org.lmelaia.iseries.common.system.ExitCode;
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
 import org.lmelaia.iseries.library.*;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * A wrapper library for a {@link Library} that makes the original
@@ -28,6 +32,21 @@ public class ILibrary {
      */
     private static final Logger LOG = AppLogger.getLogger();
 
+    /**
+     * Time taken to filter the displayed entries.
+     */
+    private static final LatencyHistogram FILTER_DISPLAY_LATENCY
+            = MetricsRegistry.getRegistry().histogram("table.filter_display");
+
+    /**
+     * Time taken to filter the displayed entries while
+     * searching. Timed per pass over the entries rather than
+     * per entry, as timing each entry would cost about as much
+     * as evaluating the search filter on it.
+     */
+    private static final LatencyHistogram SEARCH_FILTER_LATENCY
+            = MetricsRegistry.getRegistry().histogram("search.filter");
+
     /**
      * Map that keeps track of the created ITableEntries.
      */
@@ -51,6 +70,12 @@ public class ILibrary {
      */
     private IPlaylists playlists;
 
+    /**
+     * Searches this library in the background
+     * as the user types.
+     */
+    private final LiveSearch liveSearch = new LiveSearch(this);
+
     /**
      * Creates a new ILibrary object wrapping a
      * Library object with ITableEntries already
@@ -64,6 +89,9 @@ public class ILibrary {
         this.backingLibrary = backingLibrary;
         populateILibrary();
         initPlaylists();
+        MetricsRegistry.getRegistry().gauge("search.cache.hit_rate_percent",
+                () -> Math.round(tableHandler.cache.getHitRate() * 100));
+        MetricsRegistry.getRegistry().gauge("search.cache.evictions", tableHandler.cache::getEvictions);
         LOG.info("ILibrary initialized");
     }
 
@@ -177,6 +205,23 @@ public class ILibrary {
         tableHandler.clearSearchFilter();
     }
 
+    /**
+     * Sets the search filter along with the entries it has
+     * already been found to select, which are shown without
+     * searching again. Must be called on the FX thread.
+     *
+     * @param filter   the search filter to apply.
+     * @param selected the ordinals of the entries selected
+     *                 by the filter.
+     * @param modCount the {@link LibraryIndex#getModCount()}
+     *                 the entries were selected at. If the
+     *                 index has changed since, the search
+     *                 is run again.
+     */
+    void setSearchResult(TableEntryFilter filter, BitSet selected, long modCount) {
+        tableHandler.setSearchResult(filter, selected, modCount);
+    }
+
     /**
      * Sets the filter to the list of displayed table entries
      * that can filter out entries from being shown.
@@ -197,6 +242,17 @@ public class ILibrary {
         tableHandler.clearFilter();
     }
 
+    /**
+     * Sets the number of entries above which the displayed
+     * entries are filtered on several threads, rather than
+     * just the FX thread.
+     *
+     * @param threshold the number of entries.
+     */
+    public void setParallelFilterThreshold(int threshold) {
+        tableHandler.parallelThreshold = threshold;
+    }
+
     /**
      * @return the playlists container object.
      */
@@ -204,6 +260,14 @@ public class ILibrary {
         return this.playlists;
     }
 
+    /**
+     * @return the search-as-you-type handler of
+     * this library.
+     */
+    public LiveSearch liveSearch() {
+        return this.liveSearch;
+    }
+
     /**
      * @return a list of all the {@link IEntry}s
      * within this library.
@@ -219,6 +283,22 @@ public class ILibrary {
         return entries.toArray(new IEntry[0]);
     }
 
+    /**
+     * @return the search index of the
+     * entries in this library.
+     */
+    LibraryIndex getIndex() {
+        return tableHandler.index;
+    }
+
+    /**
+     * @return the cache of the entries shown
+     * for recently used filters.
+     */
+    ResultCache getResultCache() {
+        return tableHandler.cache;
+    }
+
     /**
      * @return the path, on disk, to this
      * library.
@@ -241,7 +321,7 @@ public class ILibrary {
                 backingLibrary.add(entry);
             } catch (LibraryException.EntryModificationException e) {
                 //We wanna crash here.
-                AppLogger.getLogger().fatal("Failed to initialize playlists.", e);
+                LOG.fatal("Failed to initialize playlists.", e);
                 App.getInstance().exit(ExitCode.PLAYLIST_INITIALIZATION_FAILURE);
             }
         }
@@ -284,16 +364,28 @@ public class ILibrary {
     private class TableItemHandler {
 
         /**
-         * Map of table entries to their uuid (a table entry takes
-         * the uuid of the entry it represents).
+         * Index of the table entries by their uuid (a table entry
+         * takes the uuid of the entry it represents), which
+         * searches are answered from.
          */
-        private final HashMap<UUID, ITableEntry> source = new HashMap<>();
+        private final LibraryIndex index = new LibraryIndex();
 
         /**
          * List of table entries to display in the table.
          */
         private final ObservableList<ITableEntry> display = FXCollections.observableArrayList();
 
+        /**
+         * The entries shown for recently used filters.
+         */
+        private final ResultCache cache = new ResultCache(ResultCache.DEFAULT_CAPACITY);
+
+        /**
+         * Number of entries above which entries
+         * are filtered in parallel.
+         */
+        private int parallelThreshold = ParallelFilter.DEFAULT_THRESHOLD;
+
         /**
          * Entry filter used to filter entries based on a search
          * query.
@@ -317,7 +409,36 @@ public class ILibrary {
         public void setSearchFilter(TableEntryFilter filter) {
             this.searchFilter = filter;
             filterDisplay();
-            forceRefresh(null);
+            select(null);
+        }
+
+        /**
+         * Sets the search filter along with the entries
+         * it has already been found to select.
+         *
+         * @param filter   the search filter to apply.
+         * @param selected the ordinals of the entries
+         *                 selected by the filter.
+         * @param modCount the modification count of the
+         *                 index the entries were selected at.
+         */
+        public void setSearchResult(TableEntryFilter filter, BitSet selected, long modCount) {
+            if (index.getModCount() != modCount) {
+                setSearchFilter(filter);
+                return;
+            }
+
+            long start = System.nanoTime();
+            this.searchFilter = filter;
+
+            //The selected entries are still used by the live search.
+            BitSet shown = (BitSet) selected.clone();
+            retain(shown, true);
+            cache.put(this.filter, filter, shown);
+            show(shown);
+
+            FILTER_DISPLAY_LATENCY.recordSince(start);
+            select(null);
         }
 
         /**
@@ -327,12 +448,15 @@ public class ILibrary {
          * navigation items. Setting the filter will clear
          * the previous filter & update the table.
          *
+         * A filter {@link TableEntryFilter#acceptsAll() accepting
+         * every entry} is treated as no filter.
+         *
          * @param filter the filter to apply.
          */
         public void setFilter(TableEntryFilter filter) {
-            this.filter = filter;
+            this.filter = filter == null || filter.acceptsAll() ? null : filter;
             filterDisplay();
-            forceRefresh(null);
+            select(null);
         }
 
         /**
@@ -341,7 +465,7 @@ public class ILibrary {
         public void clearFilter() {
             this.filter = null;
             filterDisplay();
-            forceRefresh(null);
+            select(null);
         }
 
         /**
@@ -350,21 +474,114 @@ public class ILibrary {
         public void clearSearchFilter() {
             searchFilter = null;
             filterDisplay();
-            forceRefresh(null);
+            select(null);
         }
 
         /**
          * Filters out any entries in the table
          * that aren't allowed through by the
          * {@link #filter} & {@link #searchFilter}.
+         * <p>
+         * The entries shown for recently used filters are taken
+         * from the {@link #cache}. Otherwise, {@link IndexedFilter}s
+         * select the matching entries from the index, so only those
+         * are checked against the other filter.
          */
         private void filterDisplay() {
-            display.clear();
+            long start = System.nanoTime();
+            BitSet shown = cache.get(filter, searchFilter);
+
+            if (shown == null) {
+                boolean indexed = searchFilter instanceof IndexedFilter;
+                shown = indexed ? ((IndexedFilter) searchFilter).select(index) : index.getOrdinals();
+                retain(shown, indexed);
+                cache.put(filter, searchFilter, shown);
+            }
 
-            for (Map.Entry<UUID, ITableEntry> entry : source.entrySet()) {
-                if (canAdd(entry.getValue()))
-                    display.add(entry.getValue());
+            show(shown);
+
+            FILTER_DISPLAY_LATENCY.recordSince(start);
+
+            if (searchFilter != null)
+                SEARCH_FILTER_LATENCY.recordSince(start);
+        }
+
+        /**
+         * Clears the given entries that aren't accepted by
+         * the filters. An {@link IndexedFilter} {@link #filter},
+         * such as a playlist, selects its own entries. Any other
+         * filters are checked against every remaining entry. If
+         * there are more than {@link #parallelThreshold} entries,
+         * and the filters are thread safe, they're filtered in
+         * parallel on machines with more than one processor.
+         *
+         * @param candidates the ordinals of the entries.
+         * @param searched   {@code true} if the entries are
+         *                   known to be accepted by the
+         *                   {@link #searchFilter}.
+         */
+        private void retain(BitSet candidates, boolean searched) {
+            boolean filtered = filter instanceof IndexedFilter;
+            if (filtered)
+                candidates.and(((IndexedFilter) filter).select(index));
+
+            TableEntryFilter first = filtered ? null : filter;
+            TableEntryFilter second = searched ? null : searchFilter;
+
+            if (first == null && second == null)
+                return;
+
+            Predicate<ITableEntry> accepted = entry -> (first == null || first.accept(entry))
+                    && (second == null || second.accept(entry));
+
+            if (candidates.cardinality() > parallelThreshold && ParallelFilter.isAvailable()
+                    && isThreadSafe(first) && isThreadSafe(second)) {
+                candidates.and(ParallelFilter.filter(index, candidates, accepted));
+                return;
+            }
+
+            ITableEntry[] entries = index.get(candidates, 0, candidates.length());
+
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if (entries[i] == null || !accepted.test(entries[i]))
+                    candidates.clear(i);
+            }
+        }
+
+        /**
+         * Replaces the displayed entries, in one change
+         * to the list, with the given entries, already in the
+         * order of the linked table so it doesn't need sorting.
+         * Entries found by a {@link FuzzyFilter} are shown
+         * closest match first, unless the table is sorted.
+         *
+         * @param ordinals the ordinals of the entries.
+         */
+        private void show(BitSet ordinals) {
+            List<ITableEntry> shown = new ArrayList<>(ordinals.cardinality());
+
+            for (ITableEntry entry : index.get(ordinals, 0, ordinals.length())) {
+                if (entry != null)
+                    shown.add(entry);
             }
+
+            if (searchFilter instanceof FuzzyFilter)
+                shown.sort(Comparator.comparingInt(((FuzzyFilter) searchFilter)::getDistance));
+
+            Comparator<ITableEntry> order = getOrder();
+            if (order != null)
+                shown.sort(order);
+
+            display.setAll(shown);
+        }
+
+        /**
+         * @param filter a filter, or {@code null}.
+         * @return {@code true} if the filter can be
+         * used from several threads at once.
+         */
+        private boolean isThreadSafe(TableEntryFilter filter) {
+            return filter == null || filter.isThreadSafe();
         }
 
         /**
@@ -375,10 +592,8 @@ public class ILibrary {
          * by both the {@link #filter} & {@link #searchFilter}.
          */
         private boolean canAdd(ITableEntry entry) {
-            if (filter != null) {
-                if (!filter.accept(entry))
-                    return false;
-            }
+            if (filter != null && !filter.accept(entry))
+                return false;
 
             if (searchFilter != null) {
                 return searchFilter.accept(entry);
@@ -389,18 +604,35 @@ public class ILibrary {
 
         /**
          * Adds a table entry under the given uuid.
+         * <p>
+         * An edited entry is updated in its row, which is
+         * only moved if it's no longer in order, and a new
+         * entry is inserted in order, so the linked table
+         * never has to be sorted again.
          *
          * @param uuid  the given uuid.
          * @param entry the given entry.
          */
         public void put(String uuid, ITableEntry entry) {
-            UUID uuid1 = UUID.fromString(uuid);
-            display.remove(source.remove(uuid1));
-            source.put(uuid1, entry);
-            if (canAdd(entry))
-                display.add(entry);
+            ITableEntry previous = index.put(entry);
+            cache.update(index.getOrdinal(uuid), entry);
+
+            int row = previous == null ? -1 : findDisplayedRow(previous);
+
+            if (!canAdd(entry)) {
+                if (row != -1)
+                    display.remove(row);
+            } else if (row != -1 && isInOrder(row, entry)) {
+                //Replacing the entry with itself still updates the row.
+                display.set(row, entry);
+            } else {
+                if (row != -1)
+                    display.remove(row);
+
+                display.add(findRow(entry), entry);
+            }
 
-            forceRefresh(entry);
+            select(entry);
         }
 
         /**
@@ -408,7 +640,7 @@ public class ILibrary {
          * @return the table entry under the given uuid.
          */
         public ITableEntry get(String uuid) {
-            return source.get(UUID.fromString(uuid));
+            return index.get(uuid);
         }
 
         /**
@@ -418,26 +650,111 @@ public class ILibrary {
          * @param uuid the given uuid.
          */
         public void remove(String uuid) {
-            display.remove(source.remove(UUID.fromString(uuid)));
-            forceRefresh(null);
+            int ordinal = index.getOrdinal(uuid);
+            ITableEntry removed = index.remove(uuid);
+
+            int row = removed == null ? -1 : findDisplayedRow(removed);
+            if (row != -1)
+                display.remove(row);
+
+            if (ordinal != -1)
+                cache.remove(ordinal);
+
+            select(null);
         }
 
         /**
-         * Makes sure the the linked table refreshes
-         * to see any changes.
+         * @param row   a row in the table.
+         * @param entry the entry to show in the row.
+         * @return {@code true} if the entry is in
+         * order with the rows either side of it.
+         */
+        private boolean isInOrder(int row, ITableEntry entry) {
+            Comparator<ITableEntry> order = getOrder();
+            if (order == null)
+                return true;
+
+            return (row == 0 || order.compare(display.get(row - 1), entry) <= 0)
+                    && (row == display.size() - 1 || order.compare(entry, display.get(row + 1)) <= 0);
+        }
+
+        /**
+         * @param entry an entry.
+         * @return the row to insert the entry at to keep
+         * the table in order, which is after any equal
+         * entries, including the entry itself if it's
+         * displayed, or the end of the table if it isn't
+         * sorted.
+         */
+        private int findRow(ITableEntry entry) {
+            Comparator<ITableEntry> order = getOrder();
+            if (order == null)
+                return display.size();
+
+            int low = 0;
+            int high = display.size();
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (order.compare(display.get(middle), entry) <= 0)
+                    low = middle + 1;
+                else high = middle;
+            }
+
+            return low;
+        }
+
+        /**
+         * Finds the row an entry is displayed in. In a sorted
+         * table, the entry is looked for among the entries equal
+         * to it, found by binary search. The whole table is only
+         * searched if it isn't sorted, or if the entry isn't there,
+         * e.g. when it was edited in a way that changes its order.
+         *
+         * @param entry an entry.
+         * @return the row of the entry, or {@code -1}
+         * if it isn't displayed.
+         */
+        private int findDisplayedRow(ITableEntry entry) {
+            Comparator<ITableEntry> order = getOrder();
+
+            if (order != null) {
+                //After any entries equal to the entry.
+                for (int row = findRow(entry) - 1; row >= 0; row--) {
+                    ITableEntry displayed = display.get(row);
+
+                    if (displayed == entry)
+                        return row;
+
+                    if (order.compare(displayed, entry) != 0)
+                        break;
+                }
+            }
+
+            return display.indexOf(entry);
+        }
+
+        /**
+         * @return the order the linked table is sorted
+         * in, or {@code null} if it isn't sorted.
+         */
+        private Comparator<ITableEntry> getOrder() {
+            return linkedTable == null ? null : linkedTable.getComparator();
+        }
+
+        /**
+         * Selects an entry in the linked table.
          *
          * @param entry the entry in the table to select,
          *              or {@code null} to unselect any entry.
          */
-        private void forceRefresh(ITableEntry entry) {
+        private void select(ITableEntry entry) {
             if (linkedTable == null) return;
 
             if (entry == null)
                 linkedTable.getSelectionModel().clearSelection();
             else linkedTable.getSelectionModel().select(entry);
-
-            linkedTable.refresh();
-            linkedTable.sort();
         }
     }
 }
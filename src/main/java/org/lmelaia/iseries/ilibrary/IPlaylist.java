@@ -1,10 +1,12 @@
 package org.lmelaia.iseries.ilibrary;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
 
-import java.util.ArrayList;
+import java.util.*;
 
 /**
  * Standard Playlist class. Represents a list of
@@ -15,9 +17,11 @@ import java.util.ArrayList;
  * obtain references to playlists.
  * <p/>
  * Playlists implement the {@link TableEntryFilter} so they
- * can be added as EntryFilters as well.
+ * can be added as EntryFilters as well. As an {@link IndexedFilter},
+ * a playlist finds its entries from its own list of entries,
+ * rather than being checked against every entry in the library.
  */
-public class IPlaylist implements TableEntryFilter {
+public class IPlaylist implements IndexedFilter {
 
     /**
      * The json object used to store the playlist
@@ -40,6 +44,19 @@ public class IPlaylist implements TableEntryFilter {
     //Lazily initialized.
     private ArrayList<PlaylistChangeListener> changeListeners;
 
+    /**
+     * The uuids of the entries in the playlist, kept alongside
+     * the entries json array so checking if an entry is in the
+     * playlist doesn't search through the array.
+     */
+    private final Set<String> members = new HashSet<>();
+
+    /**
+     * Incremented each time the entries
+     * in the playlist change.
+     */
+    private int version;
+
     /**
      * Constructs a new playlist with the given
      * JsonObject to use as a data holder and
@@ -56,6 +73,9 @@ public class IPlaylist implements TableEntryFilter {
         if (!backingData.has("entries")) {
             backingData.add("entries", new JsonArray());
         }
+
+        for (JsonElement uuid : getEntries())
+            members.add(uuid.getAsString());
     }
 
     // PUBLIC API
@@ -70,7 +90,7 @@ public class IPlaylist implements TableEntryFilter {
      *                                                             playlist could not be saved on disk.
      */
     public void add(IEntry entry) throws IPlaylists.PlaylistException.PlaylistWriteException {
-        if (!getEntries().contains(new JsonPrimitive(entry.getUUID()))) {
+        if (members.add(entry.getUUID())) {
             getEntries().add(entry.getUUID());
             save();
             notifyListeners();
@@ -88,7 +108,7 @@ public class IPlaylist implements TableEntryFilter {
      */
     public void addAll(IEntry... entries) throws IPlaylists.PlaylistException.PlaylistWriteException {
         for (IEntry entry : entries) {
-            if (!getEntries().contains(new JsonPrimitive(entry.getUUID()))) {
+            if (members.add(entry.getUUID())) {
                 getEntries().add(entry.getUUID());
             }
         }
@@ -107,10 +127,12 @@ public class IPlaylist implements TableEntryFilter {
      *                                                             playlist could not be saved on disk.
      */
     public boolean remove(IEntry entry) throws IPlaylists.PlaylistException.PlaylistWriteException {
-        boolean removed = getEntries().remove(new JsonPrimitive(entry.getUUID()));
+        boolean removed = members.remove(entry.getUUID());
 
-        if (removed)
+        if (removed) {
+            getEntries().remove(new JsonPrimitive(entry.getUUID()));
             save();
+        }
 
         notifyListeners();
         return removed;
@@ -126,9 +148,17 @@ public class IPlaylist implements TableEntryFilter {
      */
     public void removeAll(IEntry... entries) throws IPlaylists.PlaylistException.PlaylistWriteException {
         for (IEntry entry : entries) {
-            getEntries().remove(new JsonPrimitive(entry.getUUID()));
+            members.remove(entry.getUUID());
+        }
+
+        //Rebuilt in one pass, rather than searched for each entry.
+        JsonArray remaining = new JsonArray();
+        for (JsonElement uuid : getEntries()) {
+            if (members.contains(uuid.getAsString()))
+                remaining.add(uuid);
         }
 
+        backingData.add("entries", remaining);
         save();
         notifyListeners();
     }
@@ -142,6 +172,7 @@ public class IPlaylist implements TableEntryFilter {
     public void clear() throws IPlaylists.PlaylistException.PlaylistWriteException {
         //Effectively clears the list
         backingData.add("entries", new JsonArray());
+        members.clear();
         save();
         notifyListeners();
     }
@@ -155,7 +186,7 @@ public class IPlaylist implements TableEntryFilter {
      * this playlist contains the given IEntry.
      */
     public boolean has(IEntry entry) {
-        return getEntries().contains(new JsonPrimitive(entry.getUUID()));
+        return members.contains(entry.getUUID());
     }
 
     /**
@@ -245,7 +276,38 @@ public class IPlaylist implements TableEntryFilter {
      */
     @Override
     public boolean accept(ITableEntry entry) {
-        return has(entry.getEntry());
+        return members.contains(entry.getUUID());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index the index of the library.
+     * @return the entries in this playlist.
+     */
+    @Override
+    public BitSet select(LibraryIndex index) {
+        BitSet selected = new BitSet();
+
+        for (String uuid : members) {
+            int ordinal = index.getOrdinal(uuid);
+
+            if (ordinal != -1)
+                selected.set(ordinal);
+        }
+
+        return selected;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the number of times the entries
+     * in this playlist have changed.
+     */
+    @Override
+    public int getVersion() {
+        return version;
     }
 
     // Playlist Library
@@ -292,6 +354,8 @@ public class IPlaylist implements TableEntryFilter {
      * that a changes has happened.
      */
     private void notifyListeners() {
+        version++;
+
         if (this.changeListeners == null)
             return;
 
@@ -0,0 +1,24 @@
+package org.lmelaia.iseries.ilibrary;
+
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
+
+import java.util.BitSet;
+
+/**
+ * A {@link TableEntryFilter} that can find the entries it
+ * accepts through the {@link LibraryIndex}, rather than being
+ * run on every entry in the library.
+ */
+public interface IndexedFilter extends TableEntryFilter {
+
+    /**
+     * Finds every entry in the index this filter accepts.
+     * Must give the same entries as running
+     * {@link #accept(ITableEntry)} on every entry
+     * in the index.
+     *
+     * @param index the index of the library.
+     * @return the ordinals of the accepted entries.
+     */
+    BitSet select(LibraryIndex index);
+}
@@ -0,0 +1,267 @@
+package org.lmelaia.iseries.ilibrary;
+
+import javafx.application.Platform;
+import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.metrics.LatencyHistogram;
+import org.lmelaia.iseries.common.metrics.MetricsRegistry;
+import org.lmelaia.iseries.common.system.AppLogger;
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
+import org.lmelaia.iseries.ilibrary.search.QueryException;
+import org.lmelaia.iseries.ilibrary.search.QueryPlan;
+
+import java.util.BitSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Searches an {@link ILibrary} as the user types.
+ * <p>
+ * Each query waits for a short delay, so a burst of keystrokes
+ * is searched once, and is then searched on a background thread,
+ * keeping the FX thread free. A newer query cancels any query
+ * still waiting, and a query being searched gives up as soon
+ * as it notices it has been replaced, so the search thread is
+ * free for the newer query. The results are
+ * shown on the FX thread in a single change to the table.
+ * <p>
+ * Queries using the query language are run as a
+ * {@link QueryFilter}, and plain text as a {@link SearchFilter}.
+ * When a plain text query refines the last one searched, e.g.
+ * "dark" after "dar", only the results of the last query are
+ * searched, as long as the library hasn't changed since. Plain
+ * text that finds nothing, likely due to a typo, is searched
+ * again with a {@link FuzzyFilter}, as is any query starting
+ * with {@link #FUZZY_PREFIX}.
+ */
+public class LiveSearch {
+
+    /**
+     * Logger instance.
+     */
+    private static final Logger LOG = AppLogger.getLogger();
+
+    /**
+     * Time, in milliseconds, a query waits for
+     * another keystroke before being searched.
+     */
+    static final int DELAY = 150;
+
+    /**
+     * Starts a query searched for with a {@link FuzzyFilter},
+     * e.g. "~kinght".
+     */
+    static final String FUZZY_PREFIX = "~";
+
+    /**
+     * Time, in milliseconds, a query can take before
+     * the explanation of its run is logged.
+     */
+    static final int SLOW_QUERY_TIME = 100;
+
+    /**
+     * Time taken to search for a query in the background.
+     */
+    private static final LatencyHistogram LIVE_SEARCH_LATENCY
+            = MetricsRegistry.getRegistry().histogram("search.live");
+
+    /**
+     * The library searched.
+     */
+    private final ILibrary library;
+
+    /**
+     * Thread the queries are searched on.
+     */
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Live search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Incremented with each query, so a search can
+     * tell if it has been replaced.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * The query waiting to be searched, or being
+     * searched. Only used on the FX thread.
+     */
+    private Future<?> pending;
+
+    /**
+     * The last query searched. Only used on the
+     * search thread.
+     */
+    private SearchFilter lastSearch;
+
+    /**
+     * The results of the {@link #lastSearch}.
+     */
+    private BitSet lastResult;
+
+    /**
+     * The modification count of the index
+     * the {@link #lastResult} was found at.
+     */
+    private long lastModCount;
+
+    /**
+     * The last slow query logged, so a query searched
+     * again isn't logged again. Only used on the search
+     * thread.
+     */
+    private String lastSlowQuery;
+
+    /**
+     * Constructor.
+     *
+     * @param library the library searched.
+     */
+    LiveSearch(ILibrary library) {
+        this.library = library;
+    }
+
+    /**
+     * Searches for a query once the user stops typing.
+     * An empty query clears the search straight away.
+     * Must be called on the FX thread.
+     *
+     * @param query the query.
+     */
+    public void search(String query) {
+        search(query, DELAY);
+    }
+
+    /**
+     * Searches for a query without waiting for further
+     * keystrokes, e.g. when enter is pressed. Must be
+     * called on the FX thread.
+     *
+     * @param query the query.
+     */
+    public void searchNow(String query) {
+        search(query, 0);
+    }
+
+    /**
+     * Cancels any query not yet shown.
+     * Must be called on the FX thread.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * @param query the query.
+     * @param delay time, in milliseconds, to
+     *              wait before searching.
+     */
+    private void search(String query, int delay) {
+        cancel();
+
+        if (query.trim().isEmpty()) {
+            library.clearSearchFilter();
+            return;
+        }
+
+        long queryGeneration = generation.get();
+        pending = scheduler.schedule(
+                () -> run(query, queryGeneration), delay, TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Searches for a query on the search thread and
+     * shows the results, unless the query has been
+     * replaced.
+     *
+     * @param query           the query.
+     * @param queryGeneration the {@link #generation}
+     *                        of the query.
+     */
+    private void run(String query, long queryGeneration) {
+        try {
+            IndexedFilter filter = createFilter(query);
+            long start = System.nanoTime();
+            LibraryIndex index = library.getIndex();
+            long modCount = index.getModCount();
+            BooleanSupplier replaced = () -> generation.get() != queryGeneration;
+            QueryPlan.Explanation explanation = null;
+            BitSet result;
+
+            if (filter instanceof SearchFilter) {
+                SearchFilter search = (SearchFilter) filter;
+                boolean refined = lastSearch != null && lastModCount == modCount && search.refines(lastSearch);
+                result = search.select(index, refined ? lastResult : null, replaced);
+
+                lastSearch = search;
+                lastResult = result;
+                lastModCount = modCount;
+
+                if (result.isEmpty()) {
+                    filter = new FuzzyFilter(query);
+                    result = filter.select(index);
+                }
+            } else if (filter instanceof QueryFilter) {
+                explanation = new QueryPlan.Explanation();
+                result = ((QueryFilter) filter).select(index, explanation, replaced);
+            } else result = filter.select(index);
+
+            long nanos = System.nanoTime() - start;
+            LIVE_SEARCH_LATENCY.record(nanos);
+            IndexedFilter shownFilter = filter;
+            BitSet shownResult = result;
+
+            if (generation.get() == queryGeneration) {
+                Platform.runLater(() -> {
+                    if (generation.get() == queryGeneration)
+                        library.setSearchResult(shownFilter, shownResult, modCount);
+                });
+            }
+
+            if (explanation != null && nanos > SLOW_QUERY_TIME * 1_000_000L && !query.equals(lastSlowQuery)) {
+                lastSlowQuery = query;
+                LOG.info("Slow search query:\n" + explanation);
+            }
+        } catch (CancellationException e) {
+            //Replaced by a newer query.
+        } catch (RuntimeException e) {
+            LOG.error("Failed to search the library for: " + query, e);
+        }
+    }
+
+    /**
+     * @param query the query.
+     * @return the filter for the query: a fuzzy filter if
+     * asked for, otherwise a query language filter, unless the
+     * query is only text or isn't a valid query, e.g. while
+     * it's still being typed.
+     */
+    private static IndexedFilter createFilter(String query) {
+        if (query.trim().startsWith(FUZZY_PREFIX))
+            return new FuzzyFilter(query.trim().substring(FUZZY_PREFIX.length()));
+
+        try {
+            QueryFilter filter = new QueryFilter(query);
+
+            if (!filter.isPlainText())
+                return filter;
+        } catch (QueryException e) {
+            LOG.debug("Searching for invalid query as text: " + e.getMessage());
+        }
+
+        return new SearchFilter(query);
+    }
+}
@@ -0,0 +1,135 @@
+package org.lmelaia.iseries.ilibrary;
+
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Filters the entries of a large library on several threads,
+ * with the common fork-join pool.
+ * <p>
+ * The entries are split into chunks of consecutive ordinals,
+ * each filtered on its own, and the entries accepted in each
+ * chunk are merged by ordinal, so the result is exactly what
+ * filtering the entries one at a time would give. The filters
+ * must be {@link TableEntryFilter#isThreadSafe() thread safe},
+ * and the entries must not be changed while being filtered.
+ */
+final class ParallelFilter extends RecursiveTask<BitSet> {
+
+    /**
+     * Default number of entries above which
+     * entries are filtered in parallel.
+     */
+    static final int DEFAULT_THRESHOLD = 20_000;
+
+    /**
+     * Number of ordinals filtered in one task, which is large
+     * enough that splitting costs little next to filtering.
+     */
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * The index of the library.
+     */
+    private final LibraryIndex index;
+
+    /**
+     * The ordinals of the entries to filter.
+     */
+    private final BitSet candidates;
+
+    /**
+     * The filter, combining every filter to apply.
+     */
+    private final Predicate<ITableEntry> filter;
+
+    /**
+     * The first ordinal of this chunk.
+     */
+    private final int from;
+
+    /**
+     * The ordinal after the last ordinal of this chunk.
+     */
+    private final int to;
+
+    /**
+     * @param index      the index of the library.
+     * @param candidates the ordinals of the entries to filter.
+     * @param filter     the filter to apply.
+     * @param from       the first ordinal of the chunk.
+     * @param to         the ordinal after the chunk.
+     */
+    private ParallelFilter(LibraryIndex index, BitSet candidates, Predicate<ITableEntry> filter,
+                           int from, int to) {
+        this.index = index;
+        this.candidates = candidates;
+        this.filter = filter;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Filters entries in parallel, blocking until done.
+     *
+     * @param index      the index of the library.
+     * @param candidates the ordinals of the entries to filter,
+     *                   which isn't changed.
+     * @param filter     the filter to apply.
+     * @return the ordinals of the entries accepted by the filter.
+     */
+    static BitSet filter(LibraryIndex index, BitSet candidates, Predicate<ITableEntry> filter) {
+        return ForkJoinPool.commonPool().invoke(
+                new ParallelFilter(index, candidates, filter, 0, candidates.length()));
+    }
+
+    /**
+     * @return {@code true} if there's more than one
+     * processor to filter entries on.
+     */
+    static boolean isAvailable() {
+        return Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    /**
+     * Filters the chunk, or splits it in
+     * two if it's too large.
+     *
+     * @return the ordinals of the accepted
+     * entries in the chunk.
+     */
+    @Override
+    protected BitSet compute() {
+        if (to - from <= CHUNK_SIZE)
+            return filterChunk();
+
+        int middle = (from + to) >>> 1;
+        ParallelFilter second = new ParallelFilter(index, candidates, filter, middle, to);
+        second.fork();
+
+        BitSet accepted = new ParallelFilter(index, candidates, filter, from, middle).compute();
+        accepted.or(second.join());
+        return accepted;
+    }
+
+    /**
+     * @return the ordinals of the accepted
+     * entries in the chunk.
+     */
+    private BitSet filterChunk() {
+        BitSet accepted = new BitSet(to);
+        //Read under one lock, rather than one per entry.
+        ITableEntry[] entries = index.get(candidates, from, to);
+
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] != null && filter.test(entries[i]))
+                accepted.set(from + i);
+        }
+
+        return accepted;
+    }
+}
@@ -0,0 +1,105 @@
+package org.lmelaia.iseries.ilibrary;
+
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
+import org.lmelaia.iseries.ilibrary.search.QueryException;
+import org.lmelaia.iseries.ilibrary.search.QueryPlan;
+
+import java.util.BitSet;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A {@link TableEntryFilter} that filters entries with a
+ * search query written in the query language, e.g.
+ * {@code type:series rating>=8 loved:true name:star}.
+ * <p>
+ * <p/>The query is compiled into a {@link QueryPlan} when the
+ * filter is created, which is run against the index of the
+ * library to find the matching entries.
+ */
+public class QueryFilter implements IndexedFilter {
+
+    /**
+     * The query.
+     */
+    private final String query;
+
+    /**
+     * The compiled query.
+     */
+    private final QueryPlan plan;
+
+    /**
+     * Creates a new QueryFilter that accepts the entries
+     * matching the given query.
+     *
+     * @param query the query.
+     * @throws QueryException if the query isn't valid.
+     */
+    public QueryFilter(String query) throws QueryException {
+        this.query = query;
+        this.plan = QueryPlan.compile(query);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param entry the ITableEntry to check.
+     * @return {@code true} if the entry matches the query.
+     */
+    @Override
+    public boolean accept(ITableEntry entry) {
+        return plan.matches(entry);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index the index of the library.
+     * @return the entries matching the query.
+     */
+    @Override
+    public BitSet select(LibraryIndex index) {
+        return plan.select(index);
+    }
+
+    /**
+     * Runs the query, recording the plan and each step
+     * run with the number of entries it matched and the
+     * time it took, and giving up once the run is cancelled.
+     *
+     * @param index       the index of the library.
+     * @param explanation a new explanation to record the
+     *                    run in, or {@code null}.
+     * @param cancelled   checked before each step and every
+     *                    few thousand entries scanned, or
+     *                    {@code null} if never cancelled.
+     * @return the entries matching the query.
+     * @throws java.util.concurrent.CancellationException if the run is cancelled.
+     */
+    public BitSet select(LibraryIndex index, QueryPlan.Explanation explanation, BooleanSupplier cancelled) {
+        return plan.select(index, explanation, cancelled);
+    }
+
+    /**
+     * @return {@code true} if the query is only text, and
+     * so matches the same entries as a {@link SearchFilter}.
+     */
+    public boolean isPlainText() {
+        return plan.isPlainText();
+    }
+
+    /**
+     * @param o another object.
+     * @return {@code true} if the other object is a
+     * QueryFilter for the same query.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof QueryFilter && query.equals(((QueryFilter) o).query);
+    }
+
+    @Override
+    public int hashCode() {
+        return query.hashCode();
+    }
+}
@@ -0,0 +1,264 @@
+package org.lmelaia.iseries.ilibrary;
+
+import org.lmelaia.iseries.common.metrics.Counter;
+import org.lmelaia.iseries.common.metrics.MetricsRegistry;
+
+import java.util.*;
+
+/**
+ * A bounded cache of the entries shown for recently used pairs
+ * of navigation filter and search filter, so switching back to
+ * a recent view doesn't filter the library again.
+ * <p>
+ * Cached results are kept up to date as entries are added,
+ * edited and removed, by checking just the changed entry
+ * against the filters of each result, rather than being
+ * thrown away. Filters are matched by equality, and a result
+ * is only used while the {@link TableEntryFilter#getVersion()
+ * versions} of its filters are unchanged. Only used on the FX
+ * thread.
+ */
+final class ResultCache {
+
+    /**
+     * Default number of results kept.
+     */
+    static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Results found in the cache, across every library.
+     */
+    private static final Counter HITS = MetricsRegistry.getRegistry().counter("search.cache.hits");
+
+    /**
+     * Results not found in the cache, across every library.
+     */
+    private static final Counter MISSES = MetricsRegistry.getRegistry().counter("search.cache.misses");
+
+    /**
+     * A pair of filters.
+     */
+    private static final class Key {
+
+        /**
+         * The navigation filter, or {@code null}.
+         */
+        private final TableEntryFilter filter;
+
+        /**
+         * The search filter, or {@code null}.
+         */
+        private final TableEntryFilter searchFilter;
+
+        /**
+         * @param filter       the navigation filter, or {@code null}.
+         * @param searchFilter the search filter, or {@code null}.
+         */
+        private Key(TableEntryFilter filter, TableEntryFilter searchFilter) {
+            this.filter = filter;
+            this.searchFilter = searchFilter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+
+            Key key = (Key) o;
+            return Objects.equals(filter, key.filter) && Objects.equals(searchFilter, key.searchFilter);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(filter, searchFilter);
+        }
+    }
+
+    /**
+     * A cached result.
+     */
+    private static final class Result {
+
+        /**
+         * The ordinals of the entries accepted by both filters.
+         */
+        private final BitSet ordinals;
+
+        /**
+         * The version of the navigation filter.
+         */
+        private final int filterVersion;
+
+        /**
+         * The version of the search filter.
+         */
+        private final int searchFilterVersion;
+
+        /**
+         * @param ordinals            the ordinals of the entries
+         *                            accepted by both filters.
+         * @param filterVersion       the version of the
+         *                            navigation filter.
+         * @param searchFilterVersion the version of the
+         *                            search filter.
+         */
+        private Result(BitSet ordinals, int filterVersion, int searchFilterVersion) {
+            this.ordinals = ordinals;
+            this.filterVersion = filterVersion;
+            this.searchFilterVersion = searchFilterVersion;
+        }
+    }
+
+    /**
+     * The results, least recently used first.
+     */
+    private final LinkedHashMap<Key, Result> results;
+
+    /**
+     * Number of results found in the cache.
+     */
+    private long hits;
+
+    /**
+     * Number of results not found in the cache.
+     */
+    private long misses;
+
+    /**
+     * Number of results dropped to make room,
+     * or as their filters changed.
+     */
+    private long evictions;
+
+    /**
+     * @param capacity the number of results kept.
+     */
+    ResultCache(int capacity) {
+        this.results = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                if (size() <= capacity)
+                    return false;
+
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param filter       the navigation filter, or {@code null}.
+     * @param searchFilter the search filter, or {@code null}.
+     * @return the ordinals of the entries accepted by both
+     * filters, which must not be modified, or {@code null}
+     * if not cached.
+     */
+    BitSet get(TableEntryFilter filter, TableEntryFilter searchFilter) {
+        Key key = new Key(filter, searchFilter);
+        Result result = results.get(key);
+
+        if (result != null && (result.filterVersion != getVersion(filter)
+                || result.searchFilterVersion != getVersion(searchFilter))) {
+            results.remove(key);
+            evictions++;
+            result = null;
+        }
+
+        if (result == null) {
+            misses++;
+            MISSES.increment();
+            return null;
+        }
+
+        hits++;
+        HITS.increment();
+        return result.ordinals;
+    }
+
+    /**
+     * Caches a result, which is then kept
+     * up to date by the cache.
+     *
+     * @param filter       the navigation filter, or {@code null}.
+     * @param searchFilter the search filter, or {@code null}.
+     * @param ordinals     the ordinals of the entries accepted
+     *                     by both filters.
+     */
+    void put(TableEntryFilter filter, TableEntryFilter searchFilter, BitSet ordinals) {
+        results.put(new Key(filter, searchFilter),
+                new Result(ordinals, getVersion(filter), getVersion(searchFilter)));
+    }
+
+    /**
+     * Updates every result for an entry
+     * that has been added or edited.
+     *
+     * @param ordinal the ordinal of the entry.
+     * @param entry   the entry.
+     */
+    void update(int ordinal, ITableEntry entry) {
+        for (Map.Entry<Key, Result> result : results.entrySet()) {
+            Key key = result.getKey();
+            boolean accepted = (key.filter == null || key.filter.accept(entry))
+                    && (key.searchFilter == null || key.searchFilter.accept(entry));
+
+            result.getValue().ordinals.set(ordinal, accepted);
+        }
+    }
+
+    /**
+     * Updates every result for an entry that has been removed.
+     *
+     * @param ordinal the ordinal of the entry.
+     */
+    void remove(int ordinal) {
+        for (Result result : results.values())
+            result.ordinals.clear(ordinal);
+    }
+
+    /**
+     * Drops every result, without counting them as evicted.
+     */
+    void clear() {
+        results.clear();
+    }
+
+    /**
+     * @return the number of results found in the cache.
+     */
+    long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of results not found in the cache.
+     */
+    long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of results dropped to make
+     * room, or as their filters changed.
+     */
+    long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the fraction of results found in the
+     * cache, from 0 to 1, or 0 before the first lookup.
+     */
+    double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @param filter a filter, or {@code null}.
+     * @return the version of the filter.
+     */
+    private static int getVersion(TableEntryFilter filter) {
+        return filter == null ? 0 : filter.getVersion();
+    }
+}
@@ -1,43 +1,34 @@
 package org.lmelaia.iseries.ilibrary;
 
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
+import org.lmelaia.iseries.ilibrary.search.SearchField;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
 /**
  * A search query implementation of a {@link TableEntryFilter}
  * that filters entries based on a search query String. Any
  * entries with information that matches the search query will
  * be accepted.
  * <p>
- * <p/>All text information within the entry is compared
- * to the filters search query. If the search query is
- * found anywhere within the entries text information
- * (not case sensitive), the entry match the search
- * query and filter will allow the entry though. Otherwise
- * the entry will be allowed through.
+ * <p/>The search query is split on whitespace into terms. An
+ * entry matches the query if every term appears anywhere in
+ * the entries text information (not case sensitive), e.g.
+ * "ark kni" matches "The Dark Knight". The search is answered
+ * by the {@link LibraryIndex}: each term is looked up in the
+ * trigram index and the entries found for every term are
+ * intersected.
  */
-public class SearchFilter implements TableEntryFilter {
-
-    /**
-     * Used to get a list of strings from a given entry,
-     * all of which contain searchable information, each
-     * of which can be matched against the search query.
-     *
-     * @param entry the entry to obtain the searchable
-     *              information from.
-     * @return a list of string, each of which contains
-     * information that can be matched against the search
-     * query.
-     */
-    private static String[] getSearchableStrings(ITableEntry entry) {
-        return new String[]{
-                entry.getName(), entry.getComments(), entry.getRating(),
-                entry.getSynopsis(), entry.getType(), entry.getUUID()
-        };
-    }
+public class SearchFilter implements IndexedFilter {
 
     /**
-     * The given search query as a String
-     * converted to lowercase.
+     * The terms of the search query, in lowercase.
      */
-    private final String searchQuery;
+    private final List<String> terms;
 
     /**
      * Creates a new SearchFilter that searches for enties
@@ -46,7 +37,12 @@ public class SearchFilter implements TableEntryFilter {
      * @param searchQuery the search query.
      */
     public SearchFilter(String searchQuery) {
-        this.searchQuery = searchQuery.toLowerCase();
+        this.terms = new ArrayList<>();
+
+        for (String term : searchQuery.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+            if (!term.isEmpty())
+                terms.add(term);
+        }
     }
 
     /**
@@ -59,27 +55,126 @@ public class SearchFilter implements TableEntryFilter {
      *
      * @param entry the ITableEntry to check.
      * @return {@code true} if the has some information
-     * within that matches the provided {@link #searchQuery},
+     * within that matches the provided {@link #terms},
      * accepting the entry as a match, {@code false} otherwise.
      */
     @Override
     public boolean accept(ITableEntry entry) {
-        return hasMatch(entry);
+        for (String term : terms) {
+            if (!hasMatch(entry, term))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param index the index of the library.
+     * @return the entries containing each term.
+     */
+    @Override
+    public BitSet select(LibraryIndex index) {
+        return select(index, null);
+    }
+
+    /**
+     * Finds the entries matching the search out of
+     * the given entries.
+     *
+     * @param index  the index of the library.
+     * @param within the ordinals of the entries to search,
+     *               or {@code null} to search every entry.
+     * @return the entries containing each term.
+     * @see #refines(SearchFilter)
+     */
+    public BitSet select(LibraryIndex index, BitSet within) {
+        return select(index, within, null);
+    }
+
+    /**
+     * Finds the entries matching the search out of the
+     * given entries, giving up once the search is cancelled.
+     *
+     * @param index     the index of the library.
+     * @param within    the ordinals of the entries to search,
+     *                  or {@code null} to search every entry.
+     * @param cancelled checked every few thousand entries,
+     *                  or {@code null} if never cancelled.
+     * @return the entries containing each term.
+     * @throws java.util.concurrent.CancellationException if the search is cancelled.
+     */
+    public BitSet select(LibraryIndex index, BitSet within, BooleanSupplier cancelled) {
+        BitSet selected = within == null ? index.getOrdinals() : (BitSet) within.clone();
+
+        for (String term : terms) {
+            if (selected.isEmpty())
+                break;
+
+            selected = index.findSubstring(term, null, selected, cancelled);
+        }
+
+        return selected;
+    }
+
+    /**
+     * Checks if this search is a refinement of another,
+     * e.g. "dark kn" refines "dar". Every entry matching
+     * this search also matches the other, so only the
+     * results of the other need to be searched.
+     *
+     * @param other the other search.
+     * @return {@code true} if every term of the other search
+     * is within a term of this search.
+     */
+    public boolean refines(SearchFilter other) {
+        for (String otherTerm : other.terms) {
+            boolean found = false;
+
+            for (String term : terms) {
+                if (term.contains(otherTerm)) {
+                    found = true;
+                    break;
+                }
+            }
+
+            if (!found)
+                return false;
+        }
+
+        return true;
     }
 
     /**
      * Checks if the given entry has any searchable
-     * information within that matches the search query.
+     * information containing the term.
      *
      * @param entry the entry to check for a match.
+     * @param term  the lowercase term.
      * @return {@code true} if the entry is a match.
      */
-    private boolean hasMatch(ITableEntry entry) {
-        for (String searchString : getSearchableStrings(entry)) {
-            if (searchString.toLowerCase().contains(searchQuery))
+    private static boolean hasMatch(ITableEntry entry, String term) {
+        for (SearchField field : SearchField.values()) {
+            if (field.read(entry).toLowerCase(Locale.ROOT).contains(term))
                 return true;
         }
+
         return false;
     }
 
+    /**
+     * @param o another object.
+     * @return {@code true} if the other object is a
+     * SearchFilter for the same terms.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SearchFilter && terms.equals(((SearchFilter) o).terms);
+    }
+
+    @Override
+    public int hashCode() {
+        return terms.hashCode();
+    }
 }
@@ -19,4 +19,41 @@ public interface TableEntryFilter {
      */
     boolean accept(ITableEntry entry);
 
+    /**
+     * Filters that accept different entries over time, other
+     * than by the entries themselves changing, must change
+     * their version each time, so results found with an
+     * earlier version aren't reused.
+     *
+     * @return the version of this filter.
+     */
+    default int getVersion() {
+        return 0;
+    }
+
+    /**
+     * Large libraries are filtered on several threads at
+     * once. Filters that can't have {@link #accept(ITableEntry)}
+     * called from more than one thread at a time must return
+     * {@code false}, so they're only ever run on one thread.
+     *
+     * @return {@code true} if this filter can be
+     * used from several threads at once.
+     */
+    default boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Filters that accept every entry, such as a navigation
+     * showing the whole library, should return {@code true},
+     * so they're treated as no filter at all rather than
+     * being checked against every entry.
+     *
+     * @return {@code true} if this filter
+     * accepts every entry.
+     */
+    default boolean acceptsAll() {
+        return false;
+    }
 }
@@ -0,0 +1,178 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import org.lmelaia.iseries.ilibrary.IEntry;
+import org.lmelaia.iseries.ilibrary.ITableEntry;
+
+/**
+ * The attributes of an entry that take one of a small
+ * set of values, which are indexed as a bitmap per value.
+ * <p>
+ * Values are numbered from zero, in the order of the
+ * {@link IEntry} enum they come from, so ratings are
+ * numbered by the rating itself (zero being unrated).
+ */
+public enum Attribute {
+
+    /**
+     * The media type of the entry.
+     */
+    TYPE(IEntry.TypeValues.values().length) {
+        @Override
+        public int read(ITableEntry entry) {
+            return entry.getEntry().getType().ordinal();
+        }
+
+        @Override
+        public int parse(String value) throws QueryException {
+            for (IEntry.TypeValues type : IEntry.TypeValues.values()) {
+                if (type.name().equalsIgnoreCase(value))
+                    return type.ordinal();
+            }
+
+            throw new QueryException("Unknown type: " + value);
+        }
+
+        @Override
+        public String toString(int value) {
+            return IEntry.TypeValues.values()[value].name().toLowerCase();
+        }
+    },
+
+    /**
+     * The rating of the entry, from 1 to 10,
+     * or 0 if it isn't rated.
+     */
+    RATING(IEntry.RatingValues.values().length) {
+        @Override
+        public int read(ITableEntry entry) {
+            return entry.getEntry().getRating().ordinal();
+        }
+
+        @Override
+        public int parse(String value) throws QueryException {
+            if (value.equalsIgnoreCase("none") || value.equalsIgnoreCase("na")
+                    || value.equalsIgnoreCase(IEntry.RatingValues.NA.val))
+                return IEntry.RatingValues.NA.ordinal();
+
+            //Either a whole rating, e.g. 8/10, or just the number.
+            if (value.endsWith("/10"))
+                value = value.substring(0, value.length() - 3);
+
+            try {
+                int rating = Integer.parseInt(value);
+
+                if (rating >= 1 && rating < getValueCount())
+                    return rating;
+            } catch (NumberFormatException e) {
+                //Handled below.
+            }
+
+            throw new QueryException("Ratings are from 1 to 10 or n/a, not: " + value);
+        }
+
+        @Override
+        public String toString(int value) {
+            return IEntry.RatingValues.values()[value].val.toLowerCase();
+        }
+
+        @Override
+        public boolean isOrdered() {
+            return true;
+        }
+    },
+
+    /**
+     * Whether or not the entry is loved,
+     * 1 if it is and 0 if not.
+     */
+    LOVED(2) {
+        @Override
+        public int read(ITableEntry entry) {
+            return entry.getEntry().isLoved() ? 1 : 0;
+        }
+
+        @Override
+        public int parse(String value) throws QueryException {
+            if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("yes"))
+                return 1;
+
+            if (value.equalsIgnoreCase("false") || value.equalsIgnoreCase("no"))
+                return 0;
+
+            throw new QueryException("Loved is either true or false, not: " + value);
+        }
+
+        @Override
+        public String toString(int value) {
+            return value == 1 ? "true" : "false";
+        }
+    };
+
+    /**
+     * Cached copy of {@link #values()}.
+     */
+    static final Attribute[] ATTRIBUTES = values();
+
+    /**
+     * Number of values the attribute can take.
+     */
+    private final int valueCount;
+
+    /**
+     * @param valueCount number of values the
+     *                   attribute can take.
+     */
+    Attribute(int valueCount) {
+        this.valueCount = valueCount;
+    }
+
+    /**
+     * @param entry the entry.
+     * @return the value of this attribute in the entry.
+     */
+    public abstract int read(ITableEntry entry);
+
+    /**
+     * @param value a value of this attribute, as
+     *              written in a search query.
+     * @return the value.
+     * @throws QueryException if the value isn't one
+     *                        this attribute can take.
+     */
+    public abstract int parse(String value) throws QueryException;
+
+    /**
+     * @param value a value of this attribute.
+     * @return the value, as written in a search query.
+     */
+    public abstract String toString(int value);
+
+    /**
+     * @return {@code true} if the values can be compared
+     * with one another, e.g. {@code rating>=8}.
+     */
+    public boolean isOrdered() {
+        return false;
+    }
+
+    /**
+     * @return the number of values the attribute can take.
+     */
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    /**
+     * @param name the name of an attribute, ignoring case.
+     * @return the attribute with the given name, or
+     * {@code null} if there's no such attribute.
+     */
+    public static Attribute fromName(String name) {
+        for (Attribute attribute : ATTRIBUTES) {
+            if (attribute.name().equalsIgnoreCase(name))
+                return attribute;
+        }
+
+        return null;
+    }
+}
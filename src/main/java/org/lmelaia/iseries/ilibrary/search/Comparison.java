@@ -0,0 +1,79 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+/**
+ * The comparisons a search query can make between
+ * a field and a value, e.g. {@code rating>=8}.
+ */
+enum Comparison {
+
+    /**
+     * The field contains the value.
+     */
+    CONTAINS(":"),
+
+    /**
+     * The field is the value.
+     */
+    EQUAL("="),
+
+    /**
+     * The field isn't the value.
+     */
+    NOT_EQUAL("!="),
+
+    /**
+     * The field is less than or equal to the value.
+     */
+    LESS_OR_EQUAL("<="),
+
+    /**
+     * The field is greater than or equal to the value.
+     */
+    GREATER_OR_EQUAL(">="),
+
+    /**
+     * The field is less than the value.
+     */
+    LESS("<"),
+
+    /**
+     * The field is greater than the value.
+     */
+    GREATER(">");
+
+    /**
+     * Cached copy of {@link #values()}, with the
+     * two character symbols before the one character
+     * symbols they start with.
+     */
+    static final Comparison[] COMPARISONS = values();
+
+    /**
+     * The comparison, as written in a query.
+     */
+    final String symbol;
+
+    /**
+     * @param symbol the comparison, as written in a query.
+     */
+    Comparison(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * @param order the order of the field relative to the
+     *              value, as returned by a comparator.
+     * @return {@code true} if the order satisfies this
+     * comparison. {@link #CONTAINS} is taken as equality.
+     */
+    boolean test(int order) {
+        return switch (this) {
+            case CONTAINS, EQUAL -> order == 0;
+            case NOT_EQUAL -> order != 0;
+            case LESS_OR_EQUAL -> order <= 0;
+            case GREATER_OR_EQUAL -> order >= 0;
+            case LESS -> order < 0;
+            case GREATER -> order > 0;
+        };
+    }
+}
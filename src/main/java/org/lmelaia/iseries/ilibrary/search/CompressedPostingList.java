@@ -0,0 +1,224 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A sorted set of entry ordinals, stored as the gaps between
+ * consecutive ordinals in a variable length byte encoding.
+ * <p>
+ * Each gap takes 7 bits per byte, with the high bit set on
+ * every byte but the last, so the dense lists of common
+ * trigrams take about a byte per ordinal rather than four.
+ * Ordinals are handed out in increasing order, so adding the
+ * ordinal of a new entry is an append. Adding an older
+ * ordinal or removing one re-encodes only the gaps either
+ * side of it. Not thread safe; guarded by the lock of the
+ * {@link LibraryIndex}.
+ */
+final class CompressedPostingList {
+
+    /**
+     * The encoded gaps, in the first {@link #length} bytes.
+     * The first gap is from -1.
+     */
+    private byte[] data = new byte[4];
+
+    /**
+     * Number of bytes used in {@link #data}.
+     */
+    private int length;
+
+    /**
+     * Number of ordinals in the list.
+     */
+    private int size;
+
+    /**
+     * The largest ordinal in the list,
+     * or -1 if it's empty.
+     */
+    private int last = -1;
+
+    /**
+     * Adds an ordinal, if not already in the list.
+     *
+     * @param ordinal the ordinal.
+     */
+    void add(int ordinal) {
+        if (ordinal > last) {
+            byte[] gap = new byte[5];
+            replace(length, length, gap, encode(ordinal - last, gap, 0));
+            last = ordinal;
+            size++;
+            return;
+        }
+
+        int previous = -1;
+        int offset = 0;
+
+        while (offset < length) {
+            int start = offset;
+            int current = previous + decode(offset);
+            offset = skip(offset);
+
+            if (current == ordinal)
+                return;
+
+            if (current > ordinal) {
+                byte[] gaps = new byte[10];
+                int count = encode(ordinal - previous, gaps, 0);
+                count = encode(current - ordinal, gaps, count);
+                replace(start, offset, gaps, count);
+                size++;
+                return;
+            }
+
+            previous = current;
+        }
+    }
+
+    /**
+     * Removes an ordinal.
+     *
+     * @param ordinal the ordinal.
+     * @return {@code true} if the ordinal was in the list.
+     */
+    boolean remove(int ordinal) {
+        if (ordinal > last)
+            return false;
+
+        int previous = -1;
+        int offset = 0;
+
+        while (offset < length) {
+            int start = offset;
+            int current = previous + decode(offset);
+            offset = skip(offset);
+
+            if (current > ordinal)
+                return false;
+
+            if (current == ordinal) {
+                if (offset == length) {
+                    //Removing the last ordinal.
+                    length = start;
+                    last = previous;
+                } else {
+                    int next = current + decode(offset);
+                    byte[] gap = new byte[5];
+                    replace(start, skip(offset), gap, encode(next - previous, gap, 0));
+                }
+
+                size--;
+                return true;
+            }
+
+            previous = current;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the number of ordinals in the list.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if the list holds no ordinals.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Sets the bit of each ordinal in the list.
+     *
+     * @param set the set to add the ordinals to.
+     */
+    void addTo(BitSet set) {
+        int current = -1;
+        int offset = 0;
+
+        while (offset < length) {
+            current += decode(offset);
+            offset = skip(offset);
+            set.set(current);
+        }
+    }
+
+    /**
+     * @return the approximate memory used by
+     * the list, in bytes.
+     */
+    long getMemoryUsage() {
+        return 32 + 16 + data.length;
+    }
+
+    /**
+     * @param offset the offset of an encoded gap.
+     * @return the gap.
+     */
+    private int decode(int offset) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = data[offset++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        return value;
+    }
+
+    /**
+     * @param offset the offset of an encoded gap.
+     * @return the offset of the next gap.
+     */
+    private int skip(int offset) {
+        while (data[offset++] < 0) ;
+        return offset;
+    }
+
+    /**
+     * Replaces a range of the encoded bytes.
+     *
+     * @param from  the start of the range.
+     * @param to    the end of the range, exclusive.
+     * @param bytes the bytes to replace the range with.
+     * @param count the number of bytes to use.
+     */
+    private void replace(int from, int to, byte[] bytes, int count) {
+        int newLength = length - (to - from) + count;
+
+        if (newLength > data.length)
+            data = Arrays.copyOf(data, Math.max(newLength, data.length + (data.length >> 1)));
+
+        System.arraycopy(data, to, data, from + count, length - to);
+        System.arraycopy(bytes, 0, data, from, count);
+        length = newLength;
+    }
+
+    /**
+     * Encodes a gap.
+     *
+     * @param value  the gap, which is positive.
+     * @param bytes  the array to encode it into.
+     * @param offset the offset in the array.
+     * @return the offset after the encoded gap.
+     */
+    private static int encode(int value, byte[] bytes, int offset) {
+        while ((value & ~0x7F) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+}
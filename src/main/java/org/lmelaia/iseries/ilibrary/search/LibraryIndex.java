@@ -0,0 +1,645 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import org.lmelaia.iseries.ilibrary.ITableEntry;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Indexes the table entries of a library for searching.
+ * <p>
+ * Each entry is given an ordinal when first added, which it
+ * keeps until removed. Ordinals are never reused, so they
+ * also give entries a stable order. Searches return the
+ * ordinals of the matching entries as a {@link BitSet},
+ * which are combined with bitwise operations and read back
+ * through {@link #get(int)}.
+ * <p>
+ * The index keeps a lowercase copy of the searchable
+ * fields of each entry as they were when indexed, so it can
+ * be searched from any thread while entries are edited on
+ * the FX thread. Edits take a write lock and searches
+ * a read lock.
+ */
+public final class LibraryIndex {
+
+    /**
+     * Number of entries checked by a search
+     * between checks for cancellation.
+     */
+    static final int CANCEL_CHECK_INTERVAL = 4096;
+
+    /**
+     * Guards everything below.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The ordinal of each entry, by uuid.
+     */
+    private final Map<UUID, Integer> ordinals = new HashMap<>();
+
+    /**
+     * The entries, by ordinal, with {@code null}
+     * for removed entries.
+     */
+    private final List<ITableEntry> entries = new ArrayList<>();
+
+    /**
+     * The lowercase text of each searchable field of
+     * each entry, by ordinal, as it was when indexed.
+     */
+    private final List<String[]> texts = new ArrayList<>();
+
+    /**
+     * The value of each attribute of each entry, by
+     * ordinal, as it was when indexed.
+     */
+    private final List<int[]> attributes = new ArrayList<>();
+
+    /**
+     * The ordinals of the entries with each value of each
+     * attribute, by attribute ordinal then value.
+     */
+    private final BitSet[][] bitmaps = new BitSet[Attribute.ATTRIBUTES.length][];
+
+    /**
+     * The ordinals of the entries in the index.
+     */
+    private final BitSet live = new BitSet();
+
+    /**
+     * The words in the name of each entry.
+     */
+    private final TokenIndex tokens = new TokenIndex();
+
+    /**
+     * The three character sequences in each entry.
+     */
+    private final TrigramIndex trigrams = new TrigramIndex();
+
+    /**
+     * Number of times an entry has been added,
+     * reindexed or removed.
+     */
+    private long modCount;
+
+    /**
+     * Constructor.
+     */
+    public LibraryIndex() {
+        for (Attribute attribute : Attribute.ATTRIBUTES) {
+            bitmaps[attribute.ordinal()] = new BitSet[attribute.getValueCount()];
+
+            for (int value = 0; value < attribute.getValueCount(); value++)
+                bitmaps[attribute.ordinal()][value] = new BitSet();
+        }
+    }
+
+    /**
+     * Splits text into tokens (lowercase runs of letters and
+     * digits), the same way the index splits entries.
+     *
+     * @param text the text.
+     * @return the tokens, in order, including duplicates.
+     */
+    public static List<String> tokenize(String text) {
+        return TokenIndex.tokenize(text);
+    }
+
+    /**
+     * @param a a word.
+     * @param b another word.
+     * @return the edit distance between the words, counting
+     * a swap of neighbouring characters as one edit, as used
+     * by {@link #findFuzzy(String, int)}.
+     */
+    public static int editDistance(String a, String b) {
+        return TokenIndex.editDistance(a, b);
+    }
+
+    /**
+     * Adds an entry to the index, or reindexes it if an
+     * entry with the same uuid is already indexed.
+     *
+     * @param entry the entry.
+     * @return the entry previously indexed under the
+     * same uuid, or {@code null} if there was none.
+     */
+    public ITableEntry put(ITableEntry entry) {
+        UUID uuid = UUID.fromString(entry.getUUID());
+        String[] fields = readFields(entry);
+        int[] values = readAttributes(entry);
+        long[] entryTrigrams = TrigramIndex.extract(fields);
+
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(uuid);
+            modCount++;
+
+            if (ordinal == null) {
+                ordinal = entries.size();
+                ordinals.put(uuid, ordinal);
+                entries.add(entry);
+                texts.add(fields);
+                attributes.add(values);
+                setBitmaps(ordinal, values, true);
+                live.set(ordinal);
+                tokens.add(ordinal, fields[SearchField.NAME.ordinal()]);
+                trigrams.add(ordinal, entryTrigrams);
+                return null;
+            }
+
+            String[] previous = texts.get(ordinal);
+            tokens.remove(ordinal, previous[SearchField.NAME.ordinal()]);
+            tokens.add(ordinal, fields[SearchField.NAME.ordinal()]);
+            trigrams.update(ordinal, TrigramIndex.extract(previous), entryTrigrams);
+            texts.set(ordinal, fields);
+            setBitmaps(ordinal, attributes.get(ordinal), false);
+            setBitmaps(ordinal, values, true);
+            attributes.set(ordinal, values);
+            return entries.set(ordinal, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an entry from the index.
+     *
+     * @param uuid the uuid of the entry.
+     * @return the removed entry, or {@code null}
+     * if it wasn't indexed.
+     */
+    public ITableEntry remove(String uuid) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(UUID.fromString(uuid));
+            if (ordinal == null)
+                return null;
+
+            modCount++;
+            tokens.remove(ordinal, texts.get(ordinal)[SearchField.NAME.ordinal()]);
+            trigrams.remove(ordinal, TrigramIndex.extract(texts.get(ordinal)));
+            texts.set(ordinal, null);
+            setBitmaps(ordinal, attributes.get(ordinal), false);
+            attributes.set(ordinal, null);
+            live.clear(ordinal);
+            return entries.set(ordinal, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param uuid the uuid of an entry.
+     * @return the entry with the given uuid, or
+     * {@code null} if it isn't indexed.
+     */
+    public ITableEntry get(String uuid) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(UUID.fromString(uuid));
+            return ordinal == null ? null : entries.get(ordinal);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param ordinal the ordinal of an entry.
+     * @return the entry with the given ordinal, or
+     * {@code null} if it has been removed.
+     */
+    public ITableEntry get(int ordinal) {
+        lock.readLock().lock();
+        try {
+            return ordinal < entries.size() ? entries.get(ordinal) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads many entries at once, taking the lock once rather
+     * than once per entry, so threads reading entries side by
+     * side don't contend for it.
+     *
+     * @param ordinals the ordinals of the entries.
+     * @param from     the first ordinal to read.
+     * @param to       the ordinal after the last to read.
+     * @return the entries with the given ordinals from
+     * {@code from} to {@code to}, at their ordinal less
+     * {@code from}, with {@code null} for every other
+     * ordinal and for removed entries.
+     */
+    public ITableEntry[] get(BitSet ordinals, int from, int to) {
+        ITableEntry[] found = new ITableEntry[Math.max(0, to - from)];
+
+        lock.readLock().lock();
+        try {
+            int end = Math.min(to, entries.size());
+
+            for (int i = ordinals.nextSetBit(from); i >= 0 && i < end; i = ordinals.nextSetBit(i + 1))
+                found[i - from] = entries.get(i);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return found;
+    }
+
+    /**
+     * @param uuid the uuid of an entry.
+     * @return the ordinal of the entry, or
+     * {@code -1} if it isn't indexed.
+     */
+    public int getOrdinal(String uuid) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(UUID.fromString(uuid));
+            return ordinal == null ? -1 : ordinal;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of times an entry has been added,
+     * reindexed or removed. Results found while it stays the
+     * same are still accurate.
+     */
+    public long getModCount() {
+        lock.readLock().lock();
+        try {
+            return modCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the ordinals of every entry in the index.
+     */
+    public BitSet getOrdinals() {
+        lock.readLock().lock();
+        try {
+            return (BitSet) live.clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param ordinal the ordinal of an entry.
+     * @param field   the field.
+     * @return the lowercase text of the field as it was
+     * when the entry was indexed, or {@code null} if the
+     * entry has been removed.
+     */
+    public String getText(int ordinal, SearchField field) {
+        lock.readLock().lock();
+        try {
+            String[] fields = ordinal < texts.size() ? texts.get(ordinal) : null;
+            return fields == null ? null : fields[field.ordinal()];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the entries containing the given text
+     * anywhere within a field, e.g. "ark" finds
+     * "The Dark Knight".
+     * <p>
+     * Terms of three or more characters are looked up in the
+     * trigram index, and only the entries containing every
+     * trigram of the term are checked against their text.
+     * Shorter terms are checked against every entry.
+     *
+     * @param term  the text, which is lowercased.
+     * @param field the field to search, or
+     *              {@code null} to search every field.
+     * @return the ordinals of the entries found.
+     */
+    public BitSet findSubstring(String term, SearchField field) {
+        return findSubstring(term, field, null);
+    }
+
+    /**
+     * Finds the entries, out of the given entries, containing
+     * the given text anywhere within a field. Used to refine
+     * earlier results, e.g. when a search term is extended,
+     * as only those results need to be checked.
+     *
+     * @param term   the text, which is lowercased.
+     * @param field  the field to search, or
+     *               {@code null} to search every field.
+     * @param within the ordinals of the entries to search,
+     *               or {@code null} to search every entry.
+     * @return the ordinals of the entries found.
+     * @see #findSubstring(String, SearchField)
+     */
+    public BitSet findSubstring(String term, SearchField field, BitSet within) {
+        return findSubstring(term, field, within, null);
+    }
+
+    /**
+     * Finds the entries, out of the given entries, containing
+     * the given text anywhere within a field, giving up once
+     * the search is cancelled.
+     *
+     * @param term      the text, which is lowercased.
+     * @param field     the field to search, or
+     *                  {@code null} to search every field.
+     * @param within    the ordinals of the entries to search,
+     *                  or {@code null} to search every entry.
+     * @param cancelled checked every few thousand entries,
+     *                  or {@code null} if never cancelled.
+     * @return the ordinals of the entries found.
+     * @throws CancellationException if the search is cancelled.
+     * @see #findSubstring(String, SearchField, BitSet)
+     */
+    public BitSet findSubstring(String term, SearchField field, BitSet within, BooleanSupplier cancelled) {
+        String lowercase = term.toLowerCase(Locale.ROOT);
+
+        lock.readLock().lock();
+        try {
+            BitSet candidates = lowercase.length() >= TrigramIndex.LENGTH
+                    ? trigrams.findCandidates(lowercase) : (BitSet) live.clone();
+
+            if (within != null)
+                candidates.and(within);
+
+            int checked = 0;
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if (++checked % CANCEL_CHECK_INTERVAL == 0)
+                    checkCancelled(cancelled);
+
+                if (!contains(texts.get(i), lowercase, field))
+                    candidates.clear(i);
+            }
+
+            return candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the entries with a word in their name within an
+     * edit distance of the given word, or starting with it,
+     * e.g. "kinght" finds "The Dark Knight".
+     *
+     * @param word        the word, which is lowercased.
+     * @param maxDistance the largest edit distance allowed.
+     * @return the ordinals of the entries found.
+     * @see #editDistance(String, String)
+     */
+    public BitSet findFuzzy(String word, int maxDistance) {
+        String lowercase = word.toLowerCase(Locale.ROOT);
+
+        lock.readLock().lock();
+        try {
+            BitSet found = tokens.findPrefix(lowercase);
+            found.or(tokens.findFuzzy(lowercase, maxDistance));
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the entries, out of the given entries, with
+     * the whole text of a field equal to the given text.
+     *
+     * @param text   the text, which is lowercased.
+     * @param field  the field to search.
+     * @param within the ordinals of the entries to search,
+     *               or {@code null} to search every entry.
+     * @return the ordinals of the entries found.
+     */
+    public BitSet findEqual(String text, SearchField field, BitSet within) {
+        return findEqual(text, field, within, null);
+    }
+
+    /**
+     * Finds the entries, out of the given entries, with the
+     * whole text of a field equal to the given text, giving
+     * up once the search is cancelled.
+     *
+     * @param text      the text, which is lowercased.
+     * @param field     the field to search.
+     * @param within    the ordinals of the entries to search,
+     *                  or {@code null} to search every entry.
+     * @param cancelled checked every few thousand entries,
+     *                  or {@code null} if never cancelled.
+     * @return the ordinals of the entries found.
+     * @throws CancellationException if the search is cancelled.
+     */
+    public BitSet findEqual(String text, SearchField field, BitSet within, BooleanSupplier cancelled) {
+        String lowercase = text.toLowerCase(Locale.ROOT);
+
+        //A field equal to the text also contains it, so the
+        //trigram index narrows down the entries to check.
+        return scan(field, lowercase::equals,
+                lowercase.isEmpty() ? within : findSubstring(lowercase, field, within, cancelled), cancelled);
+    }
+
+    /**
+     * Finds the entries, out of the given entries, with an
+     * attribute value within the given range.
+     *
+     * @param attribute the attribute.
+     * @param min       the smallest value, inclusive.
+     * @param max       the largest value, inclusive.
+     * @param within    the ordinals of the entries to search,
+     *                  or {@code null} to search every entry.
+     * @return the ordinals of the entries found.
+     */
+    public BitSet findAttribute(Attribute attribute, int min, int max, BitSet within) {
+        BitSet found = new BitSet();
+
+        lock.readLock().lock();
+        try {
+            BitSet[] values = bitmaps[attribute.ordinal()];
+
+            for (int value = Math.max(0, min); value <= Math.min(max, values.length - 1); value++)
+                found.or(values[value]);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (within != null)
+            found.and(within);
+
+        return found;
+    }
+
+    /**
+     * Finds the entries, out of the given entries, with the
+     * text of a field accepted by a predicate. Every entry
+     * given is checked, so this is the slowest way to search.
+     *
+     * @param field     the field to check.
+     * @param predicate the predicate, given the
+     *                  lowercase text of the field.
+     * @param within    the ordinals of the entries to search,
+     *                  or {@code null} to search every entry.
+     * @return the ordinals of the entries found.
+     */
+    public BitSet scan(SearchField field, Predicate<String> predicate, BitSet within) {
+        return scan(field, predicate, within, null);
+    }
+
+    /**
+     * Finds the entries, out of the given entries, with the
+     * text of a field accepted by a predicate, giving up once
+     * the search is cancelled.
+     *
+     * @param field     the field to check.
+     * @param predicate the predicate, given the
+     *                  lowercase text of the field.
+     * @param within    the ordinals of the entries to search,
+     *                  or {@code null} to search every entry.
+     * @param cancelled checked every few thousand entries,
+     *                  or {@code null} if never cancelled.
+     * @return the ordinals of the entries found.
+     * @throws CancellationException if the search is cancelled.
+     * @see #scan(SearchField, Predicate, BitSet)
+     */
+    public BitSet scan(SearchField field, Predicate<String> predicate, BitSet within, BooleanSupplier cancelled) {
+        lock.readLock().lock();
+        try {
+            BitSet found = (BitSet) live.clone();
+
+            if (within != null)
+                found.and(within);
+
+            int checked = 0;
+            for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+                if (++checked % CANCEL_CHECK_INTERVAL == 0)
+                    checkCancelled(cancelled);
+
+                if (!predicate.test(texts.get(i)[field.ordinal()]))
+                    found.clear(i);
+            }
+
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of distinct three character
+     * sequences across every field.
+     */
+    public int getTrigramCount() {
+        lock.readLock().lock();
+        try {
+            return trigrams.getTrigramCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the approximate memory used by the
+     * trigram index, in bytes.
+     */
+    public long getTrigramMemoryUsage() {
+        lock.readLock().lock();
+        try {
+            return trigrams.getMemoryUsage();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param cancelled tells if a search has been cancelled,
+     *                  or {@code null} if never cancelled.
+     * @throws CancellationException if the search has been cancelled.
+     */
+    static void checkCancelled(BooleanSupplier cancelled) {
+        if (cancelled != null && cancelled.getAsBoolean())
+            throw new CancellationException("Search cancelled");
+    }
+
+    /**
+     * @param fields the lowercase text of each field.
+     * @param term   the lowercase term.
+     * @param field  the field to check, or
+     *               {@code null} to check every field.
+     * @return {@code true} if the field contains the term.
+     */
+    private static boolean contains(String[] fields, String term, SearchField field) {
+        if (field != null)
+            return fields[field.ordinal()].contains(term);
+
+        for (String text : fields) {
+            if (text.contains(term))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Sets or clears the bits of an entry in the
+     * bitmap of each of its attribute values.
+     *
+     * @param ordinal the ordinal of the entry.
+     * @param values  the attribute values of the entry.
+     * @param set     {@code true} to set the bits,
+     *                {@code false} to clear them.
+     */
+    private void setBitmaps(int ordinal, int[] values, boolean set) {
+        for (Attribute attribute : Attribute.ATTRIBUTES)
+            bitmaps[attribute.ordinal()][values[attribute.ordinal()]].set(ordinal, set);
+    }
+
+    /**
+     * @param entry the entry.
+     * @return the value of each attribute of
+     * the entry, by attribute ordinal.
+     */
+    private static int[] readAttributes(ITableEntry entry) {
+        int[] values = new int[Attribute.ATTRIBUTES.length];
+
+        for (Attribute attribute : Attribute.ATTRIBUTES)
+            values[attribute.ordinal()] = attribute.read(entry);
+
+        return values;
+    }
+
+    /**
+     * @param entry the entry.
+     * @return the lowercase text of each searchable
+     * field of the entry, by field ordinal.
+     */
+    private static String[] readFields(ITableEntry entry) {
+        String[] fields = new String[SearchField.FIELDS.length];
+
+        for (SearchField field : SearchField.FIELDS)
+            fields[field.ordinal()] = field.read(entry).toLowerCase(Locale.ROOT);
+
+        return fields;
+    }
+}
@@ -0,0 +1,104 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A sorted set of entry ordinals, stored as a
+ * growable int array.
+ * <p>
+ * Ordinals are handed out in increasing order, so adding
+ * the ordinal of a new entry is an append. Not thread safe;
+ * guarded by the lock of the {@link LibraryIndex}.
+ */
+final class PostingList {
+
+    /**
+     * The ordinals, sorted, in the first {@link #size} slots.
+     */
+    private int[] ordinals = new int[2];
+
+    /**
+     * Number of ordinals in the list.
+     */
+    private int size;
+
+    /**
+     * Adds an ordinal, if not already in the list.
+     *
+     * @param ordinal the ordinal.
+     */
+    void add(int ordinal) {
+        if (size == 0 || ordinals[size - 1] < ordinal) {
+            grow();
+            ordinals[size++] = ordinal;
+            return;
+        }
+
+        int position = Arrays.binarySearch(ordinals, 0, size, ordinal);
+        if (position >= 0)
+            return;
+
+        position = -position - 1;
+        grow();
+        System.arraycopy(ordinals, position, ordinals, position + 1, size - position);
+        ordinals[position] = ordinal;
+        size++;
+    }
+
+    /**
+     * Removes an ordinal.
+     *
+     * @param ordinal the ordinal.
+     * @return {@code true} if the ordinal was in the list.
+     */
+    boolean remove(int ordinal) {
+        int position = Arrays.binarySearch(ordinals, 0, size, ordinal);
+        if (position < 0)
+            return false;
+
+        System.arraycopy(ordinals, position + 1, ordinals, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * @param ordinal the ordinal.
+     * @return {@code true} if the ordinal is in the list.
+     */
+    boolean contains(int ordinal) {
+        return Arrays.binarySearch(ordinals, 0, size, ordinal) >= 0;
+    }
+
+    /**
+     * @return the number of ordinals in the list.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if the list holds no ordinals.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Sets the bit of each ordinal in the list.
+     *
+     * @param set the set to add the ordinals to.
+     */
+    void addTo(BitSet set) {
+        for (int i = 0; i < size; i++)
+            set.set(ordinals[i]);
+    }
+
+    /**
+     * Makes room for one more ordinal.
+     */
+    private void grow() {
+        if (size == ordinals.length)
+            ordinals = Arrays.copyOf(ordinals, size + (size >> 1) + 1);
+    }
+}
@@ -0,0 +1,16 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+/**
+ * Thrown when a search query cannot be parsed.
+ */
+public class QueryException extends Exception {
+
+    /**
+     * Default constructor.
+     *
+     * @param message Display message.
+     */
+    QueryException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,517 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import org.lmelaia.iseries.ilibrary.ITableEntry;
+
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A step in the execution plan of a search query.
+ * <p>
+ * Each step can be run against the {@link LibraryIndex},
+ * using whichever index suits it best, or checked against
+ * a single entry. Steps are run within the results of the
+ * steps before them, so the cheapest steps of a conjunction
+ * are run first and the rest only check what's left.
+ * <p>
+ * A run checks if it has been cancelled before each step,
+ * and every few thousand entries checked by a scan, and
+ * gives up with a {@link java.util.concurrent.CancellationException}
+ * if so.
+ */
+abstract class QueryNode {
+
+    /**
+     * Cost of a step answered from the attribute bitmaps.
+     */
+    static final int BITMAP = 0;
+
+    /**
+     * Cost of a step answered from the trigram index,
+     * checking only the candidates found.
+     */
+    static final int TRIGRAM = 1;
+
+    /**
+     * Cost of a step that checks every entry it's given.
+     */
+    static final int SCAN = 2;
+
+    /**
+     * Runs this step against the index.
+     *
+     * @param index       the index.
+     * @param within      the ordinals of the entries to search,
+     *                    or {@code null} to search every entry.
+     * @param explanation the explanation to record the step
+     *                    in, or {@code null}.
+     * @param cancelled   tells if the run has been cancelled,
+     *                    or {@code null} if never cancelled.
+     * @return the ordinals of the entries matched.
+     */
+    final BitSet select(LibraryIndex index, BitSet within, QueryPlan.Explanation explanation,
+                        BooleanSupplier cancelled) {
+        LibraryIndex.checkCancelled(cancelled);
+
+        if (explanation == null)
+            return evaluate(index, within, null, cancelled);
+
+        int line = explanation.enter();
+        long start = System.nanoTime();
+        BitSet selected = evaluate(index, within, explanation, cancelled);
+        explanation.exit(line, this, selected, System.nanoTime() - start);
+        return selected;
+    }
+
+    /**
+     * @param index       the index.
+     * @param within      the ordinals of the entries to search,
+     *                    or {@code null} to search every entry.
+     * @param explanation the explanation to record any
+     *                    sub-steps in, or {@code null}.
+     * @param cancelled   tells if the run has been cancelled,
+     *                    or {@code null} if never cancelled.
+     * @return the ordinals of the entries matched.
+     * @see #select(LibraryIndex, BitSet, QueryPlan.Explanation, BooleanSupplier)
+     */
+    abstract BitSet evaluate(LibraryIndex index, BitSet within, QueryPlan.Explanation explanation,
+                             BooleanSupplier cancelled);
+
+    /**
+     * @param entry the entry.
+     * @return {@code true} if the entry is matched by this step.
+     */
+    abstract boolean matches(ITableEntry entry);
+
+    /**
+     * @return how costly this step is to run,
+     * e.g. {@link #BITMAP}.
+     */
+    abstract int getCost();
+
+    /**
+     * @return a description of this step
+     * and how it's run.
+     */
+    abstract String describe();
+
+    /**
+     * @param indent the indent of this step.
+     * @param lines  the lines to add the plan to.
+     */
+    void describe(String indent, List<String> lines) {
+        lines.add(indent + describe());
+    }
+
+    /**
+     * @param index  the index.
+     * @param within the ordinals of some entries,
+     *               or {@code null} for every entry.
+     * @return a copy of the given ordinals, or
+     * every ordinal if none were given.
+     */
+    static BitSet copy(LibraryIndex index, BitSet within) {
+        return within == null ? index.getOrdinals() : (BitSet) within.clone();
+    }
+
+    /**
+     * Matches every entry, i.e. an empty query.
+     */
+    static final class All extends QueryNode {
+
+        @Override
+        BitSet evaluate(LibraryIndex index, BitSet within, QueryPlan.Explanation explanation,
+                        BooleanSupplier cancelled) {
+            return copy(index, within);
+        }
+
+        @Override
+        boolean matches(ITableEntry entry) {
+            return true;
+        }
+
+        @Override
+        int getCost() {
+            return BITMAP;
+        }
+
+        @Override
+        String describe() {
+            return "all entries";
+        }
+    }
+
+    /**
+     * Matches the entries matched by every sub-step.
+     * Sub-steps are run cheapest first, each within the
+     * results of the last.
+     */
+    static final class And extends QueryNode {
+
+        /**
+         * The sub-steps, cheapest first.
+         */
+        private final List<QueryNode> steps = new ArrayList<>();
+
+        /**
+         * @param steps the sub-steps. Nested
+         *              conjunctions are flattened.
+         */
+        And(List<QueryNode> steps) {
+            for (QueryNode step : steps) {
+                if (step instanceof And)
+                    this.steps.addAll(((And) step).steps);
+                else this.steps.add(step);
+            }
+
+            //Stable, so steps of equal cost keep the order written.
+            this.steps.sort(Comparator.comparingInt(QueryNode::getCost));
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index, BitSet within, QueryPlan.Explanation explanation,
+                        BooleanSupplier cancelled) {
+            BitSet selected = within;
+
+            for (QueryNode step : steps) {
+                selected = step.select(index, selected, explanation, cancelled);
+
+                if (selected.isEmpty())
+                    break;
+            }
+
+            return selected;
+        }
+
+        @Override
+        boolean matches(ITableEntry entry) {
+            for (QueryNode step : steps) {
+                if (!step.matches(entry))
+                    return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        int getCost() {
+            return steps.get(0).getCost();
+        }
+
+        @Override
+        String describe() {
+            return "and (cheapest first, each within the last)";
+        }
+
+        @Override
+        void describe(String indent, List<String> lines) {
+            super.describe(indent, lines);
+
+            for (QueryNode step : steps)
+                step.describe(indent + "  ", lines);
+        }
+    }
+
+    /**
+     * Matches the entries matched by any sub-step. Each
+     * sub-step only searches the entries not yet matched.
+     */
+    static final class Or extends QueryNode {
+
+        /**
+         * The sub-steps.
+         */
+        private final List<QueryNode> steps = new ArrayList<>();
+
+        /**
+         * @param steps the sub-steps. Nested
+         *              disjunctions are flattened.
+         */
+        Or(List<QueryNode> steps) {
+            for (QueryNode step : steps) {
+                if (step instanceof Or)
+                    this.steps.addAll(((Or) step).steps);
+                else this.steps.add(step);
+            }
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index, BitSet within, QueryPlan.Explanation explanation,
+                        BooleanSupplier cancelled) {
+            BitSet remaining = copy(index, within);
+            BitSet selected = new BitSet();
+
+            for (QueryNode step : steps) {
+                BitSet found = step.select(index, remaining, explanation, cancelled);
+                selected.or(found);
+                remaining.andNot(found);
+
+                if (remaining.isEmpty())
+                    break;
+            }
+
+            return selected;
+        }
+
+        @Override
+        boolean matches(ITableEntry entry) {
+            for (QueryNode step : steps) {
+                if (step.matches(entry))
+                    return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        int getCost() {
+            int cost = BITMAP;
+
+            for (QueryNode step : steps)
+                cost = Math.max(cost, step.getCost());
+
+            return cost;
+        }
+
+        @Override
+        String describe() {
+            return "or (each within the entries not yet matched)";
+        }
+
+        @Override
+        void describe(String indent, List<String> lines) {
+            super.describe(indent, lines);
+
+            for (QueryNode step : steps)
+                step.describe(indent + "  ", lines);
+        }
+    }
+
+    /**
+     * Matches the entries not matched by a sub-step.
+     */
+    static final class Not extends QueryNode {
+
+        /**
+         * The sub-step.
+         */
+        private final QueryNode step;
+
+        /**
+         * @param step the sub-step.
+         */
+        Not(QueryNode step) {
+            this.step = step;
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index, BitSet within, QueryPlan.Explanation explanation,
+                        BooleanSupplier cancelled) {
+            BitSet selected = copy(index, within);
+            selected.andNot(step.select(index, selected, explanation, cancelled));
+            return selected;
+        }
+
+        @Override
+        boolean matches(ITableEntry entry) {
+            return !step.matches(entry);
+        }
+
+        @Override
+        int getCost() {
+            return step.getCost();
+        }
+
+        @Override
+        String describe() {
+            return "not";
+        }
+
+        @Override
+        void describe(String indent, List<String> lines) {
+            super.describe(indent, lines);
+            step.describe(indent + "  ", lines);
+        }
+    }
+
+    /**
+     * Matches the entries containing some text in a field,
+     * or in any field. Answered from the trigram index,
+     * unless the text is too short to have trigrams.
+     */
+    static final class Contains extends QueryNode {
+
+        /**
+         * The field, or {@code null} for any field.
+         */
+        private final SearchField field;
+
+        /**
+         * The lowercase text.
+         */
+        private final String text;
+
+        /**
+         * @param field the field, or {@code null} for any field.
+         * @param text  the text.
+         */
+        Contains(SearchField field, String text) {
+            this.field = field;
+            this.text = text.toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index, BitSet within, QueryPlan.Explanation explanation,
+                        BooleanSupplier cancelled) {
+            return index.findSubstring(text, field, within, cancelled);
+        }
+
+        @Override
+        boolean matches(ITableEntry entry) {
+            if (field != null)
+                return field.read(entry).toLowerCase(Locale.ROOT).contains(text);
+
+            for (SearchField searched : SearchField.FIELDS) {
+                if (searched.read(entry).toLowerCase(Locale.ROOT).contains(text))
+                    return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        int getCost() {
+            return text.length() < TrigramIndex.LENGTH ? SCAN : TRIGRAM;
+        }
+
+        @Override
+        String describe() {
+            return (field == null ? "any field" : field.name().toLowerCase()) + " contains \"" + text + "\" "
+                    + (getCost() == SCAN ? "(scan: shorter than a trigram)" : "(trigram index)");
+        }
+    }
+
+    /**
+     * Matches the entries with the whole text of a field equal
+     * to, or ordered before or after, some text. Equality is
+     * answered from the trigram index, ordering by a scan.
+     */
+    static final class Compare extends QueryNode {
+
+        /**
+         * The field.
+         */
+        private final SearchField field;
+
+        /**
+         * The comparison, which isn't {@link Comparison#CONTAINS}
+         * or {@link Comparison#NOT_EQUAL}.
+         */
+        private final Comparison comparison;
+
+        /**
+         * The lowercase text.
+         */
+        private final String text;
+
+        /**
+         * @param field      the field.
+         * @param comparison the comparison.
+         * @param text       the text.
+         */
+        Compare(SearchField field, Comparison comparison, String text) {
+            this.field = field;
+            this.comparison = comparison;
+            this.text = text.toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index, BitSet within, QueryPlan.Explanation explanation,
+                        BooleanSupplier cancelled) {
+            if (comparison == Comparison.EQUAL)
+                return index.findEqual(text, field, within, cancelled);
+
+            return index.scan(field, fieldText -> comparison.test(fieldText.compareTo(text)), within, cancelled);
+        }
+
+        @Override
+        boolean matches(ITableEntry entry) {
+            return comparison.test(field.read(entry).toLowerCase(Locale.ROOT).compareTo(text));
+        }
+
+        @Override
+        int getCost() {
+            return comparison == Comparison.EQUAL && text.length() >= TrigramIndex.LENGTH ? TRIGRAM : SCAN;
+        }
+
+        @Override
+        String describe() {
+            return field.name().toLowerCase() + " " + comparison.symbol + " \"" + text + "\" "
+                    + (getCost() == TRIGRAM ? "(trigram index)" : "(scan)");
+        }
+    }
+
+    /**
+     * Matches the entries with an attribute value
+     * within a range. Answered from the attribute
+     * bitmaps.
+     */
+    static final class AttributeRange extends QueryNode {
+
+        /**
+         * The attribute.
+         */
+        private final Attribute attribute;
+
+        /**
+         * The smallest value, inclusive.
+         */
+        private final int min;
+
+        /**
+         * The largest value, inclusive.
+         */
+        private final int max;
+
+        /**
+         * @param attribute the attribute.
+         * @param min       the smallest value, inclusive.
+         * @param max       the largest value, inclusive.
+         */
+        AttributeRange(Attribute attribute, int min, int max) {
+            this.attribute = attribute;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index, BitSet within, QueryPlan.Explanation explanation,
+                        BooleanSupplier cancelled) {
+            return index.findAttribute(attribute, min, max, within);
+        }
+
+        @Override
+        boolean matches(ITableEntry entry) {
+            int value = attribute.read(entry);
+            return value >= min && value <= max;
+        }
+
+        @Override
+        int getCost() {
+            return BITMAP;
+        }
+
+        @Override
+        String describe() {
+            String name = attribute.name().toLowerCase();
+
+            if (min > max)
+                return name + " matches nothing";
+
+            return (min == max
+                    ? name + " = " + attribute.toString(min)
+                    : name + " from " + attribute.toString(min) + " to " + attribute.toString(max)
+            ) + " (bitmap index)";
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses a search query into an execution plan.
+ * <p>
+ * A query is a list of terms, all of which must match. A term
+ * is either text, found anywhere in any field, or a field, a
+ * comparison and a value, e.g. {@code name:star},
+ * {@code rating>=8} or {@code loved:true}. Values with spaces
+ * are quoted, e.g. {@code name="the dark knight"}. Terms can
+ * be joined with {@code OR} (or {@code AND}, the default),
+ * negated with {@code NOT} or a leading {@code -}, and grouped
+ * with brackets. A field name that isn't known is taken as
+ * part of the text, so {@code re:zero} searches for the text.
+ * <p>
+ * The comparisons are {@code :} (contains, or is, for the
+ * {@link Attribute attributes}), {@code =}, {@code !=},
+ * {@code <}, {@code <=}, {@code >} and {@code >=}. Ordering
+ * compares ratings by number and text alphabetically. Unrated
+ * entries are never matched by a rating ordering.
+ */
+final class QueryParser {
+
+    /**
+     * The kinds of tokens in a query.
+     */
+    private enum Kind {
+        OPEN, CLOSE, AND, OR, NOT, TERM
+    }
+
+    /**
+     * A token in a query.
+     */
+    private static final class Token {
+
+        /**
+         * The kind of token.
+         */
+        private final Kind kind;
+
+        /**
+         * The step matching the term, for a {@link Kind#TERM}.
+         */
+        private final QueryNode term;
+
+        /**
+         * @param kind the kind of token.
+         * @param term the step matching the term, if a term.
+         */
+        private Token(Kind kind, QueryNode term) {
+            this.kind = kind;
+            this.term = term;
+        }
+    }
+
+    /**
+     * The query.
+     */
+    private final String query;
+
+    /**
+     * The tokens of the query.
+     */
+    private final List<Token> tokens = new ArrayList<>();
+
+    /**
+     * The position of the next token to parse.
+     */
+    private int position;
+
+    /**
+     * {@code true} until anything other than plain text
+     * is found in the query.
+     */
+    private boolean plainText = true;
+
+    /**
+     * @param query the query.
+     */
+    QueryParser(String query) {
+        this.query = query;
+    }
+
+    /**
+     * @return the execution plan of the query.
+     * @throws QueryException if the query isn't valid.
+     */
+    QueryNode parse() throws QueryException {
+        tokenize();
+
+        if (tokens.isEmpty())
+            return new QueryNode.All();
+
+        QueryNode plan = parseOr();
+
+        if (position < tokens.size())
+            throw new QueryException("Unexpected " + describe(tokens.get(position)));
+
+        return plan;
+    }
+
+    /**
+     * @return {@code true} if the query is only text,
+     * without any fields, operators, brackets or quotes.
+     * Only valid once parsed.
+     */
+    boolean isPlainText() {
+        return plainText;
+    }
+
+    /**
+     * @return terms joined with {@code OR}.
+     * @throws QueryException if the query isn't valid.
+     */
+    private QueryNode parseOr() throws QueryException {
+        List<QueryNode> steps = new ArrayList<>();
+        steps.add(parseAnd());
+
+        while (peek() == Kind.OR) {
+            position++;
+            steps.add(parseAnd());
+        }
+
+        return steps.size() == 1 ? steps.get(0) : new QueryNode.Or(steps);
+    }
+
+    /**
+     * @return terms joined with {@code AND}, or nothing.
+     * @throws QueryException if the query isn't valid.
+     */
+    private QueryNode parseAnd() throws QueryException {
+        List<QueryNode> steps = new ArrayList<>();
+        steps.add(parseNot());
+
+        while (peek() != null && peek() != Kind.OR && peek() != Kind.CLOSE) {
+            if (peek() == Kind.AND)
+                position++;
+
+            steps.add(parseNot());
+        }
+
+        return steps.size() == 1 ? steps.get(0) : new QueryNode.And(steps);
+    }
+
+    /**
+     * @return a term, possibly negated.
+     * @throws QueryException if the query isn't valid.
+     */
+    private QueryNode parseNot() throws QueryException {
+        if (peek() == Kind.NOT) {
+            position++;
+            return new QueryNode.Not(parseNot());
+        }
+
+        if (position == tokens.size())
+            throw new QueryException("The query ends too early");
+
+        Token token = tokens.get(position++);
+
+        if (token.kind == Kind.TERM)
+            return token.term;
+
+        if (token.kind == Kind.OPEN) {
+            QueryNode group = parseOr();
+
+            if (peek() != Kind.CLOSE)
+                throw new QueryException("Missing a closing bracket");
+
+            position++;
+            return group;
+        }
+
+        throw new QueryException("Unexpected " + describe(token));
+    }
+
+    /**
+     * @return the kind of the next token, or
+     * {@code null} at the end of the query.
+     */
+    private Kind peek() {
+        return position < tokens.size() ? tokens.get(position).kind : null;
+    }
+
+    /**
+     * Splits the query into tokens.
+     *
+     * @throws QueryException if the query isn't valid.
+     */
+    private void tokenize() throws QueryException {
+        int i = 0;
+
+        while (i < query.length()) {
+            char c = query.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(c == '(' ? Kind.OPEN : Kind.CLOSE, null));
+                plainText = false;
+                i++;
+            } else if (c == '-' && i + 1 < query.length() && !isBoundary(query.charAt(i + 1))) {
+                tokens.add(new Token(Kind.NOT, null));
+                plainText = false;
+                i++;
+            } else if (c == '"') {
+                int end = findQuoteEnd(i);
+                tokens.add(new Token(Kind.TERM, new QueryNode.Contains(null, query.substring(i + 1, end))));
+                plainText = false;
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < query.length() && !isBoundary(query.charAt(end)) && query.charAt(end) != '"')
+                    end++;
+
+                i = tokenizeWord(query.substring(i, end), end);
+            }
+        }
+    }
+
+    /**
+     * Adds the token for a word of the query.
+     *
+     * @param word the word.
+     * @param end  the position after the word.
+     * @return the position after the token, which is
+     * after the word, or after a quoted value following
+     * the word.
+     * @throws QueryException if the word isn't valid.
+     */
+    private int tokenizeWord(String word, int end) throws QueryException {
+        if (word.equals("AND") || word.equals("OR") || word.equals("NOT")) {
+            tokens.add(new Token(Kind.valueOf(word), null));
+            plainText = false;
+            return end;
+        }
+
+        for (int i = 1; i < word.length(); i++) {
+            Comparison comparison = findComparison(word, i);
+            if (comparison == null)
+                continue;
+
+            String name = word.substring(0, i);
+            Attribute attribute = Attribute.fromName(name);
+            SearchField field = SearchField.fromName(name);
+
+            //Not a field, so it's just text.
+            if (attribute == null && field == null)
+                break;
+
+            String value = word.substring(i + comparison.symbol.length());
+
+            if (value.isEmpty() && end < query.length() && query.charAt(end) == '"') {
+                int quoteEnd = findQuoteEnd(end);
+                value = query.substring(end + 1, quoteEnd);
+                end = quoteEnd + 1;
+            }
+
+            if (value.isEmpty())
+                throw new QueryException("Missing a value after " + word);
+
+            tokens.add(new Token(Kind.TERM, attribute != null
+                    ? compile(attribute, comparison, value) : compile(field, comparison, value)));
+            plainText = false;
+            return end;
+        }
+
+        tokens.add(new Token(Kind.TERM, new QueryNode.Contains(null, word)));
+        return end;
+    }
+
+    /**
+     * @param attribute  the attribute.
+     * @param comparison the comparison.
+     * @param text       the value, as written.
+     * @return the step matching the term.
+     * @throws QueryException if the value isn't one the
+     *                        attribute can take, or the
+     *                        comparison can't be made.
+     */
+    private static QueryNode compile(Attribute attribute, Comparison comparison, String text)
+            throws QueryException {
+        int value = attribute.parse(text);
+        int max = attribute.getValueCount() - 1;
+
+        if (comparison == Comparison.CONTAINS || comparison == Comparison.EQUAL)
+            return new QueryNode.AttributeRange(attribute, value, value);
+
+        if (comparison == Comparison.NOT_EQUAL)
+            return new QueryNode.Not(new QueryNode.AttributeRange(attribute, value, value));
+
+        if (!attribute.isOrdered())
+            throw new QueryException(attribute.name().toLowerCase() + " can't be compared with "
+                    + comparison.symbol);
+
+        if (value == 0)
+            throw new QueryException("Can't compare with " + text);
+
+        //Zero (no value) is left out of orderings.
+        return switch (comparison) {
+            case LESS -> new QueryNode.AttributeRange(attribute, 1, value - 1);
+            case LESS_OR_EQUAL -> new QueryNode.AttributeRange(attribute, 1, value);
+            case GREATER -> new QueryNode.AttributeRange(attribute, value + 1, max);
+            default -> new QueryNode.AttributeRange(attribute, value, max);
+        };
+    }
+
+    /**
+     * @param field      the field.
+     * @param comparison the comparison.
+     * @param text       the value.
+     * @return the step matching the term.
+     */
+    private static QueryNode compile(SearchField field, Comparison comparison, String text) {
+        return switch (comparison) {
+            case CONTAINS -> new QueryNode.Contains(field, text);
+            case NOT_EQUAL -> new QueryNode.Not(new QueryNode.Compare(field, Comparison.EQUAL, text));
+            default -> new QueryNode.Compare(field, comparison, text);
+        };
+    }
+
+    /**
+     * @param word   a word.
+     * @param offset an offset in the word.
+     * @return the comparison at the offset, or
+     * {@code null} if there isn't one.
+     */
+    private static Comparison findComparison(String word, int offset) {
+        for (Comparison comparison : Comparison.COMPARISONS) {
+            if (word.startsWith(comparison.symbol, offset))
+                return comparison;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param start the position of an opening quote.
+     * @return the position of the closing quote.
+     * @throws QueryException if there's no closing quote.
+     */
+    private int findQuoteEnd(int start) throws QueryException {
+        int end = query.indexOf('"', start + 1);
+
+        if (end == -1)
+            throw new QueryException("Missing a closing quote");
+
+        return end;
+    }
+
+    /**
+     * @param c a character.
+     * @return {@code true} if the character ends a word.
+     */
+    private static boolean isBoundary(char c) {
+        return Character.isWhitespace(c) || c == '(' || c == ')';
+    }
+
+    /**
+     * @param token a token.
+     * @return the token, as written in a query.
+     */
+    private static String describe(Token token) {
+        return switch (token.kind) {
+            case OPEN -> "(";
+            case CLOSE -> ")";
+            case TERM -> "term";
+            default -> token.kind.name();
+        };
+    }
+}
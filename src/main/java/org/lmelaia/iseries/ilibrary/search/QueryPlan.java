@@ -0,0 +1,281 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import org.lmelaia.iseries.ilibrary.ITableEntry;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A search query compiled into an execution plan: a tree of
+ * steps, each answered from the attribute bitmaps, the trigram
+ * index or, where no index helps, a scan of the entries left.
+ * See {@link QueryParser} for the query syntax.
+ */
+public final class QueryPlan {
+
+    /**
+     * The query.
+     */
+    private final String query;
+
+    /**
+     * The first step of the plan.
+     */
+    private final QueryNode root;
+
+    /**
+     * {@code true} if the query is only text.
+     */
+    private final boolean plainText;
+
+    /**
+     * @param query the query.
+     * @param root  the first step of the plan.
+     * @param plainText {@code true} if the query is only text.
+     */
+    private QueryPlan(String query, QueryNode root, boolean plainText) {
+        this.query = query;
+        this.root = root;
+        this.plainText = plainText;
+    }
+
+    /**
+     * Parses a search query into an execution plan.
+     *
+     * @param query the query.
+     * @return the plan.
+     * @throws QueryException if the query isn't valid.
+     */
+    public static QueryPlan compile(String query) throws QueryException {
+        QueryParser parser = new QueryParser(query);
+        QueryNode root = parser.parse();
+        return new QueryPlan(query, root, parser.isPlainText());
+    }
+
+    /**
+     * @param entry an entry.
+     * @return {@code true} if the entry matches the query.
+     */
+    public boolean matches(ITableEntry entry) {
+        return root.matches(entry);
+    }
+
+    /**
+     * @param index the index of a library.
+     * @return the ordinals of the entries matching the query.
+     */
+    public BitSet select(LibraryIndex index) {
+        return root.select(index, null, null, null);
+    }
+
+    /**
+     * Runs the query, recording each step run in an explanation,
+     * which can describe the run afterwards, e.g. once the query
+     * turns out to be slow.
+     *
+     * @param index       the index of a library.
+     * @param explanation a new explanation to record the run in,
+     *                    or {@code null}.
+     * @return the ordinals of the entries matching the query.
+     */
+    public BitSet select(LibraryIndex index, Explanation explanation) {
+        return select(index, explanation, null);
+    }
+
+    /**
+     * Runs the query, recording each step run in an explanation,
+     * and giving up once the run is cancelled, e.g. when the
+     * query has been replaced by a newer one.
+     *
+     * @param index       the index of a library.
+     * @param explanation a new explanation to record the run in,
+     *                    or {@code null}.
+     * @param cancelled   checked before each step and every few
+     *                    thousand entries scanned, or {@code null}
+     *                    if never cancelled.
+     * @return the ordinals of the entries matching the query.
+     * @throws java.util.concurrent.CancellationException if the run is cancelled.
+     */
+    public BitSet select(LibraryIndex index, Explanation explanation, BooleanSupplier cancelled) {
+        if (explanation == null)
+            return root.select(index, null, null, cancelled);
+
+        long start = System.nanoTime();
+        BitSet selected = root.select(index, null, explanation, cancelled);
+        explanation.finish(this, selected, System.nanoTime() - start);
+        return selected;
+    }
+
+    /**
+     * Runs the query, describing each step run with the
+     * number of entries it matched and the time it took,
+     * e.g. to find out why a query is slow.
+     *
+     * @param index the index of a library.
+     * @return the query, the plan and the steps run.
+     * @see Explanation#toString()
+     */
+    public String explain(LibraryIndex index) {
+        Explanation explanation = new Explanation();
+        select(index, explanation);
+        return explanation.toString();
+    }
+
+    /**
+     * @return {@code true} if the query is only text, without
+     * any fields, operators, brackets or quotes, and so matches
+     * the same entries as a plain text search.
+     */
+    public boolean isPlainText() {
+        return plainText;
+    }
+
+    /**
+     * @return the steps of the plan, one per line.
+     */
+    @Override
+    public String toString() {
+        List<String> lines = new ArrayList<>();
+        root.describe("  ", lines);
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Records a run of a query: the steps run, with the number
+     * of entries each matched and the time each took. Only the
+     * numbers are recorded while the query runs; the description
+     * is written when asked for.
+     */
+    public static final class Explanation {
+
+        /**
+         * A step run.
+         */
+        private static final class Step {
+
+            /**
+             * Number of steps the step was run within.
+             */
+            private final int depth;
+
+            /**
+             * The step, once finished.
+             */
+            private QueryNode node;
+
+            /**
+             * Number of entries matched.
+             */
+            private int matched;
+
+            /**
+             * Time taken, in nanoseconds.
+             */
+            private long nanos;
+
+            /**
+             * @param depth number of steps the
+             *              step was run within.
+             */
+            private Step(int depth) {
+                this.depth = depth;
+            }
+
+            /**
+             * @return the step, the entries it matched and the time it took.
+             */
+            @Override
+            public String toString() {
+                return "  ".repeat(depth) + node.describe() + " -> " + describeRun(matched, nanos);
+            }
+        }
+
+        /**
+         * The steps run, in the order they were started.
+         */
+        private final List<Step> steps = new ArrayList<>();
+
+        /**
+         * Number of steps started and not yet finished.
+         */
+        private int depth;
+
+        /**
+         * The plan run, once finished.
+         */
+        private QueryPlan plan;
+
+        /**
+         * Number of entries the query matched.
+         */
+        private int matched;
+
+        /**
+         * Time the query took, in nanoseconds.
+         */
+        private long nanos;
+
+        /**
+         * @return the index of the step started.
+         */
+        int enter() {
+            steps.add(new Step(depth++));
+            return steps.size() - 1;
+        }
+
+        /**
+         * @param line     the index of the step finished.
+         * @param node     the step.
+         * @param selected the entries matched by the step.
+         * @param nanos    time taken by the step.
+         */
+        void exit(int line, QueryNode node, BitSet selected, long nanos) {
+            depth--;
+            Step step = steps.get(line);
+            step.node = node;
+            step.matched = selected.cardinality();
+            step.nanos = nanos;
+        }
+
+        /**
+         * @param plan     the plan run.
+         * @param selected the entries matched by the query.
+         * @param nanos    time taken by the query.
+         */
+        void finish(QueryPlan plan, BitSet selected, long nanos) {
+            this.plan = plan;
+            this.matched = selected.cardinality();
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return the query, the plan, the steps run, one
+         * per line, and the entries matched in total.
+         */
+        @Override
+        public String toString() {
+            if (plan == null)
+                return "Not run";
+
+            StringBuilder run = new StringBuilder();
+            for (Step step : steps)
+                run.append(step).append('\n');
+
+            return "Query: " + plan.query + "\n"
+                    + "Plan:\n" + plan + "\n"
+                    + "Run:\n" + run
+                    + "Matched " + describeRun(matched, nanos);
+        }
+
+        /**
+         * @param matched number of entries matched.
+         * @param nanos   time taken.
+         * @return the entries matched and the time taken.
+         */
+        private static String describeRun(int matched, long nanos) {
+            return matched + " entries in " + String.format("%.3f", nanos / 1_000_000.0) + "ms";
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import org.lmelaia.iseries.ilibrary.ITableEntry;
+
+/**
+ * The fields of an entry that can be searched.
+ * <p>
+ * Fields are read from the full entry, rather than the
+ * (possibly shortened) text shown in the table.
+ */
+public enum SearchField {
+
+    /**
+     * The display name of the entry.
+     */
+    NAME {
+        @Override
+        public String read(ITableEntry entry) {
+            return entry.getName();
+        }
+    },
+
+    /**
+     * The synopsis (description) of the entry.
+     */
+    SYNOPSIS {
+        @Override
+        public String read(ITableEntry entry) {
+            return entry.getEntry().getSynopsis();
+        }
+    },
+
+    /**
+     * The comment(s) added to the entry.
+     */
+    COMMENTS {
+        @Override
+        public String read(ITableEntry entry) {
+            return entry.getEntry().getComments();
+        }
+    },
+
+    /**
+     * The media type of the entry, as shown in the table.
+     */
+    TYPE {
+        @Override
+        public String read(ITableEntry entry) {
+            return entry.getType();
+        }
+    },
+
+    /**
+     * The rating of the entry, as shown in the table.
+     */
+    RATING {
+        @Override
+        public String read(ITableEntry entry) {
+            return entry.getRating();
+        }
+    },
+
+    /**
+     * The unique ID of the entry.
+     */
+    UUID {
+        @Override
+        public String read(ITableEntry entry) {
+            return entry.getUUID();
+        }
+    };
+
+    /**
+     * Cached copy of {@link #values()}.
+     */
+    static final SearchField[] FIELDS = values();
+
+    /**
+     * @param entry the entry.
+     * @return the text of this field in the given entry,
+     * or an empty string if it has none.
+     */
+    public abstract String read(ITableEntry entry);
+
+    /**
+     * @param name the name of a field, ignoring case.
+     * @return the field with the given name, or
+     * {@code null} if there's no such field.
+     */
+    public static SearchField fromName(String name) {
+        for (SearchField field : FIELDS) {
+            if (field.name().equalsIgnoreCase(name))
+                return field;
+        }
+
+        return null;
+    }
+}
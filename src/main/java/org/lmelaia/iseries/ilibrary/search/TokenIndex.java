@@ -0,0 +1,241 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import java.util.*;
+
+/**
+ * An inverted index from the words (tokens) in the
+ * name of each entry to the ordinals of the entries
+ * containing them, used for fuzzy searches. Other fields
+ * are searched through the {@link TrigramIndex}.
+ * <p>
+ * Tokens are kept sorted, so every token starting with
+ * a prefix can be found without scanning the entries, and
+ * tokens sharing a prefix are next to each other, so tokens
+ * within an edit distance of a word can be found without
+ * comparing the word to every token.
+ * Not thread safe; guarded by the lock of the
+ * {@link LibraryIndex}.
+ */
+final class TokenIndex {
+
+    /**
+     * The posting list of each token.
+     */
+    private final TreeMap<String, PostingList> tokens = new TreeMap<>();
+
+    /**
+     * Splits text into tokens: lowercase runs of
+     * letters and digits.
+     *
+     * @param text the text.
+     * @return the tokens, in order, including
+     * duplicates.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+            if (wordCharacter && start == -1) {
+                start = i;
+            } else if (!wordCharacter && start != -1) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Indexes the name of an entry.
+     *
+     * @param ordinal the ordinal of the entry.
+     * @param name    the lowercase name of the entry.
+     */
+    void add(int ordinal, String name) {
+        for (String token : tokenize(name))
+            tokens.computeIfAbsent(token, key -> new PostingList()).add(ordinal);
+    }
+
+    /**
+     * Removes the name of an entry from the index.
+     *
+     * @param ordinal the ordinal of the entry.
+     * @param name    the lowercase name of the entry
+     *                when it was indexed.
+     */
+    void remove(int ordinal, String name) {
+        for (String token : tokenize(name)) {
+            PostingList postings = tokens.get(token);
+
+            if (postings != null && postings.remove(ordinal) && postings.isEmpty())
+                tokens.remove(token);
+        }
+    }
+
+    /**
+     * Finds the entries with a token starting
+     * with the given prefix.
+     *
+     * @param prefix the lowercase prefix.
+     * @return the ordinals of the entries found.
+     */
+    BitSet findPrefix(String prefix) {
+        BitSet found = new BitSet();
+        SortedMap<String, PostingList> prefixed = prefix.isEmpty()
+                ? tokens : tokens.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+
+        for (PostingList postings : prefixed.values())
+            postings.addTo(found);
+
+        return found;
+    }
+
+    /**
+     * Finds the entries with a token within an edit distance
+     * of the given word.
+     * <p>
+     * The tokens are walked in order as if they were a trie,
+     * computing a row of the edit distance table per character.
+     * Tokens sharing a prefix with the last token reuse its
+     * rows, and once every distance in a row is too large,
+     * no token with that prefix can be close enough, so they
+     * are all skipped.
+     *
+     * @param word        the lowercase word.
+     * @param maxDistance the largest edit distance allowed.
+     * @return the ordinals of the entries found.
+     * @see #editDistance(String, String)
+     */
+    BitSet findFuzzy(String word, int maxDistance) {
+        BitSet found = new BitSet();
+
+        //Row i holds the distances of the first i characters
+        //of the last token from each prefix of the word.
+        List<int[]> rows = new ArrayList<>();
+        rows.add(new int[word.length() + 1]);
+        for (int j = 0; j <= word.length(); j++)
+            rows.get(0)[j] = j;
+
+        String previous = "";
+        Iterator<Map.Entry<String, PostingList>> iterator = tokens.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<String, PostingList> entry = iterator.next();
+            String token = entry.getKey();
+            int depth = commonPrefixLength(previous, token);
+            boolean tooFar = false;
+
+            while (depth < token.length() && !tooFar) {
+                depth++;
+
+                if (rows.size() <= depth)
+                    rows.add(new int[word.length() + 1]);
+
+                tooFar = nextRow(
+                        depth > 1 ? rows.get(depth - 2) : null, rows.get(depth - 1), rows.get(depth),
+                        word, depth > 1 ? token.charAt(depth - 2) : 0, token.charAt(depth - 1)
+                ) > maxDistance;
+            }
+
+            if (tooFar) {
+                previous = token.substring(0, depth);
+                iterator = tokens.tailMap(previous + Character.MAX_VALUE, false).entrySet().iterator();
+                continue;
+            }
+
+            if (rows.get(depth)[word.length()] <= maxDistance)
+                entry.getValue().addTo(found);
+
+            previous = token;
+        }
+
+        return found;
+    }
+
+    /**
+     * The edit distance between two words: the fewest single
+     * character insertions, deletions, substitutions and swaps
+     * of neighbouring characters turning one into the other
+     * (the optimal string alignment distance).
+     *
+     * @param a a word.
+     * @param b another word.
+     * @return the distance between the words.
+     */
+    static int editDistance(String a, String b) {
+        int[] twoBack = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+
+        for (int j = 0; j <= b.length(); j++)
+            previous[j] = j;
+
+        for (int i = 0; i < a.length(); i++) {
+            nextRow(i > 0 ? twoBack : null, previous, current, b, i > 0 ? a.charAt(i - 1) : 0, a.charAt(i));
+
+            int[] swap = twoBack;
+            twoBack = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous[b.length()];
+    }
+
+    /**
+     * Computes the next row of an edit distance table.
+     *
+     * @param twoBack           the row before the previous row,
+     *                          or {@code null} if there isn't one.
+     * @param previous          the distances of a prefix of a
+     *                          token from each prefix of the word.
+     * @param current           the row to fill in, for the prefix
+     *                          extended by a character.
+     * @param word              the word.
+     * @param previousCharacter the last character of the prefix,
+     *                          if there's a row before the previous.
+     * @param character         the character the prefix is
+     *                          extended by.
+     * @return the smallest distance in the row.
+     */
+    private static int nextRow(int[] twoBack, int[] previous, int[] current, String word,
+                               char previousCharacter, char character) {
+        current[0] = previous[0] + 1;
+        int smallest = current[0];
+
+        for (int j = 1; j <= word.length(); j++) {
+            char wordCharacter = word.charAt(j - 1);
+            int substitution = previous[j - 1] + (wordCharacter == character ? 0 : 1);
+            current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+
+            //Two neighbouring characters swapped.
+            if (twoBack != null && j > 1 && wordCharacter == previousCharacter
+                    && word.charAt(j - 2) == character)
+                current[j] = Math.min(current[j], twoBack[j - 2] + 1);
+
+            smallest = Math.min(smallest, current[j]);
+        }
+
+        return smallest;
+    }
+
+    /**
+     * @param a a string.
+     * @param b another string.
+     * @return the length of the prefix the strings share.
+     */
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i))
+                return i;
+        }
+
+        return length;
+    }
+}
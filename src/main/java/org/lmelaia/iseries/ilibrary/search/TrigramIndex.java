@@ -0,0 +1,212 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import java.util.*;
+
+/**
+ * An index from every three character sequence (trigram)
+ * in the searchable fields to the ordinals of the entries
+ * containing it.
+ * <p>
+ * Any entry containing a substring contains every trigram of
+ * it, so intersecting the posting lists of the trigrams of a
+ * search term leaves only candidates that may contain the term,
+ * which are then checked against their text. Posting lists are
+ * compressed ({@link CompressedPostingList}), as the lists of
+ * common trigrams hold most of the library. Not thread safe;
+ * guarded by the lock of the {@link LibraryIndex}.
+ */
+final class TrigramIndex {
+
+    /**
+     * Number of characters in a trigram.
+     */
+    static final int LENGTH = 3;
+
+    /**
+     * The posting list of each trigram, keyed by
+     * its three characters packed into a long.
+     */
+    private final Map<Long, CompressedPostingList> postings = new HashMap<>();
+
+    /**
+     * @param texts the lowercase text of each field.
+     * @return every distinct trigram in the text, sorted.
+     */
+    static long[] extract(String[] texts) {
+        int total = 0;
+        for (String text : texts)
+            total += Math.max(0, text.length() - LENGTH + 1);
+
+        long[] trigrams = new long[total];
+        int count = 0;
+
+        for (String text : texts) {
+            for (int i = 0; i + LENGTH <= text.length(); i++)
+                trigrams[count++] = pack(text, i);
+        }
+
+        Arrays.sort(trigrams);
+        return distinct(trigrams);
+    }
+
+    /**
+     * @param text lowercase text.
+     * @return every distinct trigram in the text, sorted.
+     */
+    static long[] extract(String text) {
+        return extract(new String[]{text});
+    }
+
+    /**
+     * Indexes the trigrams of an entry.
+     *
+     * @param ordinal  the ordinal of the entry.
+     * @param trigrams the distinct trigrams of the entry.
+     */
+    void add(int ordinal, long[] trigrams) {
+        for (long trigram : trigrams)
+            add(ordinal, trigram);
+    }
+
+    /**
+     * Removes the trigrams of an entry from the index.
+     *
+     * @param ordinal  the ordinal of the entry.
+     * @param trigrams the distinct trigrams of the entry
+     *                 when it was indexed.
+     */
+    void remove(int ordinal, long[] trigrams) {
+        for (long trigram : trigrams)
+            remove(ordinal, trigram);
+    }
+
+    /**
+     * Reindexes an entry, touching only the trigrams
+     * it gained or lost.
+     *
+     * @param ordinal  the ordinal of the entry.
+     * @param previous the sorted, distinct trigrams of
+     *                 the entry when it was indexed.
+     * @param current  the sorted, distinct trigrams of
+     *                 the entry now.
+     */
+    void update(int ordinal, long[] previous, long[] current) {
+        int i = 0;
+        int j = 0;
+
+        while (i < previous.length || j < current.length) {
+            if (j == current.length || (i < previous.length && previous[i] < current[j])) {
+                remove(ordinal, previous[i++]);
+            } else if (i == previous.length || current[j] < previous[i]) {
+                add(ordinal, current[j++]);
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Finds the entries containing every trigram of a term.
+     *
+     * @param term the lowercase term, at least
+     *             {@link #LENGTH} characters long.
+     * @return the ordinals of the entries that may
+     * contain the term.
+     */
+    BitSet findCandidates(String term) {
+        List<CompressedPostingList> lists = new ArrayList<>();
+
+        for (long trigram : extract(term)) {
+            CompressedPostingList list = postings.get(trigram);
+
+            //No entry contains the trigram, so none contain the term.
+            if (list == null)
+                return new BitSet();
+
+            lists.add(list);
+        }
+
+        //Starting from the shortest list keeps the intersection small.
+        lists.sort(Comparator.comparingInt(CompressedPostingList::size));
+        BitSet candidates = new BitSet();
+        lists.get(0).addTo(candidates);
+
+        for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+            BitSet other = new BitSet();
+            lists.get(i).addTo(other);
+            candidates.and(other);
+        }
+
+        return candidates;
+    }
+
+    /**
+     * @return the number of distinct trigrams.
+     */
+    int getTrigramCount() {
+        return postings.size();
+    }
+
+    /**
+     * @return the approximate memory used by
+     * the index, in bytes.
+     */
+    long getMemoryUsage() {
+        //Hash map node and boxed key for each trigram.
+        long usage = 16L * Integer.highestOneBit(Math.max(1, postings.size()) * 2);
+
+        for (CompressedPostingList list : postings.values())
+            usage += 32 + 24 + list.getMemoryUsage();
+
+        return usage;
+    }
+
+    /**
+     * @param ordinal the ordinal of an entry.
+     * @param trigram a trigram of the entry.
+     */
+    private void add(int ordinal, long trigram) {
+        postings.computeIfAbsent(trigram, key -> new CompressedPostingList()).add(ordinal);
+    }
+
+    /**
+     * @param ordinal the ordinal of an entry.
+     * @param trigram a trigram the entry no longer has.
+     */
+    private void remove(int ordinal, long trigram) {
+        CompressedPostingList list = postings.get(trigram);
+
+        if (list != null && list.remove(ordinal) && list.isEmpty())
+            postings.remove(trigram);
+    }
+
+    /**
+     * @param text   the text.
+     * @param offset the offset of the trigram.
+     * @return the three characters at the offset,
+     * packed into a long.
+     */
+    private static long pack(String text, int offset) {
+        return ((long) text.charAt(offset) << 32)
+                | ((long) text.charAt(offset + 1) << 16)
+                | text.charAt(offset + 2);
+    }
+
+    /**
+     * @param sorted a sorted array.
+     * @return the array without duplicates.
+     */
+    private static long[] distinct(long[] sorted) {
+        if (sorted.length == 0)
+            return sorted;
+
+        int count = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[count - 1])
+                sorted[count++] = sorted[i];
+        }
+
+        return Arrays.copyOf(sorted, count);
+    }
+}
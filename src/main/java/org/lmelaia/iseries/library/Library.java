@@ -1,6 +1,8 @@
 package org.lmelaia.iseries.library;
 
 import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.metrics.LatencyHistogram;
+import org.lmelaia.iseries.common.metrics.MetricsRegistry;
 import org.lmelaia.iseries.common.system.AppLogger;
 import org.lmelaia.iseries.library.LibraryException.EntryFetchException;
 import org.lmelaia.iseries.library.LibraryException.EntryModificationException;
@@ -40,6 +42,11 @@ public class Library {
      */
     private static final Logger LOG = AppLogger.getLogger();
 
+    /**
+     * Time taken to add or update an entry.
+     */
+    private static final LatencyHistogram ADD_LATENCY = MetricsRegistry.getRegistry().histogram("library.add");
+
     /**
      * Maps each library entry to it's UUID.
      */
@@ -106,12 +113,15 @@ public class Library {
     public void add(LibraryEntryBase entry, ProgressTracker tracker) throws EntryModificationException {
         checkFileManager();
         Objects.requireNonNull(entry);
+        long start = System.nanoTime();
         try {
             fileManager.add(entry, tracker);
             mapping.put(entry.getUUID(), entry);
             entry.setOwner(this);
         } catch (IOException e) {
             throw new EntryModificationException("Could not add entry: " + entry.getUUID(), e);
+        } finally {
+            ADD_LATENCY.recordSince(start);
         }
     }
 
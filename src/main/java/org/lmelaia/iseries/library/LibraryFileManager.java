@@ -2,6 +2,8 @@ package org.lmelaia.iseries.library;
 
 import com.google.gson.*;
 import org.apache.logging.log4j.Logger;
+import org.lmelaia.iseries.common.metrics.LatencyHistogram;
+import org.lmelaia.iseries.common.metrics.MetricsRegistry;
 import org.lmelaia.iseries.common.system.AppLogger;
 import org.lmelaia.iseries.library.LibraryException.LibraryCreationException;
 import org.lmelaia.iseries.library.LibraryException.LibraryFetchException;
@@ -42,6 +44,12 @@ class LibraryFileManager {
      */
     private static final Logger LOG = AppLogger.getLogger();
 
+    /**
+     * Time taken to write the index to file.
+     */
+    private static final LatencyHistogram WRITE_INDEX_LATENCY
+            = MetricsRegistry.getRegistry().histogram("library.write_index");
+
     /**
      * The name of the folder used to store entries that
      * could not be sorted.
@@ -175,10 +183,10 @@ class LibraryFileManager {
         File newPath = getPathFromEntry(entry);
 
         if (oldPath == null) {
-            LOG.debug("Insertion of entry: " + newPath);
+            LOG.debug("Insertion of entry: {}", newPath);
             oldPath = newPath;
         } else {
-            LOG.debug("Update of entry: " + newPath);
+            LOG.debug("Update of entry: {}", newPath);
         }
 
         pt.setMax(2);
@@ -224,7 +232,7 @@ class LibraryFileManager {
      * @throws IOException if the index cannot be modified.
      */
     File unindex(LibraryEntryBase entry) throws IOException {
-        LOG.debug("Removal of entry: " + index.get(entry.getUUID()));
+        LOG.debug("Removal of entry: {}", index.get(entry.getUUID()));
         File f = index.remove(entry.getUUID());
         writeIndex();
         return f;
@@ -242,7 +250,7 @@ class LibraryFileManager {
      *                     or the index cannot be modified.
      */
     File delete(LibraryEntryBase entry, ProgressTracker tracker) throws IOException {
-        LOG.debug("Deletion of entry: " + index.get(entry.getUUID()));
+        LOG.debug("Deletion of entry: {}", index.get(entry.getUUID()));
         File f = deleteFolder(index.remove(entry.getUUID()), tracker);
         writeIndex();
         return f;
@@ -283,6 +291,7 @@ class LibraryFileManager {
      *                     written to.
      */
     private void writeIndex() throws IOException {
+        long start = System.nanoTime();
         JsonObject indexObj = new JsonObject();
 
         for (Map.Entry<String, File> entry : index.entrySet()) {
@@ -295,6 +304,7 @@ class LibraryFileManager {
         }
 
         write(indexObj, indexFile);
+        WRITE_INDEX_LATENCY.recordSince(start);
     }
 
     /**
@@ -359,19 +369,21 @@ class LibraryFileManager {
 
         int entriesRead = 0;
 
-        LOG.info("Reading: " + index.size() + " entries...");
+        LOG.info("Reading: {} entries...", index.size());
 
         for (File entryFile : index.values()) {
             try {
-                LOG.info(
-                        "Reading entry " + ++entriesRead + " of " + index.size() + ": " + entryFile.getAbsolutePath()
-                );
+                entriesRead++;
+
+                //Once per entry, so only built when it will be logged.
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Reading entry {} of {}: {}", entriesRead, index.size(), entryFile.getAbsolutePath());
 
                 LibraryEntryBase entry = get(entryFile);
 
                 //Corrupted Entry
                 if (entry == null) {
-                    LOG.warn("Corrupted entry: " + entryFile.getAbsolutePath());
+                    LOG.warn("Corrupted entry: {}", entryFile.getAbsolutePath());
                     library.addCorruptedEntry(entryFile.getAbsolutePath());
                     continue;
                 }
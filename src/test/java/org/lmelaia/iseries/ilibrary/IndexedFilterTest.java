@@ -0,0 +1,111 @@
+package org.lmelaia.iseries.ilibrary;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
+import org.lmelaia.iseries.ilibrary.search.QueryException;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that each {@link IndexedFilter} selects, through the
+ * {@link LibraryIndex}, exactly the entries it accepts.
+ */
+public class IndexedFilterTest {
+
+    /**
+     * Search queries, found and not found.
+     */
+    private static final String[] SEARCHES = {
+            "", "  ", "dark", "DARK knight", "ar", "a", "kinght", "nihgt", "the dark", "ring rings",
+            "café", "re: zero", "xyzzy", "2", "of the"
+    };
+
+    @BeforeClass
+    public static void initialize() {
+        TestEntries.configureLogging();
+    }
+
+    /**
+     * Tests search filters, including searching
+     * within the results of an earlier search.
+     */
+    @Test
+    public void testSearchFilter() {
+        LibraryIndex index = TestEntries.index(TestEntries.create(new Random(1), 2000));
+
+        for (String search : SEARCHES) {
+            SearchFilter filter = new SearchFilter(search);
+            BitSet accepted = TestEntries.findAll(index, filter::accept);
+            assertEquals(search, accepted, filter.select(index));
+
+            SearchFilter extended = new SearchFilter(search + "k");
+            assertTrue(extended.refines(filter));
+            assertEquals(search + "k", TestEntries.findAll(index, extended::accept),
+                    extended.select(index, accepted));
+        }
+    }
+
+    /**
+     * Tests fuzzy filters.
+     */
+    @Test
+    public void testFuzzyFilter() {
+        LibraryIndex index = TestEntries.index(TestEntries.create(new Random(2), 2000));
+
+        for (String search : SEARCHES) {
+            FuzzyFilter filter = new FuzzyFilter(search);
+            assertEquals(search, TestEntries.findAll(index, filter::accept), filter.select(index));
+        }
+    }
+
+    /**
+     * Tests query filters.
+     *
+     * @throws QueryException if a query is invalid.
+     */
+    @Test
+    public void testQueryFilter() throws QueryException {
+        LibraryIndex index = TestEntries.index(TestEntries.create(new Random(3), 2000));
+
+        for (String query : new String[]{"dark", "name:king OR rating>=8", "-loved:true type:movie",
+                "(ring OR star) NOT comments:one"}) {
+            QueryFilter filter = new QueryFilter(query);
+            assertEquals(query, TestEntries.findAll(index, filter::accept), filter.select(index));
+        }
+    }
+
+    /**
+     * Tests playlists, including entries in the
+     * playlist which aren't in the library.
+     */
+    @Test
+    public void testPlaylist() {
+        Random random = new Random(4);
+        List<ITableEntry> entries = TestEntries.create(random, 2000);
+        LibraryIndex index = TestEntries.index(entries);
+
+        JsonArray members = new JsonArray();
+        for (ITableEntry entry : entries) {
+            if (random.nextInt(10) == 0)
+                members.add(entry.getUUID());
+        }
+
+        members.add(TestEntries.create(random, 1).get(0).getUUID());
+
+        JsonObject data = new JsonObject();
+        data.addProperty("name", "test");
+        data.add("entries", members);
+
+        IPlaylist playlist = new IPlaylist(data, null);
+        BitSet selected = playlist.select(index);
+        assertEquals(TestEntries.findAll(index, playlist::accept), selected);
+        assertEquals(members.size() - 1, selected.cardinality());
+    }
+}
@@ -0,0 +1,56 @@
+package org.lmelaia.iseries.ilibrary;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that filtering in parallel accepts exactly the
+ * entries accepted when filtering one at a time.
+ */
+public class ParallelFilterTest {
+
+    @BeforeClass
+    public static void initialize() {
+        TestEntries.configureLogging();
+    }
+
+    /**
+     * Tests filtering every entry, and some of the entries,
+     * of a library spanning several chunks, with removed
+     * entries among them.
+     */
+    @Test
+    public void testFilter() {
+        Random random = new Random(1);
+        List<ITableEntry> entries = TestEntries.create(random, 20_000);
+        LibraryIndex index = TestEntries.index(entries);
+
+        for (int i = 0; i < 2000; i++)
+            index.remove(entries.get(random.nextInt(entries.size())).getUUID());
+
+        BitSet some = index.getOrdinals();
+        for (int i = some.nextSetBit(0); i >= 0; i = some.nextSetBit(i + 1)) {
+            if (random.nextInt(3) == 0)
+                some.clear(i);
+        }
+
+        Predicate<ITableEntry> filter = entry -> entry.getEntry().isLoved() && entry.getName().contains("a");
+
+        for (BitSet candidates : new BitSet[]{index.getOrdinals(), some, new BitSet()}) {
+            BitSet expected = TestEntries.findAll(index, filter);
+            expected.and(candidates);
+
+            BitSet before = (BitSet) candidates.clone();
+            assertEquals(expected, ParallelFilter.filter(index, candidates, filter));
+            assertEquals(before, candidates);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.lmelaia.iseries.ilibrary;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the {@link ResultCache} finds results by filter
+ * equality and version, and keeps them the same as filtering
+ * every entry again as entries change.
+ */
+public class ResultCacheTest {
+
+    /**
+     * A filter whose version can be changed.
+     */
+    private static final class VersionedFilter implements TableEntryFilter {
+
+        /**
+         * The version.
+         */
+        private int version;
+
+        @Override
+        public boolean accept(ITableEntry entry) {
+            return entry.getEntry().isLoved();
+        }
+
+        @Override
+        public int getVersion() {
+            return version;
+        }
+    }
+
+    @BeforeClass
+    public static void initialize() {
+        TestEntries.configureLogging();
+    }
+
+    /**
+     * Tests that results are found for equal filters,
+     * and the hits and misses are counted.
+     */
+    @Test
+    public void testGet() {
+        ResultCache cache = new ResultCache(4);
+        BitSet ordinals = new BitSet();
+        ordinals.set(3);
+
+        assertNull(cache.get(new SearchFilter("dark"), null));
+        cache.put(new SearchFilter("dark"), null, ordinals);
+
+        assertSame(ordinals, cache.get(new SearchFilter("DARK"), null));
+        assertNull(cache.get(null, new SearchFilter("dark")));
+        assertNull(cache.get(new SearchFilter("dark"), new SearchFilter("dark")));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(0.25, cache.getHitRate(), 0);
+    }
+
+    /**
+     * Tests that the least recently used
+     * result is dropped to make room.
+     */
+    @Test
+    public void testCapacity() {
+        ResultCache cache = new ResultCache(2);
+        cache.put(new SearchFilter("a"), null, new BitSet());
+        cache.put(new SearchFilter("b"), null, new BitSet());
+        assertNotNull(cache.get(new SearchFilter("a"), null));
+
+        cache.put(new SearchFilter("c"), null, new BitSet());
+        assertNotNull(cache.get(new SearchFilter("a"), null));
+        assertNull(cache.get(new SearchFilter("b"), null));
+        assertNotNull(cache.get(new SearchFilter("c"), null));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    /**
+     * Tests that clearing drops every result
+     * without counting them as evicted.
+     */
+    @Test
+    public void testClear() {
+        ResultCache cache = new ResultCache(4);
+        cache.put(new SearchFilter("a"), null, new BitSet());
+        cache.put(null, new SearchFilter("b"), new BitSet());
+
+        cache.clear();
+        assertNull(cache.get(new SearchFilter("a"), null));
+        assertNull(cache.get(null, new SearchFilter("b")));
+        assertEquals(0, cache.getEvictions());
+    }
+
+    /**
+     * Tests that a result isn't used once
+     * the version of a filter changes.
+     */
+    @Test
+    public void testVersion() {
+        ResultCache cache = new ResultCache(4);
+        VersionedFilter filter = new VersionedFilter();
+
+        cache.put(filter, null, new BitSet());
+        assertNotNull(cache.get(filter, null));
+
+        filter.version++;
+        assertNull(cache.get(filter, null));
+        assertEquals(1, cache.getEvictions());
+
+        cache.put(filter, null, new BitSet());
+        assertNotNull(cache.get(filter, null));
+    }
+
+    /**
+     * Tests that results stay the same as filtering every
+     * entry again as entries are added, edited and removed.
+     */
+    @Test
+    public void testChanges() {
+        Random random = new Random(1);
+        List<ITableEntry> entries = TestEntries.create(random, 1000);
+        LibraryIndex index = TestEntries.index(entries);
+        ResultCache cache = new ResultCache(4);
+
+        TableEntryFilter[][] keys = {
+                {new VersionedFilter(), null},
+                {null, new SearchFilter("dark")},
+                {new VersionedFilter(), new FuzzyFilter("kinght")}
+        };
+
+        for (TableEntryFilter[] key : keys)
+            cache.put(key[0], key[1], TestEntries.findAll(index, entry -> accept(key, entry)));
+
+        for (int i = 0; i < 500; i++) {
+            ITableEntry entry = entries.get(random.nextInt(entries.size()));
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    TestEntries.edit(random, entry);
+                    index.put(entry);
+                    cache.update(index.getOrdinal(entry.getUUID()), entry);
+                    break;
+                case 1:
+                    int ordinal = index.getOrdinal(entry.getUUID());
+                    if (index.remove(entry.getUUID()) != null)
+                        cache.remove(ordinal);
+                    break;
+                default:
+                    ITableEntry added = TestEntries.create(random, 1).get(0);
+                    entries.add(added);
+                    index.put(added);
+                    cache.update(index.getOrdinal(added.getUUID()), added);
+            }
+        }
+
+        for (TableEntryFilter[] key : keys) {
+            assertEquals(TestEntries.findAll(index, entry -> accept(key, entry)),
+                    cache.get(key[0], key[1]));
+        }
+    }
+
+    /**
+     * @param key   the filters.
+     * @param entry the entry.
+     * @return {@code true} if every filter accepts the entry.
+     */
+    private static boolean accept(TableEntryFilter[] key, ITableEntry entry) {
+        return (key[0] == null || key[0].accept(entry)) && (key[1] == null || key[1].accept(entry));
+    }
+}
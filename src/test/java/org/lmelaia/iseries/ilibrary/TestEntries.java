@@ -0,0 +1,180 @@
+package org.lmelaia.iseries.ilibrary;
+
+import org.lmelaia.iseries.common.system.AppLogger;
+import org.lmelaia.iseries.ilibrary.search.LibraryIndex;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Creates table entries for the search tests, without a
+ * library on disk or the FX toolkit.
+ * <p>
+ * Entries are built from a small set of words, so searches
+ * find plenty of them, with the odd typo, so fuzzy searches
+ * have something to find.
+ */
+public final class TestEntries {
+
+    /**
+     * The words entries are made of.
+     */
+    private static final String[] WORDS = {
+            "the", "dark", "knight", "night", "star", "stars", "wars", "return", "of", "king",
+            "kingdom", "ring", "rings", "lord", "re", "zero", "one", "piece", "darker", "a",
+            "attack", "titan", "clone", "2", "1917", "café"
+    };
+
+    /**
+     * Has logging been configured.
+     */
+    private static boolean configured;
+
+    /**
+     * Private (non instantiable) constructor.
+     */
+    private TestEntries() {
+    }
+
+    /**
+     * Configures logging to only log warnings, once
+     * for every test class run.
+     */
+    public static synchronized void configureLogging() {
+        if (configured)
+            return;
+
+        AppLogger.silentConfigure("/configuration/log4j2_test_configuration.xml");
+        configured = true;
+    }
+
+    /**
+     * Creates an entry.
+     *
+     * @param name     the name.
+     * @param synopsis the synopsis.
+     * @param comments the comments.
+     * @param type     the type.
+     * @param rating   the rating.
+     * @param loved    is the entry loved.
+     * @return the entry.
+     */
+    public static ITableEntry create(String name, String synopsis, String comments,
+                                     IEntry.TypeValues type, IEntry.RatingValues rating, boolean loved) {
+        IEntry entry = new IEntry();
+        entry.setName(name);
+        entry.setSynopsis(synopsis);
+        entry.setComments(comments);
+        entry.setType(type);
+        entry.setRating(rating);
+        entry.setLoved(loved);
+        return entry.getTableEntry();
+    }
+
+    /**
+     * Creates randomly named and described entries.
+     *
+     * @param random the source of randomness.
+     * @param count  the number of entries.
+     * @return the entries.
+     */
+    public static List<ITableEntry> create(Random random, int count) {
+        List<ITableEntry> entries = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            entries.add(create(
+                    createText(random, 1, 4), createText(random, 0, 8), createText(random, 0, 3),
+                    IEntry.TypeValues.values()[random.nextInt(IEntry.TypeValues.values().length)],
+                    IEntry.RatingValues.values()[random.nextInt(IEntry.RatingValues.values().length)],
+                    random.nextBoolean()
+            ));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Renames an entry and changes its attributes randomly.
+     *
+     * @param random the source of randomness.
+     * @param entry  the entry.
+     */
+    public static void edit(Random random, ITableEntry entry) {
+        entry.getEntry().setName(createText(random, 1, 4));
+        entry.getEntry().setRating(
+                IEntry.RatingValues.values()[random.nextInt(IEntry.RatingValues.values().length)]);
+        entry.getEntry().setLoved(random.nextBoolean());
+    }
+
+    /**
+     * @param entries the entries.
+     * @return an index of the entries.
+     */
+    public static LibraryIndex index(List<ITableEntry> entries) {
+        LibraryIndex index = new LibraryIndex();
+
+        for (ITableEntry entry : entries)
+            index.put(entry);
+
+        return index;
+    }
+
+    /**
+     * Finds entries by checking every entry in an index.
+     *
+     * @param index  the index.
+     * @param filter accepts the entries to find.
+     * @return the ordinals of the entries accepted.
+     */
+    public static BitSet findAll(LibraryIndex index, Predicate<ITableEntry> filter) {
+        BitSet ordinals = index.getOrdinals();
+        BitSet found = new BitSet();
+
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            if (filter.test(index.get(i)))
+                found.set(i);
+        }
+
+        return found;
+    }
+
+    /**
+     * @param random the source of randomness.
+     * @return a word entries are made of, with a typo one
+     * time in eight.
+     */
+    public static String createWord(Random random) {
+        String word = WORDS[random.nextInt(WORDS.length)];
+
+        if (word.length() < 3 || random.nextInt(8) != 0)
+            return word;
+
+        //Swap two neighbouring characters.
+        int i = random.nextInt(word.length() - 1);
+        return word.substring(0, i) + word.charAt(i + 1) + word.charAt(i) + word.substring(i + 2);
+    }
+
+    /**
+     * @param random the source of randomness.
+     * @param min    the fewest words.
+     * @param max    the most words.
+     * @return words separated by spaces or punctuation.
+     */
+    private static String createText(Random random, int min, int max) {
+        int words = min + random.nextInt(max - min + 1);
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < words; i++) {
+            if (i > 0)
+                text.append(random.nextInt(6) == 0 ? ": " : " ");
+
+            String word = createWord(random);
+            text.append(random.nextInt(4) == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+        }
+
+        return text.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link CompressedPostingList} against a
+ * {@link TreeSet} given the same changes.
+ */
+public class CompressedPostingListTest {
+
+    /**
+     * Tests appending increasing ordinals, with gaps
+     * taking one to five bytes to encode.
+     */
+    @Test
+    public void testAppend() {
+        CompressedPostingList list = new CompressedPostingList();
+        TreeSet<Integer> expected = new TreeSet<>();
+        int ordinal = -1;
+
+        for (int gap : new int[]{1, 1, 127, 128, 16_383, 16_384, 2_097_151, 2_097_152,
+                268_435_455, 268_435_456, 1}) {
+            ordinal += gap;
+            list.add(ordinal);
+            expected.add(ordinal);
+            assertContents(expected, list);
+        }
+    }
+
+    /**
+     * Tests adding ordinals already in the list,
+     * which leaves it unchanged.
+     */
+    @Test
+    public void testAddDuplicates() {
+        CompressedPostingList list = new CompressedPostingList();
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int ordinal : new int[]{5, 300, 70_000, 5, 300, 70_000}) {
+            list.add(ordinal);
+            expected.add(ordinal);
+        }
+
+        assertContents(expected, list);
+    }
+
+    /**
+     * Tests removing the first, a middle and the last ordinal,
+     * and ordinals that aren't in the list.
+     */
+    @Test
+    public void testRemove() {
+        CompressedPostingList list = new CompressedPostingList();
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int ordinal : new int[]{3, 200, 201, 40_000, 40_001}) {
+            list.add(ordinal);
+            expected.add(ordinal);
+        }
+
+        for (int ordinal : new int[]{0, 4, 40_002, 200, 3, 40_001, 40_001, 201, 40_000}) {
+            assertEquals("remove " + ordinal, expected.remove(ordinal), list.remove(ordinal));
+            assertContents(expected, list);
+        }
+
+        assertTrue(list.isEmpty());
+
+        //Appending still works once emptied.
+        list.add(7);
+        expected.add(7);
+        assertContents(expected, list);
+    }
+
+    /**
+     * Tests random adds and removes, mostly near the end of the
+     * list as when entries are added, edited and removed.
+     */
+    @Test
+    public void testRandomChanges() {
+        Random random = new Random(1);
+
+        for (int round = 0; round < 20; round++) {
+            CompressedPostingList list = new CompressedPostingList();
+            TreeSet<Integer> expected = new TreeSet<>();
+            int next = 0;
+
+            for (int i = 0; i < 2000; i++) {
+                int ordinal = random.nextInt(4) == 0 || next == 0
+                        ? (next += 1 + random.nextInt(random.nextBoolean() ? 4 : 50_000))
+                        : random.nextInt(next + 1);
+
+                if (random.nextInt(3) == 0) {
+                    assertEquals("remove " + ordinal, expected.remove(ordinal), list.remove(ordinal));
+                } else {
+                    list.add(ordinal);
+                    expected.add(ordinal);
+                }
+            }
+
+            assertContents(expected, list);
+        }
+    }
+
+    /**
+     * Checks a list holds exactly the expected ordinals.
+     *
+     * @param expected the expected ordinals.
+     * @param list     the list.
+     */
+    private static void assertContents(TreeSet<Integer> expected, CompressedPostingList list) {
+        BitSet ordinals = new BitSet();
+        list.addTo(ordinals);
+
+        BitSet expectedOrdinals = new BitSet();
+        for (int ordinal : expected)
+            expectedOrdinals.set(ordinal);
+
+        assertEquals(expectedOrdinals, ordinals);
+        assertEquals(expected.size(), list.size());
+        assertEquals(expected.isEmpty(), list.isEmpty());
+    }
+}
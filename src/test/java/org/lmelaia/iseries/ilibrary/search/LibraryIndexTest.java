@@ -0,0 +1,317 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.lmelaia.iseries.ilibrary.ITableEntry;
+import org.lmelaia.iseries.ilibrary.TestEntries;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the {@link LibraryIndex} finds exactly the entries
+ * found by checking every entry, through its trigram and token
+ * indexes, as entries are added, edited and removed.
+ */
+public class LibraryIndexTest {
+
+    /**
+     * Terms searched for, of every length,
+     * found and not found.
+     */
+    private static final String[] TERMS = {
+            "a", "e", "2", "ar", "ng", "dar", "Dark", "knight", "ark kni", "the dark knight",
+            "ring", "rings", "café", "afé", ": ", "19", "1917", "xyz", "kingdom of"
+    };
+
+    @BeforeClass
+    public static void initialize() {
+        TestEntries.configureLogging();
+    }
+
+    /**
+     * Tests substring searches of every field and each
+     * field, and within earlier results.
+     */
+    @Test
+    public void testFindSubstring() {
+        Random random = new Random(1);
+        List<ITableEntry> entries = TestEntries.create(random, 2000);
+        LibraryIndex index = TestEntries.index(entries);
+
+        assertSubstrings(index);
+        change(random, entries, index);
+        assertSubstrings(index);
+    }
+
+    /**
+     * Tests fuzzy searches against the edit distance
+     * to every word in the name of every entry.
+     */
+    @Test
+    public void testFindFuzzy() {
+        Random random = new Random(2);
+        List<ITableEntry> entries = TestEntries.create(random, 2000);
+        LibraryIndex index = TestEntries.index(entries);
+
+        assertFuzzy(random, index);
+        change(random, entries, index);
+        assertFuzzy(random, index);
+    }
+
+    /**
+     * Tests finding entries with a field equal to some text.
+     */
+    @Test
+    public void testFindEqual() {
+        Random random = new Random(3);
+        List<ITableEntry> entries = TestEntries.create(random, 2000);
+        LibraryIndex index = TestEntries.index(entries);
+
+        for (int i = 0; i < 50; i++) {
+            String name = entries.get(random.nextInt(entries.size())).getName();
+            String text = random.nextBoolean() ? name : name.toUpperCase(Locale.ROOT);
+
+            assertEquals(text, TestEntries.findAll(index, entry -> entry.getName().equalsIgnoreCase(text)),
+                    index.findEqual(text, SearchField.NAME, null));
+        }
+
+        assertEquals(TestEntries.findAll(index, entry -> entry.getEntry().getComments().isEmpty()),
+                index.findEqual("", SearchField.COMMENTS, null));
+    }
+
+    /**
+     * Tests finding entries by attribute value
+     * ranges, before and after changes.
+     */
+    @Test
+    public void testFindAttribute() {
+        Random random = new Random(4);
+        List<ITableEntry> entries = TestEntries.create(random, 2000);
+        LibraryIndex index = TestEntries.index(entries);
+
+        assertAttributes(index);
+        change(random, entries, index);
+        assertAttributes(index);
+    }
+
+    /**
+     * Tests the edit distance, which counts a swap
+     * of neighbouring characters as one edit.
+     */
+    @Test
+    public void testEditDistance() {
+        assertEquals(0, LibraryIndex.editDistance("knight", "knight"));
+        assertEquals(1, LibraryIndex.editDistance("knight", "kinght"));
+        assertEquals(1, LibraryIndex.editDistance("knight", "night"));
+        assertEquals(1, LibraryIndex.editDistance("knight", "knights"));
+        assertEquals(1, LibraryIndex.editDistance("knight", "knigjt"));
+        assertEquals(2, LibraryIndex.editDistance("knight", "nihgt"));
+        assertEquals(3, LibraryIndex.editDistance("", "abc"));
+        assertEquals(3, LibraryIndex.editDistance("abc", ""));
+        assertEquals(LibraryIndex.editDistance("kingdom", "dark"), LibraryIndex.editDistance("dark", "kingdom"));
+    }
+
+    /**
+     * Tests splitting text into lowercase words.
+     */
+    @Test
+    public void testTokenize() {
+        assertEquals(Arrays.asList("re", "zero", "the", "2nd", "café"),
+                LibraryIndex.tokenize("Re:Zero - the 2nd  Café!"));
+        assertEquals(Collections.emptyList(), LibraryIndex.tokenize(" - "));
+    }
+
+    /**
+     * Tests that removed entries are no longer found,
+     * and that removing twice does nothing.
+     */
+    @Test
+    public void testRemove() {
+        List<ITableEntry> entries = TestEntries.create(new Random(5), 100);
+        LibraryIndex index = TestEntries.index(entries);
+        ITableEntry removed = entries.get(10);
+        int ordinal = index.getOrdinal(removed.getUUID());
+
+        assertSame(removed, index.remove(removed.getUUID()));
+        assertNull(index.remove(removed.getUUID()));
+        assertNull(index.get(ordinal));
+        assertEquals(-1, index.getOrdinal(removed.getUUID()));
+        assertEquals(99, index.size());
+        assertFalse(index.getOrdinals().get(ordinal));
+        assertFalse(index.findSubstring(removed.getName(), SearchField.NAME).get(ordinal));
+        assertFalse(index.findFuzzy(LibraryIndex.tokenize(removed.getName()).get(0), 2).get(ordinal));
+    }
+
+    /**
+     * Tests reading many entries at once against
+     * reading them one at a time.
+     */
+    @Test
+    public void testGetMany() {
+        Random random = new Random(6);
+        List<ITableEntry> entries = TestEntries.create(random, 1000);
+        LibraryIndex index = TestEntries.index(entries);
+        change(random, entries, index);
+
+        BitSet ordinals = new BitSet();
+        for (int i = 0; i < 2000; i++) {
+            if (random.nextBoolean())
+                ordinals.set(i);
+        }
+
+        for (int[] range : new int[][]{{0, 2000}, {0, 0}, {10, 500}, {1200, 5000}, {4000, 4100}}) {
+            ITableEntry[] found = index.get(ordinals, range[0], range[1]);
+            assertEquals(range[1] - range[0], found.length);
+
+            for (int i = range[0]; i < range[1]; i++)
+                assertSame("ordinal " + i, ordinals.get(i) ? index.get(i) : null, found[i - range[0]]);
+        }
+    }
+
+    /**
+     * Tests that scans give up once cancelled, releasing
+     * the index, and are only checked every few thousand
+     * entries.
+     */
+    @Test
+    public void testCancelScan() {
+        Random random = new Random(7);
+        List<ITableEntry> entries = TestEntries.create(random, LibraryIndex.CANCEL_CHECK_INTERVAL * 3);
+        LibraryIndex index = TestEntries.index(entries);
+        int[] checks = new int[1];
+
+        try {
+            index.scan(SearchField.NAME, text -> true, null, () -> ++checks[0] == 2);
+            fail("Scan not cancelled");
+        } catch (CancellationException e) {
+            assertEquals(2, checks[0]);
+        }
+
+        try {
+            index.findSubstring("a", null, null, () -> true);
+            fail("Substring search not cancelled");
+        } catch (CancellationException e) {
+            assertNotNull(e.getMessage());
+        }
+
+        //Only released read locks let the index be edited.
+        index.remove(entries.get(0).getUUID());
+        assertEquals(entries.size() - 1, index.scan(SearchField.NAME, text -> true, null, () -> false).cardinality());
+    }
+
+    /**
+     * Edits, removes and adds random entries.
+     *
+     * @param random  the source of randomness.
+     * @param entries the entries, which are added to.
+     * @param index   the index of the entries.
+     */
+    private static void change(Random random, List<ITableEntry> entries, LibraryIndex index) {
+        for (int i = 0; i < 500; i++) {
+            ITableEntry entry = entries.get(random.nextInt(entries.size()));
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    TestEntries.edit(random, entry);
+                    index.put(entry);
+                    break;
+                case 1:
+                    index.remove(entry.getUUID());
+                    break;
+                default:
+                    ITableEntry added = TestEntries.create(random, 1).get(0);
+                    entries.add(added);
+                    index.put(added);
+            }
+        }
+    }
+
+    /**
+     * Checks substring searches for every term.
+     *
+     * @param index the index.
+     */
+    private static void assertSubstrings(LibraryIndex index) {
+        for (String term : TERMS) {
+            String lowercase = term.toLowerCase(Locale.ROOT);
+            BitSet all = TestEntries.findAll(index, entry -> {
+                for (SearchField field : SearchField.values()) {
+                    if (field.read(entry).toLowerCase(Locale.ROOT).contains(lowercase))
+                        return true;
+                }
+
+                return false;
+            });
+
+            assertEquals(term, all, index.findSubstring(term, null));
+
+            for (SearchField field : SearchField.values()) {
+                assertEquals(term + " in " + field,
+                        TestEntries.findAll(index, entry -> field.read(entry).toLowerCase(Locale.ROOT).contains(lowercase)),
+                        index.findSubstring(term, field));
+            }
+
+            //Within every other entry.
+            BitSet within = new BitSet();
+            for (int i = 0; i < index.getOrdinals().length(); i += 2)
+                within.set(i);
+
+            BitSet expected = (BitSet) all.clone();
+            expected.and(within);
+            assertEquals(term + " within", expected, index.findSubstring(term, null, within));
+        }
+    }
+
+    /**
+     * Checks fuzzy searches for words and
+     * misspelt words, at every distance.
+     *
+     * @param random the source of randomness.
+     * @param index  the index.
+     */
+    private static void assertFuzzy(Random random, LibraryIndex index) {
+        List<String> words = new ArrayList<>(Arrays.asList("", "k", "kni", "kinght", "nihgt", "xyzzy", "ringss"));
+        for (int i = 0; i < 30; i++)
+            words.add(TestEntries.createWord(random));
+
+        for (String word : words) {
+            for (int distance = 0; distance <= 3; distance++) {
+                int maxDistance = distance;
+                String lowercase = word.toLowerCase(Locale.ROOT);
+
+                assertEquals(word + " within " + maxDistance, TestEntries.findAll(index, entry -> {
+                    for (String token : LibraryIndex.tokenize(entry.getName())) {
+                        if (token.startsWith(lowercase) || LibraryIndex.editDistance(lowercase, token) <= maxDistance)
+                            return true;
+                    }
+
+                    return false;
+                }), index.findFuzzy(word, maxDistance));
+            }
+        }
+    }
+
+    /**
+     * Checks every range of every attribute.
+     *
+     * @param index the index.
+     */
+    private static void assertAttributes(LibraryIndex index) {
+        for (Attribute attribute : Attribute.values()) {
+            for (int min = -1; min <= attribute.getValueCount(); min++) {
+                for (int max = min; max <= attribute.getValueCount(); max++) {
+                    int from = min;
+                    int to = max;
+
+                    assertEquals(attribute + " " + min + "-" + max, TestEntries.findAll(index, entry -> {
+                        int value = attribute.read(entry);
+                        return value >= from && value <= to;
+                    }), index.findAttribute(attribute, min, max, null));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.lmelaia.iseries.ilibrary.search;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.lmelaia.iseries.ilibrary.ITableEntry;
+import org.lmelaia.iseries.ilibrary.TestEntries;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that queries select, through the {@link LibraryIndex},
+ * exactly the entries they match when checked one at a time.
+ */
+public class QueryPlanTest {
+
+    /**
+     * Queries covering each kind of term and operator.
+     */
+    private static final String[] QUERIES = {
+            "", "dark", "dark knight", "DARK Knight", "ar", "a", "café", "re:zero", "2",
+            "dark OR star", "dark AND star", "dark AND NOT star", "-dark", "NOT NOT dark",
+            "(dark OR star) king", "dark (star OR (king -ring))", "\"the dark\"", "\"\"",
+            "name:dark", "name=\"dark knight\"", "name!=dark", "name<k", "name>=star", "name>\"the\"",
+            "synopsis:ring", "comments:one", "uuid:a", "type:series",
+            "type:movie", "type=series", "type!=movie", "type:none", "rating>=8", "rating<5",
+            "rating<=1", "rating>10", "rating:na", "rating!=na", "rating=7/10", "rating:3",
+            "loved:true", "loved:no", "NOT loved:true rating>3", "type:movie OR (loved:true -rating<=3)",
+            "rating>=5 rating<=7 OR name:king"
+    };
+
+    /**
+     * Terms random queries are made of.
+     */
+    private static final String[] TERMS = {
+            "dark", "kni", "star", "ring", "zero", "the", "of", "a", "\"lord of\"", "name:king",
+            "synopsis:titan", "comments:piece", "name=one", "type:movie", "type!=trilogy",
+            "rating>=6", "rating<4", "rating:na", "loved:true", "loved:false", "name<m"
+    };
+
+    @BeforeClass
+    public static void initialize() {
+        TestEntries.configureLogging();
+    }
+
+    /**
+     * Tests the queries against random entries.
+     *
+     * @throws QueryException if a query is invalid.
+     */
+    @Test
+    public void testSelectMatchesEveryEntry() throws QueryException {
+        LibraryIndex index = TestEntries.index(TestEntries.create(new Random(1), 2000));
+
+        for (String query : QUERIES)
+            assertSelectMatches(index, query);
+    }
+
+    /**
+     * Tests randomly generated queries, with random
+     * operators, brackets and negation.
+     *
+     * @throws QueryException if a query is invalid.
+     */
+    @Test
+    public void testRandomQueries() throws QueryException {
+        Random random = new Random(2);
+        LibraryIndex index = TestEntries.index(TestEntries.create(random, 1000));
+
+        for (int i = 0; i < 500; i++)
+            assertSelectMatches(index, createQuery(random, 3));
+    }
+
+    /**
+     * Tests that queries still select what they match once
+     * entries have been edited and removed.
+     *
+     * @throws QueryException if a query is invalid.
+     */
+    @Test
+    public void testSelectAfterChanges() throws QueryException {
+        Random random = new Random(3);
+        List<ITableEntry> entries = TestEntries.create(random, 1000);
+        LibraryIndex index = TestEntries.index(entries);
+
+        for (int i = 0; i < 300; i++) {
+            ITableEntry entry = entries.get(random.nextInt(entries.size()));
+
+            if (random.nextBoolean()) {
+                TestEntries.edit(random, entry);
+                index.put(entry);
+            } else {
+                index.remove(entry.getUUID());
+            }
+        }
+
+        for (String query : QUERIES)
+            assertSelectMatches(index, query);
+    }
+
+    /**
+     * Tests that a plan can be explained and that the entries
+     * it reports matching are the entries it selects.
+     *
+     * @throws QueryException if the query is invalid.
+     */
+    @Test
+    public void testExplain() throws QueryException {
+        LibraryIndex index = TestEntries.index(TestEntries.create(new Random(4), 500));
+        QueryPlan plan = QueryPlan.compile("(dark OR star) -rating<5 loved:true");
+
+        assertTrue(plan.explain(index).contains("Matched " + plan.select(index).cardinality() + " entries"));
+    }
+
+    /**
+     * Tests that a run can be recorded while selecting,
+     * without changing what's selected.
+     *
+     * @throws QueryException if the query is invalid.
+     */
+    @Test
+    public void testSelectExplained() throws QueryException {
+        LibraryIndex index = TestEntries.index(TestEntries.create(new Random(5), 500));
+        QueryPlan plan = QueryPlan.compile("name:king OR (ring -loved:true)");
+        QueryPlan.Explanation explanation = new QueryPlan.Explanation();
+        assertEquals("Not run", explanation.toString());
+
+        BitSet selected = plan.select(index, explanation);
+        assertEquals(plan.select(index), selected);
+
+        String explained = explanation.toString();
+        assertTrue(explained, explained.startsWith("Query: name:king OR (ring -loved:true)\nPlan:\n" + plan));
+        assertTrue(explained, explained.contains("Matched " + selected.cardinality() + " entries"));
+
+        //A line per step run.
+        String run = explained.substring(explained.indexOf("Run:\n") + 5, explained.indexOf("\nMatched"));
+        assertEquals(explained, 6, run.split("\n").length);
+    }
+
+    /**
+     * Tests that a run gives up once cancelled, between
+     * steps, and selects the same entries otherwise.
+     *
+     * @throws QueryException if the query is invalid.
+     */
+    @Test
+    public void testCancel() throws QueryException {
+        LibraryIndex index = TestEntries.index(TestEntries.create(new Random(6), 500));
+        QueryPlan plan = QueryPlan.compile("dark (star OR king) rating>=3 name>b");
+        assertEquals(plan.select(index), plan.select(index, null, () -> false));
+
+        for (int steps = 1; steps <= 3; steps++) {
+            int[] checks = new int[1];
+            int cancelAt = steps;
+
+            try {
+                plan.select(index, new QueryPlan.Explanation(), () -> ++checks[0] == cancelAt);
+                fail("Not cancelled after " + steps + " checks");
+            } catch (CancellationException e) {
+                assertEquals(cancelAt, checks[0]);
+            }
+        }
+    }
+
+    /**
+     * Tests that only text, without fields, operators,
+     * brackets or quotes, is plain text.
+     *
+     * @throws QueryException if a query is invalid.
+     */
+    @Test
+    public void testPlainText() throws QueryException {
+        assertTrue(QueryPlan.compile("").isPlainText());
+        assertTrue(QueryPlan.compile("dark knight").isPlainText());
+        assertTrue(QueryPlan.compile("re:zero").isPlainText());
+        assertFalse(QueryPlan.compile("name:dark").isPlainText());
+        assertFalse(QueryPlan.compile("dark OR star").isPlainText());
+        assertFalse(QueryPlan.compile("-dark").isPlainText());
+        assertFalse(QueryPlan.compile("\"dark\"").isPlainText());
+    }
+
+    /**
+     * Tests that invalid queries are rejected.
+     */
+    @Test
+    public void testInvalidQueries() {
+        for (String query : new String[]{"(dark", "dark)", "()", "dark OR", "NOT", "name:",
+                "rating>=eleven", "rating:0", "rating:11", "type:spaceship", "loved:maybe", "comments=\"\""}) {
+            try {
+                QueryPlan.compile(query);
+                fail("Accepted invalid query: " + query);
+            } catch (QueryException e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Checks that a query selects exactly
+     * the entries it matches.
+     *
+     * @param index the index.
+     * @param query the query.
+     * @throws QueryException if the query is invalid.
+     */
+    private static void assertSelectMatches(LibraryIndex index, String query) throws QueryException {
+        QueryPlan plan = QueryPlan.compile(query);
+        assertEquals(query + "\n" + plan, TestEntries.findAll(index, plan::matches), plan.select(index));
+    }
+
+    /**
+     * @param random the source of randomness.
+     * @param depth  the most levels of brackets.
+     * @return a random query.
+     */
+    private static String createQuery(Random random, int depth) {
+        int terms = 1 + random.nextInt(3);
+        StringBuilder query = new StringBuilder();
+
+        for (int i = 0; i < terms; i++) {
+            if (i > 0)
+                query.append(random.nextInt(3) == 0 ? " OR " : random.nextBoolean() ? " AND " : " ");
+
+            if (random.nextInt(4) == 0)
+                query.append(random.nextBoolean() ? "-" : "NOT ");
+
+            if (depth > 0 && random.nextInt(4) == 0)
+                query.append('(').append(createQuery(random, depth - 1)).append(')');
+            else
+                query.append(TERMS[random.nextInt(TERMS.length)]);
+        }
+
+        return query.toString();
+    }
+}